@@ -2,6 +2,7 @@ package com.ugc.card.model;
 
 import java.util.*;
 import java.util.regex.*;
+import com.ugc.card.model.targeting.TextPatterns;
 
 public class AbilityParser {
     private static final Map<String, TargetType> TARGET_TYPE_MAP = Map.of(
@@ -41,7 +42,7 @@ public class AbilityParser {
         String normalizedText = abilityText.toLowerCase().trim();
         
         // Split into clauses
-        String[] clauses = normalizedText.split("(,|then|and)");
+        String[] clauses = TextPatterns.CLAUSE_BREAK.split(normalizedText);
         
         TargetStructure root = null;
         TargetStructure current = null;
@@ -65,7 +66,7 @@ public class AbilityParser {
         TargetStructure structure = new TargetStructure();
         
         // Parse target
-        Matcher targetMatcher = Pattern.compile("target (\\w+)").matcher(clause);
+        Matcher targetMatcher = TextPatterns.TARGET_WORD.matcher(clause);
         if (targetMatcher.find()) {
             String targetType = targetMatcher.group(1);
             structure.targetType = TARGET_TYPE_MAP.getOrDefault(targetType, TargetType.CARD);
@@ -73,7 +74,7 @@ public class AbilityParser {
         
         // Parse effect
         for (Map.Entry<String, EffectType> entry : EFFECT_TYPE_MAP.entrySet()) {
-            if (Pattern.compile(entry.getKey()).matcher(clause).find()) {
+            if (TextPatterns.get(entry.getKey()).matcher(clause).find()) {
                 structure.effect = new Effect();
                 structure.effect.type = entry.getValue();
                 structure.effect.parameters = parseEffectParameters(clause, entry.getValue());
@@ -84,7 +85,7 @@ public class AbilityParser {
         // Parse conditions
         List<Condition> conditions = new ArrayList<>();
         for (Map.Entry<String, ConditionType> entry : CONDITION_TYPE_MAP.entrySet()) {
-            if (Pattern.compile(entry.getKey()).matcher(clause).find()) {
+            if (TextPatterns.get(entry.getKey()).matcher(clause).find()) {
                 Condition condition = new Condition();
                 condition.type = entry.getValue();
                 condition.parameters = parseConditionParameters(clause, entry.getValue());
@@ -103,19 +104,19 @@ public class AbilityParser {
         
         switch (effectType) {
             case DAMAGE:
-                Matcher damageMatcher = Pattern.compile("deal (\\d+) damage").matcher(clause);
+                Matcher damageMatcher = TextPatterns.DEAL_DAMAGE.matcher(clause);
                 if (damageMatcher.find()) {
                     parameters.put("amount", Integer.parseInt(damageMatcher.group(1)));
                 }
                 break;
             case HEAL:
-                Matcher healMatcher = Pattern.compile("gain (\\d+) life").matcher(clause);
+                Matcher healMatcher = TextPatterns.GAIN_LIFE.matcher(clause);
                 if (healMatcher.find()) {
                     parameters.put("amount", Integer.parseInt(healMatcher.group(1)));
                 }
                 break;
             case DRAW:
-                Matcher drawMatcher = Pattern.compile("draw (\\d+) card").matcher(clause);
+                Matcher drawMatcher = TextPatterns.DRAW_CARDS.matcher(clause);
                 if (drawMatcher.find()) {
                     parameters.put("amount", Integer.parseInt(drawMatcher.group(1)));
                 }
@@ -130,13 +131,13 @@ public class AbilityParser {
         
         switch (conditionType) {
             case TRIGGER:
-                Matcher triggerMatcher = Pattern.compile("when (.*)").matcher(clause);
+                Matcher triggerMatcher = TextPatterns.WHEN_EVENT.matcher(clause);
                 if (triggerMatcher.find()) {
                     parameters.put("triggerEvent", triggerMatcher.group(1));
                 }
                 break;
             case CONTROL:
-                Matcher controlMatcher = Pattern.compile("control (\\d+)").matcher(clause);
+                Matcher controlMatcher = TextPatterns.CONTROL_COUNT.matcher(clause);
                 if (controlMatcher.find()) {
                     parameters.put("count", Integer.parseInt(controlMatcher.group(1)));
                 }
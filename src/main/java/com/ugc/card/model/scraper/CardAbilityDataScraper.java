@@ -4,6 +4,7 @@ import com.ugc.card.model.Card;
 import com.ugc.card.model.targeting.TargetingSystem;
 import com.ugc.card.model.targeting.TargetingLLM;
 import com.ugc.card.model.targeting.TargetingChain;
+import com.ugc.card.model.targeting.CsvRecordPipeline;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -13,7 +14,6 @@ import java.util.stream.Collectors;
 import java.io.*;
 import java.nio.file.*;
 import com.opencsv.CSVWriter;
-import com.opencsv.CSVReader;
 import com.opencsv.exceptions.CsvException;
 import lombok.Data;
 import lombok.AllArgsConstructor;
@@ -161,25 +161,22 @@ public class TCGPlayerScraper {
     }
     
     public void loadFromCSV(String filename) {
-        try (CSVReader reader = new CSVReader(new FileReader(filename))) {
-            List<String[]> rows = reader.readAll();
-            
-            // Skip header
-            for (int i = 1; i < rows.size(); i++) {
-                String[] row = rows.get(i);
-                if (row.length >= 2) {
-                    String game = row[0];
-                    String ability = row[1];
-                    
-                    gameAbilities.computeIfAbsent(game, k -> new ArrayList<>()).add(ability);
-                    
-                    // Parse ability into targeting chains
-                    TargetingChain chain = llm.parseText(ability);
-                    String pattern = chain.toString();
-                    abilityPatterns.computeIfAbsent(game, k -> new HashMap<>())
-                        .merge(pattern, 1, Integer::sum);
-                }
-            }
+        try (Reader reader = new FileReader(filename)) {
+            // Skip header; abilities are parsed in parallel while the file is read
+            new CsvRecordPipeline().run(reader, 1,
+                row -> row.length >= 2 ? llm.parseText(row[1]) : null,
+                (row, chain) -> {
+                    if (row.length >= 2) {
+                        String game = row[0];
+                        String ability = row[1];
+                        
+                        gameAbilities.computeIfAbsent(game, k -> new ArrayList<>()).add(ability);
+                        
+                        String pattern = chain.toString();
+                        abilityPatterns.computeIfAbsent(game, k -> new HashMap<>())
+                            .merge(pattern, 1, Integer::sum);
+                    }
+                });
         } catch (IOException | CsvException e) {
             e.printStackTrace();
         }
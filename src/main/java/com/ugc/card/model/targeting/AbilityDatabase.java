@@ -1,23 +1,37 @@
 package com.ugc.card.model.targeting;
 
-import com.opencsv.CSVReader;
 import com.opencsv.CSVWriter;
 import com.opencsv.exceptions.CsvException;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 public class AbilityDatabase {
+    // Compaction rewrites the snapshot once the log outgrows it, which keeps the
+    // total I/O linear in the number of mutations
+    private static final int MIN_COMPACTION_RECORDS = 10_000;
+    
     private final String databasePath;
+    // False for a database built without a path, which lives in memory only
+    private final boolean persistent;
     private final TargetingSystem targetingSystem;
     private final String game;
     private final Map<String, Set<TargetingChain>> abilities;
     private final Map<ComponentCategory, Set<String>> validValues;
     private Set<TargetingChain> abilitiesSet;
     private Map<ComponentCategory, Set<TargetingChain>> categoryMap;
+    private final AbilitySearchIndex searchIndex = new AbilitySearchIndex();
+    private final AbilitySimilarityIndex similarityIndex = new AbilitySimilarityIndex(searchIndex);
+    // How many abilities, plus calls to addChains, hold each indexed chain
+    private final Map<TargetingChain, Integer> chainReferences = new HashMap<>();
+    private AbilityLog log;
+    private int batchDepth;
     
     public AbilityDatabase(String databasePath, TargetingSystem targetingSystem, String game) {
         this.databasePath = databasePath;
+        this.persistent = true;
         this.targetingSystem = targetingSystem;
         this.game = game.toLowerCase();
         if (!targetingSystem.isGameSupported(game)) {
@@ -38,6 +52,7 @@ public class AbilityDatabase {
     
     public AbilityDatabase() {
         this.databasePath = "abilities.csv";
+        this.persistent = false;
         this.targetingSystem = new TargetingSystem();
         this.game = "default";
         this.abilities = new HashMap<>();
@@ -48,22 +63,23 @@ public class AbilityDatabase {
     
     private void loadDatabase() {
         File dbFile = new File(databasePath);
-        if (!dbFile.exists()) {
-            return;
+        if (dbFile.exists()) {
+            loadSnapshot(dbFile);
         }
-        
-        try (CSVReader reader = new CSVReader(new FileReader(dbFile))) {
-            List<String[]> rows = reader.readAll();
-            for (String[] row : rows) {
-                if (row.length >= 2) {
-                    String abilityText = row[0];
-                    String chainText = row[1];
-                    
-                    // Parse the targeting chain
-                    Set<TargetingChain> chains = parseChainText(chainText);
-                    abilities.computeIfAbsent(abilityText, k -> new HashSet<>()).addAll(chains);
-                }
-            }
+        // Replays every mutation made since the snapshot was written
+        log();
+    }
+    
+    private void loadSnapshot(File dbFile) {
+        try (Reader reader = new FileReader(dbFile, StandardCharsets.UTF_8)) {
+            // Chain texts are parsed in parallel while the snapshot is read; rows are stored in file order
+            new CsvRecordPipeline().run(reader, 0,
+                row -> row.length >= 2 ? parseChainText(row[1]) : null,
+                (row, chains) -> {
+                    if (chains != null) {
+                        putAll(row[0], chains);
+                    }
+                });
         } catch (IOException | CsvException e) {
             e.printStackTrace();
         }
@@ -90,38 +106,202 @@ public class AbilityDatabase {
         return chains;
     }
     
+    private AbilityLog log() {
+        if (log == null && persistent) {
+            try {
+                log = AbilityLog.open(Paths.get(databasePath + ".log"), new AbilityLog.Visitor() {
+                    @Override
+                    public void add(String name, String chainText) {
+                        putAll(name, parseChainText(chainText));
+                    }
+                    
+                    @Override
+                    public void remove(String name) {
+                        removeChains(name);
+                    }
+                    
+                    @Override
+                    public void clear() {
+                        clearChains();
+                    }
+                });
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return log;
+    }
+    
+    /**
+     * Runs a group of updates, such as a bulk import, and syncs the log once at the end
+     * instead of after every mutation. Batches may be nested.
+     */
+    public void batch(Runnable updates) {
+        batchDepth++;
+        try {
+            updates.run();
+        } finally {
+            if (--batchDepth == 0) {
+                commit();
+            }
+        }
+    }
+    
+    private void logMutation(AbilityLogWriter write) {
+        AbilityLog current = log();
+        if (current == null) {
+            return;
+        }
+        try {
+            write.append(current);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (batchDepth == 0) {
+            commit();
+        }
+    }
+    
+    private void commit() {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.sync();
+            if (log.size() > MIN_COMPACTION_RECORDS && log.size() > abilities.size()) {
+                compact();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    private interface AbilityLogWriter {
+        void append(AbilityLog log) throws IOException;
+    }
+    
     public void addAbility(String name, TargetingChain chain) {
-        abilities.computeIfAbsent(name, k -> new HashSet<>()).add(chain);
+        putAll(name, Collections.singleton(chain));
         
         // Update valid values
-        for (TargetingComponent component : chain.getComponents()) {
+        for (TargetingComponent component : chain.componentsView()) {
             validValues.computeIfAbsent(component.getCategory(), k -> new HashSet<>())
                       .add(component.getText());
         }
         
-        // Update category map
-        for (TargetingComponent component : chain.getComponents()) {
-            categoryMap.computeIfAbsent(component.getCategory(), k -> new HashSet<>()).add(chain);
+        logMutation(out -> out.appendAdd(name, serializeChains(Collections.singleton(chain))));
+    }
+    
+    public void removeAbility(String name) {
+        removeChains(name);
+        logMutation(out -> out.appendRemove(name));
+    }
+    
+    // The snapshot, the log replay and live mutations all go through these, so the indexes
+    // always hold exactly the chains of the current abilities plus those added by addChains
+    private void putAll(String name, Set<TargetingChain> chains) {
+        Set<TargetingChain> held = abilities.computeIfAbsent(name, k -> new HashSet<>());
+        for (TargetingChain chain : chains) {
+            if (held.add(chain)) {
+                index(chain);
+            }
+        }
+    }
+    
+    private void removeChains(String name) {
+        Set<TargetingChain> removed = abilities.remove(name);
+        if (removed != null) {
+            removed.forEach(this::unindex);
+        }
+    }
+    
+    private void clearChains() {
+        abilities.clear();
+        chainReferences.clear();
+        abilitiesSet.clear();
+        categoryMap.clear();
+        searchIndex.clear();
+        similarityIndex.clear();
+    }
+    
+    private void index(TargetingChain chain) {
+        if (chainReferences.merge(chain, 1, Integer::sum) > 1) {
+            return;
         }
-        
         abilitiesSet.add(chain);
-        saveDatabase();
+        searchIndex.add(chain);
+        for (TargetingComponent component : chain.componentsView()) {
+            categoryMap.computeIfAbsent(component.getCategory(), k -> new HashSet<>()).add(chain);
+        }
     }
     
-    public void removeAbility(String name) {
-        abilities.remove(name);
-        saveDatabase();
+    private void unindex(TargetingChain chain) {
+        Integer references = chainReferences.get(chain);
+        if (references == null) {
+            return;
+        }
+        if (references > 1) {
+            chainReferences.put(chain, references - 1);
+            return;
+        }
+        chainReferences.remove(chain);
+        abilitiesSet.remove(chain);
+        searchIndex.remove(chain);
+        for (TargetingComponent component : chain.componentsView()) {
+            Set<TargetingChain> chains = categoryMap.get(component.getCategory());
+            if (chains != null && chains.remove(chain) && chains.isEmpty()) {
+                categoryMap.remove(component.getCategory());
+            }
+        }
     }
     
-    private void saveDatabase() {
-        try (CSVWriter writer = new CSVWriter(new FileWriter(databasePath))) {
+    /**
+     * Writes the current contents to a new snapshot and empties the log. The snapshot is
+     * written to a temporary file and moved into place, so a crash leaves either the old
+     * snapshot plus the full log, or the new snapshot plus a log that replays harmlessly on top of it.
+     * The snapshot is UTF-8 on every platform. A database created without a path has nothing to compact.
+     */
+    public void compact() throws IOException {
+        if (!persistent) {
+            return;
+        }
+        AbilityLog current = log();
+        if (current != null) {
+            current.sync();
+        }
+        Path target = Paths.get(databasePath);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+            CSVWriter writer = new CSVWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
             for (Map.Entry<String, Set<TargetingChain>> entry : abilities.entrySet()) {
                 String abilityText = entry.getKey();
                 String chainText = serializeChains(entry.getValue());
                 writer.writeNext(new String[]{abilityText, chainText});
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            writer.flush();
+            out.getFD().sync();
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (current != null) {
+            current.reset();
+        }
+    }
+    
+    /**
+     * Syncs and closes the log. Further mutations reopen it.
+     */
+    public void close() {
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            log = null;
         }
     }
     
@@ -130,7 +310,7 @@ public class AbilityDatabase {
         for (TargetingChain chain : chains) {
             if (sb.length() > 0) sb.append("|");
             int i = 0;
-            for (TargetingComponent comp : chain.getComponents()) {
+            for (TargetingComponent comp : chain.componentsView()) {
                 if (i > 0) sb.append(",");
                 sb.append(comp.getText()).append(":").append(comp.getCategory());
                 i++;
@@ -164,25 +344,30 @@ public class AbilityDatabase {
     }
     
     public void clear() {
-        abilities.clear();
-        saveDatabase();
+        clearChains();
+        logMutation(AbilityLog::appendClear);
     }
     
     public void importFromCSV(String csvFile) {
-        try (CSVReader reader = new CSVReader(new FileReader(csvFile))) {
-            List<String[]> rows = reader.readAll();
-            for (String[] row : rows) {
-                if (row.length > 0) {
-                    String abilityText = row[0];
-                    TargetingChain chain = targetingSystem.parseAbility(game, abilityText);
-                    if (chain != null) {
-                        addAbility(abilityText, chain);
-                    }
-                }
+        importAbilities(csvFile);
+    }
+    
+    // Streams the file, parsing abilities in parallel; the log is committed once at the end
+    private void importAbilities(String csvFile) {
+        Function<String, TargetingChain> parser = targetingSystem.parseFunction(game);
+        batch(() -> {
+            try (Reader reader = new FileReader(csvFile)) {
+                new CsvRecordPipeline().run(reader, 0,
+                    row -> row.length > 0 ? parser.apply(row[0]) : null,
+                    (row, chain) -> {
+                        if (chain != null) {
+                            addAbility(row[0], chain);
+                        }
+                    });
+            } catch (IOException | CsvException e) {
+                e.printStackTrace();
             }
-        } catch (IOException | CsvException e) {
-            e.printStackTrace();
-        }
+        });
     }
     
     public void exportToCSV(String csvFile) {
@@ -199,78 +384,55 @@ public class AbilityDatabase {
         return categoryMap.getOrDefault(category, Collections.emptySet());
     }
     
+    /**
+     * @return chains with a component whose text contains the query, ignoring case
+     */
     public Set<TargetingChain> searchAbilities(String query) {
-        return abilitiesSet.stream()
-            .filter(ability -> matchesQuery(ability, query))
-            .collect(Collectors.toSet());
+        return searchIndex.containing(query);
     }
     
-    private boolean matchesQuery(TargetingChain ability, String query) {
-        // Check if any component matches the query
-        return ability.getComponents().stream()
-            .anyMatch(comp -> comp.getText().toLowerCase().contains(query.toLowerCase()));
+    /**
+     * @return chains with a component whose text starts with the prefix, ignoring case
+     */
+    public Set<TargetingChain> searchAbilitiesByPrefix(String prefix) {
+        return searchIndex.withPrefix(prefix);
     }
     
+    /**
+     * @return chains containing exactly the given component
+     */
+    public Set<TargetingChain> searchAbilities(ComponentCategory category, String value) {
+        return searchIndex.matching(category, value);
+    }
+    
+    /**
+     * @return the ten chains most similar to the given one, best first
+     */
     public Set<TargetingChain> getSimilarAbilities(TargetingChain ability) {
-        return abilitiesSet.stream()
-            .filter(other -> !other.equals(ability))
-            .sorted((a, b) -> Double.compare(
-                calculateSimilarity(b, ability),
-                calculateSimilarity(a, ability)
-            ))
-            .limit(10)
-            .collect(Collectors.toSet());
-    }
-    
-    private double calculateSimilarity(TargetingChain a, TargetingChain b) {
-        Set<ComponentCategory> categories = new HashSet<>();
-        categories.addAll(a.getComponents().stream().map(TargetingComponent::getCategory).collect(Collectors.toSet()));
-        categories.addAll(b.getComponents().stream().map(TargetingComponent::getCategory).collect(Collectors.toSet()));
-        
-        double similarity = 0.0;
-        for (ComponentCategory category : categories) {
-            Set<String> valuesA = a.getComponents().stream()
-                .filter(c -> c.getCategory() == category)
-                .map(TargetingComponent::getText)
-                .collect(Collectors.toSet());
-            
-            Set<String> valuesB = b.getComponents().stream()
-                .filter(c -> c.getCategory() == category)
-                .map(TargetingComponent::getText)
-                .collect(Collectors.toSet());
-            
-            similarity += calculateValueSimilarity(valuesA, valuesB);
-        }
-        
-        return similarity / categories.size();
+        return new LinkedHashSet<>(getSimilarAbilities(ability, 10));
     }
     
-    private double calculateValueSimilarity(Set<String> valuesA, Set<String> valuesB) {
-        if (valuesA.isEmpty() && valuesB.isEmpty()) {
-            return 1.0;
-        }
-        if (valuesA.isEmpty() || valuesB.isEmpty()) {
-            return 0.0;
-        }
-        
-        int matches = 0;
-        for (String valueA : valuesA) {
-            for (String valueB : valuesB) {
-                if (valueA.equals(valueB)) {
-                    matches++;
-                }
-            }
-        }
-        
-        return (double) matches / Math.max(valuesA.size(), valuesB.size());
+    /**
+     * Returns up to {@code k} chains ranked by similarity to the given one, best first. Similarity
+     * averages, over the categories either chain uses, the share of values the two chains have in common.
+     */
+    public List<TargetingChain> getSimilarAbilities(TargetingChain ability, int k) {
+        return similarityIndex.topK(ability, k);
+    }
+    
+    /**
+     * Finds pairs of chains whose (category, value) components have a Jaccard similarity of at
+     * least the threshold, using MinHash signatures and LSH buckets rather than comparing every pair.
+     */
+    public List<ChainMinHashIndex.DuplicatePair> findNearDuplicates(double threshold) {
+        ChainMinHashIndex index = ChainMinHashIndex.forThreshold(threshold, 128, 0.99);
+        index.addAll(abilitiesSet);
+        return index.findNearDuplicates(threshold);
     }
     
     public void addChains(Set<TargetingChain> chains) {
         for (TargetingChain chain : chains) {
-            abilitiesSet.add(chain);
-            for (TargetingComponent component : chain.getComponents()) {
-                categoryMap.computeIfAbsent(component.getCategory(), k -> new HashSet<>()).add(chain);
-            }
+            index(chain);
         }
     }
     
@@ -285,20 +447,7 @@ public class AbilityDatabase {
     }
     
     public void loadFromFile(String filePath) {
-        try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
-            List<String[]> rows = reader.readAll();
-            for (String[] row : rows) {
-                if (row.length > 0) {
-                    String abilityText = row[0];
-                    TargetingChain chain = targetingSystem.parseAbility(game, abilityText);
-                    if (chain != null) {
-                        addAbility(abilityText, chain);
-                    }
-                }
-            }
-        } catch (IOException | CsvException e) {
-            e.printStackTrace();
-        }
+        importAbilities(filePath);
     }
     
     public Set<TargetingChain> getChains() {
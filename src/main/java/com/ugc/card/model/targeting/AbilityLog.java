@@ -0,0 +1,228 @@
+package com.ugc.card.model.targeting;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only mutation log backing {@link AbilityDatabase}.
+ *
+ * <pre>
+ * file   := header record*
+ * header := magic "TGAL" (4) | version (2) | reserved (2)
+ * record := payload length (4) | CRC32 of payload (4) | op (1) | name | chains
+ * string := byte length (4) | UTF-8 bytes
+ * </pre>
+ *
+ * Replaying the log on top of the last snapshot reproduces the database. Every operation is
+ * idempotent when the same log is replayed twice, so a crash between writing a new snapshot and
+ * resetting the log is harmless.
+ */
+final class AbilityLog implements Closeable {
+    static final int MAGIC = 0x4C414754; // "TGAL" in little-endian byte order
+    static final short VERSION = 1;
+
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 64 << 20;
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_CLEAR = 3;
+
+    interface Visitor {
+        void add(String name, String chainText);
+
+        void remove(String name);
+
+        void clear();
+    }
+
+    private final FileChannel channel;
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream(256);
+    private final DataOutputStream payloadOut = new DataOutputStream(payload);
+    private final CRC32 crc = new CRC32();
+    private int records;
+
+    private AbilityLog(FileChannel channel, int records) {
+        this.channel = channel;
+        this.records = records;
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+    }
+
+    /**
+     * Opens the log, creating it if needed, and replays every complete record into the visitor.
+     * A torn record left by a crash is cut off so new records follow the last complete one.
+     */
+    static AbilityLog open(Path path, Visitor visitor) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            int records = 0;
+            if (channel.size() < FILE_HEADER_SIZE) {
+                writeHeader(channel);
+            } else {
+                Replay replay = replay(channel, visitor);
+                records = replay.records;
+                if (replay.end < channel.size()) {
+                    channel.truncate(replay.end);
+                }
+            }
+            channel.position(channel.size());
+            return new AbilityLog(channel, records);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    void appendAdd(String name, String chainText) throws IOException {
+        append(OP_ADD, name, chainText);
+    }
+
+    void appendRemove(String name) throws IOException {
+        append(OP_REMOVE, name, "");
+    }
+
+    void appendClear() throws IOException {
+        append(OP_CLEAR, "", "");
+    }
+
+    /**
+     * Flushes buffered records and forces them to disk.
+     */
+    void sync() throws IOException {
+        out.flush();
+        channel.force(false);
+    }
+
+    /**
+     * @return the number of records since the log was created or last reset
+     */
+    int size() {
+        return records;
+    }
+
+    /**
+     * Drops every record. Called once a snapshot containing their effects is durable.
+     */
+    void reset() throws IOException {
+        out.flush();
+        channel.truncate(FILE_HEADER_SIZE);
+        channel.position(FILE_HEADER_SIZE);
+        channel.force(true);
+        records = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void append(byte op, String name, String chainText) throws IOException {
+        payload.reset();
+        payloadOut.writeByte(op);
+        writeString(payloadOut, name);
+        writeString(payloadOut, chainText);
+        payloadOut.flush();
+
+        crc.reset();
+        crc.update(payload.toByteArray());
+        out.writeInt(Integer.reverseBytes(payload.size()));
+        out.writeInt(Integer.reverseBytes((int) crc.getValue()));
+        payload.writeTo(out);
+        records++;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeHeader(FileChannel channel) throws IOException {
+        channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.force(true);
+    }
+
+    private static final class Replay {
+        long end = FILE_HEADER_SIZE;
+        int records;
+    }
+
+    private static Replay replay(FileChannel channel, Visitor visitor) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0)), 1 << 16));
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        in.readFully(header.array());
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not an ability log");
+        }
+        if (header.getShort(4) != VERSION) {
+            throw new IOException("Unsupported ability log version: " + header.getShort(4));
+        }
+
+        long size = channel.size();
+        Replay replay = new Replay();
+        CRC32 crc = new CRC32();
+        while (replay.end + RECORD_HEADER_SIZE <= size) {
+            int length = Integer.reverseBytes(in.readInt());
+            int checksum = Integer.reverseBytes(in.readInt());
+            if (length < 0 || length > MAX_RECORD_SIZE || replay.end + RECORD_HEADER_SIZE + length > size) {
+                break;
+            }
+            byte[] record = new byte[length];
+            in.readFully(record);
+            crc.reset();
+            crc.update(record);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            apply(record, visitor);
+            replay.end += RECORD_HEADER_SIZE + length;
+            replay.records++;
+        }
+        return replay;
+    }
+
+    private static void apply(byte[] record, Visitor visitor) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        byte op = in.readByte();
+        String name = readString(in);
+        String chainText = readString(in);
+        switch (op) {
+            case OP_ADD:
+                visitor.add(name, chainText);
+                break;
+            case OP_REMOVE:
+                visitor.remove(name);
+                break;
+            case OP_CLEAR:
+                visitor.clear();
+                break;
+            default:
+                throw new IOException("Unknown ability log operation: " + op);
+        }
+    }
+}
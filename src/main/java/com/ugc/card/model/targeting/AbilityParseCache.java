@@ -0,0 +1,376 @@
+package com.ugc.card.model.targeting;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded memo of parse results, keyed by game and normalized ability text.
+ *
+ * Card corpora repeat the same lines over and over (reprints, bare keywords), so each game keeps its
+ * own weight-bounded LRU segment of parsed chains. A segment is split into stripes with their own
+ * locks, so concurrent lookups rarely contend; each stripe evicts its least recently used entries once
+ * its share of the game's weight is exceeded. Weight approximates the bytes an entry holds.
+ *
+ * The text is normalized before it is looked up and before it is parsed, so a cached chain is always
+ * the parse of the normalized text. The default normalizer trims and collapses whitespace runs to
+ * single spaces; a game can be given its own. Chains are frozen before they are stored and handed out
+ * shared, so callers must not expect to modify them. Two threads missing on the same text at once may
+ * both parse it; the later result replaces the earlier.
+ *
+ * Each game has a generation that {@link #invalidate} advances. A parse that was started against an
+ * older generation still returns its chain but does not store it, so a parser that was replaced while
+ * a lazy batch was running cannot put its chains back after the invalidation.
+ */
+public final class AbilityParseCache {
+    public static final long DEFAULT_MAXIMUM_WEIGHT = 8L << 20;
+    // Rough per-entry bookkeeping and per-component sizes, in bytes
+    static final int ENTRY_WEIGHT = 96;
+    static final int COMPONENT_WEIGHT = 48;
+    private static final int STRIPES = 16;
+    // Stored for parses that returned null, so they are not repeated either
+    private static final TargetingChain NO_CHAIN = new TargetingChain().freeze();
+
+    private final long defaultMaximumWeight;
+    private final Map<String, Long> maximumWeights;
+    private final Map<String, UnaryOperator<String>> normalizers;
+    private final Map<String, Segment> segments = new ConcurrentHashMap<>();
+
+    /**
+     * Counters for one game, or summed over every game.
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long entries;
+        private final long weight;
+
+        Stats(long hits, long misses, long evictions, long entries, long weight) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.entries = entries;
+            this.weight = weight;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getEntries() {
+            return entries;
+        }
+
+        public long getWeight() {
+            return weight;
+        }
+
+        /**
+         * @return hits over lookups, or 0 before the first lookup
+         */
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        Stats plus(Stats other) {
+            return new Stats(hits + other.hits, misses + other.misses, evictions + other.evictions,
+                entries + other.entries, weight + other.weight);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Stats{hits=%d, misses=%d, hitRate=%.3f, evictions=%d, entries=%d, weight=%d}",
+                hits, misses, getHitRate(), evictions, entries, weight);
+        }
+    }
+
+    public static final class Builder {
+        private long defaultMaximumWeight = DEFAULT_MAXIMUM_WEIGHT;
+        private final Map<String, Long> maximumWeights = new HashMap<>();
+        private final Map<String, UnaryOperator<String>> normalizers = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the weight each game may hold unless configured otherwise.
+         */
+        public Builder maximumWeight(long weight) {
+            checkWeight(weight);
+            defaultMaximumWeight = weight;
+            return this;
+        }
+
+        /**
+         * Sets the weight one game may hold; 0 turns caching off for it.
+         */
+        public Builder maximumWeight(String game, long weight) {
+            checkWeight(weight);
+            maximumWeights.put(key(game), weight);
+            return this;
+        }
+
+        /**
+         * Replaces {@link #normalize} for one game, e.g. to also fold case for a parser that ignores it.
+         */
+        public Builder normalizer(String game, UnaryOperator<String> normalizer) {
+            if (normalizer == null) {
+                throw new IllegalArgumentException("Normalizer cannot be null");
+            }
+            normalizers.put(key(game), normalizer);
+            return this;
+        }
+
+        public AbilityParseCache build() {
+            return new AbilityParseCache(this);
+        }
+
+        private static void checkWeight(long weight) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("Maximum weight cannot be negative");
+            }
+        }
+    }
+
+    private AbilityParseCache(Builder builder) {
+        this.defaultMaximumWeight = builder.defaultMaximumWeight;
+        this.maximumWeights = new HashMap<>(builder.maximumWeights);
+        this.normalizers = new HashMap<>(builder.normalizers);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Trims the text and collapses every whitespace run to a single space.
+     */
+    public static String normalize(String text) {
+        if (isNormalized(text)) {
+            return text;
+        }
+        StringBuilder normalized = new StringBuilder(text.length());
+        AbilityTokenizer tokens = new AbilityTokenizer(text);
+        while (tokens.next()) {
+            if (normalized.length() > 0) {
+                normalized.append(' ');
+            }
+            normalized.append(text, tokens.start(), tokens.end());
+        }
+        return normalized.toString();
+    }
+
+    private static boolean isNormalized(String text) {
+        int length = text.length();
+        if (length > 0 && (AbilityTokenizer.isSpace(text.charAt(0))
+                || AbilityTokenizer.isSpace(text.charAt(length - 1)))) {
+            return false;
+        }
+        for (int i = 1; i < length; i++) {
+            char c = text.charAt(i);
+            if (AbilityTokenizer.isSpace(c) && (c != ' ' || text.charAt(i - 1) == ' ')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the parse of the game's normalized text, from the cache when present; null text is
+     *         passed to {@code parser} uncached
+     */
+    public TargetingChain parse(String game, String text, Function<String, TargetingChain> parser) {
+        return parse(game, text, parser, generation(game));
+    }
+
+    /**
+     * As {@link #parse(String, String, Function)}, but a chain parsed on a miss is only stored if the game
+     * is still at {@code generation}. Take the generation before resolving the parser to pass here, so
+     * that the chains of a parser replaced in between are never cached.
+     */
+    public TargetingChain parse(String game, String text, Function<String, TargetingChain> parser, long generation) {
+        if (text == null) {
+            return parser.apply(null);
+        }
+        Segment segment = segment(game);
+        String normalized = segment.normalizer.apply(text);
+        if (segment.stripes.length == 0) {
+            return parser.apply(normalized);
+        }
+        Stripe stripe = segment.stripe(normalized);
+        TargetingChain cached = stripe.get(normalized);
+        if (cached != null) {
+            segment.hits.increment();
+            return cached == NO_CHAIN ? null : cached;
+        }
+        segment.misses.increment();
+        TargetingChain chain = parser.apply(normalized);
+        TargetingChain stored = chain != null ? chain.freeze() : NO_CHAIN;
+        segment.evictions.add(stripe.put(normalized, stored, weigh(normalized, stored),
+            segment.generation, generation));
+        return chain;
+    }
+
+    public TargetingChain parse(String game, String text, GameAbilityParser parser) {
+        return parse(game, text, parser::parseAbility);
+    }
+
+    /**
+     * @return the game's current generation, which every {@link #invalidate} of the game advances
+     */
+    public long generation(String game) {
+        return segment(game).generation.get();
+    }
+
+    /**
+     * Drops a game's entries, e.g. after its parser was replaced, and advances its generation so that
+     * parses still running against the old parser are not stored. Its counters are kept.
+     */
+    public void invalidate(String game) {
+        Segment segment = segments.get(key(game));
+        if (segment != null) {
+            // Advanced before the stripes are cleared; a put checks it under the stripe's lock
+            segment.generation.incrementAndGet();
+            for (Stripe stripe : segment.stripes) {
+                stripe.clear();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        for (String game : segments.keySet()) {
+            invalidate(game);
+        }
+    }
+
+    public Stats stats(String game) {
+        Segment segment = segments.get(key(game));
+        return segment != null ? segment.stats() : new Stats(0, 0, 0, 0, 0);
+    }
+
+    /**
+     * @return the counters summed over every game
+     */
+    public Stats stats() {
+        Stats total = new Stats(0, 0, 0, 0, 0);
+        for (Segment segment : segments.values()) {
+            total = total.plus(segment.stats());
+        }
+        return total;
+    }
+
+    /**
+     * @return the weight a game may hold
+     */
+    public long maximumWeight(String game) {
+        return maximumWeights.getOrDefault(key(game), defaultMaximumWeight);
+    }
+
+    static long weigh(String text, TargetingChain chain) {
+        return ENTRY_WEIGHT + 2L * text.length() + (long) COMPONENT_WEIGHT * chain.size();
+    }
+
+    private Segment segment(String game) {
+        return segments.computeIfAbsent(key(game), k -> new Segment(maximumWeight(k),
+            normalizers.getOrDefault(k, AbilityParseCache::normalize)));
+    }
+
+    private static String key(String game) {
+        if (game == null) {
+            throw new IllegalArgumentException("Game name cannot be null");
+        }
+        return game.toLowerCase();
+    }
+
+    private static final class Segment {
+        private final Stripe[] stripes;
+        private final UnaryOperator<String> normalizer;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+        private final AtomicLong generation = new AtomicLong();
+
+        Segment(long maximumWeight, UnaryOperator<String> normalizer) {
+            this.normalizer = normalizer;
+            int count = maximumWeight == 0 ? 0 : (int) Math.min(STRIPES, Math.max(1, maximumWeight / (64L << 10)));
+            this.stripes = new Stripe[count];
+            for (int i = 0; i < count; i++) {
+                stripes[i] = new Stripe(maximumWeight / count);
+            }
+        }
+
+        Stripe stripe(String key) {
+            int h = key.hashCode();
+            return stripes[((h ^ (h >>> 16)) & 0x7fffffff) % stripes.length];
+        }
+
+        Stats stats() {
+            long entries = 0;
+            long weight = 0;
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    entries += stripe.entries.size();
+                    weight += stripe.weight;
+                }
+            }
+            return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries, weight);
+        }
+    }
+
+    private static final class Stripe {
+        private final long maximumWeight;
+        private final LinkedHashMap<String, TargetingChain> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long weight;
+
+        Stripe(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+        }
+
+        synchronized TargetingChain get(String key) {
+            return entries.get(key);
+        }
+
+        /**
+         * Stores the entry unless the segment moved past {@code expected} since the chain was parsed.
+         *
+         * @return the number of entries evicted to make room
+         */
+        synchronized int put(String key, TargetingChain chain, long entryWeight, AtomicLong generation, long expected) {
+            if (entryWeight > maximumWeight || generation.get() != expected) {
+                return 0;
+            }
+            TargetingChain previous = entries.put(key, chain);
+            if (previous != null) {
+                weight -= weigh(key, previous);
+            }
+            weight += entryWeight;
+            int evicted = 0;
+            Iterator<Map.Entry<String, TargetingChain>> eldest = entries.entrySet().iterator();
+            while (weight > maximumWeight) {
+                Map.Entry<String, TargetingChain> entry = eldest.next();
+                weight -= weigh(entry.getKey(), entry.getValue());
+                eldest.remove();
+                evicted++;
+            }
+            return evicted;
+        }
+
+        synchronized void clear() {
+            entries.clear();
+            weight = 0;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.ugc.card.model.targeting;
+
+import java.util.*;
+
+/**
+ * Inverted index over the components of the chains held by an {@link AbilityDatabase}.
+ *
+ * Every distinct chain gets a dense id in insertion order, so posting lists are built by appending
+ * and stay sorted. Postings are kept per component value and per (category, value) component. Substring
+ * queries first narrow the distinct values through an n-gram index, which is tiny compared to the
+ * number of chains, and then union the postings of the values that match. A removed chain leaves its
+ * id unused, so the ids of the remaining chains never change.
+ */
+final class AbilitySearchIndex {
+    private static final int MAX_GRAM = 3;
+
+    private final List<TargetingChain> chains = new ArrayList<>();
+    private final Map<TargetingChain, Integer> chainIds = new HashMap<>();
+    private final Map<String, PostingList> valuePostings = new HashMap<>();
+    private final Map<TargetingComponent, PostingList> componentPostings = new HashMap<>();
+    private final Map<String, Set<String>> gramValues = new HashMap<>();
+    private final TreeSet<String> sortedValues = new TreeSet<>();
+
+    /**
+     * Sorted, growable list of chain ids.
+     */
+    static final class PostingList {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            // A chain can hold the same value under several categories
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(int index) {
+            return ids[index];
+        }
+
+        void remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                size--;
+            }
+        }
+    }
+
+    /**
+     * Indexes the chain if it is not indexed yet.
+     *
+     * @return the chain's id
+     */
+    int add(TargetingChain chain) {
+        Integer existing = chainIds.get(chain);
+        if (existing != null) {
+            return existing;
+        }
+        int id = chains.size();
+        chains.add(chain);
+        chainIds.put(chain, id);
+        for (TargetingComponent component : chain.componentsView()) {
+            String value = component.getText();
+            PostingList values = valuePostings.get(value);
+            if (values == null) {
+                values = new PostingList();
+                valuePostings.put(value, values);
+                indexValue(value);
+            }
+            values.add(id);
+            componentPostings.computeIfAbsent(component, k -> new PostingList()).add(id);
+        }
+        return id;
+    }
+
+    /**
+     * Drops the chain from every posting list, and drops values no remaining chain holds.
+     *
+     * @return whether the chain was indexed
+     */
+    boolean remove(TargetingChain chain) {
+        Integer id = chainIds.remove(chain);
+        if (id == null) {
+            return false;
+        }
+        chains.set(id, null);
+        for (TargetingComponent component : chain.componentsView()) {
+            String value = component.getText();
+            PostingList values = valuePostings.get(value);
+            if (values != null) {
+                values.remove(id);
+                if (values.size() == 0) {
+                    valuePostings.remove(value);
+                    unindexValue(value);
+                }
+            }
+            PostingList components = componentPostings.get(component);
+            if (components != null) {
+                components.remove(id);
+                if (components.size() == 0) {
+                    componentPostings.remove(component);
+                }
+            }
+        }
+        return true;
+    }
+
+    void clear() {
+        chains.clear();
+        chainIds.clear();
+        valuePostings.clear();
+        componentPostings.clear();
+        gramValues.clear();
+        sortedValues.clear();
+    }
+
+    private void indexValue(String value) {
+        sortedValues.add(value);
+        for (int length = 1; length <= MAX_GRAM; length++) {
+            for (int start = 0; start + length <= value.length(); start++) {
+                gramValues.computeIfAbsent(value.substring(start, start + length), k -> new HashSet<>()).add(value);
+            }
+        }
+    }
+
+    private void unindexValue(String value) {
+        sortedValues.remove(value);
+        for (int length = 1; length <= MAX_GRAM; length++) {
+            for (int start = 0; start + length <= value.length(); start++) {
+                String gram = value.substring(start, start + length);
+                Set<String> values = gramValues.get(gram);
+                if (values != null && values.remove(value) && values.isEmpty()) {
+                    gramValues.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return one more than the highest id handed out, counting removed chains
+     */
+    int size() {
+        return chains.size();
+    }
+
+    /**
+     * @return the chain with the id, or null if it was removed
+     */
+    TargetingChain get(int id) {
+        return chains.get(id);
+    }
+
+    /**
+     * @return the chain's id, or -1 if it is not indexed
+     */
+    int idOf(TargetingChain chain) {
+        Integer id = chainIds.get(chain);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * @return the ids of the chains containing the component, or null if none do
+     */
+    PostingList postings(TargetingComponent component) {
+        return componentPostings.get(component);
+    }
+
+    /**
+     * Chains with a component whose text contains the query, ignoring case.
+     */
+    Set<TargetingChain> containing(String query) {
+        return collect(valuesContaining(query.toLowerCase()));
+    }
+
+    /**
+     * Chains with a component whose text starts with the prefix, ignoring case.
+     */
+    Set<TargetingChain> withPrefix(String prefix) {
+        String normalized = prefix.toLowerCase();
+        if (normalized.isEmpty()) {
+            return collect(valuePostings.keySet());
+        }
+        return collect(sortedValues.subSet(normalized, true, normalized + Character.MAX_VALUE, false));
+    }
+
+    /**
+     * Chains containing the exact (category, value) component.
+     */
+    Set<TargetingChain> matching(ComponentCategory category, String value) {
+        PostingList postings = componentPostings.get(new TargetingComponent(category, value));
+        return postings != null ? materialize(postings) : new HashSet<>();
+    }
+
+    private Collection<String> valuesContaining(String query) {
+        if (query.isEmpty()) {
+            return valuePostings.keySet();
+        }
+        if (query.length() <= MAX_GRAM) {
+            return gramValues.getOrDefault(query, Collections.emptySet());
+        }
+        // Every value containing the query contains each of its grams; start from the rarest
+        Set<String> smallest = null;
+        for (int start = 0; start + MAX_GRAM <= query.length(); start++) {
+            Set<String> values = gramValues.get(query.substring(start, start + MAX_GRAM));
+            if (values == null) {
+                return Collections.emptySet();
+            }
+            if (smallest == null || values.size() < smallest.size()) {
+                smallest = values;
+            }
+        }
+        List<String> matches = new ArrayList<>();
+        for (String value : smallest) {
+            if (value.contains(query)) {
+                matches.add(value);
+            }
+        }
+        return matches;
+    }
+
+    private Set<TargetingChain> collect(Collection<String> values) {
+        if (values.size() == 1) {
+            return materialize(valuePostings.get(values.iterator().next()));
+        }
+        // Several values can share a chain, so union the ids before materializing
+        BitSet ids = new BitSet(chains.size());
+        for (String value : values) {
+            PostingList postings = valuePostings.get(value);
+            for (int i = 0; i < postings.size(); i++) {
+                ids.set(postings.get(i));
+            }
+        }
+        Set<TargetingChain> result = new HashSet<>(ids.cardinality() * 2);
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            result.add(chains.get(id));
+        }
+        return result;
+    }
+
+    private Set<TargetingChain> materialize(PostingList postings) {
+        Set<TargetingChain> result = new HashSet<>(postings.size() * 2);
+        for (int i = 0; i < postings.size(); i++) {
+            result.add(chains.get(postings.get(i)));
+        }
+        return result;
+    }
+}
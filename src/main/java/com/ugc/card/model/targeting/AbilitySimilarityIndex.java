@@ -0,0 +1,166 @@
+package com.ugc.card.model.targeting;
+
+import java.util.*;
+
+/**
+ * Top-K similarity search over the chains of an {@link AbilitySearchIndex}.
+ *
+ * Similarity is averaged over the union of the two chains' categories. For each category both chains
+ * use, it is the number of shared values divided by the larger value count. A chain that shares no
+ * component with the query therefore scores 0, so only the query's posting lists need to be scored.
+ * Each chain's {@link CompactChain} form, over a vocabulary the index extends as chains arrive, is
+ * computed once and cached.
+ */
+final class AbilitySimilarityIndex {
+    private static final int CATEGORY_COUNT = ComponentCategory.values().length;
+
+    private final AbilitySearchIndex index;
+    private ComponentVocabulary vocabulary = ComponentVocabulary.empty();
+    private CompactChain[] signatures = new CompactChain[16];
+    private int signed;
+
+    AbilitySimilarityIndex(AbilitySearchIndex index) {
+        this.index = index;
+    }
+
+    private static final class Scored {
+        final int id;
+        final double score;
+
+        Scored(int id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+
+    // Higher score first, then lower id, so results are deterministic
+    private static final Comparator<Scored> RANKING =
+        Comparator.comparingDouble((Scored s) -> -s.score).thenComparingInt(s -> s.id);
+
+    /**
+     * Returns up to {@code k} indexed chains most similar to the query, best first.
+     * Chains equal to the query are excluded.
+     */
+    List<TargetingChain> topK(TargetingChain query, int k) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        updateSignatures();
+
+        Set<TargetingComponent> components = query.componentsView();
+        int queryMask = 0;
+        int[] queryCounts = new int[CATEGORY_COUNT];
+        for (TargetingComponent component : components) {
+            queryMask |= CompactChain.bit(component.getCategory());
+            queryCounts[component.getCategory().ordinal()]++;
+        }
+        // Components no indexed chain has cannot match, so the compact form leaves them out
+        CompactChain compactQuery = CompactChain.ofIds(vocabulary, vocabulary.indicesOf(query));
+
+        // Worst of the current top K sits at the head
+        PriorityQueue<Scored> heap = new PriorityQueue<>(k + 1, RANKING.reversed());
+        int[] counts = new int[CATEGORY_COUNT];
+        int[] matches = new int[CATEGORY_COUNT];
+        BitSet scored = new BitSet(signed);
+        for (TargetingComponent component : components) {
+            AbilitySearchIndex.PostingList postings = index.postings(component);
+            if (postings == null) {
+                continue;
+            }
+            for (int i = 0; i < postings.size(); i++) {
+                int id = postings.get(i);
+                if (scored.get(id)) {
+                    continue;
+                }
+                scored.set(id);
+                if (!index.get(id).equals(query)) {
+                    double score = score(compactQuery, queryMask, queryCounts, id, counts, matches);
+                    offer(heap, new Scored(id, score), k);
+                }
+            }
+        }
+
+        // Fewer than K chains share a component: pad with zero-score chains in id order
+        for (int id = scored.nextClearBit(0); id < signed && heap.size() < k; id = scored.nextClearBit(id + 1)) {
+            TargetingChain chain = index.get(id);
+            if (chain != null && !chain.equals(query)) {
+                offer(heap, new Scored(id, 0.0), k);
+            }
+        }
+
+        List<Scored> ranked = new ArrayList<>(heap);
+        ranked.sort(RANKING);
+        List<TargetingChain> result = new ArrayList<>(ranked.size());
+        for (Scored s : ranked) {
+            result.add(index.get(s.id));
+        }
+        return result;
+    }
+
+    private static void offer(PriorityQueue<Scored> heap, Scored candidate, int k) {
+        if (heap.size() < k) {
+            heap.add(candidate);
+        } else if (RANKING.compare(candidate, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(candidate);
+        }
+    }
+
+    private double score(CompactChain query, int queryMask, int[] queryCounts, int id, int[] counts, int[] matches) {
+        CompactChain other = signatures[id];
+        int shared = queryMask & other.getCategoryMask();
+        int union = Integer.bitCount(queryMask | other.getCategoryMask());
+        if (union == 0) {
+            return 0.0;
+        }
+        for (int i = 0; i < other.size(); i++) {
+            counts[other.componentAt(i).getCategory().ordinal()]++;
+        }
+        query.intersectionSize(other, matches);
+
+        double similarity = 0.0;
+        for (int bits = shared; bits != 0; bits &= bits - 1) {
+            int category = Integer.numberOfTrailingZeros(bits);
+            similarity += (double) matches[category] / Math.max(queryCounts[category], counts[category]);
+            matches[category] = 0;
+        }
+        for (int i = 0; i < other.size(); i++) {
+            counts[other.componentAt(i).getCategory().ordinal()] = 0;
+        }
+        return similarity / union;
+    }
+
+    /**
+     * Forgets every signature; called when the underlying index is cleared.
+     */
+    void clear() {
+        vocabulary = ComponentVocabulary.empty();
+        signatures = new CompactChain[16];
+        signed = 0;
+    }
+
+    // Computes signatures for chains indexed since the last query. Removed chains are never
+    // scored, as they are in no posting list, but they still occupy their id
+    private void updateSignatures() {
+        int size = index.size();
+        if (signed == size) {
+            return;
+        }
+        if (size > signatures.length) {
+            signatures = Arrays.copyOf(signatures, Math.max(size, signatures.length * 2));
+        }
+        // One extension of the vocabulary for every chain indexed since
+        List<TargetingComponent> added = new ArrayList<>();
+        for (int id = signed; id < size; id++) {
+            TargetingChain chain = index.get(id);
+            if (chain != null) {
+                added.addAll(chain.componentsView());
+            }
+        }
+        vocabulary = vocabulary.withAll(added);
+        for (; signed < size; signed++) {
+            TargetingChain chain = index.get(signed);
+            signatures[signed] = chain != null ? CompactChain.of(vocabulary, chain) : CompactChain.empty(vocabulary);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.ugc.card.model.targeting;
+
+/**
+ * Cursor over the words of an ability text: the runs of characters between whitespace, the same words
+ * {@code text.split("\\s+")} yields apart from its leading empty string.
+ *
+ * Each call to {@link #next} moves to the following word and exposes it as a span of the text, so
+ * walking a text allocates nothing; {@link #word} creates a string only when one is needed. Words made
+ * only of ASCII digits are numeric literals, as {@code \d+} matches them, and {@link #intValue} reads
+ * them in place. A tokenizer can be {@link #reset} for the next text.
+ */
+public final class AbilityTokenizer {
+    private CharSequence text;
+    private int position;
+    private int start;
+    private int end;
+    private boolean number;
+
+    public AbilityTokenizer(CharSequence text) {
+        reset(text);
+    }
+
+    /**
+     * Starts over on another text.
+     */
+    public AbilityTokenizer reset(CharSequence text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Text cannot be null");
+        }
+        this.text = text;
+        this.position = 0;
+        this.start = -1;
+        this.end = -1;
+        this.number = false;
+        return this;
+    }
+
+    /**
+     * Moves to the next word.
+     *
+     * @return false once the text has no more words
+     */
+    public boolean next() {
+        int length = text.length();
+        int i = position;
+        while (i < length && isSpace(text.charAt(i))) {
+            i++;
+        }
+        if (i == length) {
+            position = length;
+            start = -1;
+            end = -1;
+            number = false;
+            return false;
+        }
+        start = i;
+        boolean digits = true;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (isSpace(c)) {
+                break;
+            }
+            digits &= isDigit(c);
+            i++;
+        }
+        end = i;
+        position = i;
+        number = digits;
+        return true;
+    }
+
+    /**
+     * @return index of the current word's first character
+     */
+    public int start() {
+        checkWord();
+        return start;
+    }
+
+    /**
+     * @return index after the current word's last character
+     */
+    public int end() {
+        checkWord();
+        return end;
+    }
+
+    public int length() {
+        checkWord();
+        return end - start;
+    }
+
+    public char charAt(int index) {
+        checkWord();
+        if (index < 0 || index >= end - start) {
+            throw new IndexOutOfBoundsException("Index " + index + " outside word of length " + (end - start));
+        }
+        return text.charAt(start + index);
+    }
+
+    /**
+     * @return the current word as a string
+     */
+    public String word() {
+        checkWord();
+        return text.subSequence(start, end).toString();
+    }
+
+    /**
+     * @return true if the current word equals the given one, compared without copying
+     */
+    public boolean wordEquals(String other) {
+        checkWord();
+        if (other.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < other.length(); i++) {
+            if (text.charAt(start + i) != other.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the current word is a numeric literal
+     */
+    public boolean isNumber() {
+        checkWord();
+        return number;
+    }
+
+    /**
+     * @return the value of the current numeric literal
+     * @throws NumberFormatException if the word is not a number or does not fit an int, as
+     *         {@link Integer#parseInt} would
+     */
+    public int intValue() {
+        checkWord();
+        if (!number) {
+            throw new NumberFormatException("Not a number: \"" + word() + "\"");
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (value > (Integer.MAX_VALUE - digit) / 10) {
+                throw new NumberFormatException("Number out of range: \"" + word() + "\"");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private void checkWord() {
+        if (start < 0) {
+            throw new IllegalStateException("No current word; call next() first");
+        }
+    }
+
+    /**
+     * @return the number of words in the text
+     */
+    public static int wordCount(CharSequence text) {
+        AbilityTokenizer tokens = new AbilityTokenizer(text);
+        int count = 0;
+        while (tokens.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return true if the text is a numeric literal, like {@code text.matches("\\d+")}
+     */
+    public static boolean isNumber(CharSequence text) {
+        if (text.length() == 0) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (!isDigit(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The characters \s matches
+    static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    // The characters \d matches
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
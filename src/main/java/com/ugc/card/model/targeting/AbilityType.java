@@ -8,8 +8,20 @@ public class AbilityType {
     private final Set<ComponentCategory> requiredCategories;
     private final Set<ComponentCategory> optionalCategories;
     private final Map<ComponentCategory, Set<String>> validValues;
-    private final Set<ValidationRule> validationRules;
+    private final ValidationRuleSet validationRules;
     private final String template;
+    private volatile CompiledRules compiledRules;
+    
+    // The compiled rules together with the modification count of the set they were compiled from
+    private static final class CompiledRules {
+        final CompiledValidationRules rules;
+        final int modifications;
+        
+        CompiledRules(CompiledValidationRules rules, int modifications) {
+            this.rules = rules;
+            this.modifications = modifications;
+        }
+    }
     
     public AbilityType(String name, String description,
                       Set<ComponentCategory> requiredCategories,
@@ -22,7 +34,10 @@ public class AbilityType {
         this.requiredCategories = requiredCategories;
         this.optionalCategories = optionalCategories;
         this.validValues = validValues;
-        this.validationRules = validationRules;
+        // Parsers share one counted rule set between their types; any other set is copied
+        this.validationRules = validationRules instanceof ValidationRuleSet
+            ? (ValidationRuleSet) validationRules
+            : new ValidationRuleSet(validationRules != null ? validationRules : Collections.emptySet());
         this.template = template;
     }
     
@@ -35,7 +50,7 @@ public class AbilityType {
         }
         
         // Check component validity
-        for (TargetingComponent component : chain.getComponents()) {
+        for (TargetingComponent component : chain.componentsView()) {
             ComponentCategory category = component.getCategory();
             if (validValues.containsKey(category)) {
                 if (!validValues.get(category).contains(component.getText())) {
@@ -45,13 +60,19 @@ public class AbilityType {
         }
         
         // Check specific rules
-        for (ValidationRule rule : validationRules) {
-            if (!rule.validate(chain)) {
-                return false;
-            }
+        return compiledRules().validate(chain);
+    }
+    
+    // Parsers share one rule set between many types and may change it later, so compile on first
+    // use and again whenever the set was modified since
+    private CompiledValidationRules compiledRules() {
+        CompiledRules compiled = compiledRules;
+        int modifications = validationRules.modifications();
+        if (compiled == null || compiled.modifications != modifications) {
+            compiled = new CompiledRules(CompiledValidationRules.compile(validationRules), modifications);
+            compiledRules = compiled;
         }
-        
-        return true;
+        return compiled.rules;
     }
     
     public String getName() {
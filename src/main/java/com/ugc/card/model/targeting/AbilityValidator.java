@@ -11,6 +11,21 @@ public class AbilityValidator {
     private final Set<ComponentCategory> requiredCategories;
     private final Set<ComponentCategory> optionalCategories;
     private final Set<TargetingComponent> validComponents;
+    // Compiled forms of rules and customValidators, rebuilt after either changes
+    private volatile CompiledValidationRules compiledRules;
+    private volatile List<PatternCheck> patternChecks;
+    
+    private static final class PatternCheck {
+        final String pattern;
+        final int mask;
+        final Predicate<TargetingChain> validator;
+        
+        PatternCheck(String pattern, int mask, Predicate<TargetingChain> validator) {
+            this.pattern = pattern;
+            this.mask = mask;
+            this.validator = validator;
+        }
+    }
     
     public AbilityValidator(TargetingSystem targetingSystem) {
         this.targetingSystem = targetingSystem;
@@ -118,42 +133,55 @@ public class AbilityValidator {
     
     public boolean validate(TargetingChain chain) {
         // Check all default rules
-        for (ValidationRule rule : rules) {
-            if (!rule.validate(chain)) {
-                return false;
-            }
+        if (!compiledRules().validate(chain)) {
+            return false;
         }
         
         // Check if chain matches any patterns and validate against custom validators
-        for (String pattern : AbilityPatterns.getAvailablePatterns()) {
-            if (AbilityPatterns.matchesPattern(chain, pattern)) {
-                Predicate<TargetingChain> validator = customValidators.get(pattern);
-                if (validator != null && !validator.test(chain)) {
-                    return false;
-                }
+        int mask = CompiledValidationRules.categoryMask(chain);
+        for (PatternCheck check : patternChecks()) {
+            if ((mask & check.mask) == check.mask && !check.validator.test(chain)) {
+                return false;
             }
         }
         
         return true;
     }
     
+    /**
+     * Validates a batch of chains in parallel.
+     *
+     * @return the valid chains, in the order of {@code chains}
+     */
+    public List<TargetingChain> validateAll(Collection<TargetingChain> chains) {
+        List<TargetingChain> batch = new ArrayList<>(chains);
+        // Compile up front rather than racing to do it on every worker
+        compiledRules();
+        patternChecks();
+        boolean[] valid = CompiledValidationRules.testAll(batch, this::validate,
+            Runtime.getRuntime().availableProcessors());
+        List<TargetingChain> result = new ArrayList<>();
+        for (int i = 0; i < valid.length; i++) {
+            if (valid[i]) {
+                result.add(batch.get(i));
+            }
+        }
+        return result;
+    }
+    
     public List<String> getValidationErrors(TargetingChain chain) {
         List<String> errors = new ArrayList<>();
         
         // Check default rules
-        for (ValidationRule rule : rules) {
-            if (!rule.validate(chain)) {
-                errors.add(rule.getDescription());
-            }
+        for (ValidationRule rule : compiledRules().failedRules(chain)) {
+            errors.add(rule.getDescription());
         }
         
         // Check pattern-specific validators
-        for (String pattern : AbilityPatterns.getAvailablePatterns()) {
-            if (AbilityPatterns.matchesPattern(chain, pattern)) {
-                Predicate<TargetingChain> validator = customValidators.get(pattern);
-                if (validator != null && !validator.test(chain)) {
-                    errors.add("Invalid " + pattern + " pattern");
-                }
+        int mask = CompiledValidationRules.categoryMask(chain);
+        for (PatternCheck check : patternChecks()) {
+            if ((mask & check.mask) == check.mask && !check.validator.test(chain)) {
+                errors.add("Invalid " + check.pattern + " pattern");
             }
         }
         
@@ -162,10 +190,39 @@ public class AbilityValidator {
     
     public void addRule(ValidationRule rule) {
         rules.add(rule);
+        compiledRules = null;
     }
     
     public void addCustomValidator(String pattern, Predicate<TargetingChain> validator) {
         customValidators.put(pattern, validator);
+        patternChecks = null;
+    }
+    
+    private CompiledValidationRules compiledRules() {
+        CompiledValidationRules compiled = compiledRules;
+        if (compiled == null) {
+            compiled = CompiledValidationRules.compile(rules);
+            compiledRules = compiled;
+        }
+        return compiled;
+    }
+    
+    // Only patterns with a custom validator need checking; a chain matches a pattern
+    // when it has every category the pattern lists
+    private List<PatternCheck> patternChecks() {
+        List<PatternCheck> checks = patternChecks;
+        if (checks == null) {
+            checks = new ArrayList<>();
+            for (String pattern : AbilityPatterns.getAvailablePatterns()) {
+                Predicate<TargetingChain> validator = customValidators.get(pattern);
+                if (validator != null) {
+                    int mask = CompiledValidationRules.categoryMask(AbilityPatterns.getPattern(pattern));
+                    checks.add(new PatternCheck(pattern, mask, validator));
+                }
+            }
+            patternChecks = checks;
+        }
+        return checks;
     }
     
     public List<ValidationRule> getRules() {
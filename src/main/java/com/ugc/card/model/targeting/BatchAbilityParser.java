@@ -0,0 +1,191 @@
+package com.ugc.card.model.targeting;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Parses many ability texts with one {@link GameAbilityParser}, fanned out over the shared {@link ParallelPools}.
+ *
+ * Results come back in input order. A text whose parse throws is reported as a failed {@link Result}
+ * and the rest of the batch carries on. The parsers keep no per-call state, so one instance is shared
+ * by every worker. Streams are parsed a chunk at a time, so a batch never holds more than a chunk of
+ * texts and results beyond what the caller has consumed.
+ */
+public final class BatchAbilityParser {
+    // Below this size a batch is parsed on the calling thread
+    private static final int PARALLEL_THRESHOLD = 256;
+    // Texts read from a stream per parallel step
+    static final int STREAM_CHUNK = 4096;
+
+    /**
+     * The outcome of parsing one text; index is its position in the input.
+     */
+    public static final class Result {
+        private final long index;
+        private final String text;
+        private final TargetingChain chain;
+        private final RuntimeException error;
+
+        Result(long index, String text, TargetingChain chain, RuntimeException error) {
+            this.index = index;
+            this.text = text;
+            this.chain = chain;
+            this.error = error;
+        }
+
+        public long getIndex() {
+            return index;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return the parsed chain, or null if the parse failed or the parser returned none
+         */
+        public TargetingChain getChain() {
+            return chain;
+        }
+
+        /**
+         * @return what the parser threw, or null if it returned normally
+         */
+        public RuntimeException getError() {
+            return error;
+        }
+
+        public boolean isFailed() {
+            return error != null;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{index=" + index + ", text='" + text + "', "
+                + (error != null ? "error=" + error : "chain=" + chain) + "}";
+        }
+    }
+
+    private BatchAbilityParser() {
+    }
+
+    /**
+     * Parses every text, in parallel for large batches.
+     *
+     * @return one result per text, in the order of {@code texts}
+     */
+    public static List<Result> parseAll(GameAbilityParser parser, List<String> texts, int parallelism) {
+        check(parser, parallelism);
+        return parseAllWith(parser::parseAbility, texts, parallelism);
+    }
+
+    // As parseAll, with parser standing for any thread-safe parse such as a cached one
+    static List<Result> parseAllWith(Function<String, TargetingChain> parser, List<String> texts, int parallelism) {
+        check(parser, parallelism);
+        if (parallelism == 1 || texts.size() < PARALLEL_THRESHOLD) {
+            return Arrays.asList(parseRange(parser, texts, 0, 1));
+        }
+        return Arrays.asList(parseRange(parser, texts, 0, parallelism));
+    }
+
+    /**
+     * Parses a stream of texts lazily, {@value #STREAM_CHUNK} at a time, each chunk in parallel. The
+     * returned stream is sequential and ordered like {@code texts}.
+     *
+     * The returned stream owns {@code texts}, which may hold a file or connection open: close it, best
+     * with try-with-resources, whether or not it was read to the end. Closing it closes {@code texts};
+     * a terminal operation alone does not.
+     */
+    public static Stream<Result> parseAll(GameAbilityParser parser, Stream<String> texts, int parallelism) {
+        check(parser, parallelism);
+        return parseAllWith(parser::parseAbility, texts, parallelism);
+    }
+
+    static Stream<Result> parseAllWith(Function<String, TargetingChain> parser, Stream<String> texts, int parallelism) {
+        check(parser, parallelism);
+        ChunkIterator chunks = new ChunkIterator(parser, texts.iterator(), parallelism);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(chunks,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(texts::close);
+    }
+
+    private static void check(Object parser, int parallelism) {
+        if (parser == null) {
+            throw new IllegalArgumentException("Parser cannot be null");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+    }
+
+    // Parses texts on the calling thread when parallelism is 1
+    private static Result[] parseRange(Function<String, TargetingChain> parser, List<String> texts, long offset,
+                                       int parallelism) {
+        Result[] results = new Result[texts.size()];
+        if (parallelism == 1) {
+            for (int i = 0; i < results.length; i++) {
+                results[i] = parseOne(parser, texts.get(i), offset + i);
+            }
+            return results;
+        }
+        ParallelPools.run(parallelism, () -> IntStream.range(0, results.length).parallel()
+            .forEach(i -> results[i] = parseOne(parser, texts.get(i), offset + i)), "parsing abilities");
+        return results;
+    }
+
+    static Result parseOne(Function<String, TargetingChain> parser, String text, long index) {
+        try {
+            return new Result(index, text, parser.apply(text), null);
+        } catch (RuntimeException e) {
+            return new Result(index, text, null, e);
+        }
+    }
+
+    private static final class ChunkIterator implements Iterator<Result> {
+        private final Function<String, TargetingChain> parser;
+        private final Iterator<String> source;
+        private final int parallelism;
+        private final List<String> chunk = new ArrayList<>();
+        private Result[] results = new Result[0];
+        private int position;
+        private long consumed;
+
+        ChunkIterator(Function<String, TargetingChain> parser, Iterator<String> source, int parallelism) {
+            this.parser = parser;
+            this.source = source;
+            this.parallelism = parallelism;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (position < results.length) {
+                return true;
+            }
+            chunk.clear();
+            while (chunk.size() < STREAM_CHUNK && source.hasNext()) {
+                chunk.add(source.next());
+            }
+            if (chunk.isEmpty()) {
+                return false;
+            }
+            boolean parallel = chunk.size() >= PARALLEL_THRESHOLD;
+            results = parseRange(parser, chunk, consumed, parallel ? parallelism : 1);
+            consumed += results.length;
+            position = 0;
+            return true;
+        }
+
+        @Override
+        public Result next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Result result = results[position];
+            results[position++] = null;
+            return result;
+        }
+    }
+}
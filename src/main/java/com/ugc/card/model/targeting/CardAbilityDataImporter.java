@@ -2,44 +2,47 @@ package com.ugc.card.model.targeting;
 
 import java.io.*;
 import java.util.*;
+import com.opencsv.exceptions.CsvException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 
 public class TCGPlayerImporter {
     private final TargetingSystem targetingSystem;
-    private final Map<String, GameAbilityParser> parsers;
+    // The games TCGPlayer exports; their parsers are shared through GameParserCache and built on first use
+    private static final Set<String> GAMES = Collections.unmodifiableSet(
+        new HashSet<>(Arrays.asList("snap", "starwars", "pokemon")));
     
     public TCGPlayerImporter(TargetingSystem targetingSystem) {
         this.targetingSystem = targetingSystem;
-        this.parsers = new HashMap<>();
-        initializeParsers();
     }
     
-    private void initializeParsers() {
-        parsers.put("snap", (GameAbilityParser) new SnapAbilityParser());
-        parsers.put("starwars", (GameAbilityParser) new StarWarsAbilityParser());
-        parsers.put("pokemon", (GameAbilityParser) new PokemonAbilityParser());
+    private static GameAbilityParser parserFor(String game) {
+        String key = game.toLowerCase();
+        return GAMES.contains(key) ? GameParserCache.parser(key) : null;
     }
     
     public Set<TargetingChain> importFromFile(String filePath) throws IOException {
         Set<TargetingChain> chains = new HashSet<>();
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length >= 2) {
-                    String game = parts[0].trim();
-                    String ability = parts[1].trim();
-                    GameAbilityParser parser = parsers.get(game.toLowerCase());
-                    if (parser != null) {
-                        TargetingChain chain = parser.parseAbility(ability);
-                        if (chain != null) {
-                            chains.add(chain);
+        // Quoted fields may hold commas, so records are read as CSV rather than split on commas
+        try (Reader reader = new FileReader(filePath)) {
+            new CsvRecordPipeline().run(reader, 0,
+                row -> {
+                    if (row.length >= 2) {
+                        GameAbilityParser parser = parserFor(row[0].trim());
+                        if (parser != null) {
+                            return parser.parseAbility(row[1].trim());
                         }
                     }
-                }
-            }
+                    return null;
+                },
+                (row, chain) -> {
+                    if (chain != null) {
+                        chains.add(chain);
+                    }
+                });
+        } catch (CsvException e) {
+            throw new IOException("Malformed CSV in " + filePath, e);
         }
         
         return chains;
@@ -0,0 +1,293 @@
+package com.ugc.card.model.targeting;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * MinHash signatures and a banded LSH index for finding near-duplicate chains at corpus scale.
+ *
+ * A chain is treated as the set of its (category, value) components, and similarity is the Jaccard
+ * index of two such sets. Each of the {@code bands * rows} hash functions keeps the minimum hash over
+ * a chain's components. Two chains become candidates when all rows of at least one band agree, which
+ * happens with probability {@code 1 - (1 - s^rows)^bands} for Jaccard similarity {@code s}. More rows
+ * per band raise precision; more bands raise recall. Candidates are verified with the exact Jaccard
+ * index of their {@link CompactChain} forms, over a vocabulary the index extends as chains are added,
+ * so reported pairs never fall below the requested threshold.
+ */
+public final class ChainMinHashIndex {
+    /**
+     * Seed of the hash functions when none is given, so signatures are reproducible between runs.
+     */
+    public static final long DEFAULT_SEED = 42L;
+
+    private final int bands;
+    private final int rows;
+    private final long[] seeds;
+    private final int parallelism;
+    private final List<TargetingChain> chains = new ArrayList<>();
+    private final List<int[]> signatures = new ArrayList<>();
+    private final List<CompactChain> compactChains = new ArrayList<>();
+    private ComponentVocabulary vocabulary = ComponentVocabulary.empty();
+
+    /**
+     * A verified near-duplicate pair; ids are the order in which the chains were added, first before second.
+     */
+    public static final class DuplicatePair {
+        private final int firstId;
+        private final int secondId;
+        private final TargetingChain first;
+        private final TargetingChain second;
+        private final double similarity;
+
+        DuplicatePair(int firstId, int secondId, TargetingChain first, TargetingChain second, double similarity) {
+            this.firstId = firstId;
+            this.secondId = secondId;
+            this.first = first;
+            this.second = second;
+            this.similarity = similarity;
+        }
+
+        public int getFirstId() {
+            return firstId;
+        }
+
+        public int getSecondId() {
+            return secondId;
+        }
+
+        public TargetingChain getFirst() {
+            return first;
+        }
+
+        public TargetingChain getSecond() {
+            return second;
+        }
+
+        public double getSimilarity() {
+            return similarity;
+        }
+
+        @Override
+        public String toString() {
+            return "DuplicatePair{" +
+                   "first=" + first +
+                   ", second=" + second +
+                   ", similarity=" + similarity +
+                   '}';
+        }
+    }
+
+    public ChainMinHashIndex(int bands, int rows, long seed, int parallelism) {
+        if (bands < 1 || rows < 1) {
+            throw new IllegalArgumentException("Bands and rows must be positive");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.bands = bands;
+        this.rows = rows;
+        this.parallelism = parallelism;
+        this.seeds = new long[bands * rows];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * {@link #forThreshold(double, int, double, long)} with the {@link #DEFAULT_SEED}.
+     */
+    public static ChainMinHashIndex forThreshold(double threshold, int hashes, double recall) {
+        return forThreshold(threshold, hashes, recall, DEFAULT_SEED);
+    }
+
+    /**
+     * Picks the most selective band layout for {@code hashes} hash functions under which a pair
+     * with exactly the threshold similarity still becomes a candidate with at least the given
+     * probability. Candidates are verified exactly, so extra candidates only cost time. If no layout
+     * reaches the recall, one row per band, the layout with the highest recall, is used.
+     *
+     * @param threshold Jaccard similarity in (0, 1]
+     * @param recall    probability in (0, 1)
+     */
+    public static ChainMinHashIndex forThreshold(double threshold, int hashes, double recall, long seed) {
+        if (!(threshold > 0.0 && threshold <= 1.0)) {
+            throw new IllegalArgumentException("Threshold must be in (0, 1]: " + threshold);
+        }
+        if (!(recall > 0.0 && recall < 1.0)) {
+            throw new IllegalArgumentException("Recall must be in (0, 1): " + recall);
+        }
+        if (hashes < 1) {
+            throw new IllegalArgumentException("Hashes must be positive");
+        }
+        int bestRows = 1;
+        for (int r = 1; r <= hashes; r++) {
+            if (hashes % r != 0) {
+                continue;
+            }
+            double probability = 1.0 - Math.pow(1.0 - Math.pow(threshold, r), hashes / r);
+            if (probability >= recall) {
+                bestRows = r;
+            }
+        }
+        return new ChainMinHashIndex(hashes / bestRows, bestRows, seed, Runtime.getRuntime().availableProcessors());
+    }
+
+    public int getBands() {
+        return bands;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int size() {
+        return chains.size();
+    }
+
+    /**
+     * Adds a chain and returns its id.
+     */
+    public int add(TargetingChain chain) {
+        vocabulary = vocabulary.withAll(chain.componentsView());
+        chains.add(chain);
+        compactChains.add(CompactChain.of(vocabulary, chain));
+        signatures.add(signature(hashComponents(chain)));
+        return chains.size() - 1;
+    }
+
+    /**
+     * Adds all chains, computing their signatures in parallel.
+     */
+    public void addAll(Collection<TargetingChain> newChains) {
+        List<TargetingChain> batch = new ArrayList<>(newChains);
+        // One extension of the vocabulary for the whole batch
+        List<TargetingComponent> components = new ArrayList<>();
+        for (TargetingChain chain : batch) {
+            components.addAll(chain.componentsView());
+        }
+        ComponentVocabulary extended = vocabulary.withAll(components);
+        CompactChain[] compact = new CompactChain[batch.size()];
+        int[][] batchSignatures = new int[batch.size()][];
+        runParallel(() -> IntStream.range(0, batch.size()).parallel().forEach(i -> {
+            compact[i] = CompactChain.of(extended, batch.get(i));
+            batchSignatures[i] = signature(hashComponents(batch.get(i)));
+        }));
+        vocabulary = extended;
+        chains.addAll(batch);
+        compactChains.addAll(Arrays.asList(compact));
+        signatures.addAll(Arrays.asList(batchSignatures));
+    }
+
+    public int[] signature(TargetingChain chain) {
+        return signature(hashComponents(chain));
+    }
+
+    /**
+     * Estimates the Jaccard similarity of two chains from their signatures.
+     */
+    public static double estimateSimilarity(int[] a, int[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Signatures must have the same length");
+        }
+        int equal = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return a.length == 0 ? 0.0 : (double) equal / a.length;
+    }
+
+    /**
+     * Finds every pair of indexed chains that share an LSH bucket and whose exact Jaccard similarity
+     * is at least the threshold, most similar first. Bands are bucketed in parallel and candidates are
+     * verified in parallel; the cost is linear in the number of chains plus the number of candidates.
+     */
+    public List<DuplicatePair> findNearDuplicates(double threshold) {
+        int count = chains.size();
+        Set<Long> candidates = ConcurrentHashMap.newKeySet();
+        runParallel(() -> IntStream.range(0, bands).parallel().forEach(band -> {
+            Map<Long, List<Integer>> buckets = new HashMap<>();
+            for (int id = 0; id < count; id++) {
+                buckets.computeIfAbsent(bandKey(signatures.get(id), band), k -> new ArrayList<>(2)).add(id);
+            }
+            for (List<Integer> bucket : buckets.values()) {
+                for (int i = 0; i < bucket.size(); i++) {
+                    for (int j = i + 1; j < bucket.size(); j++) {
+                        candidates.add(((long) bucket.get(i) << 32) | bucket.get(j));
+                    }
+                }
+            }
+        }));
+
+        List<DuplicatePair> pairs = new ArrayList<>();
+        runParallel(() -> pairs.addAll(candidates.parallelStream()
+            .map(pair -> {
+                int first = (int) (pair >>> 32);
+                int second = (int) pair.longValue();
+                double similarity = compactChains.get(first).jaccard(compactChains.get(second));
+                return similarity >= threshold
+                    ? new DuplicatePair(first, second, chains.get(first), chains.get(second), similarity)
+                    : null;
+            })
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList())));
+        pairs.sort(Comparator.comparingDouble((DuplicatePair p) -> -p.similarity)
+            .thenComparingInt(DuplicatePair::getFirstId)
+            .thenComparingInt(DuplicatePair::getSecondId));
+        return pairs;
+    }
+
+    private int[] signature(long[] hashes) {
+        int[] signature = new int[seeds.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (long hash : hashes) {
+            for (int i = 0; i < seeds.length; i++) {
+                int h = (int) mix(hash ^ seeds[i]);
+                if (h < signature[i]) {
+                    signature[i] = h;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private long bandKey(int[] signature, int band) {
+        long key = band;
+        for (int i = band * rows; i < (band + 1) * rows; i++) {
+            key = mix(key * 31 + signature[i]);
+        }
+        return key;
+    }
+
+    // 64-bit hashes of the chain's (category, value) components, which the signature takes the minimum over
+    private static long[] hashComponents(TargetingChain chain) {
+        Set<TargetingComponent> components = chain.componentsView();
+        long[] hashes = new long[components.size()];
+        int n = 0;
+        for (TargetingComponent component : components) {
+            long hash = 0xcbf29ce484222325L ^ component.getCategory().ordinal();
+            for (byte b : component.getText().getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b & 0xff;
+                hash *= 0x100000001b3L;
+            }
+            hashes[n++] = mix(hash);
+        }
+        return hashes;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private void runParallel(Runnable task) {
+        ParallelPools.run(parallelism, task, "indexing chains");
+    }
+}
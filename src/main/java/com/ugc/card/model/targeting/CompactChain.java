@@ -0,0 +1,260 @@
+package com.ugc.card.model.targeting;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, compact form of a {@link TargetingChain}: the sorted vocabulary ids of its components
+ * plus a bitmask of the categories they belong to (one bit per {@link ComponentCategory} ordinal).
+ *
+ * Category checks are single bit tests, equality and hashing work on the id array, and set algebra
+ * is a linear merge with no per-component objects. Ids are comparable between chains of the same
+ * vocabulary or of one vocabulary and an extension of it, as extending keeps every existing id.
+ */
+public final class CompactChain {
+    private static final int[] EMPTY_IDS = new int[0];
+
+    private final ComponentVocabulary vocabulary;
+    private final int[] ids;
+    private final int categoryMask;
+    private final int hash;
+
+    private CompactChain(ComponentVocabulary vocabulary, int[] ids) {
+        this.vocabulary = vocabulary;
+        this.ids = ids;
+        int mask = 0;
+        for (int id : ids) {
+            mask |= bit(vocabulary.get(id).getCategory());
+        }
+        this.categoryMask = mask;
+        this.hash = Arrays.hashCode(ids);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the chain has a component outside the vocabulary
+     */
+    public static CompactChain of(ComponentVocabulary vocabulary, TargetingChain chain) {
+        int[] ids = vocabulary.indicesOf(chain);
+        if (ids.length != chain.size()) {
+            throw new IllegalArgumentException("Chain has components outside the vocabulary");
+        }
+        return new CompactChain(vocabulary, ids);
+    }
+
+    /**
+     * @param ids vocabulary ids in any order; duplicates are dropped
+     */
+    public static CompactChain ofIds(ComponentVocabulary vocabulary, int... ids) {
+        int[] sorted = Arrays.stream(ids).sorted().distinct().toArray();
+        for (int id : sorted) {
+            if (vocabulary.get(id) == null) {
+                throw new IllegalArgumentException("Unknown component id: " + id);
+            }
+        }
+        return new CompactChain(vocabulary, sorted);
+    }
+
+    public static CompactChain empty(ComponentVocabulary vocabulary) {
+        return new CompactChain(vocabulary, EMPTY_IDS);
+    }
+
+    /**
+     * Converts back to an object chain whose components are the vocabulary's interned instances.
+     */
+    public TargetingChain toChain() {
+        TargetingChain chain = new TargetingChain();
+        for (int id : ids) {
+            chain.addComponent(vocabulary.get(id));
+        }
+        return chain;
+    }
+
+    public ComponentVocabulary getVocabulary() {
+        return vocabulary;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public boolean isEmpty() {
+        return ids.length == 0;
+    }
+
+    public int idAt(int index) {
+        return ids[index];
+    }
+
+    public TargetingComponent componentAt(int index) {
+        return vocabulary.get(ids[index]);
+    }
+
+    public int[] getIds() {
+        return ids.clone();
+    }
+
+    public int getCategoryMask() {
+        return categoryMask;
+    }
+
+    public boolean hasCategory(ComponentCategory category) {
+        return (categoryMask & bit(category)) != 0;
+    }
+
+    public boolean containsId(int id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    public boolean contains(TargetingComponent component) {
+        int id = vocabulary.indexOf(component);
+        return id >= 0 && containsId(id);
+    }
+
+    /**
+     * @return true if every component of {@code other} is part of this chain
+     */
+    public boolean containsAll(CompactChain other) {
+        checkVocabulary(other);
+        if ((other.categoryMask & ~categoryMask) != 0 || other.ids.length > ids.length) {
+            return false;
+        }
+        return intersectionSize(other) == other.ids.length;
+    }
+
+    public int intersectionSize(CompactChain other) {
+        return intersectionSize(other, null);
+    }
+
+    /**
+     * Also adds the shared components to {@code categoryCounts}, indexed by category ordinal,
+     * unless it is null.
+     *
+     * @return the number of shared components
+     */
+    int intersectionSize(CompactChain other, int[] categoryCounts) {
+        checkVocabulary(other);
+        int[] a = ids;
+        int[] b = other.ids;
+        int shared = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                if (categoryCounts != null) {
+                    categoryCounts[vocabulary.get(a[i]).getCategory().ordinal()]++;
+                }
+                shared++;
+                i++;
+                j++;
+            }
+        }
+        return shared;
+    }
+
+    public int unionSize(CompactChain other) {
+        return ids.length + other.ids.length - intersectionSize(other);
+    }
+
+    /**
+     * @return the Jaccard similarity of the two component sets, 1 if both are empty
+     */
+    public double jaccard(CompactChain other) {
+        int shared = intersectionSize(other);
+        int union = ids.length + other.ids.length - shared;
+        return union == 0 ? 1.0 : (double) shared / union;
+    }
+
+    public CompactChain intersect(CompactChain other) {
+        ComponentVocabulary common = checkVocabulary(other);
+        int[] a = ids;
+        int[] b = other.ids;
+        int[] result = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return new CompactChain(common, Arrays.copyOf(result, n));
+    }
+
+    public CompactChain union(CompactChain other) {
+        ComponentVocabulary common = checkVocabulary(other);
+        int[] a = ids;
+        int[] b = other.ids;
+        int[] result = new int[a.length + b.length];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                result[n++] = a[i++];
+            } else if (a[i] > b[j]) {
+                result[n++] = b[j++];
+            } else {
+                result[n++] = a[i++];
+                j++;
+            }
+        }
+        while (i < a.length) {
+            result[n++] = a[i++];
+        }
+        while (j < b.length) {
+            result[n++] = b[j++];
+        }
+        return new CompactChain(common, Arrays.copyOf(result, n));
+    }
+
+    // Ids are only comparable when one vocabulary extends the other; returns the larger one, which
+    // holds the ids of both chains
+    private ComponentVocabulary checkVocabulary(CompactChain other) {
+        if (vocabulary.isPrefixOf(other.vocabulary)) {
+            return other.vocabulary;
+        }
+        if (other.vocabulary.isPrefixOf(vocabulary)) {
+            return vocabulary;
+        }
+        throw new IllegalArgumentException("Chains use different vocabularies");
+    }
+
+    // Vocabulary ids below this are the ones the chain uses
+    private int idLimit() {
+        return ids.length == 0 ? 0 : ids[ids.length - 1] + 1;
+    }
+
+    // ComponentCategory has fewer than 32 constants, so one int holds every category
+    static int bit(ComponentCategory category) {
+        return 1 << category.ordinal();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CompactChain that = (CompactChain) o;
+        // Equal ids name the same components when the vocabularies agree up to the highest of them
+        return hash == that.hash
+            && Arrays.equals(ids, that.ids)
+            && vocabulary.prefixFingerprint(idLimit()) == that.vocabulary.prefixFingerprint(idLimit());
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "CompactChain{" +
+               "ids=" + Arrays.toString(ids) +
+               ", categoryMask=" + Integer.toBinaryString(categoryMask) +
+               '}';
+    }
+}
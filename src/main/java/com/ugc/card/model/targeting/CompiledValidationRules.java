@@ -0,0 +1,170 @@
+package com.ugc.card.model.targeting;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * A set of {@link ValidationRule}s compiled for checking many chains.
+ *
+ * The declarative parts of every rule become a required and a forbidden category bitmask plus
+ * required and forbidden component-text ids. A chain is scanned once to collect its category mask
+ * and the ids of the rule texts it contains; each rule is then a few mask tests, and only rules that
+ * pass them run their custom predicate. The result is the same as calling
+ * {@link ValidationRule#validate} for every rule.
+ */
+public final class CompiledValidationRules {
+    // Below this size a batch is validated on the calling thread
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    private final List<ValidationRule> rules;
+    private final Map<String, Integer> textIds = new HashMap<>();
+    private final int[] requiredMasks;
+    private final int[] forbiddenMasks;
+    private final int[][] requiredTexts;
+    private final int[][] forbiddenTexts;
+
+    private CompiledValidationRules(Collection<ValidationRule> rules) {
+        this.rules = new ArrayList<>(rules);
+        int count = this.rules.size();
+        requiredMasks = new int[count];
+        forbiddenMasks = new int[count];
+        requiredTexts = new int[count][];
+        forbiddenTexts = new int[count][];
+        for (int i = 0; i < count; i++) {
+            ValidationRule rule = this.rules.get(i);
+            requiredMasks[i] = categoryMask(rule.getRequiredCategories());
+            forbiddenMasks[i] = categoryMask(rule.getForbiddenCategories());
+            requiredTexts[i] = textIds(rule.getRequiredComponents());
+            forbiddenTexts[i] = textIds(rule.getForbiddenComponents());
+        }
+    }
+
+    public static CompiledValidationRules compile(Collection<ValidationRule> rules) {
+        return new CompiledValidationRules(rules);
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    public List<ValidationRule> getRules() {
+        return Collections.unmodifiableList(rules);
+    }
+
+    /**
+     * @return true if the chain passes every rule
+     */
+    public boolean validate(TargetingChain chain) {
+        long[] texts = new long[words()];
+        int mask = scan(chain, texts);
+        for (int i = 0; i < rules.size(); i++) {
+            if (!passes(i, chain, mask, texts)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the rules the chain fails, in compilation order
+     */
+    public List<ValidationRule> failedRules(TargetingChain chain) {
+        long[] texts = new long[words()];
+        int mask = scan(chain, texts);
+        List<ValidationRule> failed = new ArrayList<>();
+        for (int i = 0; i < rules.size(); i++) {
+            if (!passes(i, chain, mask, texts)) {
+                failed.add(rules.get(i));
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Validates every chain, in parallel for large batches.
+     *
+     * @return whether each chain passes, in the order of {@code chains}
+     */
+    public boolean[] validateAll(List<TargetingChain> chains, int parallelism) {
+        return testAll(chains, this::validate, parallelism);
+    }
+
+    static boolean[] testAll(List<TargetingChain> chains, Predicate<TargetingChain> test, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        boolean[] valid = new boolean[chains.size()];
+        if (parallelism == 1 || chains.size() < PARALLEL_THRESHOLD) {
+            for (int i = 0; i < valid.length; i++) {
+                valid[i] = test.test(chains.get(i));
+            }
+            return valid;
+        }
+        ParallelPools.run(parallelism, () -> IntStream.range(0, valid.length).parallel()
+            .forEach(i -> valid[i] = test.test(chains.get(i))), "validating chains");
+        return valid;
+    }
+
+    /**
+     * @return one bit per category ordinal of the chain's components
+     */
+    static int categoryMask(TargetingChain chain) {
+        int mask = 0;
+        for (TargetingComponent component : chain.componentsView()) {
+            mask |= CompactChain.bit(component.getCategory());
+        }
+        return mask;
+    }
+
+    static int categoryMask(Collection<ComponentCategory> categories) {
+        int mask = 0;
+        for (ComponentCategory category : categories) {
+            mask |= CompactChain.bit(category);
+        }
+        return mask;
+    }
+
+    private boolean passes(int rule, TargetingChain chain, int mask, long[] texts) {
+        if ((mask & requiredMasks[rule]) != requiredMasks[rule] || (mask & forbiddenMasks[rule]) != 0) {
+            return false;
+        }
+        for (int id : requiredTexts[rule]) {
+            if ((texts[id >>> 6] & (1L << id)) == 0) {
+                return false;
+            }
+        }
+        for (int id : forbiddenTexts[rule]) {
+            if ((texts[id >>> 6] & (1L << id)) != 0) {
+                return false;
+            }
+        }
+        return rules.get(rule).getValidator().test(chain);
+    }
+
+    // Single pass over the chain: returns its category mask and marks the rule texts it contains
+    private int scan(TargetingChain chain, long[] texts) {
+        int mask = 0;
+        for (TargetingComponent component : chain.componentsView()) {
+            mask |= CompactChain.bit(component.getCategory());
+            Integer id = textIds.get(component.getText());
+            if (id != null) {
+                texts[id >>> 6] |= 1L << id;
+            }
+        }
+        return mask;
+    }
+
+    private int[] textIds(Set<String> texts) {
+        int[] ids = new int[texts.size()];
+        int n = 0;
+        for (String text : texts) {
+            ids[n++] = textIds.computeIfAbsent(text, k -> textIds.size());
+        }
+        return ids;
+    }
+
+    private int words() {
+        return (textIds.size() + 63) >>> 6;
+    }
+}
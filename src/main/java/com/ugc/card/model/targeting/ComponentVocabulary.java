@@ -0,0 +1,214 @@
+package com.ugc.card.model.targeting;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Immutable, interned vocabulary of targeting components.
+ * Each component is assigned a stable integer id: ids never change once assigned,
+ * and extending the vocabulary only appends new ids at the end.
+ */
+public final class ComponentVocabulary {
+    private static final ComponentVocabulary EMPTY = new ComponentVocabulary(new TargetingComponent[0]);
+
+    private static final Comparator<TargetingComponent> CANONICAL_ORDER =
+        Comparator.comparing(TargetingComponent::getCategory)
+                  .thenComparing(TargetingComponent::getText);
+
+    private final TargetingComponent[] components;
+    private final Map<TargetingComponent, Integer> ids;
+    // The fingerprint of the first i components at index i, the whole vocabulary's at the end
+    private final long[] prefixFingerprints;
+
+    private ComponentVocabulary(TargetingComponent[] components) {
+        this.components = components;
+        this.ids = new HashMap<>(Math.max(16, components.length * 2));
+        for (int i = 0; i < components.length; i++) {
+            ids.put(components[i], i);
+        }
+        this.prefixFingerprints = computeFingerprints(components);
+    }
+
+    // 64-bit FNV-1a over "CATEGORY:text\n" for each component in id order
+    private static long[] computeFingerprints(TargetingComponent[] components) {
+        long[] fingerprints = new long[components.length + 1];
+        long hash = 0xcbf29ce484222325L;
+        fingerprints[0] = hash;
+        for (int i = 0; i < components.length; i++) {
+            TargetingComponent component = components[i];
+            String key = component.getCategory().name() + ":" + component.getText() + "\n";
+            for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b & 0xff;
+                hash *= 0x100000001b3L;
+            }
+            fingerprints[i + 1] = hash;
+        }
+        return fingerprints;
+    }
+
+    public static ComponentVocabulary empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Builds a vocabulary from the given components. Ids follow category then text order,
+     * so the same component set always produces the same ids regardless of iteration order.
+     */
+    public static ComponentVocabulary of(Collection<TargetingComponent> components) {
+        TargetingComponent[] sorted = new LinkedHashSet<>(components).toArray(new TargetingComponent[0]);
+        Arrays.sort(sorted, CANONICAL_ORDER);
+        return new ComponentVocabulary(sorted);
+    }
+
+    /**
+     * Returns a vocabulary containing this one plus the given component. Existing ids are
+     * preserved; a new component receives the next free id.
+     */
+    public ComponentVocabulary with(TargetingComponent component) {
+        if (ids.containsKey(component)) {
+            return this;
+        }
+        TargetingComponent[] extended = Arrays.copyOf(components, components.length + 1);
+        extended[components.length] = component;
+        return new ComponentVocabulary(extended);
+    }
+
+    /**
+     * Returns a vocabulary containing this one plus every given component, built with a single copy.
+     * Existing ids are preserved; the new components receive the next free ids in category then text order.
+     */
+    public ComponentVocabulary withAll(Collection<TargetingComponent> added) {
+        Set<TargetingComponent> missing = new LinkedHashSet<>();
+        for (TargetingComponent component : added) {
+            if (!ids.containsKey(component)) {
+                missing.add(component);
+            }
+        }
+        if (missing.isEmpty()) {
+            return this;
+        }
+        TargetingComponent[] sorted = missing.toArray(new TargetingComponent[0]);
+        Arrays.sort(sorted, CANONICAL_ORDER);
+        TargetingComponent[] extended = Arrays.copyOf(components, components.length + sorted.length);
+        System.arraycopy(sorted, 0, extended, components.length, sorted.length);
+        return new ComponentVocabulary(extended);
+    }
+
+    public int size() {
+        return components.length;
+    }
+
+    /**
+     * @return a stable hash of the components and their ids, used to check that a saved model
+     *         matches the vocabulary it is loaded against
+     */
+    public long fingerprint() {
+        return prefixFingerprints[components.length];
+    }
+
+    /**
+     * @return the fingerprint of the first {@code length} components
+     */
+    long prefixFingerprint(int length) {
+        return prefixFingerprints[length];
+    }
+
+    /**
+     * @return true if {@code other} starts with every component of this vocabulary under the same id,
+     *         as it does when it was extended from this one, so ids of this vocabulary mean the same
+     *         components in both
+     */
+    public boolean isPrefixOf(ComponentVocabulary other) {
+        return other == this || other.components.length >= components.length
+            && other.prefixFingerprints[components.length] == fingerprint();
+    }
+
+    public boolean contains(TargetingComponent component) {
+        return ids.containsKey(component);
+    }
+
+    /**
+     * @return the id of the component, or -1 if it is not part of the vocabulary
+     */
+    public int indexOf(TargetingComponent component) {
+        Integer id = ids.get(component);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * @return the component with the given id, or null if the id is out of range
+     */
+    public TargetingComponent get(int id) {
+        return id >= 0 && id < components.length ? components[id] : null;
+    }
+
+    /**
+     * Returns the canonical instance for a component equal to the given one,
+     * or the argument itself if it is not part of the vocabulary.
+     */
+    public TargetingComponent intern(TargetingComponent component) {
+        int id = indexOf(component);
+        return id >= 0 ? components[id] : component;
+    }
+
+    /**
+     * @return an unmodifiable list of all components in id order
+     */
+    public List<TargetingComponent> components() {
+        return Collections.unmodifiableList(Arrays.asList(components));
+    }
+
+    /**
+     * @return the ids of the chain's components that are part of the vocabulary, in ascending order
+     */
+    public int[] indicesOf(TargetingChain chain) {
+        Set<TargetingComponent> chainComponents = chain.componentsView();
+        int[] indices = new int[chainComponents.size()];
+        int count = 0;
+        for (TargetingComponent component : chainComponents) {
+            int id = indexOf(component);
+            if (id >= 0) {
+                indices[count++] = id;
+            }
+        }
+        int[] result = Arrays.copyOf(indices, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Writes the one-hot encoding of the chain into {@code out}, which must have length {@link #size()}.
+     */
+    public void encode(TargetingChain chain, float[] out) {
+        if (out.length != components.length) {
+            throw new IllegalArgumentException("Output length must match vocabulary size");
+        }
+        Arrays.fill(out, 0.0f);
+        for (TargetingComponent component : chain.componentsView()) {
+            int id = indexOf(component);
+            if (id >= 0) {
+                out[id] = 1.0f;
+            }
+        }
+    }
+
+    public float[] encode(TargetingChain chain) {
+        float[] out = new float[components.length];
+        encode(chain, out);
+        return out;
+    }
+
+    /**
+     * Builds a chain from every id whose activation is above the threshold.
+     */
+    public TargetingChain decode(float[] activations, float threshold) {
+        TargetingChain chain = new TargetingChain();
+        int limit = Math.min(activations.length, components.length);
+        for (int i = 0; i < limit; i++) {
+            if (activations[i] > threshold) {
+                chain.addComponent(components[i]);
+            }
+        }
+        return chain;
+    }
+}
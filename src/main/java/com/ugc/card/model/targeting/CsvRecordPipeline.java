@@ -0,0 +1,200 @@
+package com.ugc.card.model.targeting;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.exceptions.CsvException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Streams CSV records through a read, a parse and a store stage with bounded memory.
+ *
+ * A reader thread pulls records one at a time and hands them in batches to a shared
+ * {@link ParallelPools} pool; the batches are parsed in parallel while the next ones are read. The
+ * calling thread stores each record with its parsed value in file order. At most
+ * {@code maxPendingBatches} batches are read ahead of the store stage: when it falls behind, the
+ * reader blocks instead of buffering, so a file of any size is ingested in constant heap.
+ *
+ * The parse function runs on several threads at once and must be thread-safe; it may return null,
+ * e.g. for a record that fails validation. The store function only ever runs on the calling thread.
+ * The first exception thrown by the reader, a parse or a store stops the pipeline and is rethrown.
+ * Stopping early closes the source, as that is the only way to release a reader blocked on a stalled
+ * stream, and cancels the batches still waiting to be stored.
+ */
+public final class CsvRecordPipeline {
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    // How long a stopped pipeline waits for its reader thread, which is a daemon, before giving up on it
+    private static final long STOP_TIMEOUT_MILLIS = 5000;
+
+    private final int parallelism;
+    private final int batchSize;
+    private final int maxPendingBatches;
+
+    public CsvRecordPipeline() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public CsvRecordPipeline(int parallelism) {
+        this(parallelism, DEFAULT_BATCH_SIZE, 2 * Math.max(parallelism, 1));
+    }
+
+    public CsvRecordPipeline(int parallelism, int batchSize, int maxPendingBatches) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        if (maxPendingBatches < 1) {
+            throw new IllegalArgumentException("Pending batches must be positive");
+        }
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.maxPendingBatches = maxPendingBatches;
+    }
+
+    /**
+     * Reads every record after the first {@code skipLines} lines of {@code source}. The source stays open
+     * once every record was stored, and is closed if the pipeline stops early.
+     *
+     * @return the number of records stored
+     */
+    public <T> long run(Reader source, int skipLines, Function<String[], ? extends T> parse,
+                        BiConsumer<String[], ? super T> store) throws IOException, CsvException {
+        if (source == null || parse == null || store == null) {
+            throw new IllegalArgumentException("Source, parse and store cannot be null");
+        }
+        // Without verification opencsv reports a failed read instead of taking it for the end of the file
+        CSVReader reader = new CSVReaderBuilder(source).withSkipLines(skipLines).withVerifyReader(false).build();
+        BlockingQueue<Future<Batch<T>>> pending = new ArrayBlockingQueue<>(maxPendingBatches);
+        ForkJoinPool pool = ParallelPools.get(parallelism);
+        Thread readerThread = new Thread(() -> read(reader, parse, pool, pending), "csv-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+        long stored = 0;
+        boolean finished = false;
+        try {
+            Batch<T> batch;
+            while ((batch = pending.take().get()) != null) {
+                for (int i = 0; i < batch.rows.size(); i++) {
+                    store.accept(batch.rows.get(i), batch.values.get(i));
+                }
+                stored += batch.rows.size();
+            }
+            finished = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading records", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof CsvException) {
+                throw (CsvException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Failed to read records", cause);
+        } finally {
+            if (!finished) {
+                stop(readerThread, source, pending);
+            }
+            try {
+                readerThread.join(STOP_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!finished) {
+                // Batches queued before the reader saw the interrupt
+                cancel(pending);
+            }
+        }
+        return stored;
+    }
+
+    // Interrupting releases a reader waiting for room in the queue, but not one blocked on stream I/O;
+    // closing the source does. Readers lock against a read in progress while closing, the CSVReader's
+    // own buffer included, so the source is closed directly and off this thread, which only waits
+    // for the reader thread as long as the timeout allows
+    private static void stop(Thread readerThread, Reader source, BlockingQueue<? extends Future<?>> pending) {
+        readerThread.interrupt();
+        cancel(pending);
+        Thread closer = new Thread(() -> {
+            try {
+                source.close();
+            } catch (IOException e) {
+                // The failure that stopped the pipeline is the one reported
+            }
+        }, "csv-reader-close");
+        closer.setDaemon(true);
+        closer.start();
+    }
+
+    private static void cancel(BlockingQueue<? extends Future<?>> pending) {
+        Future<?> batch;
+        while ((batch = pending.poll()) != null) {
+            batch.cancel(true);
+        }
+    }
+
+    private <T> void read(CSVReader reader, Function<String[], ? extends T> parse, ForkJoinPool pool,
+                          BlockingQueue<Future<Batch<T>>> pending) {
+        // Completed with null after the last record, or exceptionally if reading fails
+        CompletableFuture<Batch<T>> end = new CompletableFuture<>();
+        try {
+            List<String[]> rows = new ArrayList<>(batchSize);
+            String[] row;
+            while (!Thread.currentThread().isInterrupted() && (row = reader.readNext()) != null) {
+                rows.add(row);
+                if (rows.size() == batchSize) {
+                    pending.put(submit(pool, rows, parse));
+                    rows = new ArrayList<>(batchSize);
+                }
+            }
+            if (!rows.isEmpty()) {
+                pending.put(submit(pool, rows, parse));
+            }
+            end.complete(null);
+        } catch (InterruptedException e) {
+            // The store stage has stopped and nobody is waiting for the rest
+            return;
+        } catch (IOException | CsvException | RuntimeException | Error e) {
+            end.completeExceptionally(e);
+        }
+        try {
+            pending.put(end);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static <T> Future<Batch<T>> submit(ForkJoinPool pool, List<String[]> rows,
+                                               Function<String[], ? extends T> parse) {
+        return pool.submit(() -> {
+            List<T> values = new ArrayList<>(rows.size());
+            for (String[] row : rows) {
+                values.add(parse.apply(row));
+            }
+            return new Batch<>(rows, values);
+        });
+    }
+
+    private static final class Batch<T> {
+        private final List<String[]> rows;
+        private final List<T> values;
+
+        Batch(List<String[]> rows, List<T> values) {
+            this.rows = rows;
+            this.values = values;
+        }
+    }
+}
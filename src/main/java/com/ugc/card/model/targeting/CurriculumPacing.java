@@ -0,0 +1,36 @@
+package com.ugc.card.model.targeting;
+
+/**
+ * Decides what fraction of the difficulty-sorted training set is used at a given epoch.
+ */
+@FunctionalInterface
+public interface CurriculumPacing {
+    double MIN_FRACTION = 0.3;
+    double RAMP_PORTION = 0.7;
+
+    /**
+     * @return the fraction of the easiest chains to train on, in [0, 1]
+     */
+    double fraction(int epoch, int epochs);
+
+    // Grows linearly from 30% to 100% over the first 70% of the epochs
+    CurriculumPacing LINEAR = (epoch, epochs) ->
+        MIN_FRACTION + (1 - MIN_FRACTION) * progress(epoch, epochs);
+
+    // Grows quickly at first and then flattens out
+    CurriculumPacing ROOT = (epoch, epochs) ->
+        MIN_FRACTION + (1 - MIN_FRACTION) * Math.sqrt(progress(epoch, epochs));
+
+    // Grows in the given number of equal steps
+    static CurriculumPacing step(int steps) {
+        if (steps < 1) {
+            throw new IllegalArgumentException("Steps must be positive");
+        }
+        return (epoch, epochs) ->
+            MIN_FRACTION + (1 - MIN_FRACTION) * Math.floor(progress(epoch, epochs) * steps) / steps;
+    }
+
+    static double progress(int epoch, int epochs) {
+        return Math.min(1.0, (double) epoch / (epochs * RAMP_PORTION));
+    }
+}
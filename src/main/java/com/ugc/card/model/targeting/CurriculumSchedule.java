@@ -0,0 +1,68 @@
+package com.ugc.card.model.targeting;
+
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Difficulty ordering of a training set, computed once per dataset. Each epoch then takes a prefix
+ * of the cached ordering without sorting, copying or hashing the chains again.
+ */
+final class CurriculumSchedule {
+    private final List<TargetingChain> source;
+    private final int[] order;
+    private final List<TargetingChain> ordered;
+
+    CurriculumSchedule(List<TargetingChain> source, ToDoubleFunction<TargetingChain> difficulty) {
+        this.source = source;
+        int size = source.size();
+        List<TargetingChain> chains = source instanceof RandomAccess ? source : new ArrayList<>(source);
+
+        double[] difficulties = new double[size];
+        for (int i = 0; i < size; i++) {
+            difficulties[i] = difficulty.applyAsDouble(chains.get(i));
+        }
+        // Primitive sorts only: each chain's key is the rank of its difficulty in the high half and its
+        // position in the low half, so chains of equal difficulty keep their input order
+        double[] ranked = difficulties.clone();
+        Arrays.sort(ranked);
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            long rank = Arrays.binarySearch(ranked, difficulties[i]);
+            keys[i] = rank << 32 | i;
+        }
+        Arrays.sort(keys);
+
+        this.order = new int[size];
+        List<TargetingChain> sorted = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            order[i] = (int) keys[i];
+            sorted.add(chains.get(order[i]));
+        }
+        this.ordered = Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * @return whether this schedule was built for the given dataset
+     */
+    boolean isFor(List<TargetingChain> data) {
+        return data == source && data.size() == order.length;
+    }
+
+    /**
+     * @return positions in the source list, easiest first; callers must not modify the array
+     */
+    int[] getOrder() {
+        return order;
+    }
+
+    int size() {
+        return order.length;
+    }
+
+    /**
+     * @return a view of the {@code count} easiest chains
+     */
+    List<TargetingChain> prefix(int count) {
+        return ordered.subList(0, count);
+    }
+}
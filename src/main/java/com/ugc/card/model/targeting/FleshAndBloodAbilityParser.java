@@ -4,7 +4,7 @@ import java.util.*;
 
 public class FleshAndBloodAbilityParser implements GameAbilityParser {
     private static final Map<ComponentCategory, Set<String>> VALID_COMPONENTS = new HashMap<>();
-    private static final Set<ValidationRule> VALIDATION_RULES = new HashSet<>();
+    private static final Set<ValidationRule> VALIDATION_RULES = new ValidationRuleSet();
     private static final Set<AbilityType> ABILITY_TYPES = new HashSet<>();
     private static final Set<TargetingPattern> TARGETING_PATTERNS = new HashSet<>();
     
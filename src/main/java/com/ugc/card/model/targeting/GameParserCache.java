@@ -0,0 +1,78 @@
+package com.ugc.card.model.targeting;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide cache of the built-in game parsers.
+ *
+ * A built-in game's parser is constructed, and its categories, components, rules, ability types and
+ * patterns read, the first time anything asks for that game; every {@link TargetingSystem},
+ * {@link GameParserFactory} and importer then shares the same {@link TargetingRegistry.Game}. Parsers
+ * keep no per-call state, so sharing them between threads is safe. Games nobody asks for are never built.
+ */
+public final class GameParserCache {
+    private static final Map<String, Supplier<GameAbilityParser>> BUILT_IN;
+    private static final Map<String, TargetingRegistry.Game> LOADED = new ConcurrentHashMap<>();
+
+    static {
+        Map<String, Supplier<GameAbilityParser>> builtIn = new LinkedHashMap<>();
+        builtIn.put("snap", () -> (GameAbilityParser) new SnapAbilityParser());
+        builtIn.put("starwars", () -> (GameAbilityParser) new StarWarsAbilityParser());
+        builtIn.put("pokemon", () -> (GameAbilityParser) new PokemonAbilityParser());
+        builtIn.put("yugioh", () -> (GameAbilityParser) new YugiohAbilityParser());
+        builtIn.put("magic", () -> (GameAbilityParser) new MagicAbilityParser());
+        builtIn.put("lorcana", () -> (GameAbilityParser) new LorcanaAbilityParser());
+        builtIn.put("fleshandblood", () -> (GameAbilityParser) new FleshAndBloodAbilityParser());
+        BUILT_IN = Collections.unmodifiableMap(builtIn);
+    }
+
+    private GameParserCache() {
+    }
+
+    /**
+     * @return the names of the built-in games, loaded or not
+     */
+    public static Set<String> builtInGames() {
+        return BUILT_IN.keySet();
+    }
+
+    public static boolean isBuiltIn(String game) {
+        return game != null && BUILT_IN.containsKey(game.toLowerCase());
+    }
+
+    /**
+     * @return true if the game's parser has already been built
+     */
+    public static boolean isLoaded(String game) {
+        return game != null && LOADED.containsKey(game.toLowerCase());
+    }
+
+    /**
+     * Returns a built-in game, building its parser and metadata on the first call for it. Concurrent
+     * first calls for the same game build it once.
+     *
+     * @throws IllegalArgumentException if the game is not built in
+     */
+    public static TargetingRegistry.Game get(String game) {
+        if (game == null) {
+            throw new IllegalArgumentException("Game name cannot be null");
+        }
+        String key = game.toLowerCase();
+        Supplier<GameAbilityParser> factory = BUILT_IN.get(key);
+        if (factory == null) {
+            throw new IllegalArgumentException("Unsupported game: " + game);
+        }
+        return LOADED.computeIfAbsent(key, k -> TargetingRegistry.Game.of(k, factory.get()));
+    }
+
+    public static GameAbilityParser parser(String game) {
+        return get(game).getParser();
+    }
+
+    // Forgets every loaded game, so tests can observe loading
+    static void clear() {
+        LOADED.clear();
+    }
+}
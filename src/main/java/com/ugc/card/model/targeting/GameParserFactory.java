@@ -10,6 +10,8 @@ public class GameParserFactory {
     private static GameParserFactory instance;
     private final TargetingSystem targetingSystem;
     private final Map<String, GameAbilityParser> parsers;
+    // Built-in games not looked up yet; their parsers come from GameParserCache on first use
+    private final Set<String> pending;
     
     public static GameParserFactory getInstance(TargetingSystem targetingSystem) {
         if (instance == null) {
@@ -21,17 +23,7 @@ public class GameParserFactory {
     public GameParserFactory(TargetingSystem targetingSystem) {
         this.targetingSystem = targetingSystem;
         this.parsers = new HashMap<>();
-        initializeParsers();
-    }
-    
-    private void initializeParsers() {
-        parsers.put("snap", (GameAbilityParser) new SnapAbilityParser());
-        parsers.put("starwars", (GameAbilityParser) new StarWarsAbilityParser());
-        parsers.put("pokemon", (GameAbilityParser) new PokemonAbilityParser());
-        parsers.put("yugioh", (GameAbilityParser) new YugiohAbilityParser());
-        parsers.put("magic", (GameAbilityParser) new MagicAbilityParser());
-        parsers.put("lorcana", (GameAbilityParser) new LorcanaAbilityParser());
-        parsers.put("fleshandblood", (GameAbilityParser) new FleshAndBloodAbilityParser());
+        this.pending = new HashSet<>(GameParserCache.builtInGames());
     }
     
     /**
@@ -46,7 +38,13 @@ public class GameParserFactory {
             throw new IllegalArgumentException("Game name cannot be null");
         }
         
-        GameAbilityParser parser = parsers.get(game.toLowerCase());
+        String key = game.toLowerCase();
+        GameAbilityParser parser = parsers.get(key);
+        if (parser == null && pending.contains(key)) {
+            parser = GameParserCache.parser(key);
+            parsers.put(key, parser);
+            pending.remove(key);
+        }
         if (parser == null) {
             throw new IllegalArgumentException("No parser available for game: " + game);
         }
@@ -70,6 +68,7 @@ public class GameParserFactory {
         }
         
         parsers.put(game.toLowerCase(), parser);
+        pending.remove(game.toLowerCase());
     }
     
     /**
@@ -79,7 +78,7 @@ public class GameParserFactory {
      * @return true if a parser is available, false otherwise
      */
     public boolean isGameSupported(String game) {
-        return game != null && parsers.containsKey(game.toLowerCase());
+        return game != null && (parsers.containsKey(game.toLowerCase()) || pending.contains(game.toLowerCase()));
     }
     
     /**
@@ -88,7 +87,7 @@ public class GameParserFactory {
      * @return An array of game names
      */
     public String[] getAvailableGames() {
-        return parsers.keySet().toArray(new String[0]);
+        return getSupportedGames().toArray(new String[0]);
     }
 
     /**
@@ -98,7 +97,11 @@ public class GameParserFactory {
      * @return true if a parser was removed, false if no parser was registered for the game
      */
     public boolean removeParser(String game) {
-        return game != null && parsers.remove(game.toLowerCase()) != null;
+        if (game == null) {
+            return false;
+        }
+        boolean wasPending = pending.remove(game.toLowerCase());
+        return parsers.remove(game.toLowerCase()) != null || wasPending;
     }
 
     /**
@@ -106,10 +109,13 @@ public class GameParserFactory {
      */
     public void clearParsers() {
         parsers.clear();
+        pending.clear();
     }
 
     public Set<String> getSupportedGames() {
-        return new HashSet<>(parsers.keySet());
+        Set<String> games = new HashSet<>(parsers.keySet());
+        games.addAll(pending);
+        return games;
     }
 
     public static AbilityParser createParser(String gameType) {
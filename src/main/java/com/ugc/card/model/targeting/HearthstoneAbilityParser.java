@@ -8,7 +8,7 @@ public class HearthstoneAbilityParser implements GameAbilityParser {
     private static final Map<String, ComponentCategory> EFFECT_CATEGORIES = new HashMap<>();
     private static final Map<String, ComponentCategory> DIRECTION_CATEGORIES = new HashMap<>();
     private static final Map<String, ComponentCategory> STATE_CATEGORIES = new HashMap<>();
-    private static final Set<ValidationRule> VALIDATION_RULES = new HashSet<>();
+    private static final Set<ValidationRule> VALIDATION_RULES = new ValidationRuleSet();
     private static final Set<AbilityType> ABILITY_TYPES = new HashSet<>();
     private static final Set<TargetingPattern> TARGETING_PATTERNS = new HashSet<>();
     
@@ -134,6 +134,13 @@ public class HearthstoneAbilityParser implements GameAbilityParser {
         ));
     }
     
+    private static final Set<String> TYPES = new HashSet<>(Arrays.asList(
+        "minion", "spell", "weapon", "hero", "secret", "card"
+    ));
+    // Longest keyword phrase the parser looks for
+    private static final int MAX_PHRASE_WORDS = 3;
+    private static final LexiconAutomaton<ComponentCategory> LEXICON = buildLexicon();
+    
     public HearthstoneAbilityParser(TargetingSystem targetingSystem) {
         this.targetingSystem = targetingSystem;
         this.abilityGenerator = new AbilityGenerator(targetingSystem);
@@ -170,76 +177,41 @@ public class HearthstoneAbilityParser implements GameAbilityParser {
             return parseKeywordAbility(text);
         }
         
-        // Split the text into words
-        String[] words = text.split("\\s+");
-        
-        for (int i = 0; i < words.length; i++) {
-            String word = words[i];
-            String phrase = getPhrase(words, i, 3);  // Look ahead up to 3 words
-            
-            // Check for multi-word keywords
-            ComponentCategory category = KEYWORD_CATEGORIES.get(phrase);
-            if (category != null) {
-                chain.addComponent(new TargetingComponent(category, phrase));
-                i += phrase.split("\\s+").length - 1;
-                continue;
-            }
-            
-            // Check for single word categories
-            category = KEYWORD_CATEGORIES.get(word);
-            if (category != null) {
-                chain.addComponent(new TargetingComponent(category, word));
-                continue;
-            }
-            
-            // Check for effects
-            category = EFFECT_CATEGORIES.get(word);
-            if (category != null) {
-                chain.addComponent(new TargetingComponent(category, word));
-                continue;
-            }
-            
-            // Check for directions
-            category = DIRECTION_CATEGORIES.get(word);
-            if (category != null) {
-                chain.addComponent(new TargetingComponent(category, word));
-                continue;
-            }
-            
-            // Check for states
-            category = STATE_CATEGORIES.get(word);
-            if (category != null) {
-                chain.addComponent(new TargetingComponent(category, word));
-                continue;
-            }
-            
-            // Check for numbers (values)
-            if (word.matches("\\d+")) {
-                chain.addComponent(new TargetingComponent(ComponentCategory.VALUE, word));
-                continue;
-            }
-            
-            // Check for types
-            if (isType(word)) {
-                chain.addComponent(new TargetingComponent(ComponentCategory.TYPE, word));
+        // Keywords, effects, directions, states and types are tagged in one pass
+        for (LexiconAutomaton.Tag<ComponentCategory> tag : LEXICON.tag(text)) {
+            if (tag.isMatched()) {
+                chain.addComponent(new TargetingComponent(tag.getValue(), tag.getText()));
+            } else if (AbilityTokenizer.isNumber(tag.getText())) {
+                // Check for numbers (values)
+                chain.addComponent(new TargetingComponent(ComponentCategory.VALUE, tag.getText()));
             }
         }
         
         return chain;
     }
     
-    private String getPhrase(String[] words, int start, int maxWords) {
-        StringBuilder phrase = new StringBuilder();
-        for (int i = 0; i < maxWords && start + i < words.length; i++) {
-            if (i > 0) phrase.append(" ");
-            phrase.append(words[start + i]);
-            
-            // Check if this phrase exists in our mappings
-            if (KEYWORD_CATEGORIES.containsKey(phrase.toString())) {
-                return phrase.toString();
+    // Keyword phrases rank first, shortest first, so at each word the shortest keyword wins,
+    // then single-word effects, directions, states and types, in the order they used to be checked
+    private static LexiconAutomaton<ComponentCategory> buildLexicon() {
+        LexiconAutomaton.Builder<ComponentCategory> builder = LexiconAutomaton.builder();
+        List<String> keywords = new ArrayList<>(KEYWORD_CATEGORIES.keySet());
+        keywords.sort(Comparator.comparingInt(AbilityTokenizer::wordCount));
+        for (String keyword : keywords) {
+            if (AbilityTokenizer.wordCount(keyword) <= MAX_PHRASE_WORDS) {
+                builder.add(keyword, KEYWORD_CATEGORIES.get(keyword));
             }
         }
-        return "";
+        for (Map<String, ComponentCategory> words : Arrays.asList(EFFECT_CATEGORIES, DIRECTION_CATEGORIES, STATE_CATEGORIES)) {
+            for (Map.Entry<String, ComponentCategory> entry : words.entrySet()) {
+                if (LexiconAutomaton.isWord(entry.getKey())) {
+                    builder.add(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        for (String type : TYPES) {
+            builder.add(type, ComponentCategory.TYPE);
+        }
+        return builder.build();
     }
     
     private boolean isKeywordAbility(String text) {
@@ -266,13 +238,6 @@ public class HearthstoneAbilityParser implements GameAbilityParser {
         return chain;
     }
     
-    private boolean isType(String word) {
-        Set<String> validTypes = new HashSet<>(Arrays.asList(
-            "minion", "spell", "weapon", "hero", "secret", "card"
-        ));
-        return validTypes.contains(word);
-    }
-    
     @Override
     public boolean isValidChain(TargetingChain chain) {
         // Implement Hearthstone-specific validation rules
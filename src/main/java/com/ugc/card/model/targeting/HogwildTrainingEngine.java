@@ -0,0 +1,156 @@
+package com.ugc.card.model.targeting;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous, lock-free SGD in the style of Hogwild!. Worker threads pull chains from a shared
+ * work queue and apply their sparse row updates directly to the shared weight array without any
+ * synchronization. Chains activate only a few rows each, so concurrent updates rarely touch the same
+ * row, and the occasional lost update does not hurt convergence.
+ *
+ * <p>If a snapshot interval is set, the worker that completes every {@code snapshotInterval}-th chain
+ * asks for a snapshot and carries on. A single evaluator thread copies the current weights and hands
+ * the copy to the snapshot listener, so a slow listener never holds up the workers; requests that
+ * arrive while it is busy are merged into one. The listener only ever runs on that thread, one
+ * snapshot at a time, and every snapshot has been handled by the time {@link #trainEpoch} returns.
+ *
+ * <p>An engine is meant to be built once per training run and reused for every epoch; it owns its
+ * threads, so it must be closed when the run ends.
+ */
+class HogwildTrainingEngine implements AutoCloseable {
+    // Tells the evaluator that the epoch's workers have finished
+    private static final int END_OF_EPOCH = -1;
+
+    private final TargetingTensor tensor;
+    private final ComponentVocabulary vocabulary;
+    private final int threads;
+    private final int snapshotInterval;
+    private final int size;
+    private final ExecutorService workers;
+    private final ExecutorService evaluator;
+
+    HogwildTrainingEngine(TargetingTensor tensor, ComponentVocabulary vocabulary, int threads, int snapshotInterval) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.tensor = tensor;
+        this.vocabulary = vocabulary;
+        this.threads = threads;
+        this.snapshotInterval = snapshotInterval;
+        this.size = tensor.getShape()[0];
+        this.workers = Executors.newFixedThreadPool(threads);
+        this.evaluator = Executors.newSingleThreadExecutor();
+    }
+
+    /**
+     * @return whether this engine trains {@code tensor} with the given settings, and so can be reused
+     */
+    boolean isFor(TargetingTensor tensor, ComponentVocabulary vocabulary, int threads, int snapshotInterval) {
+        return this.tensor == tensor && this.vocabulary == vocabulary
+            && this.threads == threads && this.snapshotInterval == snapshotInterval;
+    }
+
+    /**
+     * Runs one asynchronous pass over the chains and returns the mean loss, where each chain's loss
+     * is measured against the weights its worker observed. Snapshots, if any, go to {@code snapshotListener}.
+     */
+    double trainEpoch(List<TargetingChain> chains, float learningRate, Consumer<TargetingTensor> snapshotListener) {
+        if (chains.isEmpty()) {
+            return 0.0;
+        }
+        int[][] queue = new int[chains.size()][];
+        for (int i = 0; i < queue.length; i++) {
+            queue[i] = vocabulary.indicesOf(chains.get(i));
+        }
+        AtomicInteger next = new AtomicInteger();
+        DoubleAdder totalLoss = new DoubleAdder();
+        boolean snapshots = snapshotInterval > 0 && snapshotListener != null;
+        BlockingQueue<Integer> requests = new LinkedBlockingQueue<>();
+
+        Future<?> evaluation = snapshots ? evaluator.submit(() -> evaluate(requests, snapshotListener)) : null;
+        List<Future<?>> running = new ArrayList<>(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                running.add(workers.submit(() -> runWorker(queue, next, totalLoss, learningRate,
+                    snapshots ? requests : null)));
+            }
+            for (Future<?> worker : running) {
+                worker.get();
+            }
+            if (evaluation != null) {
+                requests.add(END_OF_EPOCH);
+                evaluation.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Hogwild training interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Hogwild worker failed", e.getCause());
+        } finally {
+            for (Future<?> worker : running) {
+                worker.cancel(true);
+            }
+            if (evaluation != null) {
+                evaluation.cancel(true);
+            }
+        }
+        return totalLoss.sum() / chains.size();
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+        evaluator.shutdownNow();
+    }
+
+    // Runs on the evaluator thread until the end of the epoch, merging requests that queue up meanwhile
+    private void evaluate(BlockingQueue<Integer> requests, Consumer<TargetingTensor> snapshotListener) {
+        float[] weights = tensor.getData();
+        List<Integer> pending = new ArrayList<>();
+        boolean done = false;
+        while (!done) {
+            try {
+                pending.add(requests.take());
+            } catch (InterruptedException e) {
+                // The epoch was abandoned
+                Thread.currentThread().interrupt();
+                return;
+            }
+            requests.drainTo(pending);
+            done = pending.contains(END_OF_EPOCH);
+            if (pending.size() > 1 || !done) {
+                snapshotListener.accept(new TargetingTensor(Arrays.copyOf(weights, weights.length), tensor.getShape()));
+            }
+            pending.clear();
+        }
+    }
+
+    private void runWorker(int[][] queue, AtomicInteger next, DoubleAdder totalLoss, float learningRate,
+                           BlockingQueue<Integer> snapshotRequests) {
+        float[] weights = tensor.getData();
+        float[] output = new float[size];
+        float[] delta = new float[size];
+        double loss = 0.0;
+
+        int index;
+        while ((index = next.getAndIncrement()) < queue.length) {
+            int[] activeRows = queue[index];
+            TargetingKernels.sparseGemvTransposed(weights, size, activeRows, output);
+            loss += TargetingKernels.sigmoidSparseLoss(output, size, activeRows, delta);
+
+            // Unsynchronized writes to the shared weights
+            for (int row : activeRows) {
+                TargetingKernels.axpyRow(weights, size, row, -learningRate, delta);
+            }
+
+            if (snapshotRequests != null && (index + 1) % snapshotInterval == 0) {
+                snapshotRequests.add(index);
+            }
+        }
+        totalLoss.add(loss);
+    }
+}
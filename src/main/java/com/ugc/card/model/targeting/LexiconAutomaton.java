@@ -0,0 +1,321 @@
+package com.ugc.card.model.targeting;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick automaton over a fixed set of phrases, each carrying a value such as the
+ * {@link ComponentCategory} it tags.
+ *
+ * Phrases are words separated by single spaces. {@link #tag} splits a text on whitespace and, in one
+ * pass over its characters, finds every phrase that starts and ends on word boundaries; whitespace
+ * runs in the text match the single space in a phrase. {@link #findSubstrings} reports phrases
+ * occurring anywhere in a text, like {@link String#contains}. Each phrase's rank is the order it was
+ * added in, and when several phrases start at the same word the lowest rank wins.
+ */
+public final class LexiconAutomaton<V> {
+    private static final char[] NO_KEYS = new char[0];
+    private static final int[] NO_TARGETS = new int[0];
+
+    private final String[] phrases;
+    private final List<V> values;
+    // Per node: sorted transition characters and their target nodes
+    private final char[][] keys;
+    private final int[][] targets;
+    private final int[] fail;
+    // Rank of the phrase ending at the node, or -1
+    private final int[] output;
+    // Nearest node on the failure chain with an output, or -1
+    private final int[] dictionary;
+
+    /**
+     * A run of words from {@link #tag}: a phrase with its value, or a single word no phrase covers,
+     * whose value is null.
+     */
+    public static final class Tag<V> {
+        private final String text;
+        private final V value;
+        private final int start;
+        private final int end;
+
+        Tag(String text, V value, int start, int end) {
+            this.text = text;
+            this.value = value;
+            this.start = start;
+            this.end = end;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public boolean isMatched() {
+            return value != null;
+        }
+
+        /**
+         * @return index of the first word covered
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * @return index after the last word covered
+         */
+        public int getEnd() {
+            return end;
+        }
+
+        @Override
+        public String toString() {
+            return "Tag{" +
+                   "text='" + text + '\'' +
+                   ", value=" + value +
+                   '}';
+        }
+    }
+
+    public static final class Builder<V> {
+        private final Map<String, V> entries = new LinkedHashMap<>();
+
+        /**
+         * Adds a phrase unless it is already present; the first value added for a phrase is kept.
+         */
+        public Builder<V> add(String phrase, V value) {
+            if (value == null) {
+                throw new IllegalArgumentException("Value cannot be null");
+            }
+            String normalized = normalize(phrase);
+            if (normalized.isEmpty()) {
+                throw new IllegalArgumentException("Phrase cannot be empty");
+            }
+            entries.putIfAbsent(normalized, value);
+            return this;
+        }
+
+        public LexiconAutomaton<V> build() {
+            return new LexiconAutomaton<>(entries);
+        }
+    }
+
+    public static <V> Builder<V> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Lexicon of the single-word values of a component table. Parsers split abilities on whitespace,
+     * so multi-word values could never match a word and are left out. A word listed under several
+     * categories keeps the first in the table's iteration order.
+     */
+    static LexiconAutomaton<ComponentCategory> ofWords(Map<ComponentCategory, Set<String>> components) {
+        Builder<ComponentCategory> builder = builder();
+        for (Map.Entry<ComponentCategory, Set<String>> entry : components.entrySet()) {
+            for (String value : entry.getValue()) {
+                if (isWord(value)) {
+                    builder.add(value, entry.getKey());
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private LexiconAutomaton(Map<String, V> entries) {
+        phrases = entries.keySet().toArray(new String[0]);
+        values = new ArrayList<>(entries.values());
+
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        ends.add(-1);
+        for (int rank = 0; rank < phrases.length; rank++) {
+            int node = 0;
+            for (int i = 0; i < phrases[rank].length(); i++) {
+                Integer next = trie.get(node).get(phrases[rank].charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.get(node).put(phrases[rank].charAt(i), next);
+                    trie.add(new TreeMap<>());
+                    ends.add(-1);
+                }
+                node = next;
+            }
+            ends.set(node, rank);
+        }
+
+        int count = trie.size();
+        keys = new char[count][];
+        targets = new int[count][];
+        output = new int[count];
+        for (int node = 0; node < count; node++) {
+            TreeMap<Character, Integer> children = trie.get(node);
+            keys[node] = children.isEmpty() ? NO_KEYS : new char[children.size()];
+            targets[node] = children.isEmpty() ? NO_TARGETS : new int[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> child : children.entrySet()) {
+                keys[node][i] = child.getKey();
+                targets[node][i++] = child.getValue();
+            }
+            output[node] = ends.get(node);
+        }
+
+        // Breadth-first, so a node's failure target is final before its children need it
+        fail = new int[count];
+        dictionary = new int[count];
+        dictionary[0] = -1;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : targets[0]) {
+            dictionary[child] = -1;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int i = 0; i < keys[node].length; i++) {
+                int child = targets[node][i];
+                int suffix = step(fail[node], keys[node][i]);
+                fail[child] = suffix;
+                dictionary[child] = output[suffix] >= 0 ? suffix : dictionary[suffix];
+                queue.add(child);
+            }
+        }
+    }
+
+    public int size() {
+        return phrases.length;
+    }
+
+    public String phrase(int rank) {
+        return phrases[rank];
+    }
+
+    public V value(int rank) {
+        return values.get(rank);
+    }
+
+    /**
+     * @return the ranks of the phrases occurring anywhere in the text
+     */
+    public BitSet findSubstrings(CharSequence text) {
+        BitSet found = new BitSet(phrases.length);
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, text.charAt(i));
+            for (int node = output[state] >= 0 ? state : dictionary[state]; node >= 0; node = dictionary[node]) {
+                found.set(output[node]);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Splits the text into words and tags it left to right: at each word the lowest-ranked phrase
+     * starting there is taken and tagging resumes after it; a word no phrase starts at becomes an
+     * unmatched tag of its own.
+     */
+    public List<Tag<V>> tag(String text) {
+        int[] wordStarts = new int[8];
+        int[] wordEnds = new int[8];
+        // Position of each word in the text with whitespace runs collapsed to one space
+        int[] streamStarts = new int[8];
+        // Per word: best phrase starting there and the word after it ends
+        int[] bestRank = new int[8];
+        int[] bestEnd = new int[8];
+        int words = 0;
+        int streamLength = 0;
+        int state = 0;
+
+        AbilityTokenizer tokens = new AbilityTokenizer(text);
+        while (tokens.next()) {
+            if (words == wordStarts.length) {
+                int capacity = words * 2;
+                wordStarts = Arrays.copyOf(wordStarts, capacity);
+                wordEnds = Arrays.copyOf(wordEnds, capacity);
+                streamStarts = Arrays.copyOf(streamStarts, capacity);
+                bestRank = Arrays.copyOf(bestRank, capacity);
+                bestEnd = Arrays.copyOf(bestEnd, capacity);
+            }
+            if (words > 0) {
+                state = step(state, ' ');
+                streamLength++;
+            }
+            wordStarts[words] = tokens.start();
+            wordEnds[words] = tokens.end();
+            streamStarts[words] = streamLength;
+            bestRank[words] = -1;
+            for (int i = tokens.start(); i < tokens.end(); i++) {
+                state = step(state, text.charAt(i));
+            }
+            streamLength += tokens.length();
+            words++;
+
+            // Phrases ending with this word count only if they also start at a word
+            for (int node = output[state] >= 0 ? state : dictionary[state]; node >= 0; node = dictionary[node]) {
+                int rank = output[node];
+                int start = Arrays.binarySearch(streamStarts, 0, words, streamLength - phrases[rank].length());
+                if (start >= 0 && (bestRank[start] < 0 || rank < bestRank[start])) {
+                    bestRank[start] = rank;
+                    bestEnd[start] = words;
+                }
+            }
+        }
+
+        List<Tag<V>> tags = new ArrayList<>(words);
+        for (int word = 0; word < words; ) {
+            int rank = bestRank[word];
+            if (rank >= 0) {
+                tags.add(new Tag<>(phrases[rank], values.get(rank), word, bestEnd[word]));
+                word = bestEnd[word];
+            } else {
+                tags.add(new Tag<>(text.substring(wordStarts[word], wordEnds[word]), null, word, word + 1));
+                word++;
+            }
+        }
+        return tags;
+    }
+
+    private int step(int state, char c) {
+        while (true) {
+            int i = Arrays.binarySearch(keys[state], c);
+            if (i >= 0) {
+                return targets[state][i];
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = fail[state];
+        }
+    }
+
+    static boolean isWord(String text) {
+        if (text.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (AbilityTokenizer.isSpace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String normalize(String phrase) {
+        StringBuilder normalized = new StringBuilder(phrase.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < phrase.length(); i++) {
+            char c = phrase.charAt(i);
+            if (AbilityTokenizer.isSpace(c)) {
+                pendingSpace = normalized.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    normalized.append(' ');
+                    pendingSpace = false;
+                }
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+}
@@ -5,12 +5,13 @@ import java.util.stream.Collectors;
 
 public class LorcanaAbilityParser implements GameAbilityParser {
     private static final Map<ComponentCategory, Set<String>> VALID_COMPONENTS = new HashMap<>();
-    private static final Set<ValidationRule> VALIDATION_RULES = new HashSet<>();
+    private static final Set<ValidationRule> VALIDATION_RULES = new ValidationRuleSet();
     private static final Set<AbilityType> ABILITY_TYPES = new HashSet<>();
     private static final Set<TargetingPattern> TARGETING_PATTERNS = new HashSet<>();
 
     private final Map<ComponentCategory, Set<String>> validValues;
     private final Set<ComponentCategory> validCategories;
+    private final LexiconAutomaton<ComponentCategory> lexicon;
     
     public LorcanaAbilityParser() {
         this.validValues = new HashMap<>();
@@ -163,6 +164,8 @@ public class LorcanaAbilityParser implements GameAbilityParser {
             actionEffectPatternOptional,
             actionEffectPatternValidComponents
         ));
+        
+        lexicon = LexiconAutomaton.ofWords(VALID_COMPONENTS);
     }
 
     @Override
@@ -193,14 +196,9 @@ public class LorcanaAbilityParser implements GameAbilityParser {
     @Override
     public TargetingChain parseAbility(String abilityText) {
         TargetingChain chain = new TargetingChain();
-        String[] parts = abilityText.split("\\s+");
-        
-        for (String part : parts) {
-            for (Map.Entry<ComponentCategory, Set<String>> entry : VALID_COMPONENTS.entrySet()) {
-                if (entry.getValue().contains(part)) {
-                    chain.addComponent(new TargetingComponent(entry.getKey(), part));
-                    break;
-                }
+        for (LexiconAutomaton.Tag<ComponentCategory> tag : lexicon.tag(abilityText)) {
+            if (tag.isMatched()) {
+                chain.addComponent(new TargetingComponent(tag.getValue(), tag.getText()));
             }
         }
         
@@ -5,7 +5,7 @@ import java.util.function.Predicate;
 
 public class MagicAbilityParser implements GameAbilityParser {
     private static final Map<ComponentCategory, Set<String>> VALID_COMPONENTS = new HashMap<>();
-    private static final Set<ValidationRule> VALIDATION_RULES = new HashSet<>();
+    private static final Set<ValidationRule> VALIDATION_RULES = new ValidationRuleSet();
     private static final Set<AbilityType> ABILITY_TYPES = new HashSet<>();
     private static final Set<TargetingPattern> TARGETING_PATTERNS = new HashSet<>();
     
@@ -168,17 +168,15 @@ public class MagicAbilityParser implements GameAbilityParser {
         ));
     }
     
+    // Declared after the static block so the component table is filled in
+    private static final LexiconAutomaton<ComponentCategory> LEXICON = LexiconAutomaton.ofWords(VALID_COMPONENTS);
+    
     @Override
     public TargetingChain parseAbility(String abilityText) {
         TargetingChain chain = new TargetingChain();
-        String[] parts = abilityText.split("\\s+");
-        
-        for (String part : parts) {
-            for (Map.Entry<ComponentCategory, Set<String>> entry : VALID_COMPONENTS.entrySet()) {
-                if (entry.getValue().contains(part)) {
-                    chain.addComponent(new TargetingComponent(entry.getKey(), part));
-                    break;
-                }
+        for (LexiconAutomaton.Tag<ComponentCategory> tag : LEXICON.tag(abilityText)) {
+            if (tag.isMatched()) {
+                chain.addComponent(new TargetingComponent(tag.getValue(), tag.getText()));
             }
         }
         
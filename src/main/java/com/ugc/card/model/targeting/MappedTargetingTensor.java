@@ -0,0 +1,185 @@
+package com.ugc.card.model.targeting;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read-only view of a {@link TargetingModelFile} for inference.
+ *
+ * The weights stay in the file's page-cache pages instead of being copied into the heap, so models
+ * larger than the heap can be served and several processes scoring against the same file share one
+ * copy in memory. The file is mapped in row-aligned chunks, which lifts the 2 GB limit of a single
+ * {@link java.nio.MappedByteBuffer}. Reads never move buffer positions, so one instance can be shared
+ * by any number of threads.
+ */
+public final class MappedTargetingTensor {
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    private final TargetingModelFile.Header header;
+    private final int[] shape;
+    private final int[] strides;
+    private final int rows;
+    private final int cols;
+    private final int rowsPerChunk;
+    private final FloatBuffer[] chunks;
+
+    private MappedTargetingTensor(TargetingModelFile.Header header, FloatBuffer[] chunks, int rowsPerChunk) {
+        this.header = header;
+        this.shape = header.getShape();
+        this.strides = new int[shape.length];
+        int stride = 1;
+        for (int i = shape.length - 1; i >= 0; i--) {
+            strides[i] = stride;
+            stride *= shape[i];
+        }
+        this.cols = shape[shape.length - 1];
+        this.rows = cols == 0 ? 0 : (int) (header.getElementCount() / cols);
+        this.rowsPerChunk = rowsPerChunk;
+        this.chunks = chunks;
+    }
+
+    public static MappedTargetingTensor open(Path path) throws IOException {
+        return open(path, MAX_CHUNK_BYTES);
+    }
+
+    /**
+     * Opens the model and checks that it was saved against the given vocabulary.
+     */
+    public static MappedTargetingTensor open(Path path, ComponentVocabulary vocabulary) throws IOException {
+        MappedTargetingTensor tensor = open(path);
+        long fingerprint = tensor.header.getVocabularyFingerprint();
+        if (fingerprint != TargetingModelFile.UNKNOWN_FINGERPRINT && fingerprint != vocabulary.fingerprint()) {
+            throw new IOException("Model was trained against a different component vocabulary");
+        }
+        return tensor;
+    }
+
+    static MappedTargetingTensor open(Path path, long maxChunkBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            TargetingModelFile.Header header = TargetingModelFile.readHeader(channel);
+            int[] shape = header.getShape();
+            long cols = shape[shape.length - 1];
+            long elements = header.getElementCount();
+            long rows = cols == 0 ? 0 : elements / cols;
+            if (rows > Integer.MAX_VALUE) {
+                throw new IOException("Model shape too large: " + Arrays.toString(shape));
+            }
+            if (header.getPayloadOffset() + elements * Float.BYTES > channel.size()) {
+                throw new IOException("Truncated model file: " + path);
+            }
+
+            long rowBytes = Math.max(1, cols * Float.BYTES);
+            if (rowBytes > maxChunkBytes) {
+                throw new IOException("Model row too large to map: " + rowBytes + " bytes");
+            }
+            int rowsPerChunk = (int) Math.min(Integer.MAX_VALUE, maxChunkBytes / rowBytes);
+            int chunkCount = rows == 0 ? 0 : (int) ((rows + rowsPerChunk - 1) / rowsPerChunk);
+            FloatBuffer[] chunks = new FloatBuffer[chunkCount];
+            for (int c = 0; c < chunkCount; c++) {
+                long firstRow = (long) c * rowsPerChunk;
+                long chunkRows = Math.min(rowsPerChunk, rows - firstRow);
+                long position = header.getPayloadOffset() + firstRow * cols * Float.BYTES;
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, position, chunkRows * cols * Float.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asFloatBuffer();
+            }
+            // The mappings stay valid after the channel is closed
+            return new MappedTargetingTensor(header, chunks, rowsPerChunk);
+        }
+    }
+
+    public TargetingModelFile.Header getHeader() {
+        return header;
+    }
+
+    public int[] getShape() {
+        return shape.clone();
+    }
+
+    public int getVectorSize() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public float getValue(int[] indices) {
+        if (indices.length != shape.length) {
+            throw new IllegalArgumentException("Indices length must match shape length");
+        }
+        long index = 0;
+        for (int i = 0; i < shape.length; i++) {
+            if (indices[i] < 0 || indices[i] >= shape[i]) {
+                throw new IllegalArgumentException("Index out of bounds");
+            }
+            index += (long) indices[i] * strides[i];
+        }
+        return get((int) (index / cols), (int) (index % cols));
+    }
+
+    public float get(int row, int col) {
+        return chunks[row / rowsPerChunk].get((row % rowsPerChunk) * cols + col);
+    }
+
+    /**
+     * Copies one row of weights into {@code dst}, which must hold at least {@link #getVectorSize()} values.
+     */
+    public void copyRow(int row, float[] dst) {
+        chunks[row / rowsPerChunk].get((row % rowsPerChunk) * cols, dst, 0, cols);
+    }
+
+    /**
+     * Same contract as the trainer's dense forward pass: {@code output = sigmoid(W^T input)}.
+     */
+    public void forward(float[] input, float[] output) {
+        checkSizes(input.length, output.length);
+        Arrays.fill(output, 0, cols, 0.0f);
+        float[] row = new float[cols];
+        for (int i = 0; i < rows; i++) {
+            if (input[i] != 0.0f) {
+                copyRow(i, row);
+                TargetingKernels.axpy(input[i], row, output, cols);
+            }
+        }
+        applySigmoid(output);
+    }
+
+    /**
+     * Forward pass for a one-hot input given by its active row indices. Only those rows are touched,
+     * so scoring a chain pages in a handful of rows rather than the whole matrix.
+     */
+    public void forwardSparse(int[] activeRows, float[] output) {
+        checkSizes(rows, output.length);
+        Arrays.fill(output, 0, cols, 0.0f);
+        float[] row = new float[cols];
+        for (int i : activeRows) {
+            copyRow(i, row);
+            TargetingKernels.axpy(1.0f, row, output, cols);
+        }
+        applySigmoid(output);
+    }
+
+    public float[] forward(TargetingChain chain, ComponentVocabulary vocabulary) {
+        float[] output = new float[cols];
+        forwardSparse(vocabulary.indicesOf(chain), output);
+        return output;
+    }
+
+    private void checkSizes(int inputLength, int outputLength) {
+        if (inputLength != rows || outputLength != cols) {
+            throw new IllegalArgumentException("Input and output lengths must match the model shape");
+        }
+    }
+
+    private void applySigmoid(float[] output) {
+        for (int i = 0; i < cols; i++) {
+            output[i] = (float) (1.0 / (1.0 + Math.exp(-output[i])));
+        }
+    }
+}
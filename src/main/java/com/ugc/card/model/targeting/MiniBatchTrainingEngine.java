@@ -0,0 +1,212 @@
+package com.ugc.card.model.targeting;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Synchronous mini-batch SGD for the targeting model. Each batch is split into shards that run on a
+ * {@link ForkJoinPool}; every shard accumulates its gradients into its own buffer against the weights
+ * as they were at the start of the batch, and the buffers are then reduced into the weight tensor
+ * row by row in parallel. Only the rows of active components ever receive a gradient.
+ *
+ * <p>An engine is meant to be built once per training run and reused for every epoch, so its buffers
+ * are allocated once; the work runs on the shared {@link ParallelPools} pool.
+ */
+class MiniBatchTrainingEngine {
+    private final TargetingTensor tensor;
+    private final ComponentVocabulary vocabulary;
+    private final int batchSize;
+    private final int parallelism;
+    private final int size;
+    private final GradientBuffer[] buffers;
+    private final ForkJoinPool pool;
+
+    MiniBatchTrainingEngine(TargetingTensor tensor, ComponentVocabulary vocabulary, int batchSize, int parallelism) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.tensor = tensor;
+        this.vocabulary = vocabulary;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.size = tensor.getShape()[0];
+        this.buffers = new GradientBuffer[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            buffers[i] = new GradientBuffer(size);
+        }
+        this.pool = ParallelPools.get(parallelism);
+    }
+
+    /**
+     * @return whether this engine trains {@code tensor} with the given settings, and so can be reused
+     */
+    boolean isFor(TargetingTensor tensor, ComponentVocabulary vocabulary, int batchSize, int parallelism) {
+        return this.tensor == tensor && this.vocabulary == vocabulary
+            && this.batchSize == batchSize && this.parallelism == parallelism;
+    }
+
+    /**
+     * Runs one pass over the chains in mini-batches and returns the mean loss, where each
+     * chain's loss is measured before the update of the batch it belongs to.
+     */
+    double trainEpoch(List<TargetingChain> chains, float learningRate) {
+        if (chains.isEmpty()) {
+            return 0.0;
+        }
+        int[][] encoded = new int[chains.size()][];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = vocabulary.indicesOf(chains.get(i));
+        }
+
+        double totalLoss = 0.0;
+        for (int start = 0; start < encoded.length; start += batchSize) {
+            int end = Math.min(encoded.length, start + batchSize);
+            totalLoss += trainBatch(encoded, start, end, learningRate);
+        }
+        return totalLoss / chains.size();
+    }
+
+    private double trainBatch(int[][] encoded, int start, int end, float learningRate) {
+        int count = end - start;
+        int shards = Math.min(parallelism, count);
+        List<RecursiveAction> tasks = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            int shardStart = start + (int) ((long) count * shard / shards);
+            int shardEnd = start + (int) ((long) count * (shard + 1) / shards);
+            GradientBuffer buffer = buffers[shard];
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    for (int i = shardStart; i < shardEnd; i++) {
+                        accumulate(encoded[i], buffer);
+                    }
+                }
+            });
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        double loss = 0.0;
+        for (int shard = 0; shard < shards; shard++) {
+            loss += buffers[shard].loss;
+        }
+        reduce(shards, -learningRate / count);
+        return loss;
+    }
+
+    private void accumulate(int[] activeRows, GradientBuffer buffer) {
+        float[] output = buffer.output;
+        float[] delta = buffer.delta;
+        TargetingKernels.sparseGemvTransposed(tensor.getData(), size, activeRows, output);
+        buffer.loss += TargetingKernels.sigmoidSparseLoss(output, size, activeRows, delta);
+
+        for (int row : activeRows) {
+            TargetingKernels.axpy(1.0f, delta, buffer.row(row), size);
+        }
+    }
+
+    // Rows are reduced independently, so each worker of the reduction owns a disjoint set of rows
+    private void reduce(int shards, float scale) {
+        BitSet touched = new BitSet(size);
+        for (int shard = 0; shard < shards; shard++) {
+            GradientBuffer buffer = buffers[shard];
+            for (int i = 0; i < buffer.touchedCount; i++) {
+                touched.set(buffer.touchedRows[i]);
+            }
+        }
+        int[] rows = touched.stream().toArray();
+        float[] weights = tensor.getData();
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(reductionTasks(rows, shards, weights, scale));
+            }
+        });
+        for (int shard = 0; shard < shards; shard++) {
+            buffers[shard].clear();
+        }
+    }
+
+    private List<RecursiveAction> reductionTasks(int[] rows, int shards, float[] weights, float scale) {
+        List<RecursiveAction> tasks = new ArrayList<>(parallelism);
+        int count = rows.length;
+        for (int part = 0; part < parallelism; part++) {
+            int partStart = (int) ((long) count * part / parallelism);
+            int partEnd = (int) ((long) count * (part + 1) / parallelism);
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    for (int i = partStart; i < partEnd; i++) {
+                        int row = rows[i];
+                        for (int shard = 0; shard < shards; shard++) {
+                            float[] gradient = buffers[shard].rowIfTouched(row);
+                            if (gradient != null) {
+                                TargetingKernels.axpyRow(weights, size, row, scale, gradient);
+                            }
+                        }
+                    }
+                }
+            });
+        }
+        return tasks;
+    }
+
+    /**
+     * Worker-local gradient storage, sparse over rows. A row touched in the current batch is given a
+     * slot; slots are handed out in touch order and recycled after every batch, so a buffer holds only
+     * as many rows as its busiest batch touched rather than one per component.
+     */
+    private static final class GradientBuffer {
+        final float[] output;
+        final float[] delta;
+        // Slot of each row touched in the current batch, -1 for every other row
+        final int[] slotOf;
+        final List<float[]> slots = new ArrayList<>();
+        final int[] touchedRows;
+        int touchedCount;
+        double loss;
+
+        GradientBuffer(int size) {
+            this.output = new float[size];
+            this.delta = new float[size];
+            this.slotOf = new int[size];
+            Arrays.fill(slotOf, -1);
+            this.touchedRows = new int[size];
+        }
+
+        float[] row(int row) {
+            int slot = slotOf[row];
+            if (slot < 0) {
+                slot = touchedCount;
+                if (slot == slots.size()) {
+                    slots.add(new float[output.length]);
+                }
+                slotOf[row] = slot;
+                touchedRows[touchedCount++] = row;
+            }
+            return slots.get(slot);
+        }
+
+        float[] rowIfTouched(int row) {
+            int slot = slotOf[row];
+            return slot >= 0 ? slots.get(slot) : null;
+        }
+
+        void clear() {
+            for (int i = 0; i < touchedCount; i++) {
+                Arrays.fill(slots.get(i), 0.0f);
+                slotOf[touchedRows[i]] = -1;
+            }
+            touchedCount = 0;
+            loss = 0.0;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.ugc.card.model.targeting;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Process-wide {@link ForkJoinPool}s for the package's parallel batch work, one per parallelism level.
+ *
+ * Validation, indexing, batch parsing, CSV imports and mini-batch training all fan out over these
+ * pools instead of building and shutting down a pool of their own on every call. A pool is created
+ * the first time its parallelism is asked for and lives as long as the process; its workers are
+ * daemon threads that retire after a while without work, so an idle pool holds no threads.
+ * Parallelism beyond the number of processors is capped at it, which bounds the number of pools.
+ */
+final class ParallelPools {
+    private static final int MAX_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    private ParallelPools() {
+    }
+
+    /**
+     * @return the shared pool with the given parallelism, or with one worker per processor if that is less
+     */
+    static ForkJoinPool get(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        return POOLS.computeIfAbsent(Math.min(parallelism, MAX_PARALLELISM), ForkJoinPool::new);
+    }
+
+    /**
+     * Runs {@code task} on the shared pool and waits for it. A runtime exception or error thrown by
+     * the task is rethrown as it is, the same as when the work runs on the calling thread.
+     * {@code activity} names the work in the exception thrown if the wait is interrupted, e.g.
+     * "validating chains".
+     */
+    static void run(int parallelism, Runnable task, String activity) {
+        try {
+            get(parallelism).submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while " + activity, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Failed while " + activity, cause);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.ugc.card.model.targeting;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Finds every {@link TargetingPattern} or {@link AbilityType} of a set that a chain satisfies without
+ * testing each one.
+ *
+ * Entries are grouped by the bitmask of their required categories. A discrimination tree splits the
+ * groups on one category bit per node: when the chain lacks that category, the branch of groups that
+ * require it is skipped. Within a group every entry requires the same categories, so the chain has a
+ * component in each of them; entries are further keyed by the values they accept for one of those
+ * categories, and only the entries accepting the chain's value (or accepting any value) are kept.
+ * Surviving candidates are confirmed with the entry's own {@code matches}/{@code isValid}, so results
+ * are exactly those of a linear scan, in the order the entries were given.
+ */
+public final class PatternDispatchIndex<T> {
+    private static final int ALL_CATEGORIES = -1;
+    // Nodes with this many groups or fewer are scanned instead of split further
+    private static final int LEAF_GROUPS = 4;
+
+    private final int size;
+    private final Node<T> root;
+
+    private static final class Entry<T> {
+        final int ordinal;
+        final T item;
+        final int requiredMask;
+        final int allowedMask;
+        // Accepted values per category; chain texts are compared against these as they are
+        final Map<ComponentCategory, Set<String>> values;
+        final Predicate<TargetingChain> verifier;
+
+        Entry(int ordinal, T item, int requiredMask, int allowedMask,
+              Map<ComponentCategory, Set<String>> values, Predicate<TargetingChain> verifier) {
+            this.ordinal = ordinal;
+            this.item = item;
+            this.requiredMask = requiredMask;
+            this.allowedMask = allowedMask;
+            this.values = values;
+            this.verifier = verifier;
+        }
+    }
+
+    // Entries sharing a required-category mask
+    private static final class Group<T> {
+        final int requiredMask;
+        final List<Entry<T>> entries = new ArrayList<>();
+        int allowedMask;
+        ComponentCategory keyCategory;
+        Map<String, List<Entry<T>>> byValue;
+        List<Entry<T>> anyValue;
+
+        Group(int requiredMask) {
+            this.requiredMask = requiredMask;
+        }
+
+        // Keys entries on the required category whose values split them best
+        void build() {
+            for (Entry<T> entry : entries) {
+                allowedMask |= entry.allowedMask;
+            }
+            int best = 0;
+            for (ComponentCategory category : ComponentCategory.values()) {
+                if ((requiredMask & CompactChain.bit(category)) == 0) {
+                    continue;
+                }
+                int constrained = 0;
+                for (Entry<T> entry : entries) {
+                    if (entry.values.get(category) != null) {
+                        constrained++;
+                    }
+                }
+                if (constrained > best) {
+                    best = constrained;
+                    keyCategory = category;
+                }
+            }
+            if (keyCategory == null) {
+                anyValue = entries;
+                return;
+            }
+            byValue = new HashMap<>();
+            anyValue = new ArrayList<>();
+            for (Entry<T> entry : entries) {
+                Set<String> accepted = entry.values.get(keyCategory);
+                if (accepted == null) {
+                    anyValue.add(entry);
+                } else {
+                    for (String value : accepted) {
+                        byValue.computeIfAbsent(value, k -> new ArrayList<>()).add(entry);
+                    }
+                }
+            }
+        }
+
+        void collect(TargetingChain chain, int chainMask, List<Entry<T>> out) {
+            if ((chainMask & requiredMask) != requiredMask || (chainMask & ~allowedMask) != 0) {
+                return;
+            }
+            if (keyCategory != null) {
+                // Every entry here requires the key category, so the chain has a value for it
+                TargetingComponent keyed = chain.getFirstComponentByCategory(keyCategory);
+                candidates(byValue.getOrDefault(keyed.getText(), Collections.emptyList()), chain, chainMask, out);
+            }
+            candidates(anyValue, chain, chainMask, out);
+        }
+
+        private void candidates(List<Entry<T>> entries, TargetingChain chain, int chainMask, List<Entry<T>> out) {
+            for (Entry<T> entry : entries) {
+                if ((chainMask & ~entry.allowedMask) == 0 && entry.verifier.test(chain)) {
+                    out.add(entry);
+                }
+            }
+        }
+    }
+
+    private static final class Node<T> {
+        int bit;
+        Node<T> requiring;
+        Node<T> rest;
+        List<Group<T>> groups;
+    }
+
+    private PatternDispatchIndex(List<Entry<T>> entries) {
+        this.size = entries.size();
+        Map<Integer, Group<T>> groups = new LinkedHashMap<>();
+        for (Entry<T> entry : entries) {
+            groups.computeIfAbsent(entry.requiredMask, Group::new).entries.add(entry);
+        }
+        for (Group<T> group : groups.values()) {
+            group.build();
+        }
+        this.root = build(new ArrayList<>(groups.values()), 0);
+    }
+
+    /**
+     * Indexes patterns by the categories they require and allow and the values they accept.
+     */
+    public static PatternDispatchIndex<TargetingPattern> forPatterns(Collection<TargetingPattern> patterns) {
+        List<Entry<TargetingPattern>> entries = new ArrayList<>();
+        for (TargetingPattern pattern : patterns) {
+            int required = CompiledValidationRules.categoryMask(pattern.getRequiredCategories());
+            int allowed = required | CompiledValidationRules.categoryMask(pattern.getOptionalCategories());
+            entries.add(new Entry<>(entries.size(), pattern, required, allowed,
+                copyValues(pattern.getValidComponents()), pattern::matches));
+        }
+        return new PatternDispatchIndex<>(entries);
+    }
+
+    /**
+     * Indexes ability types by the categories they require and the values they accept.
+     */
+    public static PatternDispatchIndex<AbilityType> forAbilityTypes(Collection<AbilityType> types) {
+        List<Entry<AbilityType>> entries = new ArrayList<>();
+        for (AbilityType type : types) {
+            int required = CompiledValidationRules.categoryMask(type.getRequiredCategories());
+            Map<ComponentCategory, Set<String>> values = type.getValidValues() != null
+                ? copyValues(type.getValidValues())
+                : Collections.emptyMap();
+            entries.add(new Entry<>(entries.size(), type, required, ALL_CATEGORIES, values, type::isValid));
+        }
+        return new PatternDispatchIndex<>(entries);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return every indexed item the chain satisfies, in the order the items were indexed
+     */
+    public List<T> matching(TargetingChain chain) {
+        if (chain == null) {
+            return new ArrayList<>();
+        }
+        int chainMask = CompiledValidationRules.categoryMask(chain);
+        List<Entry<T>> found = new ArrayList<>();
+        collect(root, chain, chainMask, found);
+        found.sort(Comparator.comparingInt(e -> e.ordinal));
+        List<T> result = new ArrayList<>(found.size());
+        for (Entry<T> entry : found) {
+            result.add(entry.item);
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the chain satisfies at least one indexed item
+     */
+    public boolean anyMatch(TargetingChain chain) {
+        return !matching(chain).isEmpty();
+    }
+
+    private static <T> void collect(Node<T> node, TargetingChain chain, int chainMask, List<Entry<T>> out) {
+        while (node.groups == null) {
+            if ((chainMask & node.bit) != 0) {
+                collect(node.requiring, chain, chainMask, out);
+            }
+            node = node.rest;
+        }
+        for (Group<T> group : node.groups) {
+            group.collect(chain, chainMask, out);
+        }
+    }
+
+    // Splits on the category bit that divides the groups most evenly; bits used above are never chosen again
+    private static <T> Node<T> build(List<Group<T>> groups, int usedBits) {
+        Node<T> node = new Node<>();
+        int bestBit = 0;
+        int bestBalance = 0;
+        if (groups.size() > LEAF_GROUPS) {
+            for (ComponentCategory category : ComponentCategory.values()) {
+                int bit = CompactChain.bit(category);
+                if ((usedBits & bit) != 0) {
+                    continue;
+                }
+                int requiring = 0;
+                for (Group<T> group : groups) {
+                    if ((group.requiredMask & bit) != 0) {
+                        requiring++;
+                    }
+                }
+                int balance = Math.min(requiring, groups.size() - requiring);
+                if (balance > bestBalance) {
+                    bestBalance = balance;
+                    bestBit = bit;
+                }
+            }
+        }
+        if (bestBit == 0) {
+            node.groups = groups;
+            return node;
+        }
+        List<Group<T>> requiring = new ArrayList<>();
+        List<Group<T>> rest = new ArrayList<>();
+        for (Group<T> group : groups) {
+            ((group.requiredMask & bestBit) != 0 ? requiring : rest).add(group);
+        }
+        node.bit = bestBit;
+        node.requiring = build(requiring, usedBits | bestBit);
+        node.rest = build(rest, usedBits | bestBit);
+        return node;
+    }
+
+    private static Map<ComponentCategory, Set<String>> copyValues(Map<ComponentCategory, Set<String>> values) {
+        Map<ComponentCategory, Set<String>> normalized = new EnumMap<>(ComponentCategory.class);
+        for (Map.Entry<ComponentCategory, Set<String>> entry : values.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null) {
+                continue;
+            }
+            normalized.put(entry.getKey(), new HashSet<>(entry.getValue()));
+        }
+        return normalized;
+    }
+}
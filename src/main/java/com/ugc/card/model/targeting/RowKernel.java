@@ -0,0 +1,16 @@
+package com.ugc.card.model.targeting;
+
+/**
+ * Contiguous row primitives used by {@link TargetingKernels}. Implementations must be stateless.
+ */
+interface RowKernel {
+    /**
+     * y[yOffset + k] += alpha * x[xOffset + k] for k in [0, length)
+     */
+    void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length);
+
+    /**
+     * @return the sum of a[aOffset + k] * b[bOffset + k] for k in [0, length)
+     */
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+}
@@ -0,0 +1,24 @@
+package com.ugc.card.model.targeting;
+
+final class ScalarRowKernel implements RowKernel {
+    static final ScalarRowKernel INSTANCE = new ScalarRowKernel();
+
+    private ScalarRowKernel() {
+    }
+
+    @Override
+    public void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        for (int k = 0; k < length; k++) {
+            y[yOffset + k] += alpha * x[xOffset + k];
+        }
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0.0f;
+        for (int k = 0; k < length; k++) {
+            sum += a[aOffset + k] * b[bOffset + k];
+        }
+        return sum;
+    }
+}
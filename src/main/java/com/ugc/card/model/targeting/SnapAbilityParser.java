@@ -8,12 +8,13 @@ public class SnapAbilityParser implements AbilityParser {
     private final Set<ValidationRule> validationRules;
     private final Set<AbilityType> abilityTypes;
     private final Set<TargetingPattern> targetingPatterns;
+    private final LexiconAutomaton<ComponentCategory> lexicon;
     
     public SnapAbilityParser() {
         super();
         this.validValues = new HashMap<>();
         this.validCategories = new HashSet<>();
-        this.validationRules = new HashSet<>();
+        this.validationRules = new ValidationRuleSet();
         this.abilityTypes = new HashSet<>();
         this.targetingPatterns = new HashSet<>();
         
@@ -22,6 +23,21 @@ public class SnapAbilityParser implements AbilityParser {
         initializeValidationRules();
         initializeAbilityTypes();
         initializeTargetingPatterns();
+        this.lexicon = buildLexicon();
+    }
+    
+    // Categories in the order parseAbility checks them; a word listed under several keeps the first
+    private LexiconAutomaton<ComponentCategory> buildLexicon() {
+        LexiconAutomaton.Builder<ComponentCategory> builder = LexiconAutomaton.builder();
+        for (ComponentCategory category : Arrays.asList(
+                ComponentCategory.BASE, ComponentCategory.TARGET, ComponentCategory.TYPE, ComponentCategory.EFFECT)) {
+            for (String value : validValues.get(category)) {
+                if (LexiconAutomaton.isWord(value)) {
+                    builder.add(value, category);
+                }
+            }
+        }
+        return builder.build();
     }
     
     private void initializeValidValues() {
@@ -110,32 +126,10 @@ public class SnapAbilityParser implements AbilityParser {
     public TargetingChain parseAbility(String ability) {
         TargetingChain chain = new TargetingChain();
         
-        String[] words = ability.split("\\s+");
-        for (int i = 0; i < words.length; i++) {
-            String word = words[i].toLowerCase();
-            
-            // Check for base components
-            if (validValues.get(ComponentCategory.BASE).contains(word)) {
-                chain.addComponent(new TargetingComponent(ComponentCategory.BASE, word));
-                continue;
-            }
-            
-            // Check for target components
-            if (validValues.get(ComponentCategory.TARGET).contains(word)) {
-                chain.addComponent(new TargetingComponent(ComponentCategory.TARGET, word));
-                continue;
-            }
-            
-            // Check for type components
-            if (validValues.get(ComponentCategory.TYPE).contains(word)) {
-                chain.addComponent(new TargetingComponent(ComponentCategory.TYPE, word));
-                continue;
-            }
-            
-            // Check for effect components
-            if (validValues.get(ComponentCategory.EFFECT).contains(word)) {
-                chain.addComponent(new TargetingComponent(ComponentCategory.EFFECT, word));
-                continue;
+        // Base, target, type and effect components are tagged in one pass
+        for (LexiconAutomaton.Tag<ComponentCategory> tag : lexicon.tag(ability.toLowerCase())) {
+            if (tag.isMatched()) {
+                chain.addComponent(new TargetingComponent(tag.getValue(), tag.getText()));
             }
         }
         
@@ -0,0 +1,57 @@
+package com.ugc.card.model.targeting;
+
+import java.util.Arrays;
+
+/**
+ * Sparse one-hot encoding of a targeting chain: the sorted vocabulary ids of its active components.
+ * A chain typically activates only a handful of the vocabulary slots, so this avoids
+ * materializing and scanning a dense {@code float[vocabularySize]}.
+ */
+public final class SparseChainVector {
+    private final int[] indices;
+    private final int size;
+
+    private SparseChainVector(int[] indices, int size) {
+        this.indices = indices;
+        this.size = size;
+    }
+
+    public static SparseChainVector of(ComponentVocabulary vocabulary, TargetingChain chain) {
+        return new SparseChainVector(vocabulary.indicesOf(chain), vocabulary.size());
+    }
+
+    /**
+     * @return the active ids in ascending order; callers must not modify the array
+     */
+    public int[] getIndices() {
+        return indices;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int nonZeroCount() {
+        return indices.length;
+    }
+
+    public boolean isActive(int index) {
+        return Arrays.binarySearch(indices, index) >= 0;
+    }
+
+    public float[] toDense() {
+        float[] dense = new float[size];
+        for (int index : indices) {
+            dense[index] = 1.0f;
+        }
+        return dense;
+    }
+
+    @Override
+    public String toString() {
+        return "SparseChainVector{" +
+               "indices=" + Arrays.toString(indices) +
+               ", size=" + size +
+               '}';
+    }
+}
@@ -1,13 +1,15 @@
 package com.ugc.card.model.targeting;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import lombok.AccessLevel;
 import lombok.Data;
-import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
 public class TargetingChain {
     private Set<TargetingComponent> components;
@@ -17,6 +19,21 @@ public class TargetingChain {
     private String action;
     private String value;
     private Set<Float> numericalValues;
+    // Components in iteration order once the chain is frozen; null while it can still change
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private TargetingComponent[] frozen;
+    
+    public TargetingChain(Set<TargetingComponent> components, String qualifier, String targetType, String modifier,
+                          String action, String value, Set<Float> numericalValues) {
+        this.components = components;
+        this.qualifier = qualifier;
+        this.targetType = targetType;
+        this.modifier = modifier;
+        this.action = action;
+        this.value = value;
+        this.numericalValues = numericalValues;
+    }
     
     public TargetingChain(Set<TargetingComponent> components) {
         this.components = new HashSet<>(components);
@@ -30,6 +47,65 @@ public class TargetingChain {
         return new HashSet<>(components);
     }
     
+    /**
+     * Read-only view of the components. Unlike {@link #getComponents()} nothing is copied, so prefer
+     * this when only reading; the view reflects later changes to the chain.
+     */
+    public Set<TargetingComponent> componentsView() {
+        return Collections.unmodifiableSet(components);
+    }
+    
+    /**
+     * Visits every component without copying the set or allocating an iterator.
+     */
+    public void forEachComponent(Consumer<? super TargetingComponent> action) {
+        if (frozen != null) {
+            for (TargetingComponent component : frozen) {
+                action.accept(component);
+            }
+        } else {
+            components.forEach(action);
+        }
+    }
+    
+    /**
+     * Makes the chain immutable and enables {@link #componentAt(int)}: components, qualifier, target
+     * type, modifier, action, value and numerical values can no longer change. Idempotent.
+     *
+     * @return this chain
+     */
+    public TargetingChain freeze() {
+        if (frozen == null) {
+            numericalValues = Collections.unmodifiableSet(new HashSet<>(getNumericalValues()));
+            frozen = components.toArray(new TargetingComponent[0]);
+        }
+        return this;
+    }
+    
+    public boolean isFrozen() {
+        return frozen != null;
+    }
+    
+    /**
+     * @return the component at {@code index} in iteration order
+     * @throws IllegalStateException if the chain is not frozen
+     */
+    public TargetingComponent componentAt(int index) {
+        if (frozen == null) {
+            throw new IllegalStateException("Indexed access requires a frozen chain");
+        }
+        return frozen[index];
+    }
+    
+    public boolean containsComponent(TargetingComponent component) {
+        return components.contains(component);
+    }
+    
+    public void setComponents(Set<TargetingComponent> components) {
+        checkNotFrozen();
+        this.components = new HashSet<>(components);
+    }
+    
     public Set<Float> getNumericalValues() {
         if (numericalValues == null) {
             numericalValues = new HashSet<>();
@@ -37,11 +113,44 @@ public class TargetingChain {
         return numericalValues;
     }
     
+    public void setNumericalValues(Set<Float> numericalValues) {
+        checkNotFrozen();
+        this.numericalValues = numericalValues;
+    }
+    
+    public void setTargetType(String targetType) {
+        checkNotFrozen();
+        this.targetType = targetType;
+    }
+    
+    public void setModifier(String modifier) {
+        checkNotFrozen();
+        this.modifier = modifier;
+    }
+    
+    public void setAction(String action) {
+        checkNotFrozen();
+        this.action = action;
+    }
+    
+    public void setValue(String value) {
+        checkNotFrozen();
+        this.value = value;
+    }
+    
     public void addComponent(TargetingComponent component) {
+        checkNotFrozen();
         components.add(component);
     }
     
+    private void checkNotFrozen() {
+        if (frozen != null) {
+            throw new IllegalStateException("Chain is frozen");
+        }
+    }
+    
     public void addNumericalValue(float value) {
+        checkNotFrozen();
         getNumericalValues().add(value);
     }
     
@@ -62,15 +171,37 @@ public class TargetingChain {
     }
     
     public boolean hasComponent(ComponentCategory category) {
-        return components.stream().anyMatch(c -> c.getCategory() == category);
+        for (TargetingComponent c : components) {
+            if (c.getCategory() == category) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public boolean hasComponent(ComponentCategory category, String value) {
-        return components.stream().anyMatch(c -> c.getCategory() == category && c.getValue().equals(value));
+        for (TargetingComponent c : components) {
+            if (c.getCategory() == category && c.getValue().equals(value)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public boolean hasComponentOfCategory(ComponentCategory category) {
-        return components.stream().anyMatch(c -> c.getCategory() == category);
+        return hasComponent(category);
+    }
+    
+    /**
+     * @return true if any component, of any category, has exactly this text
+     */
+    public boolean hasComponentText(String text) {
+        for (TargetingComponent c : components) {
+            if (c.getText().equals(text)) {
+                return true;
+            }
+        }
+        return false;
     }
     
     public Set<String> getComponentsByCategory(ComponentCategory category) {
@@ -81,10 +212,12 @@ public class TargetingChain {
     }
     
     public TargetingComponent getFirstComponentByCategory(ComponentCategory category) {
-        return components.stream()
-            .filter(c -> c.getCategory() == category)
-            .findFirst()
-            .orElse(null);
+        for (TargetingComponent c : components) {
+            if (c.getCategory() == category) {
+                return c;
+            }
+        }
+        return null;
     }
     
     public int size() {
@@ -109,6 +242,7 @@ public class TargetingChain {
     }
 
     public void setQualifier(String qualifier) {
+        checkNotFrozen();
         this.qualifier = qualifier;
     }
 
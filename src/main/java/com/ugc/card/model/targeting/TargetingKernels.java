@@ -0,0 +1,152 @@
+package com.ugc.card.model.targeting;
+
+import java.util.Arrays;
+
+/**
+ * Dense linear-algebra kernels for the targeting model. Matrices are row-major {@code float[]}
+ * buffers of {@code rows * cols} elements, as stored by {@link TargetingTensor}.
+ *
+ * <p>All routines walk rows contiguously. {@link #gemvTransposed} additionally processes columns
+ * in blocks of {@link #BLOCK_SIZE} so the touched slice of the output vector stays in L1 cache. The row primitives use the
+ * {@code jdk.incubator.vector} SIMD implementation when it was built (the {@code vector} Maven profile) and the
+ * module is available (run with {@code --add-modules jdk.incubator.vector}), and fall back to scalar loops otherwise.
+ * Set {@code -Dtargeting.kernels.simd=false} to force the scalar path.
+ */
+public final class TargetingKernels {
+    static final int BLOCK_SIZE = 1024;
+
+    private static final RowKernel ROW_KERNEL = selectRowKernel();
+
+    private TargetingKernels() {
+    }
+
+    private static RowKernel selectRowKernel() {
+        if (!Boolean.parseBoolean(System.getProperty("targeting.kernels.simd", "true"))) {
+            return ScalarRowKernel.INSTANCE;
+        }
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return ScalarRowKernel.INSTANCE;
+        }
+        try {
+            return (RowKernel) Class.forName("com.ugc.card.model.targeting.VectorRowKernel")
+                .getDeclaredConstructor()
+                .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return ScalarRowKernel.INSTANCE;
+        }
+    }
+
+    public static boolean isVectorized() {
+        return ROW_KERNEL != ScalarRowKernel.INSTANCE;
+    }
+
+    static RowKernel rowKernel() {
+        return ROW_KERNEL;
+    }
+
+    /**
+     * Computes {@code y = W^T x} for a {@code rows x cols} matrix W, i.e.
+     * {@code y[j] = sum_i x[i] * W[i][j]}. Rows whose input is zero are skipped.
+     */
+    public static void gemvTransposed(float[] w, int rows, int cols, float[] x, float[] y) {
+        Arrays.fill(y, 0, cols, 0.0f);
+        for (int blockStart = 0; blockStart < cols; blockStart += BLOCK_SIZE) {
+            int blockLength = Math.min(BLOCK_SIZE, cols - blockStart);
+            for (int i = 0; i < rows; i++) {
+                float xi = x[i];
+                if (xi != 0.0f) {
+                    ROW_KERNEL.axpy(xi, w, i * cols + blockStart, y, blockStart, blockLength);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes {@code y = W x} for a {@code rows x cols} matrix W.
+     */
+    public static void gemv(float[] w, int rows, int cols, float[] x, float[] y) {
+        for (int i = 0; i < rows; i++) {
+            y[i] = ROW_KERNEL.dot(w, i * cols, x, 0, cols);
+        }
+    }
+
+    /**
+     * Applies the rank-1 update {@code W += alpha * x * y^T} to a {@code rows x cols} matrix W.
+     * Rows whose {@code x} entry is zero are left untouched.
+     */
+    public static void rankOneUpdate(float[] w, int rows, int cols, float alpha, float[] x, float[] y) {
+        for (int i = 0; i < rows; i++) {
+            float scale = alpha * x[i];
+            if (scale != 0.0f) {
+                ROW_KERNEL.axpy(scale, y, 0, w, i * cols, cols);
+            }
+        }
+    }
+
+    /**
+     * Sparse one-hot variant of {@link #gemvTransposed}: computes {@code y = W^T x} where
+     * {@code x} is 1 at the given row indices and 0 elsewhere, i.e. the sum of the active rows.
+     */
+    public static void sparseGemvTransposed(float[] w, int cols, int[] activeRows, float[] y) {
+        Arrays.fill(y, 0, cols, 0.0f);
+        for (int row : activeRows) {
+            ROW_KERNEL.axpy(1.0f, w, row * cols, y, 0, cols);
+        }
+    }
+
+    /**
+     * Sparse one-hot variant of {@link #rankOneUpdate}: adds {@code alpha * y} to each active row only.
+     */
+    public static void sparseRankOneUpdate(float[] w, int cols, int[] activeRows, float alpha, float[] y) {
+        for (int row : activeRows) {
+            ROW_KERNEL.axpy(alpha, y, 0, w, row * cols, cols);
+        }
+    }
+
+    /**
+     * Adds {@code alpha * x} to row {@code row} of a matrix with {@code cols} columns.
+     */
+    public static void axpyRow(float[] w, int cols, int row, float alpha, float[] x) {
+        ROW_KERNEL.axpy(alpha, x, 0, w, row * cols, cols);
+    }
+
+    /**
+     * {@code y[k] += alpha * x[k]} over the first {@code length} elements.
+     */
+    public static void axpy(float alpha, float[] x, float[] y, int length) {
+        ROW_KERNEL.axpy(alpha, x, 0, y, 0, length);
+    }
+
+    public static float dot(float[] a, float[] b, int length) {
+        return ROW_KERNEL.dot(a, 0, b, 0, length);
+    }
+
+    /**
+     * Squashes the first {@code size} pre-activations in {@code output} through the sigmoid, in place,
+     * for a chain whose one-hot target is 1 at {@code activeRows} and 0 elsewhere, and returns the
+     * mean squared error of the result. When {@code delta} is not null it receives the gradient of the
+     * error at each output, {@code (o - t) * o * (1 - o)}.
+     *
+     * <p>Every sparse training path goes through here, so they all compute the same loss.
+     */
+    static double sigmoidSparseLoss(float[] output, int size, int[] activeRows, float[] delta) {
+        double loss = 0.0;
+        for (int j = 0; j < size; j++) {
+            float o = (float) (1.0 / (1.0 + Math.exp(-output[j])));
+            output[j] = o;
+            loss += (double) o * o;
+            if (delta != null) {
+                delta[j] = o * o * (1 - o);
+            }
+        }
+        for (int j : activeRows) {
+            float o = output[j];
+            double value = o;
+            loss += (value - 1) * (value - 1) - value * value;
+            if (delta != null) {
+                delta[j] = (o - 1) * o * (1 - o);
+            }
+        }
+        return loss / size;
+    }
+}
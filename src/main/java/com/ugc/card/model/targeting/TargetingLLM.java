@@ -4,11 +4,12 @@ import java.util.*;
 import java.util.regex.*;
 import java.util.stream.Collectors;
 import lombok.Data;
-import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
 
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
 public class TargetingLLM {
     private TargetingSystem system;
@@ -16,6 +17,24 @@ public class TargetingLLM {
     private Map<Integer, String> indexToWord;
     private int maxSequenceLength = 100;
     private Random random;
+    // Optional memo of parseText results, dropped whenever the system's vocabulary changes
+    @Setter(AccessLevel.NONE)
+    private volatile AbilityParseCache parseCache;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile ComponentVocabulary parsedVocabulary;
+    
+    // Cache namespace for rules text parsed against the system's whole vocabulary
+    static final String PARSE_CACHE_GAME = "llm";
+    
+    public TargetingLLM(TargetingSystem system, Map<String, Integer> wordToIndex, Map<Integer, String> indexToWord,
+                        int maxSequenceLength, Random random) {
+        this.system = system;
+        this.wordToIndex = wordToIndex;
+        this.indexToWord = indexToWord;
+        this.maxSequenceLength = maxSequenceLength;
+        this.random = random;
+    }
     
     public TargetingLLM(TargetingSystem system) {
         this.system = system;
@@ -38,7 +57,7 @@ public class TargetingLLM {
         
         // Add component values
         int index = 4;
-        for (TargetingComponent component : system.getComponents()) {
+        for (TargetingComponent component : system.getVocabulary().components()) {
             if (!wordToIndex.containsKey(component.getText())) {
                 wordToIndex.put(component.getText(), index);
                 indexToWord.put(index, component.getText());
@@ -47,13 +66,41 @@ public class TargetingLLM {
         }
     }
     
+    /**
+     * Memoizes {@link #parseText} in the given cache, or stops memoizing when it is null. With a cache,
+     * the text is normalized before it is parsed, so runs of whitespace inside it no longer prevent a
+     * multi-word component from matching, and the chains returned are frozen and shared: their
+     * {@code add} and {@code set} methods throw {@link IllegalStateException}.
+     * Copy a chain with {@code new TargetingChain(chain.getComponents())} before changing it.
+     */
+    public void setParseCache(AbilityParseCache parseCache) {
+        this.parseCache = parseCache;
+    }
+    
     public TargetingChain parseText(String text) {
+        AbilityParseCache cache = parseCache;
+        if (cache == null) {
+            return parseUncached(text, system.getVocabulary());
+        }
+        // Taken before the vocabulary, so a parse with a vocabulary that was replaced meanwhile is not stored
+        long generation = cache.generation(PARSE_CACHE_GAME);
+        ComponentVocabulary vocabulary = system.getVocabulary();
+        if (vocabulary != parsedVocabulary) {
+            cache.invalidate(PARSE_CACHE_GAME);
+            parsedVocabulary = vocabulary;
+            generation = cache.generation(PARSE_CACHE_GAME);
+        }
+        return cache.parse(PARSE_CACHE_GAME, text, uncached -> parseUncached(uncached, vocabulary), generation);
+    }
+    
+    private TargetingChain parseUncached(String text, ComponentVocabulary components) {
         TargetingChain chain = new TargetingChain();
         text = text.toLowerCase().trim();
+        List<TargetingComponent> vocabulary = components.components();
         
         // Extract effect first as it's the core of the ability
         TargetingComponent effectComponent = null;
-        for (TargetingComponent component : system.getComponents()) {
+        for (TargetingComponent component : vocabulary) {
             if (component.getCategory() == ComponentCategory.EFFECT) {
                 String componentText = component.getText().toLowerCase();
                 if (text.contains(componentText)) {
@@ -72,7 +119,7 @@ public class TargetingLLM {
         
         // Extract type based on effect context
         boolean needsSpellType = effect.equals("counter");
-        for (TargetingComponent component : system.getComponents()) {
+        for (TargetingComponent component : vocabulary) {
             if (component.getCategory() == ComponentCategory.TYPE) {
                 String componentText = component.getText().toLowerCase();
                 if (text.contains(componentText)) {
@@ -94,7 +141,7 @@ public class TargetingLLM {
         
         // Extract direction/targeting modifiers
         boolean canBeRandom = effect.equals("counter") || effect.equals("discard");
-        for (TargetingComponent component : system.getComponents()) {
+        for (TargetingComponent component : vocabulary) {
             if (component.getCategory() == ComponentCategory.DIRECTION) {
                 String componentText = component.getText().toLowerCase();
                 if (text.contains(componentText)) {
@@ -127,15 +174,14 @@ public class TargetingLLM {
         
         if (needsValue) {
             // Try to find explicit numbers
-            Pattern numberPattern = Pattern.compile("\\b(\\d+|X)\\b");
-            Matcher matcher = numberPattern.matcher(text);
+            Matcher matcher = TextPatterns.NUMBER_OR_X.matcher(text);
             if (matcher.find()) {
                 String value = matcher.group(1);
                 // Validate value range
                 try {
                     int numValue = Integer.parseInt(value);
                     if (numValue > 0 && numValue <= 15) {
-                        for (TargetingComponent component : system.getComponents()) {
+                        for (TargetingComponent component : vocabulary) {
                             if (component.getCategory() == ComponentCategory.VALUE && 
                                 component.getText().equals(value)) {
                                 chain.addComponent(component);
@@ -146,7 +192,7 @@ public class TargetingLLM {
                 } catch (NumberFormatException e) {
                     // Handle X value
                     if (value.equalsIgnoreCase("X")) {
-                        for (TargetingComponent component : system.getComponents()) {
+                        for (TargetingComponent component : vocabulary) {
                             if (component.getCategory() == ComponentCategory.VALUE && 
                                 component.getText().equalsIgnoreCase("X")) {
                                 chain.addComponent(component);
@@ -174,9 +220,15 @@ public class TargetingLLM {
     
     public List<Integer> tokenize(String text) {
         List<Integer> tokens = new ArrayList<>();
-        String[] words = text.toLowerCase().split("\\s+");
-        for (String word : words) {
-            tokens.add(wordToIndex.getOrDefault(word, wordToIndex.get("[UNK]")));
+        String lower = text.toLowerCase();
+        Integer unknown = wordToIndex.get("[UNK]");
+        // split("\\s+") yielded an empty first word for empty or space-led text, which maps to [UNK]
+        if (lower.isEmpty() || (AbilityTokenizer.isSpace(lower.charAt(0)) && AbilityTokenizer.wordCount(lower) > 0)) {
+            tokens.add(wordToIndex.getOrDefault("", unknown));
+        }
+        AbilityTokenizer words = new AbilityTokenizer(lower);
+        while (words.next()) {
+            tokens.add(wordToIndex.getOrDefault(words.word(), unknown));
         }
         return tokens;
     }
@@ -198,7 +250,7 @@ public class TargetingLLM {
     public TargetingChain generateRandomChain() {
         TargetingChain chain = new TargetingChain();
         int numComponents = random.nextInt(5) + 1; // 1-5 components
-        List<TargetingComponent> availableComponents = new ArrayList<>(system.getComponents());
+        List<TargetingComponent> availableComponents = new ArrayList<>(system.getVocabulary().components());
         for (int i = 0; i < numComponents; i++) {
             if (availableComponents.isEmpty()) {
                 break;
@@ -0,0 +1,301 @@
+package com.ugc.card.model.targeting;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+
+/**
+ * Versioned little-endian binary format for targeting model weights.
+ *
+ * <pre>
+ * offset  size  field
+ * 0       4     magic "TGTM"
+ * 4       2     format version
+ * 6       1     dtype (1 = float32)
+ * 7       1     reserved
+ * 8       4     rank
+ * 12      8     vocabulary fingerprint (see {@link ComponentVocabulary#fingerprint()}), 0 if unknown
+ * 20      8     payload offset
+ * 28      4*r   shape
+ * ...           zero padding up to the payload offset (a multiple of 64)
+ * payload 4*n   row-major float32 values
+ * </pre>
+ *
+ * Files are written through a {@link FileChannel} and read through a read-only
+ * {@link MappedByteBuffer}, so opening a model does not stream it through the heap.
+ */
+public final class TargetingModelFile {
+    public static final int MAGIC = 0x4D544754; // "TGTM" in little-endian byte order
+    public static final short VERSION = 1;
+    public static final byte DTYPE_FLOAT32 = 1;
+    public static final long UNKNOWN_FINGERPRINT = 0L;
+
+    private static final int FIXED_HEADER_SIZE = 28;
+    private static final int PAYLOAD_ALIGNMENT = 64;
+    private static final int WRITE_CHUNK_FLOATS = 1 << 18;
+
+    private TargetingModelFile() {
+    }
+
+    /**
+     * Header of a model file.
+     */
+    public static final class Header {
+        private final short version;
+        private final byte dtype;
+        private final int[] shape;
+        private final long vocabularyFingerprint;
+        private final long payloadOffset;
+
+        Header(short version, byte dtype, int[] shape, long vocabularyFingerprint, long payloadOffset) {
+            this.version = version;
+            this.dtype = dtype;
+            this.shape = shape;
+            this.vocabularyFingerprint = vocabularyFingerprint;
+            this.payloadOffset = payloadOffset;
+        }
+
+        public short getVersion() {
+            return version;
+        }
+
+        public byte getDtype() {
+            return dtype;
+        }
+
+        public int[] getShape() {
+            return shape.clone();
+        }
+
+        public long getVocabularyFingerprint() {
+            return vocabularyFingerprint;
+        }
+
+        public long getPayloadOffset() {
+            return payloadOffset;
+        }
+
+        public long getElementCount() {
+            long count = 1;
+            for (int dim : shape) {
+                count *= dim;
+            }
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return "Header{" +
+                   "version=" + version +
+                   ", dtype=" + dtype +
+                   ", shape=" + Arrays.toString(shape) +
+                   ", vocabularyFingerprint=" + Long.toHexString(vocabularyFingerprint) +
+                   '}';
+        }
+    }
+
+    /**
+     * A model file mapped read-only into memory. The payload view shares the page cache with every
+     * other process mapping the same file.
+     */
+    public static final class Mapped {
+        private final Header header;
+        private final FloatBuffer payload;
+
+        Mapped(Header header, FloatBuffer payload) {
+            this.header = header;
+            this.payload = payload;
+        }
+
+        public Header getHeader() {
+            return header;
+        }
+
+        /**
+         * @return a read-only view of the weights; use absolute {@code get(int)} for concurrent access
+         */
+        public FloatBuffer getPayload() {
+            return payload;
+        }
+    }
+
+    public static void write(Path path, TargetingTensor tensor, long vocabularyFingerprint) throws IOException {
+        int[] shape = tensor.getShape();
+        float[] data = tensor.getData();
+        long payloadOffset = alignedPayloadOffset(shape.length);
+
+        ByteBuffer header = ByteBuffer.allocate((int) payloadOffset).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.put(DTYPE_FLOAT32);
+        header.put((byte) 0);
+        header.putInt(shape.length);
+        header.putLong(vocabularyFingerprint);
+        header.putLong(payloadOffset);
+        for (int dim : shape) {
+            header.putInt(dim);
+        }
+        header.clear();
+
+        // Write to a sibling file first so a crash never leaves a truncated model behind
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, header);
+            ByteBuffer chunk = ByteBuffer.allocateDirect(Math.min(data.length, WRITE_CHUNK_FLOATS) * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            for (int start = 0; start < data.length; start += WRITE_CHUNK_FLOATS) {
+                int count = Math.min(WRITE_CHUNK_FLOATS, data.length - start);
+                chunk.clear();
+                chunk.asFloatBuffer().put(data, start, count);
+                chunk.limit(count * Float.BYTES);
+                writeFully(channel, chunk);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public static boolean isModelFile(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // keep reading until the magic is complete or the file ends
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static Header readHeader(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readHeader(channel);
+        }
+    }
+
+    /**
+     * Maps the file read-only and returns a zero-copy view of its weights.
+     */
+    public static Mapped map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Header header = readHeader(channel);
+            long bytes = header.getElementCount() * Float.BYTES;
+            if (bytes > Integer.MAX_VALUE) {
+                throw new IOException("Model payload too large to map: " + bytes + " bytes");
+            }
+            if (header.getPayloadOffset() + bytes > channel.size()) {
+                throw new IOException("Truncated model file: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, header.getPayloadOffset(), bytes);
+            FloatBuffer payload = buffer.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            return new Mapped(header, payload);
+        }
+    }
+
+    /**
+     * Loads a trainable tensor. The weights are copied from the mapping into a heap array in one bulk transfer.
+     */
+    public static TargetingTensor read(Path path) throws IOException {
+        Mapped mapped = map(path);
+        int[] shape = mapped.getHeader().getShape();
+        float[] data = new float[(int) mapped.getHeader().getElementCount()];
+        mapped.getPayload().get(0, data);
+        return new TargetingTensor(data, shape);
+    }
+
+    /**
+     * Converts a model saved with Java serialization into this format.
+     */
+    public static void convertLegacy(Path legacy, Path target, long vocabularyFingerprint) throws IOException {
+        write(target, readLegacy(legacy), vocabularyFingerprint);
+    }
+
+    static TargetingTensor readLegacy(Path legacy) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(legacy)))) {
+            return (TargetingTensor) ois.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Not a serialized TargetingTensor: " + legacy, e);
+        }
+    }
+
+    static Header readHeader(FileChannel channel) throws IOException {
+        ByteBuffer fixed = ByteBuffer.allocate(FIXED_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, fixed, 0);
+        fixed.flip();
+        if (fixed.getInt() != MAGIC) {
+            throw new IOException("Not a targeting model file");
+        }
+        short version = fixed.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported model file version: " + version);
+        }
+        byte dtype = fixed.get();
+        if (dtype != DTYPE_FLOAT32) {
+            throw new IOException("Unsupported model dtype: " + dtype);
+        }
+        fixed.get();
+        int rank = fixed.getInt();
+        if (rank < 1 || rank > 8) {
+            throw new IOException("Invalid model rank: " + rank);
+        }
+        long fingerprint = fixed.getLong();
+        long payloadOffset = fixed.getLong();
+
+        ByteBuffer dims = ByteBuffer.allocate(rank * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, dims, FIXED_HEADER_SIZE);
+        dims.flip();
+        int[] shape = new int[rank];
+        for (int i = 0; i < rank; i++) {
+            shape[i] = dims.getInt();
+            if (shape[i] < 0) {
+                throw new IOException("Invalid model shape: " + Arrays.toString(shape));
+            }
+        }
+        return new Header(version, dtype, shape, fingerprint, payloadOffset);
+    }
+
+    private static long alignedPayloadOffset(int rank) {
+        long headerSize = FIXED_HEADER_SIZE + (long) rank * Integer.BYTES;
+        return (headerSize + PAYLOAD_ALIGNMENT - 1) / PAYLOAD_ALIGNMENT * PAYLOAD_ALIGNMENT;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Truncated model file header");
+            }
+        }
+    }
+
+    /**
+     * One-shot converter for legacy Java-serialized model files.
+     * Usage: {@code TargetingModelFile <legacy.bin> <output.bin>}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: TargetingModelFile <legacy.bin> <output.bin>");
+            System.exit(1);
+        }
+        Path legacy = Paths.get(args[0]);
+        Path target = Paths.get(args[1]);
+        // The legacy format does not record the vocabulary, so the fingerprint is left unset
+        convertLegacy(legacy, target, UNKNOWN_FINGERPRINT);
+        System.out.println("Converted " + legacy + " to " + target + ": " + readHeader(target));
+    }
+}
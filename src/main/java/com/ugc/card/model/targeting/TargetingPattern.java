@@ -35,19 +35,15 @@ public class TargetingPattern {
             }
         }
 
-        // Check that all components in the chain are either required or optional
-        for (TargetingComponent component : chain.getComponents()) {
+        for (TargetingComponent component : chain.componentsView()) {
+            // Every component must be in a required or optional category
             ComponentCategory category = component.getCategory();
             if (!requiredCategories.contains(category) && !optionalCategories.contains(category)) {
                 return false;
             }
-        }
 
-        // Validate components against valid components
-        for (TargetingComponent component : chain.getComponents()) {
-            ComponentCategory category = component.getCategory();
+            // and have one of that category's valid values
             Set<String> validValues = validComponents.get(category);
-            
             if (validValues != null && !validValues.contains(component.getText().toLowerCase())) {
                 return false;
             }
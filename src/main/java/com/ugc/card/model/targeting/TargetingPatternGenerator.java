@@ -216,7 +216,7 @@ public class TargetingPatternGenerator {
             Set<ComponentCategory> optionalCategories = new HashSet<>();
             Map<ComponentCategory, Set<String>> validComponents = new HashMap<>();
             
-            for (TargetingComponent component : chain.getComponents()) {
+            for (TargetingComponent component : chain.componentsView()) {
                 requiredCategories.add(component.getCategory());
                 validComponents.computeIfAbsent(component.getCategory(), k -> new HashSet<>())
                     .add(component.getValue());
@@ -233,6 +233,14 @@ public class TargetingPatternGenerator {
         return patterns;
     }
     
+    /**
+     * Generates patterns from the chains and indexes them, so classifying a chain against a large
+     * generated set does not test every pattern.
+     */
+    public PatternDispatchIndex<TargetingPattern> generatePatternIndex(Set<TargetingChain> chains) {
+        return PatternDispatchIndex.forPatterns(generatePatterns(chains));
+    }
+    
     private int getComponentIndex(Set<TargetingComponent> components, TargetingComponent component) {
         List<TargetingComponent> componentList = new ArrayList<>(components);
         return componentList.indexOf(component);
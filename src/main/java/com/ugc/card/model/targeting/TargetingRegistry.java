@@ -0,0 +1,504 @@
+package com.ugc.card.model.targeting;
+
+import java.util.*;
+
+/**
+ * Copy-on-write registry of the games and components of a {@link TargetingSystem} shared between threads.
+ *
+ * All state lives in an immutable {@link Snapshot}. Readers take the current snapshot with a single
+ * volatile read and never lock, so parsing and encoding scale across threads and see one consistent
+ * state for as long as they hold it. Writers are serialized: each copies the snapshot, applies its
+ * change and publishes the result, so no reader ever observes a half-applied write. Writes cost a copy
+ * of the affected maps and are meant to be rare next to reads; use {@link #addComponents} for bulk loads.
+ */
+public final class TargetingRegistry {
+    private final Object writeLock = new Object();
+    private volatile Snapshot snapshot;
+
+    /**
+     * A game's parser together with the metadata read from it when the game was registered.
+     */
+    public static final class Game {
+        private final String name;
+        private final GameAbilityParser parser;
+        private final Set<ComponentCategory> categories;
+        private final Map<ComponentCategory, Set<String>> components;
+        private final Set<ValidationRule> validationRules;
+        private final Set<AbilityType> abilityTypes;
+        private final Set<TargetingPattern> targetingPatterns;
+        // Built on first lookup; racing builders produce equivalent indexes
+        private volatile PatternDispatchIndex<TargetingPattern> patternIndex;
+        private volatile PatternDispatchIndex<AbilityType> abilityTypeIndex;
+
+        private Game(String name, GameAbilityParser parser) {
+            this.name = name;
+            this.parser = parser;
+            this.categories = Collections.unmodifiableSet(new HashSet<>(parser.getValidCategories()));
+            Map<ComponentCategory, Set<String>> components = new HashMap<>();
+            for (ComponentCategory category : categories) {
+                components.put(category, Collections.unmodifiableSet(new HashSet<>(parser.getValidComponents(category))));
+            }
+            this.components = Collections.unmodifiableMap(components);
+            this.validationRules = Collections.unmodifiableSet(new HashSet<>(parser.getValidationRules()));
+            this.abilityTypes = Collections.unmodifiableSet(new HashSet<>(parser.getAbilityTypes()));
+            this.targetingPatterns = Collections.unmodifiableSet(new HashSet<>(parser.getTargetingPatterns()));
+        }
+
+        /**
+         * Reads a parser's categories, components, rules, ability types and patterns.
+         */
+        public static Game of(String name, GameAbilityParser parser) {
+            if (name == null) {
+                throw new IllegalArgumentException("Game name cannot be null");
+            }
+            if (parser == null) {
+                throw new IllegalArgumentException("Parser cannot be null");
+            }
+            return new Game(name.toLowerCase(), parser);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public GameAbilityParser getParser() {
+            return parser;
+        }
+
+        public Set<ComponentCategory> getCategories() {
+            return categories;
+        }
+
+        public Map<ComponentCategory, Set<String>> getComponents() {
+            return components;
+        }
+
+        public Set<ValidationRule> getValidationRules() {
+            return validationRules;
+        }
+
+        public Set<AbilityType> getAbilityTypes() {
+            return abilityTypes;
+        }
+
+        public Set<TargetingPattern> getTargetingPatterns() {
+            return targetingPatterns;
+        }
+
+        public PatternDispatchIndex<TargetingPattern> getPatternIndex() {
+            PatternDispatchIndex<TargetingPattern> index = patternIndex;
+            if (index == null) {
+                index = PatternDispatchIndex.forPatterns(targetingPatterns);
+                patternIndex = index;
+            }
+            return index;
+        }
+
+        public PatternDispatchIndex<AbilityType> getAbilityTypeIndex() {
+            PatternDispatchIndex<AbilityType> index = abilityTypeIndex;
+            if (index == null) {
+                index = PatternDispatchIndex.forAbilityTypes(abilityTypes);
+                abilityTypeIndex = index;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * One published state of the registry. Every collection it hands out is unmodifiable.
+     */
+    public static final class Snapshot {
+        private final long version;
+        // Never modified once published; writers copy them and the getters hand out read-only views
+        private final Map<String, Game> games;
+        // Built-in games not registered in this registry yet, resolved through GameParserCache
+        private final Set<String> lazyGames;
+        private final Set<TargetingComponent> components;
+        private final Map<String, TargetingComponent> componentMap;
+        private final Map<ComponentCategory, Set<TargetingComponent>> componentsByCategory;
+        private final ComponentVocabulary vocabulary;
+        // Values of the components plus those of every game added with registerParser, by category
+        private final Map<ComponentCategory, Set<String>> validValues;
+        // Just the registerParser values, which outlive a replacement of the components
+        private final Map<ComponentCategory, Set<String>> registeredValues;
+        private final Set<ValidationRule> validationRules;
+        private final Set<TargetingPattern> targetingPatterns;
+        private final Map<String, Game> gamesView;
+        private final Set<TargetingComponent> componentsView;
+        private final Map<ComponentCategory, Set<TargetingComponent>> componentsByCategoryView;
+        private final Map<ComponentCategory, Set<String>> validValuesView;
+        private final Set<ValidationRule> validationRulesView;
+        private final Set<TargetingPattern> targetingPatternsView;
+
+        private Snapshot(long version, Map<String, Game> games, Set<String> lazyGames,
+                         Set<TargetingComponent> components, Map<String, TargetingComponent> componentMap,
+                         Map<ComponentCategory, Set<TargetingComponent>> componentsByCategory,
+                         ComponentVocabulary vocabulary, Map<ComponentCategory, Set<String>> validValues,
+                         Map<ComponentCategory, Set<String>> registeredValues,
+                         Set<ValidationRule> validationRules, Set<TargetingPattern> targetingPatterns) {
+            this.version = version;
+            this.games = games;
+            this.lazyGames = lazyGames;
+            this.components = components;
+            this.componentMap = componentMap;
+            this.componentsByCategory = componentsByCategory;
+            this.vocabulary = vocabulary;
+            this.validValues = validValues;
+            this.registeredValues = registeredValues;
+            this.validationRules = validationRules;
+            this.targetingPatterns = targetingPatterns;
+            this.gamesView = Collections.unmodifiableMap(games);
+            this.componentsView = Collections.unmodifiableSet(components);
+            this.componentsByCategoryView = readOnly(componentsByCategory);
+            this.validValuesView = readOnly(validValues);
+            this.validationRulesView = Collections.unmodifiableSet(validationRules);
+            this.targetingPatternsView = Collections.unmodifiableSet(targetingPatterns);
+        }
+
+        private Snapshot withGames(Map<String, Game> games, Set<String> lazyGames,
+                                   Map<ComponentCategory, Set<String>> validValues,
+                                   Map<ComponentCategory, Set<String>> registeredValues,
+                                   Set<ValidationRule> validationRules, Set<TargetingPattern> targetingPatterns) {
+            return new Snapshot(version + 1, games, lazyGames, components, componentMap, componentsByCategory,
+                vocabulary, validValues, registeredValues, validationRules, targetingPatterns);
+        }
+
+        private Snapshot withGames(Map<String, Game> games, Set<String> lazyGames) {
+            return withGames(games, lazyGames, validValues, registeredValues, validationRules, targetingPatterns);
+        }
+
+        private Snapshot withComponents(Set<TargetingComponent> components,
+                                        Map<String, TargetingComponent> componentMap,
+                                        Map<ComponentCategory, Set<TargetingComponent>> componentsByCategory,
+                                        ComponentVocabulary vocabulary, Map<ComponentCategory, Set<String>> validValues) {
+            return new Snapshot(version + 1, games, lazyGames, components, componentMap, componentsByCategory,
+                vocabulary, validValues, registeredValues, validationRules, targetingPatterns);
+        }
+
+        /**
+         * @return how many writes produced this snapshot
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return the game registered under the name, ignoring case, or null
+         */
+        public Game getGame(String game) {
+            if (game == null) {
+                return null;
+            }
+            String key = game.toLowerCase();
+            Game entry = games.get(key);
+            if (entry == null && lazyGames.contains(key)) {
+                entry = GameParserCache.get(key);
+            }
+            return entry;
+        }
+
+        public boolean isSupported(String game) {
+            return game != null && (games.containsKey(game.toLowerCase()) || lazyGames.contains(game.toLowerCase()));
+        }
+
+        /**
+         * @return the names of every game, without loading built-in games that have not been used yet
+         */
+        public Set<String> getGameNames() {
+            Set<String> names = new HashSet<>(games.keySet());
+            names.addAll(lazyGames);
+            return Collections.unmodifiableSet(names);
+        }
+
+        public GameAbilityParser getParser(String game) {
+            Game entry = getGame(game);
+            return entry != null ? entry.getParser() : null;
+        }
+
+        /**
+         * @return every game, loading any built-in game that has not been used yet
+         */
+        public Map<String, Game> getGames() {
+            if (lazyGames.isEmpty()) {
+                return gamesView;
+            }
+            Map<String, Game> all = new HashMap<>(games);
+            for (String game : lazyGames) {
+                all.put(game, GameParserCache.get(game));
+            }
+            return Collections.unmodifiableMap(all);
+        }
+
+        public Set<TargetingComponent> getComponents() {
+            return componentsView;
+        }
+
+        public TargetingComponent getComponent(String value) {
+            return componentMap.get(value);
+        }
+
+        public Map<String, TargetingComponent> getComponentMap() {
+            return Collections.unmodifiableMap(componentMap);
+        }
+
+        public Map<ComponentCategory, Set<TargetingComponent>> getComponentsByCategory() {
+            return componentsByCategoryView;
+        }
+
+        /**
+         * @return the values of every component and every game added with {@link TargetingRegistry#registerParser},
+         *         by category
+         */
+        public Map<ComponentCategory, Set<String>> getValidValues() {
+            return validValuesView;
+        }
+
+        public boolean isValidValue(ComponentCategory category, String value) {
+            Set<String> values = validValues.get(category);
+            return values != null && values.contains(value);
+        }
+
+        public ComponentVocabulary getVocabulary() {
+            return vocabulary;
+        }
+
+        /**
+         * @return the rules of every game added with {@link TargetingRegistry#registerParser}
+         */
+        public Set<ValidationRule> getValidationRules() {
+            return validationRulesView;
+        }
+
+        /**
+         * @return the patterns of every game added with {@link TargetingRegistry#registerParser}
+         */
+        public Set<TargetingPattern> getTargetingPatterns() {
+            return targetingPatternsView;
+        }
+    }
+
+    private TargetingRegistry(Snapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public static TargetingRegistry empty() {
+        return new TargetingRegistry(new Snapshot(0, new HashMap<>(), Collections.emptySet(), new HashSet<>(),
+            new HashMap<>(), categoryMap(), ComponentVocabulary.empty(), categoryMap(), categoryMap(),
+            new HashSet<>(), new HashSet<>()));
+    }
+
+    /**
+     * Starts a registry from existing state, reading each parser's metadata as {@link #addGame} does.
+     */
+    public static TargetingRegistry of(Map<String, GameAbilityParser> parsers, Collection<TargetingComponent> components,
+                                       Collection<ValidationRule> validationRules,
+                                       Collection<TargetingPattern> targetingPatterns) {
+        return of(parsers, Collections.emptySet(), components, validationRules, targetingPatterns);
+    }
+
+    /**
+     * Starts a registry from existing state plus built-in games that are loaded from
+     * {@link GameParserCache} the first time they are looked up.
+     */
+    public static TargetingRegistry of(Map<String, GameAbilityParser> parsers, Collection<String> lazyGames,
+                                       Collection<TargetingComponent> components,
+                                       Collection<ValidationRule> validationRules,
+                                       Collection<TargetingPattern> targetingPatterns) {
+        return of(parsers, lazyGames, components, Collections.emptyMap(), validationRules, targetingPatterns);
+    }
+
+    /**
+     * Starts a registry from existing state, with {@code validValues} as the values registered so far,
+     * as if by {@link #registerParser}.
+     */
+    public static TargetingRegistry of(Map<String, GameAbilityParser> parsers, Collection<String> lazyGames,
+                                       Collection<TargetingComponent> components,
+                                       Map<ComponentCategory, ? extends Collection<String>> validValues,
+                                       Collection<ValidationRule> validationRules,
+                                       Collection<TargetingPattern> targetingPatterns) {
+        Map<String, Game> games = new HashMap<>();
+        for (Map.Entry<String, GameAbilityParser> entry : parsers.entrySet()) {
+            Game game = Game.of(entry.getKey(), entry.getValue());
+            games.put(game.getName(), game);
+        }
+        Set<String> lazy = new HashSet<>();
+        for (String game : lazyGames) {
+            if (!GameParserCache.isBuiltIn(game)) {
+                throw new IllegalArgumentException("Not a built-in game: " + game);
+            }
+            if (!games.containsKey(game.toLowerCase())) {
+                lazy.add(game.toLowerCase());
+            }
+        }
+        Map<ComponentCategory, Set<String>> registered = categoryMap();
+        validValues.forEach((category, strings) -> registered.put(category, new HashSet<>(strings)));
+        Set<TargetingComponent> initial = new HashSet<>(components);
+        Map<String, TargetingComponent> componentMap = new HashMap<>();
+        Map<ComponentCategory, Set<TargetingComponent>> byCategory = categoryMap();
+        Map<ComponentCategory, Set<String>> values = copy(registered, registered.keySet());
+        index(initial, componentMap, byCategory, values);
+        return new TargetingRegistry(new Snapshot(0, games, lazy, initial, componentMap, byCategory,
+            ComponentVocabulary.of(initial), values, registered, new HashSet<>(validationRules),
+            new HashSet<>(targetingPatterns)));
+    }
+
+    /**
+     * @return the current state; it never changes, later writes publish new snapshots
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Adds or replaces a game.
+     */
+    public Snapshot addGame(String game, GameAbilityParser parser) {
+        Game entry = Game.of(game, parser);
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            Map<String, Game> games = new HashMap<>(current.games);
+            games.put(entry.getName(), entry);
+            return publish(current.withGames(games, without(current.lazyGames, entry.getName())));
+        }
+    }
+
+    /**
+     * Adds or replaces a game and also merges its components, rules and patterns into the registry-wide
+     * valid values and sets.
+     */
+    public Snapshot registerParser(String game, GameAbilityParser parser) {
+        Game entry = Game.of(game, parser);
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            Map<String, Game> games = new HashMap<>(current.games);
+            games.put(entry.getName(), entry);
+            Set<ValidationRule> rules = new HashSet<>(current.validationRules);
+            rules.addAll(entry.getValidationRules());
+            Set<TargetingPattern> patterns = new HashSet<>(current.targetingPatterns);
+            patterns.addAll(entry.getTargetingPatterns());
+            Map<ComponentCategory, Set<String>> components = entry.getComponents();
+            Map<ComponentCategory, Set<String>> registered = copy(current.registeredValues, components.keySet());
+            Map<ComponentCategory, Set<String>> values = copy(current.validValues, components.keySet());
+            components.forEach((category, added) -> {
+                registered.get(category).addAll(added);
+                values.get(category).addAll(added);
+            });
+            return publish(current.withGames(games, without(current.lazyGames, entry.getName()),
+                values, registered, rules, patterns));
+        }
+    }
+
+    public Snapshot removeGame(String game) {
+        if (game == null) {
+            throw new IllegalArgumentException("Game name cannot be null");
+        }
+        String key = game.toLowerCase();
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            if (!current.isSupported(key)) {
+                return current;
+            }
+            Map<String, Game> games = new HashMap<>(current.games);
+            games.remove(key);
+            return publish(current.withGames(games, without(current.lazyGames, key)));
+        }
+    }
+
+    /**
+     * Adds a component; components already present keep their vocabulary ids.
+     */
+    public Snapshot addComponent(TargetingComponent component) {
+        return addComponents(Collections.singletonList(component));
+    }
+
+    /**
+     * Adds components with a single copy of the component state. Components already present keep their
+     * vocabulary ids; new ones receive the next free ids in category then text order.
+     */
+    public Snapshot addComponents(Collection<TargetingComponent> added) {
+        Set<ComponentCategory> categories = EnumSet.noneOf(ComponentCategory.class);
+        for (TargetingComponent component : added) {
+            if (component == null) {
+                throw new IllegalArgumentException("Component cannot be null");
+            }
+            categories.add(component.getCategory());
+        }
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            Set<TargetingComponent> components = new HashSet<>(current.components);
+            components.addAll(added);
+            Map<String, TargetingComponent> componentMap = new HashMap<>(current.componentMap);
+            Map<ComponentCategory, Set<TargetingComponent>> byCategory = copy(current.componentsByCategory, categories);
+            Map<ComponentCategory, Set<String>> values = copy(current.validValues, categories);
+            index(added, componentMap, byCategory, values);
+            return publish(current.withComponents(components, componentMap, byCategory,
+                current.vocabulary.withAll(added), values));
+        }
+    }
+
+    /**
+     * Replaces every component; vocabulary ids are reassigned in canonical order. Values registered
+     * with {@link #registerParser} stay valid.
+     */
+    public Snapshot setComponents(Collection<TargetingComponent> replacement) {
+        Set<TargetingComponent> components = new HashSet<>(replacement);
+        ComponentVocabulary vocabulary = ComponentVocabulary.of(components);
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            Map<String, TargetingComponent> componentMap = new HashMap<>();
+            Map<ComponentCategory, Set<TargetingComponent>> byCategory = categoryMap();
+            Map<ComponentCategory, Set<String>> values = copy(current.registeredValues, current.registeredValues.keySet());
+            index(components, componentMap, byCategory, values);
+            return publish(current.withComponents(components, componentMap, byCategory, vocabulary, values));
+        }
+    }
+
+    // Callers hold writeLock and derived next from the current snapshot
+    private Snapshot publish(Snapshot next) {
+        snapshot = next;
+        return next;
+    }
+
+    // Adds components to the lookups; the sets of their categories must already be private copies
+    private static void index(Collection<TargetingComponent> components, Map<String, TargetingComponent> componentMap,
+                              Map<ComponentCategory, Set<TargetingComponent>> byCategory,
+                              Map<ComponentCategory, Set<String>> values) {
+        for (TargetingComponent component : components) {
+            componentMap.put(component.getValue(), component);
+            byCategory.computeIfAbsent(component.getCategory(), category -> new HashSet<>()).add(component);
+            values.computeIfAbsent(component.getCategory(), category -> new HashSet<>()).add(component.getValue());
+        }
+    }
+
+    private static <T> Map<ComponentCategory, Set<T>> categoryMap() {
+        return new EnumMap<>(ComponentCategory.class);
+    }
+
+    // Copies the map and the sets of the given categories, which the caller is about to extend;
+    // the other sets stay shared with the published snapshot
+    private static <T> Map<ComponentCategory, Set<T>> copy(Map<ComponentCategory, Set<T>> map,
+                                                         Set<ComponentCategory> categories) {
+        Map<ComponentCategory, Set<T>> copy = categoryMap();
+        copy.putAll(map);
+        for (ComponentCategory category : categories) {
+            Set<T> values = map.get(category);
+            copy.put(category, values != null ? new HashSet<>(values) : new HashSet<>());
+        }
+        return copy;
+    }
+
+    private static <T> Map<ComponentCategory, Set<T>> readOnly(Map<ComponentCategory, Set<T>> map) {
+        Map<ComponentCategory, Set<T>> view = categoryMap();
+        map.forEach((category, values) -> view.put(category, Collections.unmodifiableSet(values)));
+        return Collections.unmodifiableMap(view);
+    }
+
+    private static Set<String> without(Set<String> games, String game) {
+        if (!games.contains(game)) {
+            return games;
+        }
+        Set<String> remaining = new HashSet<>(games);
+        remaining.remove(game);
+        return remaining;
+    }
+}
@@ -3,44 +3,137 @@ package com.ugc.card.model.targeting;
 import java.util.*;
 import java.util.regex.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.Data;
-import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
 import com.ugc.card.model.targeting.ComponentCategory;
 import java.util.Set;
 import java.util.HashSet;
 
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
 public class TargetingSystem {
+    // Games, components, rules and patterns change only through the methods below, never through setters,
+    // so that once the registry takes over every write reaches its snapshots
     private Set<TargetingComponent> components = new HashSet<>();
+    @Setter(AccessLevel.NONE)
     private Map<String, TargetingComponent> componentMap = new HashMap<>();
+    @Setter(AccessLevel.NONE)
     private Map<ComponentCategory, Set<TargetingComponent>> componentsByCategory = new HashMap<>();
     private Map<ComponentCategory, Set<String>> validValues = new HashMap<>();
+    @Setter(AccessLevel.NONE)
     private Map<String, GameAbilityParser> gameParsers = new HashMap<>();
     private TargetingTensor model;
     private int vectorSize = 100; // Default vector size
+    @Setter(AccessLevel.NONE)
     private Map<String, Set<ComponentCategory>> gameCategories = new HashMap<>();
+    @Setter(AccessLevel.NONE)
     private Map<String, Map<ComponentCategory, Set<String>>> gameComponents = new HashMap<>();
+    @Setter(AccessLevel.NONE)
     private Map<String, Set<ValidationRule>> gameRules = new HashMap<>();
+    @Setter(AccessLevel.NONE)
     private Map<String, Set<AbilityType>> gameAbilityTypes = new HashMap<>();
+    @Setter(AccessLevel.NONE)
     private Map<String, Set<TargetingPattern>> gamePatterns = new HashMap<>();
     private Random random = new Random();
+    @Setter(AccessLevel.NONE)
     private Set<ValidationRule> validationRules = new HashSet<>();
+    @Setter(AccessLevel.NONE)
     private Set<TargetingPattern> targetingPatterns = new HashSet<>();
+    @Setter(AccessLevel.NONE)
+    private ComponentVocabulary vocabulary;
+    // Built on first lookup per game, dropped when the game is replaced or removed and rebuilt when the
+    // game's set no longer holds the entries it was built from; parses read these from several threads
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Map<String, GameIndex<TargetingPattern>> gamePatternIndexes = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Map<String, GameIndex<AbilityType>> gameAbilityTypeIndexes = new ConcurrentHashMap<>();
+    // Set once the system is shared between threads; games and components are then read from its snapshots
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile TargetingRegistry registry;
+    // Built-in games not in the bean's maps yet; lookups read them from GameParserCache without writing
+    // to the maps, so concurrent parses never modify the system
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Set<String> lazyGames = ConcurrentHashMap.newKeySet();
+    // Optional memo of parseAbility results; games are invalidated when their parser changes
+    private volatile AbilityParseCache parseCache;
     
+    private enum Keyword {
+        TRAMPLE("trample"),
+        LIFELINK("lifelink"),
+        DEATHTOUCH("deathtouch"),
+        FIRST_STRIKE("first strike"),
+        DOUBLE_STRIKE("double strike"),
+        FLYING("flying"),
+        REACH("reach"),
+        HEXPROOF("hexproof"),
+        PROTECTION_FROM("protection from");
+        
+        private final String phrase;
+        
+        Keyword(String phrase) {
+            this.phrase = phrase;
+        }
+    }
+    
+    private static final LexiconAutomaton<Keyword> KEYWORD_LEXICON = buildKeywordLexicon();
+    
+    // A dispatch index with the entries it was built from, in the source set's iteration order
+    private static final class GameIndex<T> {
+        final List<T> source;
+        final PatternDispatchIndex<T> index;
+        
+        GameIndex(List<T> source, PatternDispatchIndex<T> index) {
+            this.source = source;
+            this.index = index;
+        }
+        
+        // Patterns and ability types compare by identity, so this is a pass of reference checks
+        boolean isFor(Set<T> items) {
+            if (items.size() != source.size()) {
+                return false;
+            }
+            int i = 0;
+            for (T item : items) {
+                if (item != source.get(i++)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    private static LexiconAutomaton<Keyword> buildKeywordLexicon() {
+        LexiconAutomaton.Builder<Keyword> builder = LexiconAutomaton.builder();
+        for (Keyword keyword : Keyword.values()) {
+            builder.add(keyword.phrase, keyword);
+        }
+        return builder.build();
+    }
+    
+    // Takes every collection as given, without adding the built-in games
     public TargetingSystem(Set<TargetingComponent> components,
                          Map<String, TargetingComponent> componentMap,
                          Map<ComponentCategory, Set<TargetingComponent>> componentsByCategory,
                          Map<ComponentCategory, Set<String>> validValues,
                          Map<String, GameAbilityParser> gameParsers,
                          TargetingTensor model,
+                         int vectorSize,
                          Map<String, Set<ComponentCategory>> gameCategories,
                          Map<String, Map<ComponentCategory, Set<String>>> gameComponents,
                          Map<String, Set<ValidationRule>> gameRules,
                          Map<String, Set<AbilityType>> gameAbilityTypes,
                          Map<String, Set<TargetingPattern>> gamePatterns,
+                         Random random,
                          Set<ValidationRule> validationRules,
                          Set<TargetingPattern> targetingPatterns) {
         this.components = components;
@@ -49,6 +142,37 @@ public class TargetingSystem {
         this.validValues = validValues;
         this.gameParsers = gameParsers;
         this.model = model;
+        this.vectorSize = vectorSize;
+        this.gameCategories = gameCategories;
+        this.gameComponents = gameComponents;
+        this.gameRules = gameRules;
+        this.gameAbilityTypes = gameAbilityTypes;
+        this.gamePatterns = gamePatterns;
+        this.random = random;
+        this.validationRules = validationRules;
+        this.targetingPatterns = targetingPatterns;
+    }
+    
+    public TargetingSystem(Set<TargetingComponent> components,
+                         Map<String, TargetingComponent> componentMap,
+                         Map<ComponentCategory, Set<TargetingComponent>> componentsByCategory,
+                         Map<ComponentCategory, Set<String>> validValues,
+                         Map<String, GameAbilityParser> gameParsers,
+                         TargetingTensor model,
+                         Map<String, Set<ComponentCategory>> gameCategories,
+                         Map<String, Map<ComponentCategory, Set<String>>> gameComponents,
+                         Map<String, Set<ValidationRule>> gameRules,
+                         Map<String, Set<AbilityType>> gameAbilityTypes,
+                         Map<String, Set<TargetingPattern>> gamePatterns,
+                         Set<ValidationRule> validationRules,
+                         Set<TargetingPattern> targetingPatterns) {
+        this.components = components;
+        this.componentMap = componentMap;
+        this.componentsByCategory = componentsByCategory;
+        this.validValues = validValues;
+        // Copied, as built-in games are taken out of it below
+        this.gameParsers = new HashMap<>(gameParsers);
+        this.model = model;
         this.gameCategories = gameCategories;
         this.gameComponents = gameComponents;
         this.gameRules = gameRules;
@@ -58,20 +182,13 @@ public class TargetingSystem {
         this.targetingPatterns = targetingPatterns;
         this.random = new Random();
         
-        initializeGameParsers();
+        // Built-in games take precedence over parsers passed in, as they always have, but are only
+        // constructed when first used and are shared with every other system through GameParserCache
+        this.gameParsers.keySet().removeAll(GameParserCache.builtInGames());
+        lazyGames.addAll(GameParserCache.builtInGames());
         initializeGames();
     }
     
-    private void initializeGameParsers() {
-        gameParsers.put("snap", (GameAbilityParser) new SnapAbilityParser());
-        gameParsers.put("starwars", (GameAbilityParser) new StarWarsAbilityParser());
-        gameParsers.put("pokemon", (GameAbilityParser) new PokemonAbilityParser());
-        gameParsers.put("yugioh", (GameAbilityParser) new YugiohAbilityParser());
-        gameParsers.put("magic", (GameAbilityParser) new MagicAbilityParser());
-        gameParsers.put("lorcana", (GameAbilityParser) new LorcanaAbilityParser());
-        gameParsers.put("fleshandblood", (GameAbilityParser) new FleshAndBloodAbilityParser());
-    }
-    
     private void initializeGames() {
         // Initialize categories and components for each game
         for (Map.Entry<String, GameAbilityParser> entry : gameParsers.entrySet()) {
@@ -100,15 +217,172 @@ public class TargetingSystem {
         }
     }
     
+    // The built-in game, when it has not been brought into the bean's maps; null otherwise
+    private TargetingRegistry.Game lazyGame(String game) {
+        if (game == null || lazyGames.isEmpty()) {
+            return null;
+        }
+        String gameLower = game.toLowerCase();
+        return lazyGames.contains(gameLower) ? GameParserCache.get(gameLower) : null;
+    }
+    
+    // Brings every built-in game into the bean's maps, for the getters that hand those maps out
+    private synchronized void loadAllGames() {
+        if (registry != null) {
+            return;
+        }
+        for (String game : new ArrayList<>(lazyGames)) {
+            TargetingRegistry.Game loaded = GameParserCache.get(game);
+            gameParsers.put(game, loaded.getParser());
+            gameCategories.put(game, loaded.getCategories());
+            gameComponents.put(game, loaded.getComponents());
+            gameRules.put(game, loaded.getValidationRules());
+            gameAbilityTypes.put(game, loaded.getAbilityTypes());
+            gamePatterns.put(game, loaded.getTargetingPatterns());
+            lazyGames.remove(game);
+        }
+    }
+    
+    /**
+     * Switches to the concurrent registry mode, for a system shared between threads. The current games,
+     * components, rules and patterns move into a {@link TargetingRegistry}: lookups, parsing and encoding
+     * read its latest snapshot without locking, and writes such as {@link #addComponent} and
+     * {@link #addGame} publish new snapshots. The bean's own collections are frozen from then on and no
+     * longer track later writes; the component and valid-value getters read the snapshot instead.
+     * Calling this again returns the same registry.
+     */
+    public synchronized TargetingRegistry enableConcurrentRegistry() {
+        if (registry == null) {
+            registry = TargetingRegistry.of(gameParsers, lazyGames, components, getValidValues(), validationRules,
+                targetingPatterns);
+            components = Collections.unmodifiableSet(components);
+            componentMap = Collections.unmodifiableMap(componentMap);
+            componentsByCategory = Collections.unmodifiableMap(componentsByCategory);
+            gameParsers = Collections.unmodifiableMap(gameParsers);
+            gameCategories = Collections.unmodifiableMap(gameCategories);
+            gameComponents = Collections.unmodifiableMap(gameComponents);
+            gameRules = Collections.unmodifiableMap(gameRules);
+            gameAbilityTypes = Collections.unmodifiableMap(gameAbilityTypes);
+            gamePatterns = Collections.unmodifiableMap(gamePatterns);
+            validationRules = Collections.unmodifiableSet(validationRules);
+            targetingPatterns = Collections.unmodifiableSet(targetingPatterns);
+        }
+        return registry;
+    }
+    
+    public boolean isConcurrentRegistry() {
+        return registry != null;
+    }
+    
+    /**
+     * @return the registry once {@link #enableConcurrentRegistry} has been called, otherwise null
+     */
+    public TargetingRegistry getRegistry() {
+        return registry;
+    }
+    
+    private GameAbilityParser parserFor(String game) {
+        TargetingRegistry current = registry;
+        if (current != null) {
+            return current.snapshot().getParser(game);
+        }
+        TargetingRegistry.Game lazy = lazyGame(game);
+        return lazy != null ? lazy.getParser() : gameParsers.get(game);
+    }
+    
+    // Null when the game is in neither the registry nor GameParserCache; read the bean's maps then
+    private TargetingRegistry.Game registeredGame(String game) {
+        TargetingRegistry current = registry;
+        if (current != null) {
+            return current.snapshot().getGame(game);
+        }
+        return lazyGame(game);
+    }
+    
+    // The game getters hand out the bean's own maps, so they first bring in every built-in game not used
+    // yet, constructing its parser; parsing and the per-game lookups never need to
+    /**
+     * @return the parser of every game, constructing any built-in parser not used yet
+     */
+    public Map<String, GameAbilityParser> getGameParsers() {
+        loadAllGames();
+        return gameParsers;
+    }
+    
+    public Map<String, Set<ComponentCategory>> getGameCategories() {
+        loadAllGames();
+        return gameCategories;
+    }
+    
+    public Map<String, Map<ComponentCategory, Set<String>>> getGameComponents() {
+        loadAllGames();
+        return gameComponents;
+    }
+    
+    public Map<String, Set<ValidationRule>> getGameRules() {
+        loadAllGames();
+        return gameRules;
+    }
+    
+    public Map<String, Set<AbilityType>> getGameAbilityTypes() {
+        loadAllGames();
+        return gameAbilityTypes;
+    }
+    
+    public Map<String, Set<TargetingPattern>> getGamePatterns() {
+        loadAllGames();
+        return gamePatterns;
+    }
+    
     public void addComponent(TargetingComponent component) {
-        components.add(component);
-        componentMap.put(component.getValue(), component);
-        componentsByCategory.get(component.getCategory()).add(component);
-        vectorSize++;
+        addComponents(Collections.singletonList(component));
+    }
+    
+    /**
+     * Adds many components, extending the vocabulary once for the whole batch.
+     */
+    public void addComponents(Collection<TargetingComponent> added) {
+        TargetingRegistry current = registry;
+        if (current != null) {
+            current.addComponents(added);
+            return;
+        }
+        // Extended before the set grows, so the existing ids are kept rather than rebuilt
+        vocabulary = getVocabulary().withAll(added);
+        for (TargetingComponent component : added) {
+            components.add(component);
+            componentMap.put(component.getValue(), component);
+            componentsByCategory.computeIfAbsent(component.getCategory(), category -> new HashSet<>()).add(component);
+        }
     }
     
     public Set<TargetingComponent> getComponents() {
-        return new HashSet<>(components);
+        TargetingRegistry current = registry;
+        return new HashSet<>(current != null ? current.snapshot().getComponents() : components);
+    }
+    
+    public void setComponents(Set<TargetingComponent> components) {
+        TargetingRegistry current = registry;
+        if (current != null) {
+            current.setComponents(components);
+            return;
+        }
+        this.components = components;
+        this.vocabulary = null;
+    }
+    
+    public ComponentVocabulary getVocabulary() {
+        TargetingRegistry current = registry;
+        if (current != null) {
+            return current.snapshot().getVocabulary();
+        }
+        if (vocabulary == null) {
+            vocabulary = ComponentVocabulary.of(components);
+        } else if (vocabulary.size() < components.size()) {
+            // Components added to the set directly are appended; ids already handed out never change
+            vocabulary = vocabulary.withAll(components);
+        }
+        return vocabulary;
     }
     
     public Set<TargetingComponent> getComponentsByCategory(ComponentCategory category) {
@@ -122,34 +396,31 @@ public class TargetingSystem {
             .collect(Collectors.toSet());
     }
     
+    public Map<ComponentCategory, Set<TargetingComponent>> getComponentsByCategory() {
+        TargetingRegistry current = registry;
+        return current != null ? current.snapshot().getComponentsByCategory() : componentsByCategory;
+    }
+    
+    public Map<String, TargetingComponent> getComponentMap() {
+        TargetingRegistry current = registry;
+        return current != null ? current.snapshot().getComponentMap() : componentMap;
+    }
+    
     public List<TargetingComponent> getComponentsByCategoryAsList(ComponentCategory category) {
         return new ArrayList<>(getComponentsByCategory(category));
     }
     
     public TargetingComponent getComponentByValue(String value) {
-        return componentMap.get(value);
+        TargetingRegistry current = registry;
+        return current != null ? current.snapshot().getComponent(value) : componentMap.get(value);
     }
     
     public int getComponentIndex(TargetingComponent component) {
-        int index = 0;
-        for (TargetingComponent c : components) {
-            if (c.equals(component)) {
-                return index;
-            }
-            index++;
-        }
-        return -1;
+        return getVocabulary().indexOf(component);
     }
     
     public TargetingComponent getComponentAtIndex(int index) {
-        int currentIndex = 0;
-        for (TargetingComponent component : components) {
-            if (currentIndex == index) {
-                return component;
-            }
-            currentIndex++;
-        }
-        return null;
+        return getVocabulary().get(index);
     }
     
     public TargetingChain createChain() {
@@ -195,8 +466,18 @@ public class TargetingSystem {
     }
     
     private boolean parseKeywordAbility(String sentence, TargetingChain chain) {
+        // One scan finds every keyword in the sentence; they are then handled in priority order
+        BitSet found = KEYWORD_LEXICON.findSubstrings(sentence);
+        if (found.isEmpty()) {
+            return false;
+        }
+        Set<Keyword> keywords = EnumSet.noneOf(Keyword.class);
+        for (int rank = found.nextSetBit(0); rank >= 0; rank = found.nextSetBit(rank + 1)) {
+            keywords.add(KEYWORD_LEXICON.value(rank));
+        }
+        
         // Combat Keywords
-        if (sentence.contains("trample")) {
+        if (keywords.contains(Keyword.TRAMPLE)) {
             chain.addComponent(new TargetingComponent(ComponentCategory.TYPE, "damage"));
             chain.addComponent(new TargetingComponent(ComponentCategory.STATE, "leftover"));
             chain.addComponent(new TargetingComponent(ComponentCategory.TARGET, "player"));
@@ -204,24 +485,24 @@ public class TargetingSystem {
             return true;
         }
         
-        if (sentence.contains("lifelink")) {
+        if (keywords.contains(Keyword.LIFELINK)) {
             chain.addComponent(new TargetingComponent(ComponentCategory.TYPE, "damage"));
             chain.addComponent(new TargetingComponent(ComponentCategory.TARGET, "controller"));
             chain.addComponent(new TargetingComponent(ComponentCategory.EFFECT, "heal"));
             return true;
         }
         
-        if (sentence.contains("deathtouch")) {
+        if (keywords.contains(Keyword.DEATHTOUCH)) {
             chain.addComponent(new TargetingComponent(ComponentCategory.TYPE, "damage"));
             chain.addComponent(new TargetingComponent(ComponentCategory.DIRECTION, "any"));
             chain.addComponent(new TargetingComponent(ComponentCategory.EFFECT, "destroy"));
             return true;
         }
         
-        if (sentence.contains("first strike") || sentence.contains("double strike")) {
+        if (keywords.contains(Keyword.FIRST_STRIKE) || keywords.contains(Keyword.DOUBLE_STRIKE)) {
             chain.addComponent(new TargetingComponent(ComponentCategory.TYPE, "damage"));
             chain.addComponent(new TargetingComponent(ComponentCategory.STATE, "first"));
-            if (sentence.contains("double strike")) {
+            if (keywords.contains(Keyword.DOUBLE_STRIKE)) {
                 chain.addComponent(new TargetingComponent(ComponentCategory.STATE, "second"));
             }
             chain.addComponent(new TargetingComponent(ComponentCategory.EFFECT, "deal"));
@@ -229,14 +510,14 @@ public class TargetingSystem {
         }
         
         // Evasion Keywords
-        if (sentence.contains("flying")) {
+        if (keywords.contains(Keyword.FLYING)) {
             chain.addComponent(new TargetingComponent(ComponentCategory.STATE, "blocking"));
             chain.addComponent(new TargetingComponent(ComponentCategory.TYPE, "flying"));
             chain.addComponent(new TargetingComponent(ComponentCategory.DIRECTION, "only"));
             return true;
         }
         
-        if (sentence.contains("reach")) {
+        if (keywords.contains(Keyword.REACH)) {
             chain.addComponent(new TargetingComponent(ComponentCategory.STATE, "blocking"));
             chain.addComponent(new TargetingComponent(ComponentCategory.TYPE, "flying"));
             chain.addComponent(new TargetingComponent(ComponentCategory.DIRECTION, "can"));
@@ -244,7 +525,7 @@ public class TargetingSystem {
         }
         
         // Protection Keywords
-        if (sentence.contains("hexproof")) {
+        if (keywords.contains(Keyword.HEXPROOF)) {
             chain.addComponent(new TargetingComponent(ComponentCategory.TYPE, "spell"));
             chain.addComponent(new TargetingComponent(ComponentCategory.TARGET, "opponent"));
             chain.addComponent(new TargetingComponent(ComponentCategory.DIRECTION, "can't"));
@@ -252,8 +533,8 @@ public class TargetingSystem {
             return true;
         }
         
-        if (sentence.contains("protection from")) {
-            String[] parts = sentence.split("protection from");
+        if (keywords.contains(Keyword.PROTECTION_FROM)) {
+            String[] parts = TextPatterns.PROTECTION_FROM.split(sentence);
             if (parts.length > 1) {
                 String protectedFrom = parts[1].trim();
                 chain.addComponent(new TargetingComponent(ComponentCategory.TYPE, protectedFrom));
@@ -328,10 +609,11 @@ public class TargetingSystem {
     
     private TargetingChain parseDefaultAbility(String sentence, TargetingChain chain) {
         // Default parsing for other cases
-        String[] words = sentence.split("\\s+");
-        for (String word : words) {
+        AbilityTokenizer tokens = new AbilityTokenizer(sentence);
+        while (tokens.next()) {
+            String word = tokens.word();
             // Check for numbers
-            if (word.matches("\\d+")) {
+            if (tokens.isNumber()) {
                 chain.addComponent(new TargetingComponent(ComponentCategory.VALUE, word));
             }
             // Check for types
@@ -352,8 +634,7 @@ public class TargetingSystem {
     
     private String extractTriggerCondition(String sentence) {
         // Extract trigger condition from sentence
-        Pattern pattern = Pattern.compile("(when|whenever|at)\\s+(.*?)(,|\\s+then|$)");
-        Matcher matcher = pattern.matcher(sentence);
+        Matcher matcher = TextPatterns.TRIGGER_CONDITION.matcher(sentence);
         if (matcher.find()) {
             return matcher.group(2).trim();
         }
@@ -362,8 +643,9 @@ public class TargetingSystem {
     
     private boolean parseEffect(String effect, TargetingChain chain) {
         // Parse effect text
-        String[] words = effect.split("\\s+");
-        for (String word : words) {
+        AbilityTokenizer tokens = new AbilityTokenizer(effect);
+        while (tokens.next()) {
+            String word = tokens.word();
             if (isEffect(word)) {
                 chain.addComponent(new TargetingComponent(ComponentCategory.EFFECT, word));
                 return true;
@@ -373,59 +655,49 @@ public class TargetingSystem {
     }
     
     private boolean isType(String word) {
+        TargetingRegistry current = registry;
+        if (current != null) {
+            return current.snapshot().isValidValue(ComponentCategory.TYPE, word.toLowerCase());
+        }
         Set<String> validTypes = componentsByCategory.get(ComponentCategory.TYPE);
         return validTypes != null && validTypes.contains(word.toLowerCase());
     }
     
     private boolean isDirection(String word) {
+        TargetingRegistry current = registry;
+        if (current != null) {
+            return current.snapshot().isValidValue(ComponentCategory.DIRECTION, word.toLowerCase());
+        }
         Set<String> validDirections = componentsByCategory.get(ComponentCategory.DIRECTION);
         return validDirections != null && validDirections.contains(word.toLowerCase());
     }
     
     private boolean isEffect(String word) {
+        TargetingRegistry current = registry;
+        if (current != null) {
+            return current.snapshot().isValidValue(ComponentCategory.EFFECT, word.toLowerCase());
+        }
         Set<String> validEffects = componentsByCategory.get(ComponentCategory.EFFECT);
         return validEffects != null && validEffects.contains(word.toLowerCase());
     }
     
     public TargetingTensor encodeChain(TargetingChain chain) {
-        int[] shape = {components.size()};
-        float[] data = new float[components.size()];
-        
-        for (TargetingComponent component : chain.getComponents()) {
-            int index = getComponentIndex(component);
-            if (index >= 0) {
-                data[index] = 1.0f;
-            }
-        }
-        
-        return new TargetingTensor(data, shape);
+        ComponentVocabulary vocab = getVocabulary();
+        return new TargetingTensor(vocab.encode(chain), new int[]{vocab.size()});
     }
     
     public TargetingChain decodeChain(TargetingTensor tensor) {
-        TargetingChain chain = new TargetingChain();
-        float[] data = tensor.getData();
-        
-        for (int i = 0; i < data.length; i++) {
-            if (data[i] > 0) {
-                TargetingComponent component = getComponentAtIndex(i);
-                if (component != null) {
-                    chain.addComponent(component);
-                }
-            }
-        }
-        
-        return chain;
+        return getVocabulary().decode(tensor.getData(), 0.0f);
     }
     
     public void train(List<TargetingChain> chains) {
-        int[] shape = new int[]{components.size()};
+        ComponentVocabulary vocab = getVocabulary();
+        int[] shape = new int[]{vocab.size()};
         model = new TargetingTensor(shape);
-        float[] values = new float[components.size()];
+        float[] values = new float[vocab.size()];
         for (TargetingChain chain : chains) {
-            TargetingTensor encoded = encodeChain(chain);
-            float[] encodedValues = encoded.getValues();
-            for (int i = 0; i < values.length; i++) {
-                values[i] += encodedValues[i];
+            for (int index : vocab.indicesOf(chain)) {
+                values[index] += 1.0f;
             }
         }
         for (int i = 0; i < values.length; i++) {
@@ -437,20 +709,20 @@ public class TargetingSystem {
     public List<TargetingChain> generateChains(int count) {
         List<TargetingChain> chains = new ArrayList<>();
         for (int i = 0; i < count; i++) {
-            float[] noise = new float[components.size()];
+            float[] noise = new float[getVectorSize()];
             for (int j = 0; j < noise.length; j++) {
                 noise[j] = (float) random.nextDouble();
             }
-            TargetingTensor noiseTensor = new TargetingTensor(new int[]{components.size()});
+            TargetingTensor noiseTensor = new TargetingTensor(new int[]{getVectorSize()});
             noiseTensor.setValues(noise);
             
             float[] modelValues = model.getValues();
-            float[] generatedValues = new float[components.size()];
+            float[] generatedValues = new float[getVectorSize()];
             for (int j = 0; j < generatedValues.length; j++) {
                 generatedValues[j] = modelValues[j] + noise[j];
             }
             
-            TargetingTensor generated = new TargetingTensor(new int[]{components.size()});
+            TargetingTensor generated = new TargetingTensor(new int[]{getVectorSize()});
             generated.setValues(generatedValues);
             chains.add(decodeChain(generated));
         }
@@ -461,7 +733,7 @@ public class TargetingSystem {
         List<TargetingChain> chains = new ArrayList<>();
         
         // Split into sentences
-        String[] sentences = text.split("[.!?]");
+        String[] sentences = TextPatterns.SENTENCE_END.split(text);
         for (String sentence : sentences) {
             if (!sentence.trim().isEmpty()) {
                 chains.add(parseSentence(sentence.trim()));
@@ -490,15 +762,10 @@ public class TargetingSystem {
     }
     
     public List<Float> chainToVector(TargetingChain chain) {
-        List<Float> vector = new ArrayList<>();
-        for (int i = 0; i < components.size(); i++) {
-            vector.add(0.0f);
-        }
-        for (TargetingComponent component : chain.getComponents()) {
-            int index = getComponentIndex(component);
-            if (index >= 0 && index < components.size()) {
-                vector.set(index, 1.0f);
-            }
+        float[] encoded = getVocabulary().encode(chain);
+        List<Float> vector = new ArrayList<>(encoded.length);
+        for (float value : encoded) {
+            vector.add(value);
         }
         return vector;
     }
@@ -523,38 +790,30 @@ public class TargetingSystem {
     }
     
     private List<TargetingComponent> getActiveComponents(TargetingTensor tensor) {
+        ComponentVocabulary vocab = getVocabulary();
         List<TargetingComponent> active = new ArrayList<>();
         float[] values = tensor.getValues();
         for (int i = 0; i < values.length; i++) {
-            if (values[i] > 0.5f) {
-                active.add(components.get(i));
+            if (values[i] > 0.5f && vocab.get(i) != null) {
+                active.add(vocab.get(i));
             }
         }
         return active;
     }
     
     public int getVectorSize() {
-        return components.size();
+        return getVocabulary().size();
     }
     
     public TargetingTensor chainToTensor(TargetingChain chain) {
-        TargetingTensor tensor = new TargetingTensor(new int[]{components.size()});
-        float[] values = new float[components.size()];
-        for (TargetingComponent component : chain.getComponents()) {
-            int index = getComponentIndex(component);
-            if (index >= 0 && index < components.size()) {
-                values[index] = 1.0f;
-            }
-        }
-        tensor.setValues(values);
-        return tensor;
+        return encodeChain(chain);
     }
     
     public double calculateSimilarity(TargetingChain a, TargetingChain b) {
-        Set<ComponentCategory> categoriesA = a.getComponents().stream()
+        Set<ComponentCategory> categoriesA = a.componentsView().stream()
             .map(TargetingComponent::getCategory)
             .collect(Collectors.toSet());
-        Set<ComponentCategory> categoriesB = b.getComponents().stream()
+        Set<ComponentCategory> categoriesB = b.componentsView().stream()
             .map(TargetingComponent::getCategory)
             .collect(Collectors.toSet());
         Set<ComponentCategory> intersection = new HashSet<>(categoriesA);
@@ -565,14 +824,22 @@ public class TargetingSystem {
     }
 
     public void registerParser(String game, GameAbilityParser parser) {
+        TargetingRegistry current = registry;
+        if (current != null) {
+            current.registerParser(game, parser);
+            invalidateParses(game);
+            return;
+        }
+        invalidateParses(game);
         gameParsers.put(game.toLowerCase(), parser);
+        lazyGames.remove(game.toLowerCase());
         componentsByCategory.putAll(parser.getValidComponents());
         validationRules.addAll(parser.getValidationRules());
         targetingPatterns.addAll(parser.getTargetingPatterns());
     }
 
     public boolean validateChain(TargetingChain chain) {
-        for (ValidationRule rule : validationRules) {
+        for (ValidationRule rule : getValidationRules()) {
             if (!rule.validate(chain)) {
                 return false;
             }
@@ -582,7 +849,8 @@ public class TargetingSystem {
 
     public Set<ComponentCategory> getValidCategories() {
         Set<ComponentCategory> validCategories = new HashSet<>();
-        for (TargetingComponent component : components) {
+        TargetingRegistry current = registry;
+        for (TargetingComponent component : current != null ? current.snapshot().getComponents() : components) {
             validCategories.add(component.getCategory());
         }
         return validCategories;
@@ -590,39 +858,99 @@ public class TargetingSystem {
 
     public Set<String> getValidComponents(ComponentCategory category) {
         Set<String> values = new HashSet<>();
-        for (Map.Entry<String, GameAbilityParser> entry : gameParsers.entrySet()) {
-            values.addAll(entry.getValue().getValidComponents(category));
+        TargetingRegistry current = registry;
+        if (current != null) {
+            for (TargetingRegistry.Game game : current.snapshot().getGames().values()) {
+                values.addAll(game.getParser().getValidComponents(category));
+            }
+            return values;
+        }
+        for (GameAbilityParser parser : gameParsers.values()) {
+            values.addAll(parser.getValidComponents(category));
+        }
+        for (String game : lazyGames) {
+            values.addAll(GameParserCache.parser(game).getValidComponents(category));
         }
         return values;
     }
 
     public Set<TargetingPattern> getTargetingPatterns() {
-        return targetingPatterns;
+        TargetingRegistry current = registry;
+        return current != null ? current.snapshot().getTargetingPatterns() : targetingPatterns;
     }
 
     public Set<ValidationRule> getValidationRules() {
-        return validationRules;
+        TargetingRegistry current = registry;
+        return current != null ? current.snapshot().getValidationRules() : validationRules;
     }
 
     public TargetingChain parseAbility(String abilityText, String game) {
-        GameAbilityParser parser = gameParsers.get(game.toLowerCase());
+        return parseFunction(game).apply(abilityText);
+    }
+
+    // Through the parse cache when one is set; cached chains are frozen and shared. The generation was
+    // taken before the parser was resolved, so the cache refuses chains of a parser replaced since
+    private static TargetingChain parse(GameAbilityParser parser, String game, String abilityText,
+                                        AbilityParseCache cache, long generation) {
+        return cache != null
+            ? cache.parse(game, abilityText, parser::parseAbility, generation)
+            : parser.parseAbility(abilityText);
+    }
+
+    /**
+     * Parses many abilities of one game across all cores; see {@link BatchAbilityParser}.
+     *
+     * @return one result per text in input order, failed parses included
+     */
+    public List<BatchAbilityParser.Result> parseAll(String game, List<String> abilityTexts) {
+        return parseAll(game, abilityTexts, Runtime.getRuntime().availableProcessors());
+    }
+
+    public List<BatchAbilityParser.Result> parseAll(String game, List<String> abilityTexts, int parallelism) {
+        return BatchAbilityParser.parseAllWith(parseFunction(game), abilityTexts, parallelism);
+    }
+
+    /**
+     * Parses a stream of abilities of one game lazily, a chunk at a time across all cores. The result
+     * must be closed, as {@link BatchAbilityParser#parseAll(GameAbilityParser, Stream, int)} describes.
+     *
+     * @return the results in input order; closing the stream closes {@code abilityTexts}
+     */
+    public Stream<BatchAbilityParser.Result> parseAll(String game, Stream<String> abilityTexts) {
+        return parseAll(game, abilityTexts, Runtime.getRuntime().availableProcessors());
+    }
+
+    public Stream<BatchAbilityParser.Result> parseAll(String game, Stream<String> abilityTexts, int parallelism) {
+        return BatchAbilityParser.parseAllWith(parseFunction(game), abilityTexts, parallelism);
+    }
+
+    /**
+     * @return a thread-safe parse for one game, through the parse cache when one is set. The parser is
+     *         resolved now, so a batch keeps it even if the game is replaced meanwhile.
+     */
+    Function<String, TargetingChain> parseFunction(String game) {
+        AbilityParseCache cache = parseCache;
+        long generation = cache != null && game != null ? cache.generation(game) : 0;
+        GameAbilityParser parser = game != null ? parserFor(game.toLowerCase()) : null;
         if (parser == null) {
             throw new IllegalArgumentException("Unsupported game: " + game);
         }
-        return parser.parseAbility(abilityText);
+        return text -> parse(parser, game, text, cache, generation);
     }
 
     public boolean isValidAbility(String game, String abilityText) {
-        GameAbilityParser parser = gameParsers.get(game.toLowerCase());
+        AbilityParseCache cache = parseCache;
+        long generation = cache != null ? cache.generation(game) : 0;
+        GameAbilityParser parser = parserFor(game.toLowerCase());
         if (parser == null) {
             throw new IllegalArgumentException("Unsupported game: " + game);
         }
-        TargetingChain chain = parser.parseAbility(abilityText);
+        TargetingChain chain = parse(parser, game, abilityText, cache, generation);
         return parser.isValidChain(chain);
     }
 
     public String generateAbilityText(String game, TargetingChain chain) {
-        GameAbilityParser parser = gameParsers.get(game.toLowerCase());
+        GameAbilityParser parser = parserFor(game.toLowerCase());
         if (parser == null) {
             throw new IllegalArgumentException("Unsupported game: " + game);
         }
@@ -630,7 +958,7 @@ public class TargetingSystem {
     }
 
     public Set<ComponentCategory> getValidCategories(String game) {
-        GameAbilityParser parser = gameParsers.get(game.toLowerCase());
+        GameAbilityParser parser = parserFor(game.toLowerCase());
         if (parser == null) {
             throw new IllegalArgumentException("Unsupported game: " + game);
         }
@@ -638,7 +966,7 @@ public class TargetingSystem {
     }
 
     public Set<String> getValidComponents(String game, ComponentCategory category) {
-        GameAbilityParser parser = gameParsers.get(game);
+        GameAbilityParser parser = parserFor(game);
         if (parser != null) {
             return parser.getValidComponents(category);
         }
@@ -646,7 +974,7 @@ public class TargetingSystem {
     }
 
     public Map<ComponentCategory, Set<String>> getValidComponents(String game) {
-        GameAbilityParser parser = gameParsers.get(game);
+        GameAbilityParser parser = parserFor(game);
         if (parser != null) {
             return parser.getValidComponents();
         }
@@ -654,7 +982,8 @@ public class TargetingSystem {
     }
 
     public Set<ValidationRule> getValidationRules(String game) {
-        Set<ValidationRule> rules = gameRules.get(game.toLowerCase());
+        TargetingRegistry.Game registered = registeredGame(game);
+        Set<ValidationRule> rules = registered != null ? registered.getValidationRules() : gameRules.get(game.toLowerCase());
         if (rules == null) {
             throw new IllegalArgumentException("Unsupported game: " + game);
         }
@@ -662,7 +991,8 @@ public class TargetingSystem {
     }
 
     public Set<AbilityType> getAbilityTypes(String game) {
-        Set<AbilityType> types = gameAbilityTypes.get(game.toLowerCase());
+        TargetingRegistry.Game registered = registeredGame(game);
+        Set<AbilityType> types = registered != null ? registered.getAbilityTypes() : gameAbilityTypes.get(game.toLowerCase());
         if (types == null) {
             throw new IllegalArgumentException("Unsupported game: " + game);
         }
@@ -670,15 +1000,64 @@ public class TargetingSystem {
     }
 
     public Set<TargetingPattern> getTargetingPatterns(String game) {
-        Set<TargetingPattern> patterns = gamePatterns.get(game.toLowerCase());
+        TargetingRegistry.Game registered = registeredGame(game);
+        Set<TargetingPattern> patterns = registered != null ? registered.getTargetingPatterns() : gamePatterns.get(game.toLowerCase());
         if (patterns == null) {
             throw new IllegalArgumentException("Unsupported game: " + game);
         }
         return patterns;
     }
 
+    /**
+     * @return the game's targeting patterns that the chain matches, without testing every pattern
+     */
+    public List<TargetingPattern> getMatchingPatterns(String game, TargetingChain chain) {
+        TargetingRegistry.Game registered = registeredGame(game);
+        if (registered != null) {
+            return registered.getPatternIndex().matching(chain);
+        }
+        String gameLower = game.toLowerCase();
+        Set<TargetingPattern> patterns = getTargetingPatterns(gameLower);
+        return gameIndex(gamePatternIndexes, gameLower, patterns, PatternDispatchIndex::forPatterns).matching(chain);
+    }
+
+    /**
+     * @return the game's ability types that the chain is valid for, without testing every type
+     */
+    public List<AbilityType> getMatchingAbilityTypes(String game, TargetingChain chain) {
+        TargetingRegistry.Game registered = registeredGame(game);
+        if (registered != null) {
+            return registered.getAbilityTypeIndex().matching(chain);
+        }
+        String gameLower = game.toLowerCase();
+        Set<AbilityType> types = getAbilityTypes(gameLower);
+        return gameIndex(gameAbilityTypeIndexes, gameLower, types, PatternDispatchIndex::forAbilityTypes)
+            .matching(chain);
+    }
+    
+    // The game's cached index, rebuilt from a copy of the set when the set has changed since it was built
+    private static <T> PatternDispatchIndex<T> gameIndex(Map<String, GameIndex<T>> indexes, String game, Set<T> items,
+                                                         Function<Collection<T>, PatternDispatchIndex<T>> build) {
+        GameIndex<T> cached = indexes.get(game);
+        if (cached != null && cached.isFor(items)) {
+            return cached.index;
+        }
+        List<T> source = List.copyOf(items);
+        GameIndex<T> built = new GameIndex<>(source, build.apply(source));
+        indexes.put(game, built);
+        return built.index;
+    }
+
     public void addGame(String game, GameAbilityParser parser) {
+        TargetingRegistry current = registry;
+        if (current != null) {
+            current.addGame(game, parser);
+            invalidateParses(game);
+            return;
+        }
+        invalidateParses(game);
         String gameLower = game.toLowerCase();
+        lazyGames.remove(gameLower);
         gameParsers.put(gameLower, parser);
         gameCategories.put(gameLower, parser.getValidCategories());
         
@@ -691,41 +1070,86 @@ public class TargetingSystem {
         gameRules.put(gameLower, parser.getValidationRules());
         gameAbilityTypes.put(gameLower, parser.getAbilityTypes());
         gamePatterns.put(gameLower, parser.getTargetingPatterns());
+        gamePatternIndexes.remove(gameLower);
+        gameAbilityTypeIndexes.remove(gameLower);
     }
 
     public void removeGame(String game) {
+        TargetingRegistry current = registry;
+        if (current != null) {
+            current.removeGame(game);
+            invalidateParses(game);
+            return;
+        }
+        invalidateParses(game);
         String gameLower = game.toLowerCase();
+        lazyGames.remove(gameLower);
         gameParsers.remove(gameLower);
         gameCategories.remove(gameLower);
         gameComponents.remove(gameLower);
         gameRules.remove(gameLower);
         gameAbilityTypes.remove(gameLower);
         gamePatterns.remove(gameLower);
+        gamePatternIndexes.remove(gameLower);
+        gameAbilityTypeIndexes.remove(gameLower);
+    }
+
+    private void invalidateParses(String game) {
+        AbilityParseCache cache = parseCache;
+        if (cache != null) {
+            cache.invalidate(game);
+        }
     }
 
     public Set<String> getSupportedGames() {
-        return new HashSet<>(gameParsers.keySet());
+        TargetingRegistry current = registry;
+        if (current != null) {
+            return new HashSet<>(current.snapshot().getGameNames());
+        }
+        Set<String> games = new HashSet<>(gameParsers.keySet());
+        games.addAll(lazyGames);
+        return games;
     }
 
     public boolean isGameSupported(String game) {
-        return gameParsers.containsKey(game.toLowerCase());
+        TargetingRegistry current = registry;
+        if (current != null) {
+            return current.snapshot().isSupported(game);
+        }
+        return gameParsers.containsKey(game.toLowerCase()) || lazyGames.contains(game.toLowerCase());
     }
 
     public GameAbilityParser getGameParser(String game) {
-        return gameParsers.get(game);
+        return parserFor(game);
+    }
+
+    /**
+     * Constructs the game's parser now if it is a built-in game not used yet, so that parses started
+     * afterwards, e.g. from several threads at once, only read the system.
+     *
+     * @throws IllegalArgumentException if the game is not supported
+     */
+    public void loadGame(String game) {
+        if (!isGameSupported(game) || parserFor(game.toLowerCase()) == null) {
+            throw new IllegalArgumentException("Unsupported game: " + game);
+        }
     }
 
     public TargetingComponent getComponent(int index) {
-        List<TargetingComponent> componentList = new ArrayList<>(components);
-        return index >= 0 && index < componentList.size() ? componentList.get(index) : null;
+        return getVocabulary().get(index);
     }
 
     public List<TargetingComponent> getComponentsAsList() {
-        return new ArrayList<>(components);
+        return new ArrayList<>(getVocabulary().components());
     }
 
     public Map<ComponentCategory, Set<String>> getValidValues() {
         Map<ComponentCategory, Set<String>> result = new HashMap<>();
+        TargetingRegistry current = registry;
+        if (current != null) {
+            current.snapshot().getValidValues().forEach((category, values) -> result.put(category, new HashSet<>(values)));
+            return result;
+        }
         for (Map.Entry<ComponentCategory, Set<TargetingComponent>> entry : componentsByCategory.entrySet()) {
             Set<String> values = new HashSet<>();
             for (TargetingComponent component : entry.getValue()) {
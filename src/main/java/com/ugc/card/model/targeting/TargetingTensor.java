@@ -1,8 +1,12 @@
 package com.ugc.card.model.targeting;
 
 import java.util.*;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Setter;
 
 @Data
 public class TargetingTensor implements Serializable {
@@ -10,11 +14,15 @@ public class TargetingTensor implements Serializable {
     private float[] data;
     private int[] shape;
     private int vectorSize;
+    // Derived from the shape, so it only changes through setShape
+    @Setter(AccessLevel.NONE)
+    private transient int[] strides;
 
     public TargetingTensor(float[] data, int[] shape) {
         this.shape = shape;
         this.data = data;
         this.vectorSize = shape[shape.length - 1];
+        this.strides = computeStrides(shape);
     }
 
     public TargetingTensor(int[] shape) {
@@ -25,6 +33,28 @@ public class TargetingTensor implements Serializable {
         }
         this.data = new float[size];
         this.vectorSize = shape[shape.length - 1];
+        this.strides = computeStrides(shape);
+    }
+
+    private static int[] computeStrides(int[] shape) {
+        int[] strides = new int[shape.length];
+        int stride = 1;
+        for (int i = shape.length - 1; i >= 0; i--) {
+            strides[i] = stride;
+            stride *= shape[i];
+        }
+        return strides;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.strides = computeStrides(shape);
+    }
+
+    public void setShape(int[] shape) {
+        this.shape = shape;
+        this.vectorSize = shape[shape.length - 1];
+        this.strides = computeStrides(shape);
     }
 
     public float getValue(int[] indices) {
@@ -35,18 +65,35 @@ public class TargetingTensor implements Serializable {
         data[calculateIndex(indices)] = value;
     }
 
+    // Allocation-free accessors for rank 1 and rank 2 tensors. Unlike getValue/setValue
+    // these skip per-dimension validation; only the backing array bounds are checked.
+
+    public float get(int i) {
+        return data[i];
+    }
+
+    public float get(int i, int j) {
+        return data[i * strides[0] + j];
+    }
+
+    public void set(int i, float value) {
+        data[i] = value;
+    }
+
+    public void set(int i, int j, float value) {
+        data[i * strides[0] + j] = value;
+    }
+
     private int calculateIndex(int[] indices) {
         if (indices.length != shape.length) {
             throw new IllegalArgumentException("Indices length must match shape length");
         }
         int index = 0;
-        int stride = 1;
-        for (int i = shape.length - 1; i >= 0; i--) {
+        for (int i = 0; i < shape.length; i++) {
             if (indices[i] < 0 || indices[i] >= shape[i]) {
                 throw new IllegalArgumentException("Index out of bounds");
             }
-            index += indices[i] * stride;
-            stride *= shape[i];
+            index += indices[i] * strides[i];
         }
         return index;
     }
@@ -70,6 +117,31 @@ public class TargetingTensor implements Serializable {
         return result;
     }
 
+    public TargetingTensor addInPlace(TargetingTensor other) {
+        return axpy(1.0f, other);
+    }
+
+    public TargetingTensor scaleInPlace(float scalar) {
+        for (int i = 0; i < data.length; i++) {
+            data[i] *= scalar;
+        }
+        return this;
+    }
+
+    /**
+     * Computes {@code this += alpha * other} in place.
+     */
+    public TargetingTensor axpy(float alpha, TargetingTensor other) {
+        if (!Arrays.equals(this.shape, other.shape)) {
+            throw new IllegalArgumentException("Tensor shapes must match for addition");
+        }
+        float[] otherData = other.data;
+        for (int i = 0; i < data.length; i++) {
+            data[i] += alpha * otherData[i];
+        }
+        return this;
+    }
+
     public TargetingTensor reshape(int[] newShape) {
         int newSize = 1;
         for (int dim : newShape) {
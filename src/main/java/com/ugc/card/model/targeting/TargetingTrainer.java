@@ -1,11 +1,17 @@
 package com.ugc.card.model.targeting;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import lombok.Data;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.Setter;
 
 @Data
 public class TargetingTrainer {
@@ -15,7 +21,10 @@ public class TargetingTrainer {
     private int epochs;
     private String modelPath;
     private List<TrainingMetrics> trainingHistory;
-    private Map<TargetingChain, Double> patternDifficulties;
+    private CurriculumPacing curriculumPacing = CurriculumPacing.LINEAR;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private CurriculumSchedule curriculum;
     private double initialLearningRate;
     private double bestValidationLoss = Double.MAX_VALUE;
     private int bestEpoch = 0;
@@ -23,6 +32,21 @@ public class TargetingTrainer {
     private Map<String, Map<String, Integer>> transitionCounts = new HashMap<>();
     private Map<String, Integer> totalTransitions = new HashMap<>();
     private final String game;
+    private TrainingMode trainingMode = TrainingMode.DENSE;
+    private int batchSize = 32;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int snapshotInterval = 0;
+    private List<TargetingChain> validationData = Collections.emptyList();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private TrainingWorkspace workspace;
+    // Kept for the length of a fit, so every epoch reuses its buffers
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private MiniBatchTrainingEngine miniBatchEngine;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private HogwildTrainingEngine hogwildEngine;
     
     public TargetingTrainer(String game, TargetingSystem system, float learningRate, int epochs, String modelPath) {
         this.game = game;
@@ -33,30 +57,45 @@ public class TargetingTrainer {
         this.modelPath = modelPath;
         this.tensor = new TargetingTensor(new int[]{system.getVectorSize(), system.getVectorSize()});
         this.trainingHistory = new ArrayList<>();
-        this.patternDifficulties = new HashMap<>();
         
         // Try to load previous best model
         loadBestModel();
     }
     
     private void loadBestModel() {
-        File modelFile = new File(modelPath);
-        if (modelFile.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(modelFile))) {
-                TargetingTensor loadedTensor = (TargetingTensor) ois.readObject();
+        Path path = Paths.get(modelPath);
+        if (Files.exists(path)) {
+            try {
                 // Initialize current tensor with loaded weights
-                this.tensor = loadedTensor;
+                this.tensor = readTensor(path);
                 System.out.println("Loaded previous best model successfully");
-            } catch (IOException | ClassNotFoundException e) {
+            } catch (IOException e) {
                 System.out.println("No previous model found or error loading it. Starting fresh.");
             }
         }
     }
     
+    private TargetingTensor readTensor(Path path) throws IOException {
+        if (!TargetingModelFile.isModelFile(path)) {
+            // Models saved before the binary format used Java serialization
+            return TargetingModelFile.readLegacy(path);
+        }
+        long fingerprint = TargetingModelFile.readHeader(path).getVocabularyFingerprint();
+        if (fingerprint != TargetingModelFile.UNKNOWN_FINGERPRINT
+                && fingerprint != system.getVocabulary().fingerprint()) {
+            throw new IOException("Model was trained against a different component vocabulary");
+        }
+        return TargetingModelFile.read(path);
+    }
+    
+    private void writeTensor(TargetingTensor model) throws IOException {
+        TargetingModelFile.write(Paths.get(modelPath), model, system.getVocabulary().fingerprint());
+    }
+    
     private void saveBestModel() {
         if (bestModel != null) {
-            try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(modelPath))) {
-                oos.writeObject(bestModel);
+            try {
+                writeTensor(bestModel);
                 System.out.println("Saved new best model");
             } catch (IOException e) {
                 System.err.println("Error saving best model: " + e.getMessage());
@@ -75,8 +114,35 @@ public class TargetingTrainer {
         }
     }
     
+    // Called on the Hogwild engine's evaluator thread with a copy of the weights, while trainEpoch waits for it
+    private void updateBestModelFromSnapshot(TargetingTensor snapshot, int epoch) {
+        if (validationData.isEmpty()) {
+            bestModel = snapshot;
+            bestEpoch = epoch;
+            return;
+        }
+        double validationLoss = evaluateSnapshot(snapshot, validationData);
+        if (validationLoss < bestValidationLoss) {
+            bestValidationLoss = validationLoss;
+            bestEpoch = epoch;
+            bestModel = snapshot;
+        }
+    }
+    
+    private double evaluateSnapshot(TargetingTensor snapshot, List<TargetingChain> chains) {
+        int size = snapshot.getShape()[0];
+        float[] output = new float[size];
+        double totalLoss = 0.0;
+        for (TargetingChain chain : chains) {
+            int[] activeRows = SparseChainVector.of(system.getVocabulary(), chain).getIndices();
+            TargetingKernels.sparseGemvTransposed(snapshot.getData(), size, activeRows, output);
+            totalLoss += TargetingKernels.sigmoidSparseLoss(output, size, activeRows, null);
+        }
+        return totalLoss / chains.size();
+    }
+    
     private double calculatePatternDifficulty(TargetingChain chain) {
-        List<TargetingComponent> components = chain.getComponents();
+        Set<TargetingComponent> components = chain.componentsView();
         double difficulty = 0.0;
         
         // Base difficulty from length
@@ -107,28 +173,18 @@ public class TargetingTrainer {
     }
     
     private List<TargetingChain> getCurriculumBatch(List<TargetingChain> allData, int epoch) {
-        // Calculate difficulties for all patterns if not done
-        if (patternDifficulties.isEmpty()) {
-            for (TargetingChain chain : allData) {
-                patternDifficulties.put(chain, calculatePatternDifficulty(chain));
-            }
+        // Sort by difficulty once per dataset; later epochs reuse the cached ordering
+        if (curriculum == null || !curriculum.isFor(allData)) {
+            curriculum = new CurriculumSchedule(allData, this::calculatePatternDifficulty);
         }
         
-        // Calculate curriculum progress (0.0 to 1.0)
-        double progress = Math.min(1.0, (double)epoch / (epochs * 0.7));
-        
-        // Sort patterns by difficulty
-        List<TargetingChain> sortedPatterns = new ArrayList<>(allData);
-        sortedPatterns.sort((a, b) -> 
-            Double.compare(patternDifficulties.get(a), patternDifficulties.get(b)));
-        
-        // Calculate how many patterns to include based on progress
-        int numPatterns = (int)(sortedPatterns.size() * (0.3 + 0.7 * progress));
-        numPatterns = Math.max(sortedPatterns.size() / 3, 
-                     Math.min(sortedPatterns.size(), numPatterns));
+        // Calculate how many patterns to include based on the pacing function
+        int size = curriculum.size();
+        int numPatterns = (int)(size * curriculumPacing.fraction(epoch, epochs));
+        numPatterns = Math.max(size / 3, Math.min(size, numPatterns));
         
         // Select patterns up to the difficulty threshold
-        return sortedPatterns.subList(0, numPatterns);
+        return curriculum.prefix(numPatterns);
     }
     
     private void updateLearningRate(int epoch, double validationLoss) {
@@ -148,7 +204,7 @@ public class TargetingTrainer {
     
     public void train(Set<TargetingChain> trainingData) {
         for (TargetingChain chain : trainingData) {
-            List<TargetingComponent> components = new ArrayList<>(chain.getComponents());
+            List<TargetingComponent> components = new ArrayList<>(chain.componentsView());
             for (int i = 0; i < components.size() - 1; i++) {
                 TargetingComponent current = components.get(i);
                 TargetingComponent next = components.get(i + 1);
@@ -169,7 +225,7 @@ public class TargetingTrainer {
     private void printComponentDistribution(List<TargetingChain> chains) {
         Map<ComponentCategory, Integer> distribution = new EnumMap<>(ComponentCategory.class);
         for (TargetingChain chain : chains) {
-            for (TargetingComponent component : chain.getComponents()) {
+            for (TargetingComponent component : chain.componentsView()) {
                 distribution.merge(component.getCategory(), 1, Integer::sum);
             }
         }
@@ -180,13 +236,11 @@ public class TargetingTrainer {
     
     private void updateCategoryLosses(Map<ComponentCategory, Double> categoryLosses, 
                                     TargetingChain chain, double loss) {
-        for (TargetingComponent component : chain.getComponents()) {
-            categoryLosses.merge(
-                component.getCategory(),
-                loss,
-                Double::sum
-            );
-        }
+        chain.forEachComponent(component -> categoryLosses.merge(
+            component.getCategory(),
+            loss,
+            Double::sum
+        ));
     }
     
     private Map<ComponentCategory, Double> calculateAverageCategoryLosses(
@@ -203,8 +257,8 @@ public class TargetingTrainer {
     private double calculatePatternComplexity(List<TargetingChain> chains) {
         return chains.stream()
             .mapToDouble(chain -> {
-                int componentCount = chain.getComponents().size();
-                int categoryCount = (int)chain.getComponents().stream()
+                int componentCount = chain.size();
+                int categoryCount = (int)chain.componentsView().stream()
                     .map(TargetingComponent::getCategory)
                     .distinct()
                     .count();
@@ -216,7 +270,7 @@ public class TargetingTrainer {
     
     private void printPatternComplexityMetrics(List<TargetingChain> chains) {
         DoubleSummaryStatistics complexityStats = chains.stream()
-            .mapToDouble(chain -> chain.getComponents().size())
+            .mapToDouble(TargetingChain::size)
             .summaryStatistics();
             
         System.out.printf("Average Components per Chain: %.2f%n", complexityStats.getAverage());
@@ -224,7 +278,7 @@ public class TargetingTrainer {
         System.out.printf("Max Components: %d%n", (int)complexityStats.getMax());
         
         double avgCategories = chains.stream()
-            .mapToDouble(chain -> chain.getComponents().stream()
+            .mapToDouble(chain -> chain.componentsView().stream()
                 .map(TargetingComponent::getCategory)
                 .distinct()
                 .count())
@@ -234,12 +288,28 @@ public class TargetingTrainer {
         System.out.printf("Average Categories per Chain: %.2f%n", avgCategories);
     }
     
-    private void saveTrainingHistory() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(
-                new FileOutputStream(modelPath + "_history.bin"))) {
-            oos.writeObject(trainingHistory);
+    /**
+     * @return the journal that {@link #fit} appends one record per epoch to; each fit starts it afresh
+     */
+    public Path getHistoryPath() {
+        return Paths.get(modelPath + "_history.journal");
+    }
+    
+    private TrainingHistoryJournal openHistoryJournal() {
+        try {
+            return TrainingHistoryJournal.create(getHistoryPath());
         } catch (IOException e) {
-            System.err.println("Error saving training history: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    private void appendToHistory(TrainingHistoryJournal journal, TrainingMetrics metrics) {
+        if (journal == null) return;
+        try {
+            journal.append(metrics);
+        } catch (IOException e) {
+            e.printStackTrace();
         }
     }
     
@@ -262,56 +332,215 @@ public class TargetingTrainer {
             System.out.printf("%s: %.4f%n", category, loss));
     }
     
+    private TrainingWorkspace workspace() {
+        int size = tensor.getShape()[0];
+        if (workspace == null || workspace.size() != size) {
+            workspace = new TrainingWorkspace(size);
+        }
+        return workspace;
+    }
+    
     private TargetingTensor forward(TargetingChain chain) {
-        TargetingTensor input = system.chainToTensor(chain);
-        float[] inputValues = input.getValues();
-        float[] outputValues = new float[inputValues.length];
-        for (int i = 0; i < inputValues.length; i++) {
-            float sum = 0;
-            for (int j = 0; j < inputValues.length; j++) {
-                sum += inputValues[j] * tensor.getValue(new int[]{j, i});
-            }
-            outputValues[i] = sigmoid(sum);
+        TrainingWorkspace ws = workspace();
+        system.getVocabulary().encode(chain, ws.input);
+        forward(ws.input, ws.output);
+        return new TargetingTensor(Arrays.copyOf(ws.output, ws.size()), new int[]{ws.size()});
+    }
+    
+    private void forward(float[] input, float[] output) {
+        int size = input.length;
+        TargetingKernels.gemvTransposed(tensor.getData(), size, size, input, output);
+        for (int i = 0; i < size; i++) {
+            output[i] = sigmoid(output[i]);
         }
-        TargetingTensor output = new TargetingTensor(new int[]{inputValues.length});
-        output.setValues(outputValues);
-        return output;
     }
     
-    private void backward(TargetingTensor input, TargetingChain chain) {
-        TargetingTensor output = forward(chain);
-        float[] inputValues = input.getValues();
-        float[] outputValues = output.getValues();
-        List<Float> targetList = system.chainToVector(chain);
-        float[] targetValues = new float[targetList.size()];
-        for (int i = 0; i < targetList.size(); i++) {
-            targetValues[i] = targetList.get(i);
+    // Reuses the activations from the preceding forward pass instead of recomputing them
+    private void backward(float[] input, float[] output, float[] target) {
+        float[] delta = workspace().delta;
+        int size = input.length;
+        for (int j = 0; j < size; j++) {
+            delta[j] = (output[j] - target[j]) * output[j] * (1 - output[j]);
         }
-
-        for (int i = 0; i < inputValues.length; i++) {
-            for (int j = 0; j < inputValues.length; j++) {
-                float gradient = inputValues[i] * (outputValues[j] - targetValues[j]) * outputValues[j] * (1 - outputValues[j]);
-                float currentWeight = tensor.getValue(new int[]{i, j});
-                tensor.setValue(new int[]{i, j}, currentWeight - learningRate * gradient);
+        TargetingKernels.rankOneUpdate(tensor.getData(), size, size, -learningRate, input, delta);
+    }
+    
+    // Sparse counterpart of forward: the input is 1 exactly at the active rows. Returns the loss,
+    // and fills delta for the backward pass unless it is null
+    private double forwardSparse(int[] activeRows, float[] output, float[] delta) {
+        int size = output.length;
+        TargetingKernels.sparseGemvTransposed(tensor.getData(), size, activeRows, output);
+        return TargetingKernels.sigmoidSparseLoss(output, size, activeRows, delta);
+    }
+    
+    /**
+     * Runs one forward/backward pass on a single chain and returns its loss before the update.
+     * The input representation depends on the configured {@link TrainingMode}.
+     */
+    public double trainStep(TargetingChain chain) {
+        switch (trainingMode) {
+            case SPARSE:
+            case MINI_BATCH:
+            case HOGWILD:
+                return trainStepSparse(chain);
+            case DENSE:
+            default:
+                return trainStepDense(chain);
+        }
+    }
+    
+    private double trainStepSparse(TargetingChain chain) {
+        TrainingWorkspace ws = workspace();
+        int[] activeRows = SparseChainVector.of(system.getVocabulary(), chain).getIndices();
+        double loss = forwardSparse(activeRows, ws.output, ws.delta);
+        // Only the active rows receive a weight update
+        TargetingKernels.sparseRankOneUpdate(tensor.getData(), ws.size(), activeRows, -learningRate, ws.delta);
+        return loss;
+    }
+    
+    private double trainStepDense(TargetingChain chain) {
+        TrainingWorkspace ws = workspace();
+        system.getVocabulary().encode(chain, ws.input);
+        // The model reconstructs its own input, so the target is the input encoding
+        forward(ws.input, ws.output);
+        double loss = calculateLoss(ws.output, ws.input);
+        backward(ws.input, ws.output, ws.input);
+        return loss;
+    }
+    
+    /**
+     * Runs one pass over the given chains and returns the mean training loss. In
+     * {@link TrainingMode#MINI_BATCH} the pass uses {@link #getBatchSize()} and {@link #getParallelism()};
+     * in {@link TrainingMode#HOGWILD} it runs {@link #getParallelism()} workers and, if
+     * {@link #getSnapshotInterval()} is positive, snapshots the weights into the best model every that many chains.
+     */
+    public double trainEpoch(List<TargetingChain> chains) {
+        return trainEpoch(chains, trainingHistory.size());
+    }
+    
+    private double trainEpoch(List<TargetingChain> chains, int epoch) {
+        if (chains.isEmpty()) {
+            return 0.0;
+        }
+        if (trainingMode == TrainingMode.MINI_BATCH) {
+            MiniBatchTrainingEngine engine = miniBatchEngine;
+            if (engine != null && engine.isFor(tensor, system.getVocabulary(), batchSize, parallelism)) {
+                return engine.trainEpoch(chains, learningRate);
+            }
+            return newMiniBatchEngine().trainEpoch(chains, learningRate);
+        }
+        if (trainingMode == TrainingMode.HOGWILD) {
+            Consumer<TargetingTensor> snapshots = snapshot -> updateBestModelFromSnapshot(snapshot, epoch);
+            HogwildTrainingEngine engine = hogwildEngine;
+            if (engine != null && engine.isFor(tensor, system.getVocabulary(), parallelism, snapshotInterval)) {
+                return engine.trainEpoch(chains, learningRate, snapshots);
             }
+            try (HogwildTrainingEngine single = newHogwildEngine()) {
+                return single.trainEpoch(chains, learningRate, snapshots);
+            }
+        }
+        double totalLoss = 0.0;
+        for (TargetingChain chain : chains) {
+            totalLoss += trainStep(chain);
         }
+        return totalLoss / chains.size();
     }
     
-    private double calculateLoss(TargetingTensor predicted, TargetingChain actual) {
-        float[] predictedValues = predicted.getValues();
-        List<Float> actualList = system.chainToVector(actual);
-        float[] actualValues = new float[actualList.size()];
-        for (int i = 0; i < actualList.size(); i++) {
-            actualValues[i] = actualList.get(i);
+    private MiniBatchTrainingEngine newMiniBatchEngine() {
+        return new MiniBatchTrainingEngine(tensor, system.getVocabulary(), batchSize, parallelism);
+    }
+    
+    private HogwildTrainingEngine newHogwildEngine() {
+        return new HogwildTrainingEngine(tensor, system.getVocabulary(), parallelism, snapshotInterval);
+    }
+    
+    private double evaluateChain(TargetingChain chain) {
+        TrainingWorkspace ws = workspace();
+        if (trainingMode != TrainingMode.DENSE) {
+            int[] activeRows = SparseChainVector.of(system.getVocabulary(), chain).getIndices();
+            return forwardSparse(activeRows, ws.output, null);
+        }
+        system.getVocabulary().encode(chain, ws.input);
+        forward(ws.input, ws.output);
+        return calculateLoss(ws.output, ws.input);
+    }
+    
+    /**
+     * Returns the mean loss over the given chains without updating the weights,
+     * accumulating each chain's loss into its component categories.
+     */
+    public double evaluate(List<TargetingChain> chains, Map<ComponentCategory, Double> categoryLosses) {
+        if (chains.isEmpty()) {
+            return 0.0;
+        }
+        double totalLoss = 0.0;
+        for (TargetingChain chain : chains) {
+            double loss = evaluateChain(chain);
+            updateCategoryLosses(categoryLosses, chain, loss);
+            totalLoss += loss;
+        }
+        return totalLoss / chains.size();
+    }
+    
+    /**
+     * Trains for the configured number of epochs with curriculum batching, learning-rate
+     * scheduling and best-model tracking. The history journal is started afresh, and each epoch's
+     * metrics are appended to it as soon as the epoch finishes; the best model is saved at the end.
+     */
+    public void fit(List<TargetingChain> trainingData, List<TargetingChain> validationData) {
+        this.validationData = validationData;
+        if (trainingMode == TrainingMode.MINI_BATCH) {
+            miniBatchEngine = newMiniBatchEngine();
+        } else if (trainingMode == TrainingMode.HOGWILD) {
+            hogwildEngine = newHogwildEngine();
+        }
+        try (TrainingHistoryJournal journal = openHistoryJournal()) {
+            for (int epoch = 0; epoch < epochs; epoch++) {
+                List<TargetingChain> batch = getCurriculumBatch(trainingData, epoch);
+                double trainingLoss = trainEpoch(batch, epoch);
+                
+                Map<ComponentCategory, Double> categoryLosses = new EnumMap<>(ComponentCategory.class);
+                double validationLoss = evaluate(validationData, categoryLosses);
+                
+                TrainingMetrics metrics = new TrainingMetrics(
+                    epoch,
+                    trainingLoss,
+                    validationLoss,
+                    calculateAverageCategoryLosses(categoryLosses, Math.max(1, validationData.size())),
+                    calculatePatternComplexity(batch)
+                );
+                trainingHistory.add(metrics);
+                appendToHistory(journal, metrics);
+                
+                updateBestModel(validationLoss, epoch);
+                updateLearningRate(epoch, validationLoss);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            miniBatchEngine = null;
+            if (hogwildEngine != null) {
+                hogwildEngine.close();
+                hogwildEngine = null;
+            }
         }
         
+        saveBestModel();
+        printFinalMetrics();
+    }
+    
+    private double calculateLoss(TargetingTensor predicted, TargetingChain actual) {
+        return calculateLoss(predicted.getValues(), system.getVocabulary().encode(actual));
+    }
+    
+    private double calculateLoss(float[] predictedValues, float[] actualValues) {
         double loss = 0.0;
-        for (int i = 0; i < system.getVectorSize(); i++) {
+        for (int i = 0; i < predictedValues.length; i++) {
             double diff = predictedValues[i] - actualValues[i];
             loss += diff * diff;
         }
         
-        return loss / system.getVectorSize();
+        return loss / predictedValues.length;
     }
     
     private float sigmoid(float x) {
@@ -319,17 +548,17 @@ public class TargetingTrainer {
     }
     
     public void saveModel() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(modelPath))) {
-            oos.writeObject(tensor);
+        try {
+            writeTensor(tensor);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
     
     public void loadModel() {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(modelPath))) {
-            tensor = (TargetingTensor) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
+        try {
+            tensor = readTensor(Paths.get(modelPath));
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
@@ -381,14 +610,19 @@ public class TargetingTrainer {
     }
 }
 
-@Getter
-@AllArgsConstructor
-class TrainingMetrics implements Serializable {
-    private static final long serialVersionUID = 1L;
-    
-    public int epoch;
-    public double trainingLoss;
-    public double validationLoss;
-    public Map<ComponentCategory, Double> categoryLosses;
-    public double patternComplexity;
-} 
\ No newline at end of file
+// Per-trainer scratch buffers so the training inner loop allocates nothing
+class TrainingWorkspace {
+    final float[] input;
+    final float[] output;
+    final float[] delta;
+    
+    TrainingWorkspace(int size) {
+        this.input = new float[size];
+        this.output = new float[size];
+        this.delta = new float[size];
+    }
+    
+    int size() {
+        return input.length;
+    }
+}
@@ -0,0 +1,45 @@
+package com.ugc.card.model.targeting;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Regular expressions used by the ability parsers, compiled once.
+ *
+ * Patterns are immutable and thread-safe, so every parser shares the same instances; only the
+ * {@link java.util.regex.Matcher}s are per call. Expressions that come from data, such as the keys of a
+ * parser's lookup table, go through {@link #get}, which compiles each distinct expression once.
+ */
+public final class TextPatterns {
+    private static final Map<String, Pattern> CACHE = new ConcurrentHashMap<>();
+
+    // Sentence and clause boundaries
+    public static final Pattern SENTENCE_END = get("[.!?]");
+    public static final Pattern CLAUSE_BREAK = get("(,|then|and)");
+
+    // Numbers as whole words, or X
+    public static final Pattern NUMBER_OR_X = get("\\b(\\d+|X)\\b");
+
+    public static final Pattern TARGET_WORD = get("target (\\w+)");
+    public static final Pattern DEAL_DAMAGE = get("deal (\\d+) damage");
+    public static final Pattern GAIN_LIFE = get("gain (\\d+) life");
+    public static final Pattern DRAW_CARDS = get("draw (\\d+) card");
+    public static final Pattern CONTROL_COUNT = get("control (\\d+)");
+    public static final Pattern WHEN_EVENT = get("when (.*)");
+    public static final Pattern TRIGGER_CONDITION = get("(when|whenever|at)\\s+(.*?)(,|\\s+then|$)");
+    public static final Pattern PROTECTION_FROM = get("protection from");
+
+    private TextPatterns() {
+    }
+
+    /**
+     * @return the compiled form of the expression, compiling it on first use
+     */
+    public static Pattern get(String regex) {
+        if (regex == null) {
+            throw new IllegalArgumentException("Regex cannot be null");
+        }
+        return CACHE.computeIfAbsent(regex, Pattern::compile);
+    }
+}
@@ -1,9 +1,9 @@
 package com.ugc.card.model.targeting;
 
-import com.opencsv.CSVReader;
 import com.opencsv.exceptions.CsvException;
 import java.io.*;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class TrainingDataGenerator {
@@ -35,53 +35,33 @@ public class TrainingDataGenerator {
     }
     
     public void generateTrainingData(String inputFile, String outputFile) {
-        try {
-            // Read the CSV file
-            List<String[]> rows = readCSV(inputFile);
-            
-            // Generate training examples
-            List<String> trainingExamples = new ArrayList<>();
-            
+        // Loaded here so the parallel stage only reads the system
+        system.loadGame(game);
+        try (Reader reader = new FileReader(inputFile);
+             PrintWriter writer = new PrintWriter(new FileWriter(outputFile))) {
             // Add header
-            trainingExamples.add("Ability Text,Targeting Pattern");
-            
-            // Process each row
-            for (String[] row : rows) {
-                if (row.length >= 2) {
-                    String base = row[0];
-                    String type = row[1];
-                    
-                    // Skip header row
-                    if (base.equals("Base") || base.isEmpty()) continue;
-                    
-                    // Generate example abilities
-                    List<String> examples = generateExamples(base, type, row);
-                    trainingExamples.addAll(examples);
-                }
-            }
-            
-            // Write to output file
-            writeCSV(outputFile, trainingExamples);
+            writer.println("Ability Text,Targeting Pattern");
             
+            // Examples are generated in parallel while the input is read, and written in input order
+            new CsvRecordPipeline().run(reader, 0,
+                row -> {
+                    if (row.length >= 2) {
+                        String base = row[0];
+                        String type = row[1];
+                        
+                        // Skip header row
+                        if (!base.equals("Base") && !base.isEmpty()) {
+                            return generateExamples(base, type, row);
+                        }
+                    }
+                    return Collections.<String>emptyList();
+                },
+                (row, examples) -> examples.forEach(writer::println));
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
     
-    private List<String[]> readCSV(String filePath) throws IOException, CsvException {
-        try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
-            return reader.readAll();
-        }
-    }
-    
-    private void writeCSV(String filePath, List<String> lines) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filePath))) {
-            for (String line : lines) {
-                writer.println(line);
-            }
-        }
-    }
-    
     private List<String> generateExamples(String base, String type, String[] row) {
         List<String> examples = new ArrayList<>();
         
@@ -137,19 +117,16 @@ public class TrainingDataGenerator {
     
     private List<TargetingChain> readTrainingData(String csvFile) {
         List<TargetingChain> chains = new ArrayList<>();
-        try {
-            List<String[]> rows = readCSV(csvFile);
+        Function<String, TargetingChain> parser = system.parseFunction(game);
+        try (Reader reader = new FileReader(csvFile)) {
             // Skip header
-            for (int i = 1; i < rows.size(); i++) {
-                String[] row = rows.get(i);
-                if (row.length >= 1) {
-                    String abilityText = row[0];
-                    TargetingChain chain = system.parseAbility(game, abilityText);
+            new CsvRecordPipeline().run(reader, 1,
+                row -> row.length >= 1 ? parser.apply(row[0]) : null,
+                (row, chain) -> {
                     if (chain != null) {
                         chains.add(chain);
                     }
-                }
-            }
+                });
         } catch (IOException | CsvException e) {
             e.printStackTrace();
         }
@@ -0,0 +1,273 @@
+package com.ugc.card.model.targeting;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of per-epoch {@link TrainingMetrics}.
+ *
+ * <pre>
+ * file   := header record*
+ * header := magic "TGTH" (4) | version (2) | reserved (2)
+ * record := payload length (4) | CRC32 of payload (4) | payload
+ * payload := epoch (4) | training loss (8) | validation loss (8) | pattern complexity (8)
+ *            | category count (4) | (category name (UTF) | loss (8))*
+ * </pre>
+ *
+ * The file header and the record length and checksum are little-endian. The payload is written with
+ * {@link DataOutputStream}, so its numbers are big-endian and its category names are in the stream's
+ * modified UTF-8. Each epoch costs one small append instead of rewriting the whole
+ * history. A record is only visible once it is complete and its checksum matches, so a crash
+ * mid-write loses at most the epoch being written, and a {@link Reader} can follow the file while
+ * training is still appending to it.
+ */
+public final class TrainingHistoryJournal implements Closeable {
+    public static final int MAGIC = 0x48544754; // "TGTH" in little-endian byte order
+    public static final short VERSION = 1;
+
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+
+    private TrainingHistoryJournal(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens a journal for appending, creating it if needed. A torn record left behind by a crash is
+     * cut off so new records follow the last complete one.
+     */
+    public static TrainingHistoryJournal open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < FILE_HEADER_SIZE) {
+                // New file, or a crash before the header was complete
+                channel.truncate(0);
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).flip();
+                writeFully(channel, header, 0);
+                channel.force(true);
+            } else {
+                long end;
+                try (Reader reader = new Reader(channel, false)) {
+                    while (reader.next() != null) {
+                        // skip to the end of the last complete record
+                    }
+                    end = reader.position();
+                }
+                if (end < channel.size()) {
+                    channel.truncate(end);
+                }
+            }
+            return new TrainingHistoryJournal(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts a new journal, discarding any earlier one at the path, so a training run's records are
+     * never mixed with those of a previous run. Readers still open on the old journal keep reading it.
+     */
+    public static TrainingHistoryJournal create(Path path) throws IOException {
+        Files.deleteIfExists(path);
+        return open(path);
+    }
+
+    /**
+     * Appends one record and syncs it to disk.
+     */
+    public synchronized void append(TrainingMetrics metrics) throws IOException {
+        byte[] payload = encode(metrics);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length).order(ByteOrder.LITTLE_ENDIAN);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        writeFully(channel, record, channel.size());
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Opens a streaming reader positioned at the first record.
+     */
+    public static Reader reader(Path path) throws IOException {
+        return new Reader(FileChannel.open(path, StandardOpenOption.READ), true);
+    }
+
+    public static List<TrainingMetrics> readAll(Path path) throws IOException {
+        List<TrainingMetrics> history = new ArrayList<>();
+        try (Reader reader = reader(path)) {
+            TrainingMetrics metrics;
+            while ((metrics = reader.next()) != null) {
+                history.add(metrics);
+            }
+        }
+        return history;
+    }
+
+    /**
+     * Scans the journal one record at a time and returns the epoch with the lowest validation loss.
+     * Ties keep the earliest epoch.
+     */
+    public static Optional<TrainingMetrics> bestEpoch(Path path) throws IOException {
+        TrainingMetrics best = null;
+        try (Reader reader = reader(path)) {
+            TrainingMetrics metrics;
+            while ((metrics = reader.next()) != null) {
+                if (best == null || metrics.validationLoss < best.validationLoss) {
+                    best = metrics;
+                }
+            }
+        }
+        return Optional.ofNullable(best);
+    }
+
+    /**
+     * Sequential reader over a journal. {@link #next()} returns null when no further complete record
+     * is available yet; calling it again later picks up records appended in the meantime.
+     */
+    public static final class Reader implements Closeable {
+        private final FileChannel channel;
+        private final boolean ownsChannel;
+        private final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long position = -1;
+
+        private Reader(FileChannel channel, boolean ownsChannel) {
+            this.channel = channel;
+            this.ownsChannel = ownsChannel;
+        }
+
+        public TrainingMetrics next() throws IOException {
+            if (position < 0 && !readFileHeader()) {
+                return null;
+            }
+            recordHeader.clear();
+            if (!readAt(recordHeader, position)) {
+                return null;
+            }
+            int length = recordHeader.getInt(0);
+            int checksum = recordHeader.getInt(4);
+            if (length < 0 || length > MAX_RECORD_SIZE) {
+                return null;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            if (!readAt(payload, position + RECORD_HEADER_SIZE)) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != checksum) {
+                // Either a torn write from a crash or a record still being written
+                return null;
+            }
+            position += RECORD_HEADER_SIZE + length;
+            return decode(payload.array());
+        }
+
+        /**
+         * @return the file offset just past the last record returned
+         */
+        public long position() {
+            return Math.max(position, FILE_HEADER_SIZE);
+        }
+
+        private boolean readFileHeader() throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (!readAt(header, 0)) {
+                return false;
+            }
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a training history journal");
+            }
+            short version = header.getShort(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported journal version: " + version);
+            }
+            position = FILE_HEADER_SIZE;
+            return true;
+        }
+
+        // Reads the buffer completely or reports that the file does not hold that many bytes yet
+        private boolean readAt(ByteBuffer buffer, long offset) throws IOException {
+            if (offset + buffer.remaining() > channel.size()) {
+                return false;
+            }
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, offset + buffer.position());
+                if (read < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (ownsChannel) {
+                channel.close();
+            }
+        }
+    }
+
+    private static byte[] encode(TrainingMetrics metrics) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(metrics.epoch);
+            out.writeDouble(metrics.trainingLoss);
+            out.writeDouble(metrics.validationLoss);
+            out.writeDouble(metrics.patternComplexity);
+            Map<ComponentCategory, Double> categoryLosses =
+                metrics.categoryLosses != null ? metrics.categoryLosses : Collections.emptyMap();
+            out.writeInt(categoryLosses.size());
+            for (Map.Entry<ComponentCategory, Double> entry : categoryLosses.entrySet()) {
+                out.writeUTF(entry.getKey().name());
+                out.writeDouble(entry.getValue());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static TrainingMetrics decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            int epoch = in.readInt();
+            double trainingLoss = in.readDouble();
+            double validationLoss = in.readDouble();
+            double patternComplexity = in.readDouble();
+            int count = in.readInt();
+            Map<ComponentCategory, Double> categoryLosses = new EnumMap<>(ComponentCategory.class);
+            for (int i = 0; i < count; i++) {
+                String category = in.readUTF();
+                double loss = in.readDouble();
+                try {
+                    categoryLosses.put(ComponentCategory.valueOf(category), loss);
+                } catch (IllegalArgumentException e) {
+                    // Category no longer exists; keep the rest of the record
+                }
+            }
+            return new TrainingMetrics(epoch, trainingLoss, validationLoss, categoryLosses, patternComplexity);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.ugc.card.model.targeting;
+
+import java.io.Serializable;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class TrainingMetrics implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    public int epoch;
+    public double trainingLoss;
+    public double validationLoss;
+    public Map<ComponentCategory, Double> categoryLosses;
+    public double patternComplexity;
+}
@@ -0,0 +1,8 @@
+package com.ugc.card.model.targeting;
+
+public enum TrainingMode {
+    DENSE,      // Dense one-hot input, touches every row of the weight matrix
+    SPARSE,     // Active-index input, touches only the rows of the chain's components
+    MINI_BATCH, // Sparse input, gradients averaged per batch and accumulated in parallel
+    HOGWILD     // Sparse input, lock-free asynchronous updates from several worker threads
+}
@@ -45,24 +45,15 @@ public class ValidationRule {
         
         // Check required components
         for (String component : requiredComponents) {
-            boolean found = false;
-            for (TargetingComponent chainComponent : chain.getComponents()) {
-                if (chainComponent.getText().equals(component)) {
-                    found = true;
-                    break;
-                }
-            }
-            if (!found) {
+            if (!chain.hasComponentText(component)) {
                 return false;
             }
         }
         
         // Check forbidden components
         for (String component : forbiddenComponents) {
-            for (TargetingComponent chainComponent : chain.getComponents()) {
-                if (chainComponent.getText().equals(component)) {
-                    return false;
-                }
+            if (chain.hasComponentText(component)) {
+                return false;
             }
         }
         
@@ -78,6 +69,13 @@ public class ValidationRule {
         return description;
     }
     
+    /**
+     * @return the custom check that runs after the category and component checks
+     */
+    public Predicate<TargetingChain> getValidator() {
+        return validator;
+    }
+    
     public Set<ComponentCategory> getRequiredCategories() {
         return requiredCategories;
     }
@@ -0,0 +1,85 @@
+package com.ugc.card.model.targeting;
+
+import java.util.*;
+
+/**
+ * Set of validation rules that counts its modifications, so a compiled form of the rules can tell
+ * that it is stale after any add, remove or clear, not just after the size changed.
+ */
+final class ValidationRuleSet extends AbstractSet<ValidationRule> {
+    private final Set<ValidationRule> rules;
+    private volatile int modifications;
+
+    ValidationRuleSet() {
+        this.rules = new HashSet<>();
+    }
+
+    ValidationRuleSet(Collection<ValidationRule> rules) {
+        this.rules = new HashSet<>(rules);
+    }
+
+    /**
+     * @return a count that changes whenever the set does
+     */
+    int modifications() {
+        return modifications;
+    }
+
+    @Override
+    public boolean add(ValidationRule rule) {
+        if (!rules.add(rule)) {
+            return false;
+        }
+        modifications++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object rule) {
+        if (!rules.remove(rule)) {
+            return false;
+        }
+        modifications++;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        if (!rules.isEmpty()) {
+            rules.clear();
+            modifications++;
+        }
+    }
+
+    @Override
+    public boolean contains(Object rule) {
+        return rules.contains(rule);
+    }
+
+    @Override
+    public int size() {
+        return rules.size();
+    }
+
+    @Override
+    public Iterator<ValidationRule> iterator() {
+        Iterator<ValidationRule> iterator = rules.iterator();
+        return new Iterator<ValidationRule>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public ValidationRule next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+                modifications++;
+            }
+        };
+    }
+}
@@ -0,0 +1,45 @@
+package com.ugc.card.model.targeting;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD row kernel built on the incubating Vector API. Only loaded when the
+ * {@code jdk.incubator.vector} module is present at runtime; see {@link TargetingKernels}.
+ */
+final class VectorRowKernel implements RowKernel {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        FloatVector alphaVector = FloatVector.broadcast(SPECIES, alpha);
+        int k = 0;
+        int upper = SPECIES.loopBound(length);
+        for (; k < upper; k += SPECIES.length()) {
+            FloatVector xv = FloatVector.fromArray(SPECIES, x, xOffset + k);
+            FloatVector yv = FloatVector.fromArray(SPECIES, y, yOffset + k);
+            xv.fma(alphaVector, yv).intoArray(y, yOffset + k);
+        }
+        for (; k < length; k++) {
+            y[yOffset + k] += alpha * x[xOffset + k];
+        }
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int k = 0;
+        int upper = SPECIES.loopBound(length);
+        for (; k < upper; k += SPECIES.length()) {
+            FloatVector av = FloatVector.fromArray(SPECIES, a, aOffset + k);
+            FloatVector bv = FloatVector.fromArray(SPECIES, b, bOffset + k);
+            acc = av.fma(bv, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; k < length; k++) {
+            sum += a[aOffset + k] * b[bOffset + k];
+        }
+        return sum;
+    }
+}
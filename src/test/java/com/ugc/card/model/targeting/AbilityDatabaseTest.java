@@ -0,0 +1,191 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+public class AbilityDatabaseTest {
+    @TempDir
+    Path dir;
+
+    private TargetingSystem system;
+    private String databasePath;
+
+    @BeforeEach
+    void setUp() {
+        system = new TargetingSystem();
+        system.registerParser("magic", new MagicAbilityParser());
+        databasePath = dir.resolve("abilities.csv").toString();
+    }
+
+    private TargetingChain chain(String effect, String value) {
+        TargetingChain chain = new TargetingChain();
+        chain.addComponent(new TargetingComponent(ComponentCategory.EFFECT, effect));
+        chain.addComponent(new TargetingComponent(ComponentCategory.VALUE, value));
+        return chain;
+    }
+
+    private AbilityDatabase open() {
+        return new AbilityDatabase(databasePath, system, "magic");
+    }
+
+    @Test
+    void testMutationsAreReplayedFromLog() {
+        AbilityDatabase database = open();
+        database.addAbility("Shock", chain("damage", "2"));
+        database.addAbility("Divination", chain("draw", "2"));
+        database.addAbility("Lightning Bolt", chain("damage", "3"));
+        database.removeAbility("Divination");
+        database.close();
+
+        assertFalse(Files.exists(Path.of(databasePath)), "mutations should not rewrite the snapshot");
+
+        AbilityDatabase reopened = open();
+        assertEquals(2, reopened.size());
+        assertTrue(reopened.getAbility("Shock").contains(chain("damage", "2")));
+        assertTrue(reopened.getAbility("Divination").isEmpty());
+
+        reopened.clear();
+        reopened.close();
+        assertEquals(0, open().size());
+    }
+
+    @Test
+    void testBatchAndCompaction() throws IOException {
+        AbilityDatabase database = open();
+        database.batch(() -> {
+            for (int i = 0; i < 50; i++) {
+                database.addAbility("Ability " + i, chain("damage", String.valueOf(i % 5)));
+            }
+        });
+        database.compact();
+        database.addAbility("After compaction", chain("heal", "1"));
+        database.close();
+
+        assertTrue(Files.exists(Path.of(databasePath)));
+        AbilityDatabase reopened = open();
+        assertEquals(51, reopened.size());
+        assertTrue(reopened.getAbility("Ability 7").contains(chain("damage", "2")));
+        assertTrue(reopened.getAbility("After compaction").contains(chain("heal", "1")));
+    }
+
+    @Test
+    void testTornLogRecordIsIgnored() throws IOException {
+        AbilityDatabase database = open();
+        database.addAbility("Shock", chain("damage", "2"));
+        database.close();
+
+        // Simulate a crash halfway through appending the next record
+        Files.write(Path.of(databasePath + ".log"), new byte[]{30, 0, 0, 0, 9, 9}, StandardOpenOption.APPEND);
+
+        AbilityDatabase reopened = open();
+        assertEquals(1, reopened.size());
+        reopened.addAbility("Divination", chain("draw", "2"));
+        reopened.close();
+        assertEquals(2, open().size());
+    }
+
+    @Test
+    void testImportStreamsQuotedRecords() throws IOException {
+        Path csv = dir.resolve("import.csv");
+        Files.write(csv, Arrays.asList(
+            "\"destroy target creature, then draw a card\"",
+            "deal 3 damage to any target"));
+        AbilityDatabase database = open();
+        database.importFromCSV(csv.toString());
+        assertEquals(2, database.size());
+        assertEquals(system.parseAbility("destroy target creature, then draw a card", "magic").getComponents(),
+            database.getAbility("destroy target creature, then draw a card").iterator().next().getComponents());
+        database.compact();
+        database.close();
+
+        assertEquals(2, open().size());
+    }
+
+    @Test
+    void testRemovedAndClearedChainsLeaveTheIndexes() {
+        AbilityDatabase database = open();
+        TargetingChain shock = chain("damage", "2");
+        TargetingChain bolt = chain("damage", "3");
+        database.addAbility("Shock", shock);
+        database.addAbility("Lightning Bolt", bolt);
+        // Still held by Lightning Bolt after Bolt Copy is removed
+        database.addAbility("Bolt Copy", bolt);
+
+        database.removeAbility("Shock");
+        database.removeAbility("Bolt Copy");
+        assertEquals(Collections.singleton(bolt), database.searchAbilities("damage"));
+        assertTrue(database.searchAbilities(ComponentCategory.VALUE, "2").isEmpty());
+        assertTrue(database.searchAbilitiesByPrefix("2").isEmpty());
+        assertEquals(Collections.singleton(bolt), database.getAbilitiesByCategory(ComponentCategory.EFFECT));
+        assertTrue(database.getSimilarAbilities(chain("damage", "4")).contains(bolt));
+        assertFalse(database.getSimilarAbilities(chain("damage", "4")).contains(shock));
+        assertEquals(Collections.singleton(bolt), database.getChains());
+
+        database.addAbility("Shock", shock);
+        assertEquals(new HashSet<>(Arrays.asList(shock, bolt)), database.searchAbilities("damage"));
+        assertEquals(1, database.findNearDuplicates(0.3).size());
+
+        database.clear();
+        assertTrue(database.searchAbilities("damage").isEmpty());
+        assertTrue(database.getSimilarAbilities(shock).isEmpty());
+        assertTrue(database.findNearDuplicates(0.3).isEmpty());
+        assertTrue(database.getChains().isEmpty());
+        database.close();
+    }
+
+    @Test
+    void testLoadedAndReplayedChainsAreIndexed() throws IOException {
+        AbilityDatabase database = open();
+        database.addAbility("Shock", chain("damage", "2"));
+        database.compact();
+        database.addAbility("Divination", chain("draw", "2"));
+        database.addAbility("Lightning Bolt", chain("damage", "3"));
+        database.removeAbility("Lightning Bolt");
+        database.close();
+
+        // Shock comes from the snapshot, the rest from the log
+        AbilityDatabase reopened = open();
+        assertEquals(Collections.singleton(chain("damage", "2")), reopened.searchAbilities("damage"));
+        assertEquals(Collections.singleton(chain("draw", "2")), reopened.searchAbilities("draw"));
+        assertEquals(Arrays.asList(chain("damage", "2"), chain("draw", "2")),
+            reopened.getSimilarAbilities(chain("damage", "5"), 5));
+        assertEquals(2, reopened.getChains().size());
+        reopened.close();
+    }
+
+    @Test
+    void testSnapshotIsUtf8() throws IOException {
+        String name = "Caf\u00e9 \u2014 \u6d88\u706b";
+        AbilityDatabase database = open();
+        database.addAbility(name, chain("damage", "\u00e9clair"));
+        database.compact();
+        database.close();
+
+        assertTrue(new String(Files.readAllBytes(Path.of(databasePath)), StandardCharsets.UTF_8).contains(name));
+        AbilityDatabase reopened = open();
+        assertEquals(Collections.singleton(chain("damage", "\u00e9clair")), reopened.getAbility(name));
+        reopened.close();
+    }
+
+    @Test
+    void testDatabaseWithoutPathKeepsNoLog() throws IOException {
+        Path log = Path.of("abilities.csv.log");
+        boolean existed = Files.exists(log);
+        AbilityDatabase database = new AbilityDatabase();
+        database.addAbility("Shock", chain("damage", "2"));
+        database.removeAbility("Shock");
+        database.compact();
+        database.close();
+        assertEquals(existed, Files.exists(log));
+        assertEquals(0, database.size());
+    }
+}
@@ -0,0 +1,210 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+public class AbilityParseCacheTest {
+    private final MagicAbilityParser magic = new MagicAbilityParser();
+
+    @Test
+    void testNormalizeCollapsesWhitespace() {
+        String plain = "destroy target creature";
+        assertSame(plain, AbilityParseCache.normalize(plain));
+        assertEquals(plain, AbilityParseCache.normalize("  destroy\ttarget \n creature "));
+        assertEquals("", AbilityParseCache.normalize(" \t "));
+        assertEquals("", AbilityParseCache.normalize(""));
+    }
+
+    @Test
+    void testHitsReturnTheSameFrozenChain() {
+        AbilityParseCache cache = AbilityParseCache.builder().build();
+        TargetingChain first = cache.parse("Magic", "destroy target creature", magic);
+        TargetingChain second = cache.parse("magic", " destroy  target creature", magic);
+
+        assertSame(first, second);
+        assertTrue(first.isFrozen());
+        assertThrows(IllegalStateException.class, () -> first.setQualifier("until end of turn"));
+        assertEquals(magic.parseAbility("destroy target creature").getComponents(), first.getComponents());
+
+        AbilityParseCache.Stats stats = cache.stats("MAGIC");
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(0.5, stats.getHitRate());
+        assertEquals(1, stats.getEntries());
+        assertEquals(AbilityParseCache.weigh("destroy target creature", first), stats.getWeight());
+        assertEquals(0, cache.stats("yugioh").getHitRate());
+    }
+
+    @Test
+    void testNullParsesAreCachedToo() {
+        AbilityParseCache cache = AbilityParseCache.builder().build();
+        AtomicInteger parses = new AtomicInteger();
+        Function<String, TargetingChain> parser = text -> {
+            parses.incrementAndGet();
+            return null;
+        };
+        assertNull(cache.parse("fleshandblood", "go again", parser));
+        assertNull(cache.parse("fleshandblood", "go again", parser));
+        assertEquals(1, parses.get());
+        assertEquals(1, cache.stats("fleshandblood").getHits());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntriesAreEvictedWithinWeight() {
+        long weight = 20 * AbilityParseCache.weigh("draw 00 cards", magic.parseAbility("draw 00 cards"));
+        AbilityParseCache cache = AbilityParseCache.builder()
+            .maximumWeight("magic", weight)
+            .maximumWeight("yugioh", 0)
+            .normalizer("lorcana", text -> AbilityParseCache.normalize(text).toLowerCase())
+            .build();
+        TargetingChain kept = cache.parse("magic", "draw 00 cards", magic);
+        for (int i = 10; i < 100; i++) {
+            cache.parse("magic", "draw " + i + " cards", magic);
+            // Touching an entry keeps it at the young end
+            assertSame(kept, cache.parse("magic", "draw 00 cards", magic));
+        }
+        AbilityParseCache.Stats stats = cache.stats("magic");
+        assertTrue(stats.getWeight() <= weight);
+        assertEquals(91 - stats.getEntries(), stats.getEvictions());
+        assertTrue(stats.getEvictions() > 0);
+
+        // A game with no weight is parsed every time
+        assertNotSame(cache.parse("yugioh", "destroy 1 monster", magic),
+            cache.parse("yugioh", "destroy 1 monster", magic));
+        assertEquals(0, cache.stats("yugioh").getEntries());
+        assertEquals(AbilityParseCache.DEFAULT_MAXIMUM_WEIGHT, cache.maximumWeight("lorcana"));
+
+        assertSame(cache.parse("lorcana", "Exert Chosen Character", magic),
+            cache.parse("lorcana", "exert chosen character", magic));
+        cache.invalidateAll();
+        assertEquals(0, cache.stats().getEntries());
+        assertThrows(IllegalArgumentException.class, () -> AbilityParseCache.builder().maximumWeight(-1));
+    }
+
+    @Test
+    void testConcurrentLookupsAgreeWithParser() throws Exception {
+        AbilityParseCache cache = AbilityParseCache.builder().maximumWeight(4096).build();
+        int threads = 4;
+        int lookups = 5000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                results.add(pool.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < lookups; i++) {
+                        String text = "deal " + random.nextInt(200) + " damage to target creature";
+                        assertEquals(magic.parseAbility(text).getComponents(),
+                            cache.parse("magic", text, magic).getComponents());
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        AbilityParseCache.Stats stats = cache.stats();
+        assertEquals((long) threads * lookups, stats.getHits() + stats.getMisses());
+        assertTrue(stats.getWeight() <= 4096);
+    }
+
+    @Test
+    void testParsesFromBeforeAnInvalidationAreNotStored() {
+        AbilityParseCache cache = AbilityParseCache.builder().build();
+        long generation = cache.generation("magic");
+        cache.parse("magic", "exile target artifact", magic);
+        cache.invalidate("Magic");
+        assertEquals(generation + 1, cache.generation("magic"));
+
+        TargetingChain stale = cache.parse("magic", "destroy target creature", magic::parseAbility, generation);
+        assertNotNull(stale);
+        assertEquals(0, cache.stats("magic").getEntries());
+        assertNotSame(stale, cache.parse("magic", "destroy target creature", magic));
+        assertEquals(1, cache.stats("magic").getEntries());
+    }
+
+    // Marks its chains, so they can be told apart from those of a plain parser
+    private static class OldParser extends MagicAbilityParser {
+        static final TargetingComponent MARK = new TargetingComponent(ComponentCategory.STATE, "old parser");
+
+        @Override
+        public TargetingChain parseAbility(String abilityText) {
+            TargetingChain chain = super.parseAbility(abilityText);
+            chain.addComponent(MARK);
+            return chain;
+        }
+    }
+
+    @Test
+    void testReplacingAGameMidStreamKeepsOldChainsOutOfTheCache() {
+        TargetingSystem system = new TargetingSystem();
+        system.addGame("magic", new OldParser());
+        AbilityParseCache cache = AbilityParseCache.builder().build();
+        system.setParseCache(cache);
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < BatchAbilityParser.STREAM_CHUNK + 10; i++) {
+            texts.add("destroy target creature " + i % 50);
+        }
+
+        List<BatchAbilityParser.Result> results = new ArrayList<>();
+        try (Stream<BatchAbilityParser.Result> stream = system.parseAll("magic", texts.stream(), 2)) {
+            Iterator<BatchAbilityParser.Result> iterator = stream.iterator();
+            results.add(iterator.next());
+            assertEquals(50, cache.stats("magic").getEntries());
+
+            // The rest of the stream still parses with the parser it started with
+            system.addGame("magic", new MagicAbilityParser());
+            iterator.forEachRemaining(results::add);
+        }
+        assertEquals(texts.size(), results.size());
+        assertTrue(results.get(results.size() - 1).getChain().getComponents().contains(OldParser.MARK));
+        assertEquals(0, cache.stats("magic").getEntries());
+        for (int i = 0; i < 50; i++) {
+            assertFalse(system.parseAbility("destroy target creature " + i, "magic").getComponents()
+                .contains(OldParser.MARK));
+        }
+    }
+
+    @Test
+    void testSystemAndLanguageModelParseThroughCache() {
+        TargetingSystem system = new TargetingSystem();
+        system.addGame("magic", magic);
+        AbilityParseCache cache = AbilityParseCache.builder().build();
+        system.setParseCache(cache);
+        TargetingChain chain = system.parseAbility("destroy target creature", "magic");
+        assertSame(chain, system.parseAbility("destroy target creature", "Magic"));
+        assertSame(chain, system.parseAll("magic", Collections.singletonList("destroy target creature"))
+            .get(0).getChain());
+
+        system.addGame("magic", new MagicAbilityParser());
+        assertEquals(0, cache.stats("magic").getEntries());
+        assertNotSame(chain, system.parseAbility("destroy target creature", "magic"));
+
+        TargetingSystem words = new TargetingSystem();
+        words.enableConcurrentRegistry();
+        words.addComponent(new TargetingComponent(ComponentCategory.EFFECT, "destroy"));
+        words.addComponent(new TargetingComponent(ComponentCategory.TYPE, "creature"));
+        TargetingLLM llm = new TargetingLLM(words);
+        llm.setParseCache(cache);
+        TargetingChain parsed = llm.parseText("Destroy target creature");
+        assertSame(parsed, llm.parseText("Destroy target  creature"));
+        // Cached chains are shared, so they cannot be changed
+        assertThrows(IllegalStateException.class,
+            () -> parsed.addComponent(new TargetingComponent(ComponentCategory.VALUE, "2")));
+
+        // New components may change the parse, so the model's entries are dropped
+        words.addComponent(new TargetingComponent(ComponentCategory.TARGET, "target"));
+        TargetingChain reparsed = llm.parseText("Destroy target creature");
+        assertNotSame(parsed, reparsed);
+        assertEquals(1, cache.stats(TargetingLLM.PARSE_CACHE_GAME).getEntries());
+    }
+}
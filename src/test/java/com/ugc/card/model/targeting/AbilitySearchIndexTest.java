@@ -0,0 +1,76 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+public class AbilitySearchIndexTest {
+    private static final String[] VALUES = {
+        "deal", "damage", "destroy", "draw", "target creature", "opponent", "another", "3", "13", "x"
+    };
+    private static final ComponentCategory[] CATEGORIES = {
+        ComponentCategory.EFFECT, ComponentCategory.TYPE, ComponentCategory.VALUE, ComponentCategory.DIRECTION
+    };
+
+    private List<TargetingChain> chains;
+    private AbilitySearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(11);
+        chains = new ArrayList<>();
+        index = new AbilitySearchIndex();
+        for (int i = 0; i < 500; i++) {
+            TargetingChain chain = new TargetingChain();
+            int count = 1 + random.nextInt(4);
+            for (int j = 0; j < count; j++) {
+                chain.addComponent(new TargetingComponent(
+                    CATEGORIES[random.nextInt(CATEGORIES.length)], VALUES[random.nextInt(VALUES.length)]));
+            }
+            chains.add(chain);
+            index.add(chain);
+        }
+    }
+
+    private Set<TargetingChain> scan(Predicate<TargetingComponent> matches) {
+        return chains.stream()
+            .filter(chain -> chain.getComponents().stream().anyMatch(matches))
+            .collect(Collectors.toSet());
+    }
+
+    @Test
+    void testSubstringSearchMatchesLinearScan() {
+        for (String query : Arrays.asList("", "d", "de", "dam", "DAMAGE", "get cre", "3", "zzz", "another one")) {
+            String normalized = query.toLowerCase();
+            assertEquals(scan(c -> c.getText().contains(normalized)), index.containing(query), query);
+        }
+    }
+
+    @Test
+    void testPrefixAndCategorySearch() {
+        assertEquals(scan(c -> c.getText().startsWith("d")), index.withPrefix("D"));
+        assertEquals(scan(c -> c.getText().startsWith("1")), index.withPrefix("1"));
+        assertTrue(index.withPrefix("q").isEmpty());
+
+        assertEquals(scan(c -> c.getCategory() == ComponentCategory.VALUE && c.getText().equals("3")),
+            index.matching(ComponentCategory.VALUE, "3"));
+        assertTrue(index.matching(ComponentCategory.BASE, "3").isEmpty());
+    }
+
+    @Test
+    void testAddIsIncrementalAndIdempotent() {
+        TargetingChain chain = new TargetingChain();
+        chain.addComponent(new TargetingComponent(ComponentCategory.EFFECT, "mill"));
+        assertTrue(index.containing("mil").isEmpty());
+
+        int id = index.add(chain);
+        assertEquals(id, index.add(chain));
+        assertEquals(id, index.idOf(chain));
+        assertSame(chain, index.get(id));
+        assertEquals(Collections.singleton(chain), index.containing("mil"));
+    }
+}
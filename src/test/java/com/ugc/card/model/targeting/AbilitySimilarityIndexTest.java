@@ -0,0 +1,92 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class AbilitySimilarityIndexTest {
+    private static final String[] VALUES = {"deal", "draw", "destroy", "creature", "minion", "1", "2", "3"};
+    private static final ComponentCategory[] CATEGORIES = {
+        ComponentCategory.EFFECT, ComponentCategory.TYPE, ComponentCategory.VALUE
+    };
+
+    private List<TargetingChain> chains;
+    private AbilitySearchIndex index;
+    private AbilitySimilarityIndex similarity;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(5);
+        chains = new ArrayList<>();
+        index = new AbilitySearchIndex();
+        similarity = new AbilitySimilarityIndex(index);
+        for (int i = 0; i < 300; i++) {
+            TargetingChain chain = new TargetingChain();
+            int count = 1 + random.nextInt(4);
+            for (int j = 0; j < count; j++) {
+                chain.addComponent(new TargetingComponent(
+                    CATEGORIES[random.nextInt(CATEGORIES.length)], VALUES[random.nextInt(VALUES.length)]));
+            }
+            if (index.idOf(chain) < 0) {
+                chains.add(chain);
+                index.add(chain);
+            }
+        }
+    }
+
+    // The original pairwise definition the index must reproduce
+    private static double reference(TargetingChain a, TargetingChain b) {
+        Set<ComponentCategory> categories = new HashSet<>();
+        a.getComponents().forEach(c -> categories.add(c.getCategory()));
+        b.getComponents().forEach(c -> categories.add(c.getCategory()));
+        double similarity = 0.0;
+        for (ComponentCategory category : categories) {
+            Set<String> valuesA = a.getComponentsByCategory(category);
+            Set<String> valuesB = b.getComponentsByCategory(category);
+            if (!valuesA.isEmpty() && !valuesB.isEmpty()) {
+                Set<String> shared = new HashSet<>(valuesA);
+                shared.retainAll(valuesB);
+                similarity += (double) shared.size() / Math.max(valuesA.size(), valuesB.size());
+            }
+        }
+        return similarity / categories.size();
+    }
+
+    @Test
+    void testTopKMatchesBruteForceRanking() {
+        for (int q = 0; q < 20; q++) {
+            TargetingChain query = chains.get(q * 7);
+            List<TargetingChain> expected = chains.stream()
+                .filter(other -> !other.equals(query))
+                .sorted(Comparator.comparingDouble((TargetingChain other) -> -reference(query, other))
+                    .thenComparingInt(other -> index.idOf(other)))
+                .limit(10)
+                .collect(Collectors.toList());
+            List<TargetingChain> actual = similarity.topK(query, 10);
+
+            assertEquals(10, actual.size());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(reference(query, expected.get(i)), reference(query, actual.get(i)), 1e-12);
+            }
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void testPadsWithUnrelatedChainsAndSeesNewChains() {
+        TargetingChain query = new TargetingChain();
+        query.addComponent(new TargetingComponent(ComponentCategory.EFFECT, "mill"));
+        List<TargetingChain> padded = similarity.topK(query, 3);
+        assertEquals(Arrays.asList(chains.get(0), chains.get(1), chains.get(2)), padded);
+
+        TargetingChain mill = new TargetingChain();
+        mill.addComponent(new TargetingComponent(ComponentCategory.EFFECT, "mill"));
+        mill.addComponent(new TargetingComponent(ComponentCategory.VALUE, "2"));
+        index.add(mill);
+        assertEquals(mill, similarity.topK(query, 3).get(0));
+        assertTrue(similarity.topK(query, 0).isEmpty());
+    }
+}
@@ -0,0 +1,91 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+
+public class AbilityTokenizerTest {
+    private static final String ALPHABET = "ab09 X\t\n\u000B\f\r\u00A0'";
+
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        AbilityTokenizer tokens = new AbilityTokenizer(text);
+        while (tokens.next()) {
+            assertEquals(tokens.word(), text.substring(tokens.start(), tokens.end()));
+            assertTrue(tokens.wordEquals(tokens.word()));
+            assertEquals(tokens.word().matches("\\d+"), tokens.isNumber());
+            words.add(tokens.word());
+        }
+        return words;
+    }
+
+    // The words split("\\s+") yields, without its leading empty string
+    private static List<String> splitWords(String text) {
+        List<String> words = new ArrayList<>(Arrays.asList(text.split("\\s+")));
+        if (!words.isEmpty() && words.get(0).isEmpty()) {
+            words.remove(0);
+        }
+        return words;
+    }
+
+    @Test
+    void testWordsMatchSplit() {
+        Random random = new Random(29);
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int j = random.nextInt(16); j > 0; j--) {
+                text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            String s = text.toString();
+            assertEquals(splitWords(s), words(s), s);
+            assertEquals(splitWords(s).size(), AbilityTokenizer.wordCount(s));
+            assertEquals(s.matches("\\d+"), AbilityTokenizer.isNumber(s));
+        }
+    }
+
+    @Test
+    void testNumericLiterals() {
+        AbilityTokenizer tokens = new AbilityTokenizer("deal 3 damage, draw 12 007 2147483647 2147483648 x1");
+        List<Integer> values = new ArrayList<>();
+        List<String> overflow = new ArrayList<>();
+        while (tokens.next()) {
+            if (tokens.isNumber()) {
+                try {
+                    values.add(tokens.intValue());
+                } catch (NumberFormatException e) {
+                    overflow.add(tokens.word());
+                }
+            }
+        }
+        assertEquals(Arrays.asList(3, 12, 7, Integer.MAX_VALUE), values);
+        assertEquals(Collections.singletonList("2147483648"), overflow);
+
+        tokens.reset("damage");
+        assertTrue(tokens.next());
+        assertFalse(tokens.isNumber());
+        assertThrows(NumberFormatException.class, tokens::intValue);
+        assertEquals('g', tokens.charAt(4));
+        assertFalse(tokens.next());
+        assertThrows(IllegalStateException.class, tokens::word);
+        assertFalse(AbilityTokenizer.isNumber(""));
+    }
+
+    @Test
+    void testPatternRegistry() {
+        assertSame(TextPatterns.get("deal.*damage"), TextPatterns.get("deal.*damage"));
+        assertSame(TextPatterns.SENTENCE_END, TextPatterns.get("[.!?]"));
+        assertArrayEquals("a. b! c? d".split("[.!?]"), TextPatterns.SENTENCE_END.split("a. b! c? d"));
+        assertArrayEquals("x, then y and z".split("(,|then|and)"), TextPatterns.CLAUSE_BREAK.split("x, then y and z"));
+        assertThrows(IllegalArgumentException.class, () -> TextPatterns.get(null));
+    }
+
+    @Test
+    void testLanguageModelTokensMatchSplit() {
+        TargetingLLM llm = new TargetingLLM(new TargetingSystem());
+        for (String text : Arrays.asList("", "  ", " deal 3", "Deal  3\tdamage", "draw ")) {
+            int words = text.toLowerCase().split("\\s+").length;
+            assertEquals(Collections.nCopies(words, 1), llm.tokenize(text), "'" + text + "'");
+        }
+    }
+}
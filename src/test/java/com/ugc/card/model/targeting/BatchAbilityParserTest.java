@@ -0,0 +1,130 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class BatchAbilityParserTest {
+    private static final String[] ABILITIES = {
+        "destroy target creature", "draw a card", "deal 3 damage to any target",
+        "exile target artifact", "target player gains 2 life", "counter target spell"
+    };
+
+    // Fails on every text that starts with "fail"
+    private static class FailingParser extends MagicAbilityParser {
+        @Override
+        public TargetingChain parseAbility(String abilityText) {
+            if (abilityText.startsWith("fail")) {
+                throw new IllegalStateException("cannot parse " + abilityText);
+            }
+            return super.parseAbility(abilityText);
+        }
+    }
+
+    private static List<String> texts(int count) {
+        return IntStream.range(0, count)
+            .mapToObj(i -> i % 97 == 0 ? "fail " + i : ABILITIES[i % ABILITIES.length])
+            .collect(Collectors.toList());
+    }
+
+    private static void assertMatchesSerial(GameAbilityParser parser, List<String> texts,
+                                            List<BatchAbilityParser.Result> results) {
+        assertEquals(texts.size(), results.size());
+        for (int i = 0; i < texts.size(); i++) {
+            BatchAbilityParser.Result result = results.get(i);
+            assertEquals(i, result.getIndex());
+            assertSame(texts.get(i), result.getText());
+            if (texts.get(i).startsWith("fail")) {
+                assertTrue(result.isFailed());
+                assertTrue(result.getError() instanceof IllegalStateException);
+                assertNull(result.getChain());
+            } else {
+                assertFalse(result.isFailed());
+                assertEquals(parser.parseAbility(texts.get(i)).getComponents(), result.getChain().getComponents());
+            }
+        }
+    }
+
+    @Test
+    void testListResultsKeepOrderAndReportFailures() {
+        GameAbilityParser parser = new FailingParser();
+        List<String> texts = texts(5000);
+        assertMatchesSerial(parser, texts, BatchAbilityParser.parseAll(parser, texts, 4));
+        assertMatchesSerial(parser, texts, BatchAbilityParser.parseAll(parser, texts, 1));
+        assertMatchesSerial(parser, texts.subList(0, 10), BatchAbilityParser.parseAll(parser, texts.subList(0, 10), 4));
+        assertTrue(BatchAbilityParser.parseAll(parser, Collections.emptyList(), 4).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> BatchAbilityParser.parseAll(parser, texts, 0));
+        assertThrows(IllegalArgumentException.class, () -> BatchAbilityParser.parseAll(null, texts, 2));
+    }
+
+    @Test
+    void testStreamIsParsedLazilyInChunks() {
+        GameAbilityParser parser = new FailingParser();
+        List<String> texts = texts(3 * BatchAbilityParser.STREAM_CHUNK + 5);
+        AtomicInteger read = new AtomicInteger();
+        AtomicInteger closed = new AtomicInteger();
+        try (Stream<BatchAbilityParser.Result> results = BatchAbilityParser.parseAll(parser,
+                texts.stream().peek(text -> read.incrementAndGet()).onClose(closed::incrementAndGet), 4)) {
+            Iterator<BatchAbilityParser.Result> iterator = results.iterator();
+            assertTrue(iterator.hasNext());
+            assertEquals(BatchAbilityParser.STREAM_CHUNK, read.get());
+            List<BatchAbilityParser.Result> all = new ArrayList<>();
+            iterator.forEachRemaining(all::add);
+            assertMatchesSerial(parser, texts, all);
+        }
+        assertEquals(1, closed.get());
+    }
+
+    @Test
+    void testClosingAnUnfinishedStreamClosesTheSource() {
+        GameAbilityParser parser = new FailingParser();
+        String lines = String.join("\n", texts(2 * BatchAbilityParser.STREAM_CHUNK));
+        AtomicInteger closed = new AtomicInteger();
+        BufferedReader reader = new BufferedReader(new StringReader(lines)) {
+            @Override
+            public void close() throws IOException {
+                closed.incrementAndGet();
+                super.close();
+            }
+        };
+        Stream<String> source = reader.lines().onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        List<BatchAbilityParser.Result> first;
+        try (Stream<BatchAbilityParser.Result> results = BatchAbilityParser.parseAll(parser, source, 4)) {
+            first = results.limit(3).collect(Collectors.toList());
+            // Collecting part of the results leaves the source open until the stream is closed
+            assertEquals(0, closed.get());
+        }
+        assertEquals(1, closed.get());
+        assertEquals(texts(3), first.stream().map(BatchAbilityParser.Result::getText).collect(Collectors.toList()));
+        assertEquals(2, first.get(2).getIndex());
+        assertThrows(IOException.class, reader::readLine);
+    }
+
+    @Test
+    void testSystemBatchesThroughGameParser() {
+        TargetingSystem system = new TargetingSystem();
+        system.addGame("magic", new FailingParser());
+        List<String> texts = texts(1000);
+        assertMatchesSerial(new FailingParser(), texts, system.parseAll("Magic", texts));
+        try (Stream<BatchAbilityParser.Result> results = system.parseAll("magic", texts.stream())) {
+            assertMatchesSerial(new FailingParser(), texts, results.collect(Collectors.toList()));
+        }
+        assertThrows(IllegalArgumentException.class, () -> system.parseAll("hearthstone", texts));
+    }
+}
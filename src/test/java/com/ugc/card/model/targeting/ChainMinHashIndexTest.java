@@ -0,0 +1,115 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+
+public class ChainMinHashIndexTest {
+    private static double jaccard(TargetingChain a, TargetingChain b) {
+        Set<TargetingComponent> union = new HashSet<>(a.getComponents());
+        union.addAll(b.getComponents());
+        Set<TargetingComponent> shared = new HashSet<>(a.getComponents());
+        shared.retainAll(b.getComponents());
+        return (double) shared.size() / union.size();
+    }
+
+    // Random chains, each followed by a copy with one of its components swapped out
+    private List<TargetingChain> corpus() {
+        Random random = new Random(3);
+        ComponentCategory[] categories = ComponentCategory.values();
+        List<TargetingChain> chains = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            TargetingChain chain = new TargetingChain();
+            for (int j = 0; j < 10; j++) {
+                chain.addComponent(new TargetingComponent(
+                    categories[random.nextInt(categories.length)], "v" + random.nextInt(40)));
+            }
+            TargetingChain variant = new TargetingChain();
+            List<TargetingComponent> components = new ArrayList<>(chain.getComponents());
+            for (int j = 1; j < components.size(); j++) {
+                variant.addComponent(components.get(j));
+            }
+            variant.addComponent(new TargetingComponent(ComponentCategory.SPECIAL, "variant" + i));
+            chains.add(chain);
+            chains.add(variant);
+        }
+        return chains;
+    }
+
+    @Test
+    void testFindsNearDuplicatesWithHighRecall() {
+        List<TargetingChain> chains = corpus();
+        double threshold = 0.7;
+
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < chains.size(); i++) {
+            for (int j = i + 1; j < chains.size(); j++) {
+                if (jaccard(chains.get(i), chains.get(j)) >= threshold) {
+                    expected.add(i + ":" + j);
+                }
+            }
+        }
+        assertTrue(expected.size() >= 150);
+
+        ChainMinHashIndex index = ChainMinHashIndex.forThreshold(threshold, 128, 0.99);
+        index.addAll(chains);
+        List<ChainMinHashIndex.DuplicatePair> pairs = index.findNearDuplicates(threshold);
+
+        int found = 0;
+        double previous = 1.0;
+        for (ChainMinHashIndex.DuplicatePair pair : pairs) {
+            assertTrue(pair.getSimilarity() >= threshold);
+            assertTrue(pair.getSimilarity() <= previous);
+            assertEquals(jaccard(pair.getFirst(), pair.getSecond()), pair.getSimilarity(), 1e-12);
+            assertTrue(expected.contains(pair.getFirstId() + ":" + pair.getSecondId()));
+            previous = pair.getSimilarity();
+            found++;
+        }
+        assertTrue(found >= expected.size() * 0.95, found + " of " + expected.size());
+    }
+
+    @Test
+    void testSignatureEstimatesJaccard() {
+        List<TargetingChain> chains = corpus();
+        ChainMinHashIndex index = new ChainMinHashIndex(64, 4, 1L, 1);
+        for (int i = 0; i < 20; i += 2) {
+            double estimate = ChainMinHashIndex.estimateSimilarity(
+                index.signature(chains.get(i)), index.signature(chains.get(i + 1)));
+            assertEquals(jaccard(chains.get(i), chains.get(i + 1)), estimate, 0.15);
+        }
+        assertArrayEquals(index.signature(chains.get(0)), index.signature(chains.get(0)));
+    }
+
+    @Test
+    void testLayoutFavorsRecallAtThreshold() {
+        ChainMinHashIndex index = ChainMinHashIndex.forThreshold(0.8, 128, 0.99);
+        assertEquals(128, index.getBands() * index.getRows());
+        double atThreshold = 1.0 - Math.pow(1.0 - Math.pow(0.8, index.getRows()), index.getBands());
+        assertTrue(atThreshold >= 0.99);
+        assertTrue(index.getRows() > 1);
+    }
+
+    @Test
+    void testForThresholdRejectsOutOfRangeArguments() {
+        for (double threshold : new double[]{0.0, -0.5, 1.5, Double.NaN}) {
+            assertThrows(IllegalArgumentException.class, () -> ChainMinHashIndex.forThreshold(threshold, 128, 0.99));
+        }
+        for (double recall : new double[]{0.0, 1.0, -1.0, Double.NaN}) {
+            assertThrows(IllegalArgumentException.class, () -> ChainMinHashIndex.forThreshold(0.8, 128, recall));
+        }
+        assertThrows(IllegalArgumentException.class, () -> ChainMinHashIndex.forThreshold(0.8, 0, 0.99));
+
+        // Exact duplicates agree on every hash, so one band of all of them is enough
+        assertEquals(128, ChainMinHashIndex.forThreshold(1.0, 128, 0.99).getRows());
+    }
+
+    @Test
+    void testSeedSelectsTheHashFunctions() {
+        TargetingChain chain = corpus().get(0);
+        assertArrayEquals(ChainMinHashIndex.forThreshold(0.8, 128, 0.99).signature(chain),
+            ChainMinHashIndex.forThreshold(0.8, 128, 0.99, ChainMinHashIndex.DEFAULT_SEED).signature(chain));
+        assertFalse(Arrays.equals(ChainMinHashIndex.forThreshold(0.8, 128, 0.99, 7L).signature(chain),
+            ChainMinHashIndex.forThreshold(0.8, 128, 0.99, 8L).signature(chain)));
+    }
+}
@@ -0,0 +1,98 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+
+public class CompactChainTest {
+    private TargetingComponent deal;
+    private TargetingComponent draw;
+    private TargetingComponent minion;
+    private TargetingComponent three;
+    private ComponentVocabulary vocabulary;
+
+    @BeforeEach
+    void setUp() {
+        deal = new TargetingComponent(ComponentCategory.EFFECT, "deal");
+        draw = new TargetingComponent(ComponentCategory.EFFECT, "draw");
+        minion = new TargetingComponent(ComponentCategory.TYPE, "minion");
+        three = new TargetingComponent(ComponentCategory.VALUE, "3");
+        vocabulary = ComponentVocabulary.of(Arrays.asList(deal, draw, minion, three));
+    }
+
+    private TargetingChain chain(TargetingComponent... components) {
+        TargetingChain chain = new TargetingChain();
+        for (TargetingComponent component : components) {
+            chain.addComponent(component);
+        }
+        return chain;
+    }
+
+    @Test
+    void testRoundTripAndCategoryMask() {
+        TargetingChain original = chain(deal, minion, three);
+        CompactChain compact = CompactChain.of(vocabulary, original);
+
+        assertEquals(original, compact.toChain());
+        assertEquals(3, compact.size());
+        assertTrue(compact.hasCategory(ComponentCategory.EFFECT));
+        assertTrue(compact.hasCategory(ComponentCategory.VALUE));
+        assertFalse(compact.hasCategory(ComponentCategory.TARGET));
+        assertTrue(compact.contains(new TargetingComponent(ComponentCategory.TYPE, "Minion")));
+        assertFalse(compact.contains(draw));
+
+        assertThrows(IllegalArgumentException.class, () -> CompactChain.of(vocabulary,
+            chain(deal, new TargetingComponent(ComponentCategory.TARGET, "hero"))));
+    }
+
+    @Test
+    void testEqualityIgnoresInsertionOrder() {
+        CompactChain a = CompactChain.of(vocabulary, chain(three, deal));
+        CompactChain b = CompactChain.ofIds(vocabulary, vocabulary.indexOf(deal), vocabulary.indexOf(three),
+            vocabulary.indexOf(deal));
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(a, CompactChain.of(vocabulary, chain(deal)));
+    }
+
+    @Test
+    void testSetAlgebra() {
+        CompactChain a = CompactChain.of(vocabulary, chain(deal, minion, three));
+        CompactChain b = CompactChain.of(vocabulary, chain(draw, minion, three));
+
+        assertEquals(2, a.intersectionSize(b));
+        assertEquals(4, a.unionSize(b));
+        assertEquals(0.5, a.jaccard(b));
+        assertEquals(CompactChain.of(vocabulary, chain(minion, three)), a.intersect(b));
+        assertEquals(CompactChain.of(vocabulary, chain(deal, draw, minion, three)), a.union(b));
+        assertTrue(a.containsAll(a.intersect(b)));
+        assertFalse(a.containsAll(b));
+        assertEquals(1.0, CompactChain.empty(vocabulary).jaccard(CompactChain.empty(vocabulary)));
+
+        ComponentVocabulary other = ComponentVocabulary.of(Arrays.asList(deal, three));
+        assertThrows(IllegalArgumentException.class,
+            () -> a.intersectionSize(CompactChain.of(other, chain(deal))));
+    }
+
+    @Test
+    void testExtendedVocabulariesAreCompatible() {
+        TargetingComponent hero = new TargetingComponent(ComponentCategory.TARGET, "hero");
+        ComponentVocabulary extended = vocabulary.with(hero);
+        CompactChain a = CompactChain.of(vocabulary, chain(deal, minion, three));
+        CompactChain b = CompactChain.of(extended, chain(deal, minion, hero));
+
+        assertEquals(2, a.intersectionSize(b));
+        assertEquals(2, b.intersectionSize(a));
+        assertEquals(0.5, a.jaccard(b));
+        assertEquals(CompactChain.of(extended, chain(deal, minion, three, hero)), a.union(b));
+        assertSame(extended, b.union(a).getVocabulary());
+        assertEquals(CompactChain.of(extended, chain(deal, minion, three)), a);
+
+        // Same components, but extended independently of each other
+        ComponentVocabulary rebuilt = ComponentVocabulary.of(Arrays.asList(deal, minion, three, hero));
+        assertThrows(IllegalArgumentException.class,
+            () -> a.intersectionSize(CompactChain.of(rebuilt, chain(deal))));
+    }
+}
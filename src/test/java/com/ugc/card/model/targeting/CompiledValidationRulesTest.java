@@ -0,0 +1,174 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class CompiledValidationRulesTest {
+    private static final String[] TEXTS = {"target", "creature", "deal", "draw", "3", "opponent", "when", "another"};
+    private static final ComponentCategory[] CATEGORIES = {
+        ComponentCategory.EFFECT, ComponentCategory.TYPE, ComponentCategory.VALUE,
+        ComponentCategory.DIRECTION, ComponentCategory.TRIGGER, ComponentCategory.BASE
+    };
+
+    private Random random;
+    private List<ValidationRule> rules;
+    private List<TargetingChain> chains;
+
+    @BeforeEach
+    void setUp() {
+        random = new Random(17);
+        rules = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            int minSize = random.nextInt(4);
+            rules.add(new ValidationRule("rule" + i, "Rule " + i, chain -> chain.size() >= minSize,
+                randomCategories(2), randomCategories(1), randomTexts(2), randomTexts(1)));
+        }
+        chains = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            TargetingChain chain = new TargetingChain();
+            int count = 1 + random.nextInt(5);
+            for (int j = 0; j < count; j++) {
+                chain.addComponent(new TargetingComponent(
+                    CATEGORIES[random.nextInt(CATEGORIES.length)], TEXTS[random.nextInt(TEXTS.length)]));
+            }
+            chains.add(chain);
+        }
+    }
+
+    private Set<ComponentCategory> randomCategories(int max) {
+        Set<ComponentCategory> categories = EnumSet.noneOf(ComponentCategory.class);
+        for (int i = random.nextInt(max + 1); i > 0; i--) {
+            categories.add(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+        }
+        return categories;
+    }
+
+    private Set<String> randomTexts(int max) {
+        Set<String> texts = new HashSet<>();
+        for (int i = random.nextInt(max + 1); i > 0; i--) {
+            texts.add(TEXTS[random.nextInt(TEXTS.length)]);
+        }
+        return texts;
+    }
+
+    @Test
+    void testMatchesRuleByRuleValidation() {
+        int passing = 0;
+        for (int size = 1; size <= rules.size(); size++) {
+            List<ValidationRule> subset = rules.subList(0, size);
+            CompiledValidationRules compiled = CompiledValidationRules.compile(subset);
+            for (TargetingChain chain : chains) {
+                List<ValidationRule> expected = subset.stream()
+                    .filter(rule -> !rule.validate(chain))
+                    .collect(Collectors.toList());
+                assertEquals(expected, compiled.failedRules(chain));
+                assertEquals(expected.isEmpty(), compiled.validate(chain));
+                if (expected.isEmpty()) {
+                    passing++;
+                }
+            }
+        }
+        assertTrue(passing > 0, "rules should not reject every chain");
+    }
+
+    @Test
+    void testManyRuleTexts() {
+        List<ValidationRule> wide = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            wide.add(new ValidationRule("forbid" + i, "", chain -> true, Collections.emptySet(),
+                Collections.emptySet(), Collections.emptySet(), Collections.singleton("text" + i)));
+        }
+        wide.add(new ValidationRule("require", "", chain -> true, Collections.emptySet(),
+            Collections.emptySet(), Collections.singleton("text99"), Collections.emptySet()));
+        CompiledValidationRules compiled = CompiledValidationRules.compile(wide);
+
+        TargetingChain chain = new TargetingChain();
+        chain.addComponent(new TargetingComponent(ComponentCategory.VALUE, "text99"));
+        assertEquals(Collections.singletonList(wide.get(99)), compiled.failedRules(chain));
+        assertEquals(Collections.singletonList(wide.get(100)), compiled.failedRules(new TargetingChain()));
+    }
+
+    @Test
+    void testValidateAllMatchesSequential() {
+        CompiledValidationRules compiled = CompiledValidationRules.compile(rules.subList(0, 3));
+        boolean[] parallel = compiled.validateAll(chains, 4);
+        boolean[] sequential = compiled.validateAll(chains, 1);
+        assertArrayEquals(sequential, parallel);
+        for (int i = 0; i < chains.size(); i++) {
+            assertEquals(compiled.validate(chains.get(i)), parallel[i]);
+        }
+        assertThrows(IllegalArgumentException.class, () -> compiled.validateAll(chains, 0));
+    }
+
+    @Test
+    void testValidateAllRunsOnTheSharedPool() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        assertSame(ParallelPools.get(3), ParallelPools.get(3));
+        assertEquals(Math.min(3, cores), ParallelPools.get(3).getParallelism());
+        // Parallelism beyond the processors shares the widest pool instead of adding one
+        assertSame(ParallelPools.get(cores), ParallelPools.get(cores + 5));
+        assertThrows(IllegalArgumentException.class, () -> ParallelPools.get(0));
+
+        ValidationRule failing = new ValidationRule("boom", "", chain -> {
+            throw new UnsupportedOperationException("boom");
+        }, Collections.emptySet(), Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
+        CompiledValidationRules compiled = CompiledValidationRules.compile(Collections.singletonList(failing));
+        // The same exception as when validation runs on the calling thread
+        assertThrows(UnsupportedOperationException.class, () -> compiled.validateAll(chains, 3));
+        assertThrows(UnsupportedOperationException.class, () -> compiled.validateAll(chains, 1));
+    }
+
+    @Test
+    void testAbilityTypeRecompilesWhenItsRulesChange() {
+        ValidationRule accept = new ValidationRule("accept", "", chain -> true, Collections.emptySet(),
+            Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
+        ValidationRule reject = new ValidationRule("reject", "", chain -> false, Collections.emptySet(),
+            Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
+        Set<ValidationRule> shared = new ValidationRuleSet();
+        shared.add(accept);
+        AbilityType type = new AbilityType("type", "", Collections.emptySet(), Collections.emptySet(),
+            Collections.emptyMap(), shared, "");
+        TargetingChain chain = chains.get(0);
+        assertTrue(type.isValid(chain));
+
+        // Same size as before, so only the modification count shows the change
+        shared.remove(accept);
+        shared.add(reject);
+        assertFalse(type.isValid(chain));
+        Iterator<ValidationRule> iterator = type.getValidationRules().iterator();
+        iterator.next();
+        iterator.remove();
+        assertTrue(type.isValid(chain));
+
+        // Other sets are copied when the type is built
+        Set<ValidationRule> plain = new HashSet<>(Collections.singleton(accept));
+        AbilityType copied = new AbilityType("copied", "", Collections.emptySet(), Collections.emptySet(),
+            Collections.emptyMap(), plain, "");
+        plain.add(reject);
+        assertTrue(copied.isValid(chain));
+        copied.getValidationRules().add(reject);
+        assertFalse(copied.isValid(chain));
+    }
+
+    @Test
+    void testAbilityValidatorBatch() {
+        AbilityValidator validator = new AbilityValidator(null);
+        validator.addRule(rules.get(0));
+        List<TargetingChain> expected = chains.stream()
+            .filter(validator::validate)
+            .collect(Collectors.toList());
+        assertEquals(expected, validator.validateAll(chains));
+
+        TargetingChain damage = new TargetingChain();
+        damage.addComponent(new TargetingComponent(ComponentCategory.EFFECT, "destroy"));
+        damage.addComponent(new TargetingComponent(ComponentCategory.VALUE, "x"));
+        damage.addComponent(new TargetingComponent(ComponentCategory.DIRECTION, "all"));
+        damage.addComponent(new TargetingComponent(ComponentCategory.TYPE, "creature"));
+        assertFalse(validator.validate(damage));
+        assertTrue(validator.getValidationErrors(damage).contains("Invalid damage pattern"));
+    }
+}
@@ -0,0 +1,137 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+
+public class ComponentVocabularyTest {
+    private TargetingComponent deal;
+    private TargetingComponent minion;
+    private TargetingComponent three;
+    private ComponentVocabulary vocabulary;
+
+    @BeforeEach
+    void setUp() {
+        deal = new TargetingComponent(ComponentCategory.EFFECT, "deal");
+        minion = new TargetingComponent(ComponentCategory.TYPE, "minion");
+        three = new TargetingComponent(ComponentCategory.VALUE, "3");
+        vocabulary = ComponentVocabulary.of(Arrays.asList(three, deal, minion));
+    }
+
+    @Test
+    void testIdsAreIndependentOfInsertionOrder() {
+        ComponentVocabulary other = ComponentVocabulary.of(new HashSet<>(Arrays.asList(minion, three, deal)));
+        for (int i = 0; i < vocabulary.size(); i++) {
+            assertEquals(vocabulary.get(i), other.get(i));
+        }
+    }
+
+    @Test
+    void testIndexRoundTrip() {
+        assertEquals(3, vocabulary.size());
+        for (TargetingComponent component : Arrays.asList(deal, minion, three)) {
+            int id = vocabulary.indexOf(component);
+            assertTrue(id >= 0);
+            assertEquals(component, vocabulary.get(id));
+        }
+        assertEquals(-1, vocabulary.indexOf(new TargetingComponent(ComponentCategory.TYPE, "spell")));
+        assertNull(vocabulary.get(3));
+        assertNull(vocabulary.get(-1));
+    }
+
+    @Test
+    void testWithKeepsExistingIds() {
+        TargetingComponent spell = new TargetingComponent(ComponentCategory.TYPE, "spell");
+        ComponentVocabulary extended = vocabulary.with(spell);
+
+        assertEquals(4, extended.size());
+        assertEquals(3, extended.indexOf(spell));
+        for (int i = 0; i < vocabulary.size(); i++) {
+            assertSame(vocabulary.get(i), extended.get(i));
+        }
+        assertSame(extended, extended.with(spell));
+    }
+
+    @Test
+    void testWithAllAppendsInCanonicalOrder() {
+        TargetingComponent spell = new TargetingComponent(ComponentCategory.TYPE, "spell");
+        TargetingComponent destroy = new TargetingComponent(ComponentCategory.EFFECT, "destroy");
+        ComponentVocabulary extended = vocabulary.withAll(Arrays.asList(spell, deal, destroy));
+
+        assertEquals(5, extended.size());
+        for (int i = 0; i < vocabulary.size(); i++) {
+            assertSame(vocabulary.get(i), extended.get(i));
+        }
+        assertEquals(3, extended.indexOf(spell));
+        assertEquals(4, extended.indexOf(destroy));
+        assertSame(extended, extended.withAll(Arrays.asList(spell, destroy)));
+    }
+
+    @Test
+    void testSystemKeepsIdsWhenComponentsAreAdded() {
+        TargetingSystem system = new TargetingSystem();
+        system.addComponent(minion);
+        system.addComponent(three);
+        ComponentVocabulary before = system.getVocabulary();
+
+        // "deal" sorts between them, so a rebuild would renumber "3"
+        system.addComponent(deal);
+        system.addComponent(new TargetingComponent(ComponentCategory.DIRECTION, "any"));
+        ComponentVocabulary after = system.getVocabulary();
+
+        assertEquals(4, after.size());
+        for (int i = 0; i < before.size(); i++) {
+            assertSame(before.get(i), after.get(i));
+            assertEquals(i, system.getComponentIndex(before.get(i)));
+        }
+        assertEquals(2, system.getComponentIndex(deal));
+        assertEquals(before.size() + 1, after.indexOf(new TargetingComponent(ComponentCategory.DIRECTION, "any")));
+    }
+
+    @Test
+    void testIntern() {
+        TargetingComponent copy = new TargetingComponent(ComponentCategory.EFFECT, "deal");
+        assertSame(vocabulary.get(vocabulary.indexOf(deal)), vocabulary.intern(copy));
+    }
+
+    @Test
+    void testEncodeAndDecode() {
+        TargetingChain chain = new TargetingChain();
+        chain.addComponent(deal);
+        chain.addComponent(three);
+        chain.addComponent(new TargetingComponent(ComponentCategory.TARGET, "unknown"));
+
+        float[] encoded = vocabulary.encode(chain);
+        assertEquals(1.0f, encoded[vocabulary.indexOf(deal)]);
+        assertEquals(1.0f, encoded[vocabulary.indexOf(three)]);
+        assertEquals(0.0f, encoded[vocabulary.indexOf(minion)]);
+
+        int[] indices = vocabulary.indicesOf(chain);
+        assertEquals(2, indices.length);
+        assertTrue(indices[0] < indices[1]);
+
+        TargetingChain decoded = vocabulary.decode(encoded, 0.5f);
+        assertEquals(2, decoded.size());
+        assertTrue(decoded.getComponents().contains(deal));
+        assertTrue(decoded.getComponents().contains(three));
+    }
+
+    @Test
+    void testComponentsViewIsUnmodifiable() {
+        assertThrows(UnsupportedOperationException.class, () -> vocabulary.components().add(deal));
+    }
+
+    @Test
+    void testExtensionsStartWithTheirVocabulary() {
+        TargetingComponent spell = new TargetingComponent(ComponentCategory.TYPE, "spell");
+        ComponentVocabulary extended = vocabulary.with(spell);
+        assertTrue(vocabulary.isPrefixOf(extended));
+        assertTrue(vocabulary.isPrefixOf(vocabulary));
+        assertTrue(ComponentVocabulary.empty().isPrefixOf(vocabulary));
+        assertFalse(extended.isPrefixOf(vocabulary));
+        assertFalse(ComponentVocabulary.of(Arrays.asList(deal, minion, three, spell)).isPrefixOf(extended));
+        assertEquals(vocabulary.fingerprint(), extended.prefixFingerprint(vocabulary.size()));
+    }
+}
@@ -0,0 +1,195 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CsvRecordPipelineTest {
+    private static String csv(int records) {
+        StringBuilder text = new StringBuilder("id,ability\n");
+        for (int i = 0; i < records; i++) {
+            text.append(i).append(",\"deal ").append(i).append(" damage, then draw\"\n");
+        }
+        return text.toString();
+    }
+
+    @Test
+    void testRecordsAreStoredInOrderWithQuotedFields() throws Exception {
+        List<String> stored = new ArrayList<>();
+        long count = new CsvRecordPipeline(4, 16, 3).run(new StringReader(csv(1000)), 1,
+            row -> Integer.parseInt(row[0]),
+            (row, id) -> {
+                assertEquals(stored.size(), (int) id);
+                stored.add(row[1]);
+            });
+        assertEquals(1000, count);
+        assertEquals("deal 999 damage, then draw", stored.get(999));
+
+        String quoted = "\"multi\nline, field\",2\n\n";
+        List<String[]> rows = new ArrayList<>();
+        new CsvRecordPipeline(1).run(new StringReader(quoted), 0, row -> row, (row, same) -> rows.add(same));
+        assertEquals(2, rows.size());
+        assertArrayEquals(new String[]{"multi\nline, field", "2"}, rows.get(0));
+        assertEquals(0, new CsvRecordPipeline().run(new StringReader(""), 0, row -> row, (row, same) -> fail()));
+    }
+
+    @Test
+    void testReaderStaysBoundedAheadOfStore() throws Exception {
+        int batchSize = 8;
+        int pending = 2;
+        AtomicLong parsed = new AtomicLong();
+        long[] stored = {0};
+        long[] maxAhead = {0};
+        new CsvRecordPipeline(2, batchSize, pending).run(new StringReader(csv(2000)), 1,
+            row -> parsed.incrementAndGet(),
+            (row, ignored) -> {
+                maxAhead[0] = Math.max(maxAhead[0], parsed.get() - stored[0]);
+                stored[0]++;
+                if (stored[0] % 100 == 0) {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        assertEquals(2000, stored[0]);
+        // Queued batches, the one waiting to be queued and the one being stored
+        assertTrue(maxAhead[0] <= (long) (pending + 2) * batchSize, "ahead by " + maxAhead[0]);
+    }
+
+    @Test
+    void testFailuresStopThePipeline() {
+        CsvRecordPipeline pipeline = new CsvRecordPipeline(2, 4, 1);
+        IllegalStateException parseError = assertThrows(IllegalStateException.class,
+            () -> pipeline.run(new StringReader(csv(500)), 1,
+                row -> {
+                    if (row[0].equals("250")) {
+                        throw new IllegalStateException("bad record " + row[0]);
+                    }
+                    return row;
+                },
+                (row, same) -> { }));
+        assertTrue(parseError.getMessage().contains("250"));
+
+        assertThrows(UnsupportedOperationException.class,
+            () -> pipeline.run(new StringReader(csv(500)), 1, row -> row, (row, same) -> {
+                throw new UnsupportedOperationException();
+            }));
+
+        Reader broken = new Reader() {
+            private int reads;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                if (reads++ > 0) {
+                    throw new IOException("disk gone");
+                }
+                String line = "1,a\n";
+                line.getChars(0, line.length(), buffer, offset);
+                return line.length();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        assertThrows(IOException.class, () -> pipeline.run(broken, 0, row -> row, (row, same) -> { }));
+        assertThrows(IllegalArgumentException.class, () -> new CsvRecordPipeline(0));
+    }
+
+    // Hands out its text, then blocks the way a stalled socket does until it is closed
+    private static final class StalledReader extends Reader {
+        private final Reader text;
+        private final CountDownLatch stalled = new CountDownLatch(1);
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        StalledReader(String text) {
+            this.text = new StringReader(text);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int read = text.read(buffer, offset, length);
+            if (read > 0) {
+                return read;
+            }
+            stalled.countDown();
+            // Stream I/O does not answer interrupts either
+            boolean interrupted = false;
+            while (closed.getCount() > 0) {
+                try {
+                    closed.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("Stream closed");
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+
+        // Called by a failing stage, so that it fails while the reader is blocked
+        void awaitStall() {
+            try {
+                stalled.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        boolean isClosed() {
+            return closed.getCount() == 0;
+        }
+    }
+
+    @Test
+    void testFailuresReleaseAReaderBlockedOnAStalledSource() {
+        CsvRecordPipeline pipeline = new CsvRecordPipeline(2, 1, 1);
+        StalledReader stalledStore = new StalledReader(csv(1));
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(UnsupportedOperationException.class,
+            () -> pipeline.run(stalledStore, 1, row -> row, (row, same) -> {
+                stalledStore.awaitStall();
+                throw new UnsupportedOperationException();
+            })));
+        assertTrue(stalledStore.isClosed());
+
+        StalledReader stalledParse = new StalledReader(csv(1));
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(IllegalStateException.class,
+            () -> pipeline.run(stalledParse, 1, row -> {
+                stalledParse.awaitStall();
+                throw new IllegalStateException("bad record " + row[0]);
+            }, (row, same) -> { })));
+        assertTrue(stalledParse.isClosed());
+
+        // A source read to the end stays open
+        StalledReader finished = new StalledReader(csv(3));
+        Reader endOfInput = new FilterReader(finished) {
+            private boolean done;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                if (done) {
+                    return -1;
+                }
+                int read = in.read(buffer, offset, length);
+                done = read < length;
+                return read;
+            }
+        };
+        assertTimeoutPreemptively(Duration.ofSeconds(10),
+            () -> assertEquals(3, pipeline.run(endOfInput, 1, row -> row, (row, same) -> { })));
+        assertFalse(finished.isClosed());
+    }
+}
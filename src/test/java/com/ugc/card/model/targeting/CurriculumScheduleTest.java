@@ -0,0 +1,88 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+
+public class CurriculumScheduleTest {
+    private List<TargetingChain> chains;
+
+    @BeforeEach
+    void setUp() {
+        chains = new ArrayList<>();
+        int[] sizes = {3, 1, 2, 1, 4};
+        for (int i = 0; i < sizes.length; i++) {
+            TargetingChain chain = new TargetingChain();
+            for (int j = 0; j < sizes[i]; j++) {
+                chain.addComponent(new TargetingComponent(ComponentCategory.VALUE, i + "-" + j));
+            }
+            chains.add(chain);
+        }
+    }
+
+    @Test
+    void testOrdersByDifficultyStably() {
+        CurriculumSchedule schedule = new CurriculumSchedule(chains, TargetingChain::size);
+
+        assertArrayEquals(new int[]{1, 3, 2, 0, 4}, schedule.getOrder());
+        assertEquals(Arrays.asList(chains.get(1), chains.get(3)), schedule.prefix(2));
+        assertEquals(5, schedule.prefix(5).size());
+    }
+
+    @Test
+    void testOrderMatchesStableComparatorSort() {
+        Random random = new Random(3);
+        List<TargetingChain> many = new ArrayList<>();
+        Map<TargetingChain, Double> difficulties = new IdentityHashMap<>();
+        for (int i = 0; i < 500; i++) {
+            TargetingChain chain = new TargetingChain();
+            many.add(chain);
+            // Few distinct values, some negative, so ties are common
+            difficulties.put(chain, (random.nextInt(20) - 5) * 0.25);
+        }
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < many.size(); i++) {
+            expected.add(i);
+        }
+        expected.sort(Comparator.comparingDouble(i -> difficulties.get(many.get(i))));
+
+        int[] order = new CurriculumSchedule(many, difficulties::get).getOrder();
+        for (int i = 0; i < order.length; i++) {
+            assertEquals((int) expected.get(i), order[i]);
+        }
+    }
+
+    @Test
+    void testDifficultyComputedOncePerDataset() {
+        int[] calls = {0};
+        CurriculumSchedule schedule = new CurriculumSchedule(chains, chain -> {
+            calls[0]++;
+            return chain.size();
+        });
+        schedule.prefix(2);
+        schedule.prefix(4);
+
+        assertEquals(chains.size(), calls[0]);
+        assertTrue(schedule.isFor(chains));
+        assertFalse(schedule.isFor(new ArrayList<>(chains)));
+    }
+
+    @Test
+    void testPacingFunctions() {
+        int epochs = 10;
+        assertEquals(0.3, CurriculumPacing.LINEAR.fraction(0, epochs), 1e-9);
+        assertEquals(1.0, CurriculumPacing.LINEAR.fraction(7, epochs), 1e-9);
+        assertEquals(1.0, CurriculumPacing.LINEAR.fraction(9, epochs), 1e-9);
+
+        assertTrue(CurriculumPacing.ROOT.fraction(2, epochs) > CurriculumPacing.LINEAR.fraction(2, epochs));
+        assertEquals(1.0, CurriculumPacing.ROOT.fraction(7, epochs), 1e-9);
+
+        CurriculumPacing step = CurriculumPacing.step(2);
+        assertEquals(0.3, step.fraction(3, epochs), 1e-9);
+        assertEquals(0.65, step.fraction(4, epochs), 1e-9);
+        assertEquals(1.0, step.fraction(7, epochs), 1e-9);
+        assertThrows(IllegalArgumentException.class, () -> CurriculumPacing.step(0));
+    }
+}
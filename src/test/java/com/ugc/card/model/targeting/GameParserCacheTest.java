@@ -0,0 +1,175 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public class GameParserCacheTest {
+    private static TargetingSystem builtInSystem() {
+        return new TargetingSystem(new HashSet<>(), new HashMap<>(), new HashMap<>(), new HashMap<>(),
+            new HashMap<>(), null, new HashMap<>(), new HashMap<>(), new HashMap<>(), new HashMap<>(),
+            new HashMap<>(), new HashSet<>(), new HashSet<>());
+    }
+
+    @Test
+    void testOnlyRequestedGamesAreBuilt() {
+        GameParserCache.clear();
+        TargetingSystem system = builtInSystem();
+        assertEquals(GameParserCache.builtInGames(), system.getSupportedGames());
+        assertTrue(system.isGameSupported("Lorcana"));
+        for (String game : GameParserCache.builtInGames()) {
+            assertFalse(GameParserCache.isLoaded(game), game);
+        }
+
+        assertNotNull(system.parseAbility("destroy target creature", "magic"));
+        assertTrue(GameParserCache.isLoaded("magic"));
+        assertFalse(GameParserCache.isLoaded("yugioh"));
+        assertFalse(system.getAbilityTypes("magic").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> GameParserCache.get("hearthstone"));
+
+        system.loadGame("Lorcana");
+        assertTrue(GameParserCache.isLoaded("lorcana"));
+        assertFalse(GameParserCache.isLoaded("yugioh"));
+        assertThrows(IllegalArgumentException.class, () -> system.loadGame("hearthstone"));
+    }
+
+    @Test
+    void testLoadedGamesAreShared() {
+        TargetingRegistry.Game magic = GameParserCache.get("MAGIC");
+        assertSame(magic, GameParserCache.get("magic"));
+        assertSame(magic.getParser(), builtInSystem().getGameParser("magic"));
+        assertSame(magic.getParser(), new GameParserFactory(new TargetingSystem()).getParser("Magic"));
+
+        TargetingSystem system = builtInSystem();
+        TargetingRegistry registry = system.enableConcurrentRegistry();
+        assertTrue(registry.snapshot().getGameNames().contains("lorcana"));
+        assertSame(GameParserCache.get("lorcana"), registry.snapshot().getGame("lorcana"));
+    }
+
+    @Test
+    void testConstructorLeavesTheCallersParsersAlone() {
+        Map<String, GameAbilityParser> parsers = new HashMap<>();
+        MagicAbilityParser own = new MagicAbilityParser();
+        parsers.put("magic", own);
+        parsers.put("hearthstone", new HearthstoneAbilityParser(null));
+        Map<String, GameAbilityParser> before = new HashMap<>(parsers);
+
+        TargetingSystem system = new TargetingSystem(new HashSet<>(), new HashMap<>(), new HashMap<>(),
+            new HashMap<>(), parsers, null, new HashMap<>(), new HashMap<>(), new HashMap<>(), new HashMap<>(),
+            new HashMap<>(), new HashSet<>(), new HashSet<>());
+        assertEquals(before, parsers);
+        // Built-in games still take precedence over parsers passed in
+        assertSame(GameParserCache.parser("magic"), system.getGameParser("magic"));
+        assertNotNull(system.getGameParser("hearthstone"));
+    }
+
+    // The built-in games whose parsers implement GameAbilityParser
+    private static TargetingSystem gameParserSystem() {
+        TargetingSystem system = builtInSystem();
+        for (String game : Arrays.asList("snap", "starwars", "pokemon")) {
+            system.removeGame(game);
+        }
+        return system;
+    }
+
+    @Test
+    void testGameGettersIncludeGamesNotUsedYet() {
+        Set<String> expected = new HashSet<>(Arrays.asList("magic", "yugioh", "lorcana", "fleshandblood"));
+        assertEquals(expected, gameParserSystem().getGameCategories().keySet());
+        assertEquals(expected, gameParserSystem().getGameComponents().keySet());
+        assertEquals(expected, gameParserSystem().getGameRules().keySet());
+        assertEquals(expected, gameParserSystem().getGameAbilityTypes().keySet());
+        assertEquals(expected, gameParserSystem().getGamePatterns().keySet());
+
+        TargetingSystem system = gameParserSystem();
+        system.parseAbility("destroy target creature", "magic");
+        assertEquals(expected, system.getGameParsers().keySet());
+        assertSame(GameParserCache.get("magic").getValidationRules(), system.getGameRules().get("magic"));
+        assertSame(system.getValidationRules("magic"), system.getGameRules().get("magic"));
+    }
+
+    @Test
+    void testConcurrentParsesOfUnusedGames() throws Exception {
+        GameParserCache.clear();
+        TargetingSystem system = builtInSystem();
+        List<String> games = Arrays.asList("magic", "yugioh", "lorcana");
+        Map<String, TargetingChain> expected = new HashMap<>();
+        for (String game : games) {
+            expected.put(game, builtInSystem().parseAbility("destroy target creature", game));
+        }
+
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                String game = games.get(i % games.size());
+                results.add(pool.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < 200; j++) {
+                        assertEquals(expected.get(game).getComponents(),
+                            system.parseAbility("destroy target creature", game).getComponents());
+                        assertFalse(system.getAbilityTypes(game).isEmpty());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(GameParserCache.builtInGames(), system.getSupportedGames());
+    }
+
+    @Test
+    void testConcurrentFirstUseBuildsOnce() throws Exception {
+        GameParserCache.clear();
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<TargetingRegistry.Game>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return GameParserCache.get("yugioh");
+                }));
+            }
+            start.countDown();
+            TargetingRegistry.Game first = results.get(0).get(30, TimeUnit.SECONDS);
+            for (Future<TargetingRegistry.Game> result : results) {
+                assertSame(first, result.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testRemovedAndReplacedGamesStayThatWay() {
+        TargetingSystem system = builtInSystem();
+        system.removeGame("lorcana");
+        assertFalse(system.isGameSupported("lorcana"));
+        assertThrows(IllegalArgumentException.class, () -> system.parseAbility("draw a card", "lorcana"));
+
+        MagicAbilityParser own = new MagicAbilityParser();
+        system.addGame("yugioh", own);
+        assertSame(own, system.getGameParser("yugioh"));
+
+        GameParserFactory factory = new GameParserFactory(new TargetingSystem());
+        assertTrue(factory.removeParser("magic"));
+        assertFalse(factory.isGameSupported("magic"));
+        assertThrows(IllegalArgumentException.class, () -> factory.getParser("magic"));
+
+        TargetingRegistry registry = builtInSystem().enableConcurrentRegistry();
+        registry.removeGame("magic");
+        assertNull(registry.snapshot().getGame("magic"));
+        assertFalse(registry.snapshot().getGameNames().contains("magic"));
+    }
+}
@@ -0,0 +1,260 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class LexiconAutomatonTest {
+    private static final String[] NOISE = {"the", "of", "a", "creature's", "x", "3", "12", "end", "at", "start"};
+    private static final String[] SPACES = {" ", " ", " ", "  ", "\t", " \n"};
+
+    private Random random;
+
+    @BeforeEach
+    void setUp() {
+        random = new Random(19);
+    }
+
+    private String randomText(List<String> words, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(SPACES[random.nextInt(SPACES.length)]);
+            }
+            text.append(random.nextInt(3) == 0
+                ? NOISE[random.nextInt(NOISE.length)]
+                : words.get(random.nextInt(words.size())));
+        }
+        return text.toString();
+    }
+
+    private static List<String> texts(List<? extends LexiconAutomaton.Tag<?>> tags) {
+        return tags.stream().map(LexiconAutomaton.Tag::getText).collect(Collectors.toList());
+    }
+
+    @Test
+    void testFindSubstringsMatchesContains() {
+        List<String> phrases = Arrays.asList("he", "she", "his", "hers", "first strike", "strike", "e");
+        LexiconAutomaton.Builder<String> builder = LexiconAutomaton.builder();
+        phrases.forEach(phrase -> builder.add(phrase, phrase));
+        LexiconAutomaton<String> lexicon = builder.build();
+        assertEquals(phrases.size(), lexicon.size());
+
+        String alphabet = "hersik ft";
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int j = random.nextInt(20); j > 0; j--) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            BitSet found = lexicon.findSubstrings(text);
+            for (int rank = 0; rank < lexicon.size(); rank++) {
+                assertEquals(text.toString().contains(lexicon.phrase(rank)), found.get(rank), text.toString());
+            }
+        }
+        assertEquals(BitSet.valueOf(new long[] {0b1111011}), lexicon.findSubstrings("ushers first strike"));
+    }
+
+    @Test
+    void testTagMatchesWholeWords() {
+        LexiconAutomaton<Integer> lexicon = LexiconAutomaton.<Integer>builder()
+            .add("at the end of", 0)
+            .add("end", 1)
+            .add("the end", 2)
+            .add("turn", 3)
+            .build();
+
+        List<LexiconAutomaton.Tag<Integer>> tags = lexicon.tag("  at  the\tend of\nyour turn's end ");
+        assertEquals(Arrays.asList("at the end of", "your", "turn's", "end"), texts(tags));
+        assertEquals(0, tags.get(0).getValue());
+        assertEquals(0, tags.get(0).getStart());
+        assertEquals(4, tags.get(0).getEnd());
+        assertFalse(tags.get(1).isMatched());
+        assertFalse(tags.get(2).isMatched());
+        assertEquals(1, tags.get(3).getValue());
+        assertEquals(6, tags.get(3).getStart());
+
+        // Lower rank wins at a word even when a longer phrase also starts there
+        tags = lexicon.tag("the end of turn");
+        assertEquals(Arrays.asList("the end", "of", "turn"), texts(tags));
+        assertTrue(lexicon.tag(" \t ").isEmpty());
+    }
+
+    @Test
+    void testBuilderKeepsFirstValue() {
+        LexiconAutomaton<String> lexicon = LexiconAutomaton.<String>builder()
+            .add("draw", "first")
+            .add(" draw ", "second")
+            .add("first  strike", "keyword")
+            .build();
+        assertEquals(2, lexicon.size());
+        assertEquals("first", lexicon.tag("draw").get(0).getValue());
+        assertEquals("first strike", lexicon.phrase(1));
+        assertThrows(IllegalArgumentException.class, () -> LexiconAutomaton.<String>builder().add(" ", "x"));
+        assertThrows(IllegalArgumentException.class, () -> LexiconAutomaton.<String>builder().add("x", null));
+    }
+
+    // The per-word table scan the game parsers used before tagging
+    private static TargetingChain legacyTableParse(Map<ComponentCategory, Set<String>> components, String text) {
+        TargetingChain chain = new TargetingChain();
+        for (String part : text.split("\\s+")) {
+            for (Map.Entry<ComponentCategory, Set<String>> entry : components.entrySet()) {
+                if (entry.getValue().contains(part)) {
+                    chain.addComponent(new TargetingComponent(entry.getKey(), part));
+                    break;
+                }
+            }
+        }
+        return chain;
+    }
+
+    private void assertTableParity(GameAbilityParser parser) {
+        Map<ComponentCategory, Set<String>> components = parser.getValidComponents();
+        // Words listed under several categories resolve by table order, which a copy does not keep
+        Map<String, Integer> listings = new HashMap<>();
+        components.values().forEach(values -> values.forEach(v -> listings.merge(v, 1, Integer::sum)));
+        List<String> words = listings.entrySet().stream()
+            .filter(e -> e.getValue() == 1 && LexiconAutomaton.isWord(e.getKey()))
+            .map(Map.Entry::getKey)
+            .sorted()
+            .collect(Collectors.toList());
+        assertFalse(words.isEmpty());
+
+        for (int i = 0; i < 500; i++) {
+            String text = randomText(words, random.nextInt(12));
+            assertEquals(legacyTableParse(components, text).getComponents(),
+                parser.parseAbility(text).getComponents(), text);
+        }
+    }
+
+    @Test
+    void testMagicParserParity() {
+        assertTableParity(new MagicAbilityParser());
+    }
+
+    @Test
+    void testYugiohParserParity() {
+        assertTableParity(new YugiohAbilityParser());
+    }
+
+    @Test
+    void testLorcanaParserParity() {
+        assertTableParity(new LorcanaAbilityParser());
+    }
+
+    @Test
+    void testSnapParserParity() {
+        SnapAbilityParser parser = new SnapAbilityParser();
+        List<ComponentCategory> order = Arrays.asList(
+            ComponentCategory.BASE, ComponentCategory.TARGET, ComponentCategory.TYPE, ComponentCategory.EFFECT);
+        List<String> words = new ArrayList<>();
+        for (ComponentCategory category : order) {
+            for (String value : parser.getValidComponents(category)) {
+                words.add(value);
+                words.add(value.toUpperCase());
+            }
+        }
+        Collections.sort(words);
+
+        for (int i = 0; i < 500; i++) {
+            String text = randomText(words, 1 + random.nextInt(12));
+            TargetingChain expected = new TargetingChain();
+            for (String part : text.split("\\s+")) {
+                String word = part.toLowerCase();
+                for (ComponentCategory category : order) {
+                    if (parser.getValidComponents(category).contains(word)) {
+                        expected.addComponent(new TargetingComponent(category, word));
+                        break;
+                    }
+                }
+            }
+            assertEquals(expected.getComponents(), parser.parseAbility(text).getComponents(), text);
+        }
+    }
+
+    // Hearthstone's word-by-word parse before tagging, over a copy of its tables
+    private static TargetingChain legacyHearthstoneParse(String text) {
+        Map<String, ComponentCategory> keywords = new HashMap<>();
+        keywords.put("battlecry", ComponentCategory.TRIGGER);
+        keywords.put("deathrattle", ComponentCategory.TRIGGER);
+        keywords.put("at the end of", ComponentCategory.TRIGGER);
+        keywords.put("at the start of", ComponentCategory.TRIGGER);
+        keywords.put("if", ComponentCategory.CONDITION);
+        Set<String> effects = new HashSet<>(Arrays.asList("deal", "restore", "draw", "gain", "summon", "discover"));
+        Set<String> directions = new HashSet<>(Arrays.asList("target", "random", "all", "adjacent"));
+        Set<String> states = new HashSet<>(Arrays.asList("damaged", "frozen", "silenced", "poisonous"));
+        Set<String> types = new HashSet<>(Arrays.asList("minion", "spell", "weapon", "hero", "secret", "card"));
+
+        TargetingChain chain = new TargetingChain();
+        String[] words = text.toLowerCase().trim().split("\\s+");
+        for (int i = 0; i < words.length; i++) {
+            String word = words[i];
+            String phrase = "";
+            StringBuilder candidate = new StringBuilder();
+            for (int j = 0; j < 3 && i + j < words.length; j++) {
+                if (j > 0) candidate.append(" ");
+                candidate.append(words[i + j]);
+                if (keywords.containsKey(candidate.toString())) {
+                    phrase = candidate.toString();
+                    break;
+                }
+            }
+            if (keywords.containsKey(phrase)) {
+                chain.addComponent(new TargetingComponent(keywords.get(phrase), phrase));
+                i += phrase.split("\\s+").length - 1;
+            } else if (keywords.containsKey(word)) {
+                chain.addComponent(new TargetingComponent(keywords.get(word), word));
+            } else if (effects.contains(word)) {
+                chain.addComponent(new TargetingComponent(ComponentCategory.EFFECT, word));
+            } else if (directions.contains(word)) {
+                chain.addComponent(new TargetingComponent(ComponentCategory.DIRECTION, word));
+            } else if (states.contains(word)) {
+                chain.addComponent(new TargetingComponent(ComponentCategory.STATE, word));
+            } else if (word.matches("\\d+")) {
+                chain.addComponent(new TargetingComponent(ComponentCategory.VALUE, word));
+            } else if (types.contains(word)) {
+                chain.addComponent(new TargetingComponent(ComponentCategory.TYPE, word));
+            }
+        }
+        return chain;
+    }
+
+    @Test
+    void testHearthstoneParserParity() {
+        HearthstoneAbilityParser parser = new HearthstoneAbilityParser(null);
+        List<String> words = Arrays.asList("battlecry", "deathrattle", "if", "at", "the", "end", "start", "of",
+            "deal", "restore", "draw", "gain", "summon", "discover", "target", "random", "all", "adjacent",
+            "damaged", "frozen", "silenced", "poisonous", "minion", "spell", "weapon", "hero", "secret", "card",
+            "Deal", "MINION", "2");
+
+        for (int i = 0; i < 1000; i++) {
+            String text = randomText(words, 1 + random.nextInt(12));
+            assertEquals(legacyHearthstoneParse(text).getComponents(), parser.parseAbility(text).getComponents(), text);
+        }
+        // Keyword phrases longer than three words were never reached
+        assertEquals(legacyHearthstoneParse("at the end of turn, deal 2").getComponents(),
+            parser.parseAbility("at the end of turn, deal 2").getComponents());
+    }
+
+    @Test
+    void testKeywordAbilityScan() {
+        TargetingSystem system = new TargetingSystem();
+
+        TargetingChain trample = system.parseSentence("Flying, trample");
+        assertTrue(trample.hasComponent(ComponentCategory.EFFECT, "redirect"));
+        assertFalse(trample.hasComponent(ComponentCategory.DIRECTION, "only"));
+
+        TargetingChain doubleStrike = system.parseSentence("Double strike");
+        assertTrue(doubleStrike.hasComponent(ComponentCategory.STATE, "first"));
+        assertTrue(doubleStrike.hasComponent(ComponentCategory.STATE, "second"));
+
+        TargetingChain firstStrike = system.parseSentence("First strike");
+        assertFalse(firstStrike.hasComponent(ComponentCategory.STATE, "second"));
+
+        TargetingChain protection = system.parseSentence("Protection from red");
+        assertTrue(protection.hasComponent(ComponentCategory.TYPE, "red"));
+        assertTrue(system.parseSentence("Reach").hasComponent(ComponentCategory.DIRECTION, "can"));
+    }
+}
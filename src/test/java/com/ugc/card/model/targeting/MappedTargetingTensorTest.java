@@ -0,0 +1,97 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+public class MappedTargetingTensorTest {
+    @TempDir
+    Path dir;
+
+    private TargetingTensor weights(int size) {
+        TargetingTensor tensor = new TargetingTensor(new int[]{size, size});
+        Random random = new Random(7);
+        for (int i = 0; i < size * size; i++) {
+            tensor.getData()[i] = (float) random.nextGaussian();
+        }
+        return tensor;
+    }
+
+    private float[] expectedForward(TargetingTensor tensor, float[] input) {
+        int size = input.length;
+        float[] output = new float[size];
+        for (int j = 0; j < size; j++) {
+            float sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += input[i] * tensor.get(i, j);
+            }
+            output[j] = (float) (1.0 / (1.0 + Math.exp(-sum)));
+        }
+        return output;
+    }
+
+    @Test
+    void testMatchesHeapTensorAcrossChunks() throws IOException {
+        TargetingTensor tensor = weights(10);
+        Path path = dir.resolve("model.bin");
+        TargetingModelFile.write(path, tensor, TargetingModelFile.UNKNOWN_FINGERPRINT);
+
+        // Three rows per chunk, so the matrix spans four mappings
+        MappedTargetingTensor mapped = MappedTargetingTensor.open(path, 3 * 10 * Float.BYTES);
+        assertArrayEquals(tensor.getShape(), mapped.getShape());
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 10; j++) {
+                assertEquals(tensor.get(i, j), mapped.get(i, j));
+                assertEquals(tensor.get(i, j), mapped.getValue(new int[]{i, j}));
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> mapped.getValue(new int[]{10, 0}));
+    }
+
+    @Test
+    void testForwardMatchesDenseComputation() throws IOException {
+        TargetingTensor tensor = weights(8);
+        Path path = dir.resolve("model.bin");
+        TargetingModelFile.write(path, tensor, TargetingModelFile.UNKNOWN_FINGERPRINT);
+        MappedTargetingTensor mapped = MappedTargetingTensor.open(path, 2 * 8 * Float.BYTES);
+
+        float[] input = new float[8];
+        input[1] = 1.0f;
+        input[6] = 1.0f;
+        float[] expected = expectedForward(tensor, input);
+
+        float[] dense = new float[8];
+        mapped.forward(input, dense);
+        float[] sparse = new float[8];
+        mapped.forwardSparse(new int[]{1, 6}, sparse);
+        for (int j = 0; j < 8; j++) {
+            assertEquals(expected[j], dense[j], 1e-5f);
+            assertEquals(expected[j], sparse[j], 1e-5f);
+        }
+    }
+
+    @Test
+    void testScoresChainsAndChecksVocabulary() throws IOException {
+        List<TargetingComponent> components = Arrays.asList(
+            new TargetingComponent(ComponentCategory.EFFECT, "deal"),
+            new TargetingComponent(ComponentCategory.TYPE, "minion"),
+            new TargetingComponent(ComponentCategory.VALUE, "3"));
+        ComponentVocabulary vocabulary = ComponentVocabulary.of(components);
+        TargetingTensor tensor = weights(vocabulary.size());
+        Path path = dir.resolve("model.bin");
+        TargetingModelFile.write(path, tensor, vocabulary.fingerprint());
+
+        MappedTargetingTensor mapped = MappedTargetingTensor.open(path, vocabulary);
+        TargetingChain chain = new TargetingChain();
+        chain.addComponent(components.get(0));
+        float[] scores = mapped.forward(chain, vocabulary);
+        assertArrayEquals(expectedForward(tensor, vocabulary.encode(chain)), scores, 1e-5f);
+
+        ComponentVocabulary other = vocabulary.with(new TargetingComponent(ComponentCategory.TYPE, "spell"));
+        assertThrows(IOException.class, () -> MappedTargetingTensor.open(path, other));
+    }
+}
@@ -0,0 +1,222 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Parsing over generated ability texts for each game. The shared patterns and the tokenizer are checked
+ * against the regular expressions the parsers compiled on every call before; the throughput run is a
+ * benchmark, left out of the default build and run with {@code mvn -Pbenchmark test}.
+ */
+public class ParseThroughputTest {
+    private static final int TEXTS = 2000;
+    private static final int ROUNDS = 5;
+    private static final String[] FILLER = {"the", "of", "to", "a", "your", "3", "2", "until", "end", "turn,"};
+    private static final String[] PHRASES = {"deal 3 damage", "gain 12 life", "draw 2 cards", "target creature",
+        "control 007", "when it dies", "whenever you attack, then", "at end of turn", "protection from red",
+        "X", "then", "and", "."};
+    private static final String[] SPACES = {" ", " ", " ", "  ", "\t", "\n"};
+
+    private static List<String> corpus(Collection<Set<String>> vocabulary, long seed) {
+        List<String> words = new ArrayList<>();
+        vocabulary.forEach(words::addAll);
+        Collections.sort(words);
+        Random random = new Random(seed);
+        List<String> texts = new ArrayList<>(TEXTS);
+        for (int i = 0; i < TEXTS; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int j = 4 + random.nextInt(12); j > 0; j--) {
+                if (text.length() > 0) {
+                    text.append(' ');
+                }
+                text.append(random.nextBoolean()
+                    ? words.get(random.nextInt(words.size()))
+                    : FILLER[random.nextInt(FILLER.length)]);
+            }
+            texts.add(text.toString());
+        }
+        return texts;
+    }
+
+    // Game vocabulary mixed with the phrases the patterns look for, under uneven whitespace
+    private static List<String> parityCorpus(Collection<Set<String>> vocabulary, long seed) {
+        Random random = new Random(seed);
+        List<String> texts = new ArrayList<>();
+        for (String text : corpus(vocabulary, seed)) {
+            StringBuilder mixed = new StringBuilder(random.nextInt(8) == 0 ? SPACES[random.nextInt(SPACES.length)] : "");
+            for (String word : text.split(" ")) {
+                if (random.nextInt(4) == 0) {
+                    mixed.append(PHRASES[random.nextInt(PHRASES.length)]).append(SPACES[random.nextInt(SPACES.length)]);
+                }
+                mixed.append(word).append(SPACES[random.nextInt(SPACES.length)]);
+            }
+            texts.add(random.nextBoolean() ? mixed.toString().trim() : mixed.toString());
+        }
+        return texts;
+    }
+
+    private static List<Collection<Set<String>>> gameVocabularies() {
+        return Arrays.asList(
+            new MagicAbilityParser().getValidComponents().values(),
+            new YugiohAbilityParser().getValidComponents().values(),
+            new LorcanaAbilityParser().getValidComponents().values(),
+            new HearthstoneAbilityParser(null).getValidComponents().values(),
+            new SnapAbilityParser().getValidComponents().values());
+    }
+
+    // The words split("\\s+") yields, without its leading empty string
+    private static List<String> splitWords(String text) {
+        List<String> words = new ArrayList<>(Arrays.asList(text.split("\\s+")));
+        if (!words.isEmpty() && words.get(0).isEmpty()) {
+            words.remove(0);
+        }
+        return words;
+    }
+
+    private static List<String> groups(Pattern pattern, String text) {
+        List<String> found = new ArrayList<>();
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            for (int group = 0; group <= matcher.groupCount(); group++) {
+                found.add(matcher.start(group) + ":" + matcher.group(group));
+            }
+        }
+        return found;
+    }
+
+    @Test
+    void testTokenizerMatchesSplitOnGameTexts() {
+        LexiconAutomaton<ComponentCategory> noPhrases = LexiconAutomaton.<ComponentCategory>builder().build();
+        AbilityTokenizer tokens = new AbilityTokenizer("");
+        long seed = 1;
+        for (Collection<Set<String>> vocabulary : gameVocabularies()) {
+            for (String text : parityCorpus(vocabulary, seed++)) {
+                List<String> expected = splitWords(text);
+                List<String> words = new ArrayList<>();
+                tokens.reset(text);
+                while (tokens.next()) {
+                    String word = tokens.word();
+                    assertEquals(word.matches("\\d+"), tokens.isNumber(), word);
+                    if (tokens.isNumber()) {
+                        assertEquals(Integer.parseInt(word), tokens.intValue(), word);
+                    }
+                    words.add(word);
+                }
+                assertEquals(expected, words, text);
+                assertEquals(expected.size(), AbilityTokenizer.wordCount(text), text);
+                assertEquals(expected, noPhrases.tag(text).stream()
+                    .map(LexiconAutomaton.Tag::getText).collect(Collectors.toList()), text);
+            }
+        }
+    }
+
+    @Test
+    void testSharedPatternsMatchPerCallRegexes() {
+        // The expressions each parser used to compile on every call, paired with the shared pattern
+        Map<String, Pattern> shared = new LinkedHashMap<>();
+        shared.put("[.!?]", TextPatterns.SENTENCE_END);
+        shared.put("(,|then|and)", TextPatterns.CLAUSE_BREAK);
+        shared.put("\\b(\\d+|X)\\b", TextPatterns.NUMBER_OR_X);
+        shared.put("target (\\w+)", TextPatterns.TARGET_WORD);
+        shared.put("deal (\\d+) damage", TextPatterns.DEAL_DAMAGE);
+        shared.put("gain (\\d+) life", TextPatterns.GAIN_LIFE);
+        shared.put("draw (\\d+) card", TextPatterns.DRAW_CARDS);
+        shared.put("control (\\d+)", TextPatterns.CONTROL_COUNT);
+        shared.put("when (.*)", TextPatterns.WHEN_EVENT);
+        shared.put("(when|whenever|at)\\s+(.*?)(,|\\s+then|$)", TextPatterns.TRIGGER_CONDITION);
+        shared.put("protection from", TextPatterns.PROTECTION_FROM);
+
+        long seed = 11;
+        for (Collection<Set<String>> vocabulary : gameVocabularies()) {
+            for (String text : parityCorpus(vocabulary, seed++)) {
+                for (Map.Entry<String, Pattern> entry : shared.entrySet()) {
+                    String regex = entry.getKey();
+                    Pattern pattern = entry.getValue();
+                    assertArrayEquals(text.split(regex), pattern.split(text), regex + " on " + text);
+                    assertEquals(groups(Pattern.compile(regex), text), groups(pattern, text), regex + " on " + text);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testLanguageModelTokensMatchSplitOnGameTexts() {
+        TargetingLLM llm = new TargetingLLM(new TargetingSystem());
+        for (String text : parityCorpus(new MagicAbilityParser().getValidComponents().values(), 21)) {
+            assertEquals(text.toLowerCase().split("\\s+").length, llm.tokenize(text).size(), text);
+        }
+    }
+
+    // Abilities parsed per second in the fastest round
+    private static double throughput(List<String> texts, Function<String, Object> parse) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (String text : texts) {
+                assertNotNull(parse.apply(text), text);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return texts.size() * 1e9 / Math.max(best, 1);
+    }
+
+    // Abilities parsed per second in the fastest round of whole-batch parses
+    private static double batchThroughput(GameAbilityParser parser, List<String> texts, int parallelism) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            List<BatchAbilityParser.Result> results = BatchAbilityParser.parseAll(parser, texts, parallelism);
+            best = Math.min(best, System.nanoTime() - start);
+            results.forEach(result -> assertNotNull(result.getChain(), result.getText()));
+        }
+        return texts.size() * 1e9 / Math.max(best, 1);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void testParseThroughputPerGame(TestReporter reporter) {
+        Map<String, Double> results = new LinkedHashMap<>();
+
+        MagicAbilityParser magic = new MagicAbilityParser();
+        results.put("magic", throughput(corpus(magic.getValidComponents().values(), 1), magic::parseAbility));
+
+        YugiohAbilityParser yugioh = new YugiohAbilityParser();
+        results.put("yugioh", throughput(corpus(yugioh.getValidComponents().values(), 2), yugioh::parseAbility));
+
+        LorcanaAbilityParser lorcana = new LorcanaAbilityParser();
+        results.put("lorcana", throughput(corpus(lorcana.getValidComponents().values(), 3), lorcana::parseAbility));
+
+        HearthstoneAbilityParser hearthstone = new HearthstoneAbilityParser(null);
+        results.put("hearthstone",
+            throughput(corpus(hearthstone.getValidComponents().values(), 4), hearthstone::parseAbility));
+
+        SnapAbilityParser snap = new SnapAbilityParser();
+        results.put("snap", throughput(corpus(snap.getValidComponents().values(), 5), snap::parseAbility));
+
+        // Rules text without a game parser goes through the sentence parser
+        TargetingSystem system = new TargetingSystem();
+        List<String> rulesText = corpus(Arrays.asList(
+            new HashSet<>(Arrays.asList("deal", "damage", "draw", "card", "when", "then", "flying.", "trample.")),
+            new HashSet<>(Arrays.asList("target", "creature", "player", "gain", "life", "protection", "from"))), 6);
+        results.put("rules text", throughput(rulesText, system::parseAbility));
+
+        // The same magic corpus as one batch, on one core and on all of them
+        List<String> batch = corpus(magic.getValidComponents().values(), 1);
+        int cores = Runtime.getRuntime().availableProcessors();
+        results.put("magic x1", batchThroughput(magic, batch, 1));
+        if (cores > 1) {
+            results.put("magic x" + cores, batchThroughput(magic, batch, cores));
+        }
+
+        // Figures go to the test report, for comparison between runs
+        results.forEach((game, rate) -> reporter.publishEntry("abilities/s " + game, String.format("%.0f", rate)));
+    }
+}
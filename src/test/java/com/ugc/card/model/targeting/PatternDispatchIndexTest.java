@@ -0,0 +1,146 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class PatternDispatchIndexTest {
+    private static final String[] VALUES = {"target", "creature", "deal", "draw", "3", "opponent", "another"};
+    private static final ComponentCategory[] CATEGORIES = {
+        ComponentCategory.EFFECT, ComponentCategory.TYPE, ComponentCategory.VALUE,
+        ComponentCategory.DIRECTION, ComponentCategory.TRIGGER, ComponentCategory.BASE, ComponentCategory.STATE
+    };
+
+    private Random random;
+    private List<TargetingChain> chains;
+
+    @BeforeEach
+    void setUp() {
+        random = new Random(23);
+        chains = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            chains.add(randomChain(1 + random.nextInt(4)));
+        }
+    }
+
+    private TargetingChain randomChain(int size) {
+        TargetingChain chain = new TargetingChain();
+        for (int j = 0; j < size; j++) {
+            chain.addComponent(new TargetingComponent(
+                CATEGORIES[random.nextInt(CATEGORIES.length)], VALUES[random.nextInt(VALUES.length)]));
+        }
+        return chain;
+    }
+
+    private Set<ComponentCategory> randomCategories(int max) {
+        Set<ComponentCategory> categories = EnumSet.noneOf(ComponentCategory.class);
+        for (int i = random.nextInt(max + 1); i > 0; i--) {
+            categories.add(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+        }
+        return categories;
+    }
+
+    private Map<ComponentCategory, Set<String>> randomValues(Set<ComponentCategory> categories) {
+        Map<ComponentCategory, Set<String>> values = new HashMap<>();
+        for (ComponentCategory category : categories) {
+            if (random.nextBoolean()) {
+                Set<String> accepted = new HashSet<>();
+                for (int i = 1 + random.nextInt(3); i > 0; i--) {
+                    accepted.add(VALUES[random.nextInt(VALUES.length)]);
+                }
+                values.put(category, accepted);
+            }
+        }
+        return values;
+    }
+
+    @Test
+    void testPatternsMatchLinearScan() {
+        List<TargetingPattern> patterns = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Set<ComponentCategory> required = randomCategories(3);
+            Set<ComponentCategory> optional = randomCategories(4);
+            Set<ComponentCategory> all = EnumSet.noneOf(ComponentCategory.class);
+            all.addAll(required);
+            all.addAll(optional);
+            patterns.add(new TargetingPattern("p" + i, required, optional, randomValues(all)));
+        }
+        PatternDispatchIndex<TargetingPattern> index = PatternDispatchIndex.forPatterns(patterns);
+        assertEquals(patterns.size(), index.size());
+
+        int matched = 0;
+        for (TargetingChain chain : chains) {
+            List<TargetingPattern> expected = patterns.stream()
+                .filter(p -> p.matches(chain))
+                .collect(Collectors.toList());
+            assertEquals(expected, index.matching(chain));
+            assertEquals(!expected.isEmpty(), index.anyMatch(chain));
+            matched += expected.size();
+        }
+        assertTrue(matched > 0);
+        assertTrue(index.matching(null).isEmpty());
+    }
+
+    @Test
+    void testGeneratedPatternsMatchLinearScan() {
+        Set<TargetingChain> corpus = new HashSet<>(chains.subList(0, 1000));
+        List<TargetingPattern> patterns = new ArrayList<>(
+            new TargetingPatternGenerator(new TargetingSystem(), null).generatePatterns(corpus));
+        PatternDispatchIndex<TargetingPattern> index = PatternDispatchIndex.forPatterns(patterns);
+
+        for (TargetingChain chain : chains) {
+            List<TargetingPattern> expected = patterns.stream()
+                .filter(p -> p.matches(chain))
+                .collect(Collectors.toList());
+            assertEquals(expected, index.matching(chain));
+        }
+        // Every chain matches the pattern generated from it
+        for (TargetingChain chain : corpus) {
+            assertTrue(index.anyMatch(chain));
+        }
+    }
+
+    @Test
+    void testAbilityTypesMatchLinearScan() {
+        ValidationRule noOpponent = new ValidationRule("no opponent", "", chain -> true,
+            Collections.emptySet(), Collections.emptySet(), Collections.emptySet(), Collections.singleton("opponent"));
+        List<AbilityType> types = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Set<ComponentCategory> required = randomCategories(3);
+            Set<ValidationRule> rules = random.nextBoolean()
+                ? Collections.singleton(noOpponent) : Collections.emptySet();
+            types.add(new AbilityType("t" + i, "", required, Collections.emptySet(),
+                randomValues(required), rules, ""));
+        }
+        PatternDispatchIndex<AbilityType> index = PatternDispatchIndex.forAbilityTypes(types);
+
+        for (TargetingChain chain : chains) {
+            List<AbilityType> expected = types.stream()
+                .filter(t -> t.isValid(chain))
+                .collect(Collectors.toList());
+            assertEquals(expected, index.matching(chain));
+        }
+    }
+
+    @Test
+    void testSystemIndexFollowsPatternChanges() {
+        TargetingSystem system = new TargetingSystem();
+        system.addGame("yugioh", new YugiohAbilityParser());
+        Set<TargetingPattern> patterns = system.getTargetingPatterns("yugioh");
+        TargetingChain chain = chains.get(0);
+        List<TargetingPattern> before = system.getMatchingPatterns("yugioh", chain);
+
+        Set<ComponentCategory> all = EnumSet.allOf(ComponentCategory.class);
+        TargetingPattern any = new TargetingPattern("any", Collections.emptySet(), all, Collections.emptyMap());
+        patterns.add(any);
+        List<TargetingPattern> after = system.getMatchingPatterns("yugioh", chain);
+        assertTrue(after.contains(any));
+        assertEquals(before.size() + 1, after.size());
+
+        patterns.remove(any);
+        assertEquals(before, system.getMatchingPatterns("yugioh", chain));
+    }
+}
@@ -0,0 +1,188 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+public class TargetingChainViewTest {
+    private TargetingChain chain;
+
+    @BeforeEach
+    void setUp() {
+        chain = new TargetingChain();
+        chain.addComponent(new TargetingComponent(ComponentCategory.BASE, "target"));
+        chain.addComponent(new TargetingComponent(ComponentCategory.TYPE, "creature"));
+        chain.addComponent(new TargetingComponent(ComponentCategory.EFFECT, "destroy"));
+        chain.addComponent(new TargetingComponent(ComponentCategory.DIRECTION, "opponent"));
+    }
+
+    @Test
+    void testViewIsReadOnlyAndLive() {
+        Set<TargetingComponent> view = chain.componentsView();
+        assertEquals(chain.getComponents(), view);
+        assertThrows(UnsupportedOperationException.class,
+            () -> view.add(new TargetingComponent(ComponentCategory.VALUE, "2")));
+
+        TargetingComponent added = new TargetingComponent(ComponentCategory.VALUE, "2");
+        chain.addComponent(added);
+        assertTrue(view.contains(added));
+        assertTrue(chain.containsComponent(added));
+    }
+
+    @Test
+    void testForEachComponentVisitsEveryComponent() {
+        Set<TargetingComponent> visited = new HashSet<>();
+        chain.forEachComponent(visited::add);
+        assertEquals(chain.getComponents(), visited);
+
+        List<TargetingComponent> frozenOrder = new ArrayList<>();
+        chain.freeze().forEachComponent(frozenOrder::add);
+        assertEquals(new ArrayList<>(chain.componentsView()), frozenOrder);
+    }
+
+    @Test
+    void testFrozenChainHasIndexedAccessAndRejectsChanges() {
+        assertFalse(chain.isFrozen());
+        assertThrows(IllegalStateException.class, () -> chain.componentAt(0));
+
+        assertSame(chain, chain.freeze());
+        assertSame(chain, chain.freeze());
+        assertTrue(chain.isFrozen());
+        List<TargetingComponent> indexed = new ArrayList<>();
+        for (int i = 0; i < chain.size(); i++) {
+            indexed.add(chain.componentAt(i));
+        }
+        assertEquals(new ArrayList<>(chain.componentsView()), indexed);
+
+        assertThrows(IllegalStateException.class,
+            () -> chain.addComponent(new TargetingComponent(ComponentCategory.VALUE, "2")));
+        assertThrows(IllegalStateException.class, () -> chain.setComponents(new HashSet<>()));
+        assertEquals(4, chain.size());
+    }
+
+    @Test
+    void testComponentQueries() {
+        assertTrue(chain.hasComponent(ComponentCategory.EFFECT));
+        assertTrue(chain.hasComponent(ComponentCategory.EFFECT, "destroy"));
+        assertFalse(chain.hasComponent(ComponentCategory.EFFECT, "draw"));
+        assertFalse(chain.hasComponent(ComponentCategory.VALUE));
+        assertTrue(chain.hasComponentText("opponent"));
+        assertFalse(chain.hasComponentText("player"));
+    }
+
+    @Test
+    void testViewSharesTheBackingSetWhileCopiesDoNot() {
+        Set<TargetingComponent> copy = chain.getComponents();
+        copy.add(new TargetingComponent(ComponentCategory.VALUE, "2"));
+        assertEquals(4, chain.componentsView().size());
+        assertNotEquals(copy, chain.componentsView());
+
+        chain.freeze();
+        Set<TargetingComponent> view = chain.componentsView();
+        assertEquals(4, view.size());
+        assertThrows(UnsupportedOperationException.class, view::clear);
+        assertThrows(IllegalStateException.class, () -> chain.addNumericalValue(2));
+        assertThrows(UnsupportedOperationException.class, () -> chain.getNumericalValues().add(2f));
+        assertThrows(IllegalStateException.class, () -> chain.setAction("draw"));
+    }
+
+    @Test
+    void testValidationThroughViewsMatchesCopying() {
+        Set<String> required = new HashSet<>(Arrays.asList("target", "creature", "destroy"));
+        Set<String> forbidden = new HashSet<>(Arrays.asList("player", "land"));
+        ValidationRule rule = new ValidationRule("rule", "", c -> true,
+            EnumSet.of(ComponentCategory.BASE, ComponentCategory.TYPE), EnumSet.noneOf(ComponentCategory.class),
+            required, forbidden);
+
+        TargetingChain missing = new TargetingChain(chain.componentsView());
+        missing.setComponents(new HashSet<>(Arrays.asList(
+            new TargetingComponent(ComponentCategory.BASE, "target"),
+            new TargetingComponent(ComponentCategory.TYPE, "creature"))));
+        TargetingChain banned = new TargetingChain(chain.componentsView());
+        banned.addComponent(new TargetingComponent(ComponentCategory.TARGET, "player"));
+
+        for (TargetingChain candidate : Arrays.asList(chain, missing, banned)) {
+            Set<TargetingComponent> before = candidate.getComponents();
+            assertEquals(validateByCopying(candidate, required, forbidden), rule.validate(candidate));
+            assertEquals(before, candidate.componentsView());
+        }
+        assertTrue(rule.validate(chain));
+        assertFalse(rule.validate(missing));
+        assertFalse(rule.validate(banned));
+    }
+
+    /**
+     * Validation used to copy the component set once per required and forbidden component. Measures
+     * that against the rule's current path with the JVM's per-thread allocation counter; a benchmark,
+     * run with {@code mvn -Pbenchmark test}.
+     */
+    @Test
+    @Tag("benchmark")
+    void testValidationAllocatesLessThanCopyingComponents(TestReporter reporter) {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        Set<String> required = new HashSet<>(Arrays.asList("target", "creature", "destroy"));
+        Set<String> forbidden = new HashSet<>(Arrays.asList("player", "land"));
+        ValidationRule rule = new ValidationRule("rule", "", c -> true,
+            EnumSet.of(ComponentCategory.BASE, ComponentCategory.TYPE), EnumSet.noneOf(ComponentCategory.class),
+            required, forbidden);
+
+        int iterations = 200_000;
+        long threadId = Thread.currentThread().getId();
+        boolean valid = true;
+        long copying = 0;
+        long viewing = 0;
+        // Earlier rounds warm up the JIT; the last one runs compiled code
+        for (int round = 0; round < 3; round++) {
+            long start = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < iterations; i++) {
+                valid &= validateByCopying(chain, required, forbidden);
+            }
+            copying = threads.getThreadAllocatedBytes(threadId) - start;
+
+            start = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < iterations; i++) {
+                valid &= rule.validate(chain);
+            }
+            viewing = threads.getThreadAllocatedBytes(threadId) - start;
+        }
+        assertTrue(valid);
+        assertTrue(viewing < copying, "view-based validation should allocate less than copying");
+
+        // Figures go to the test report, for comparison between runs
+        reporter.publishEntry("validation B/op copying", String.format("%.1f", (double) copying / iterations));
+        reporter.publishEntry("validation B/op with views", String.format("%.1f", (double) viewing / iterations));
+    }
+
+    private static boolean validateByCopying(TargetingChain chain, Set<String> required, Set<String> forbidden) {
+        for (String text : required) {
+            boolean found = false;
+            for (TargetingComponent component : chain.getComponents()) {
+                if (component.getText().equals(text)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        for (String text : forbidden) {
+            for (TargetingComponent component : chain.getComponents()) {
+                if (component.getText().equals(text)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
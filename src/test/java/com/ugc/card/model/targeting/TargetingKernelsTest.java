@@ -0,0 +1,114 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.Random;
+
+public class TargetingKernelsTest {
+    private static final int ROWS = 37;
+    private static final int COLS = TargetingKernels.BLOCK_SIZE + 21;
+
+    private float[] weights;
+    private float[] rowInput;
+    private float[] colInput;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(42);
+        weights = new float[ROWS * COLS];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = random.nextFloat() - 0.5f;
+        }
+        rowInput = new float[ROWS];
+        for (int i = 0; i < ROWS; i += 3) {
+            rowInput[i] = random.nextFloat();
+        }
+        colInput = new float[COLS];
+        for (int j = 0; j < COLS; j++) {
+            colInput[j] = random.nextFloat() - 0.5f;
+        }
+    }
+
+    @Test
+    void testGemvTransposedMatchesNaive() {
+        float[] expected = new float[COLS];
+        for (int j = 0; j < COLS; j++) {
+            for (int i = 0; i < ROWS; i++) {
+                expected[j] += rowInput[i] * weights[i * COLS + j];
+            }
+        }
+        float[] actual = new float[COLS];
+        TargetingKernels.gemvTransposed(weights, ROWS, COLS, rowInput, actual);
+        assertArrayEquals(expected, actual, 1e-4f);
+    }
+
+    @Test
+    void testGemvMatchesNaive() {
+        float[] expected = new float[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            for (int j = 0; j < COLS; j++) {
+                expected[i] += weights[i * COLS + j] * colInput[j];
+            }
+        }
+        float[] actual = new float[ROWS];
+        TargetingKernels.gemv(weights, ROWS, COLS, colInput, actual);
+        assertArrayEquals(expected, actual, 1e-3f);
+    }
+
+    @Test
+    void testRankOneUpdateMatchesNaive() {
+        float[] expected = weights.clone();
+        for (int i = 0; i < ROWS; i++) {
+            for (int j = 0; j < COLS; j++) {
+                expected[i * COLS + j] += -0.1f * rowInput[i] * colInput[j];
+            }
+        }
+        TargetingKernels.rankOneUpdate(weights, ROWS, COLS, -0.1f, rowInput, colInput);
+        assertArrayEquals(expected, weights, 1e-5f);
+    }
+
+    @Test
+    void testSigmoidSparseLossMatchesDenseTarget() {
+        int[] activeRows = {2, 5, 11};
+        float[] target = new float[COLS];
+        for (int row : activeRows) {
+            target[row] = 1.0f;
+        }
+        float[] output = colInput.clone();
+        float[] delta = new float[COLS];
+        double loss = TargetingKernels.sigmoidSparseLoss(output, COLS, activeRows, delta);
+
+        double expectedLoss = 0.0;
+        for (int j = 0; j < COLS; j++) {
+            float o = (float) (1.0 / (1.0 + Math.exp(-colInput[j])));
+            assertEquals(o, output[j], 1e-6f);
+            assertEquals((o - target[j]) * o * (1 - o), delta[j], 1e-6f);
+            expectedLoss += (double) (o - target[j]) * (o - target[j]);
+        }
+        assertEquals(expectedLoss / COLS, loss, 1e-9);
+
+        float[] again = colInput.clone();
+        assertEquals(loss, TargetingKernels.sigmoidSparseLoss(again, COLS, activeRows, null));
+        assertArrayEquals(output, again);
+    }
+
+    @Test
+    void testVectorAndScalarRowKernelsAgree() {
+        // The SIMD kernel is only compiled by the vector profile and used when its module is present
+        assumeTrue(TargetingKernels.isVectorized());
+        RowKernel scalar = ScalarRowKernel.INSTANCE;
+        RowKernel vector = TargetingKernels.rowKernel();
+
+        float[] y1 = colInput.clone();
+        float[] y2 = colInput.clone();
+        scalar.axpy(0.7f, weights, 5, y1, 3, COLS - 3);
+        vector.axpy(0.7f, weights, 5, y2, 3, COLS - 3);
+        assertArrayEquals(y1, y2, 1e-5f);
+
+        assertEquals(scalar.dot(weights, 11, colInput, 0, COLS),
+                     vector.dot(weights, 11, colInput, 0, COLS), 1e-3f);
+    }
+}
@@ -0,0 +1,97 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class TargetingModelFileTest {
+    @TempDir
+    Path dir;
+
+    private TargetingTensor sampleTensor() {
+        TargetingTensor tensor = new TargetingTensor(new int[]{3, 5});
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 5; j++) {
+                tensor.set(i, j, i * 0.5f - j * 0.25f);
+            }
+        }
+        return tensor;
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        TargetingTensor tensor = sampleTensor();
+        Path path = dir.resolve("model.bin");
+        TargetingModelFile.write(path, tensor, 42L);
+
+        assertTrue(TargetingModelFile.isModelFile(path));
+        TargetingTensor copy = TargetingModelFile.read(path);
+        assertArrayEquals(tensor.getShape(), copy.getShape());
+        assertArrayEquals(tensor.getData(), copy.getData());
+        assertEquals(tensor.get(2, 4), copy.get(2, 4));
+    }
+
+    @Test
+    void testHeaderAndMappedPayload() throws IOException {
+        TargetingTensor tensor = sampleTensor();
+        Path path = dir.resolve("model.bin");
+        TargetingModelFile.write(path, tensor, 42L);
+
+        TargetingModelFile.Header header = TargetingModelFile.readHeader(path);
+        assertEquals(TargetingModelFile.VERSION, header.getVersion());
+        assertEquals(42L, header.getVocabularyFingerprint());
+        assertArrayEquals(new int[]{3, 5}, header.getShape());
+        assertEquals(0, header.getPayloadOffset() % 64);
+
+        TargetingModelFile.Mapped mapped = TargetingModelFile.map(path);
+        assertEquals(15, mapped.getPayload().remaining());
+        assertEquals(tensor.get(1, 3), mapped.getPayload().get(1 * 5 + 3));
+        assertEquals(header.getPayloadOffset() + 15 * 4, Files.size(path));
+    }
+
+    @Test
+    void testConvertLegacy() throws Exception {
+        TargetingTensor tensor = sampleTensor();
+        Path legacy = dir.resolve("legacy.bin");
+        try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(legacy))) {
+            oos.writeObject(tensor);
+        }
+        assertFalse(TargetingModelFile.isModelFile(legacy));
+
+        Path converted = dir.resolve("converted.bin");
+        TargetingModelFile.convertLegacy(legacy, converted, TargetingModelFile.UNKNOWN_FINGERPRINT);
+        assertArrayEquals(tensor.getData(), TargetingModelFile.read(converted).getData());
+    }
+
+    @Test
+    void testRejectsTruncatedAndForeignFiles() throws IOException {
+        Path foreign = dir.resolve("foreign.bin");
+        Files.write(foreign, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertFalse(TargetingModelFile.isModelFile(foreign));
+        assertThrows(IOException.class, () -> TargetingModelFile.read(foreign));
+
+        Path path = dir.resolve("model.bin");
+        TargetingModelFile.write(path, sampleTensor(), 0L);
+        byte[] bytes = Files.readAllBytes(path);
+        Path truncated = dir.resolve("truncated.bin");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 4));
+        assertThrows(IOException.class, () -> TargetingModelFile.read(truncated));
+    }
+
+    @Test
+    void testFingerprintTracksVocabulary() {
+        TargetingComponent deal = new TargetingComponent(ComponentCategory.EFFECT, "deal");
+        TargetingComponent minion = new TargetingComponent(ComponentCategory.TYPE, "minion");
+        ComponentVocabulary vocabulary = ComponentVocabulary.of(Arrays.asList(deal, minion));
+
+        assertEquals(vocabulary.fingerprint(),
+            ComponentVocabulary.of(Arrays.asList(minion, deal)).fingerprint());
+        assertNotEquals(vocabulary.fingerprint(),
+            vocabulary.with(new TargetingComponent(ComponentCategory.TYPE, "spell")).fingerprint());
+    }
+}
@@ -0,0 +1,162 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class TargetingRegistryTest {
+    private static TargetingComponent component(int i) {
+        return new TargetingComponent(ComponentCategory.VALUE, Integer.toString(i));
+    }
+
+    @Test
+    void testSnapshotsAreIsolatedFromLaterWrites() {
+        TargetingRegistry registry = TargetingRegistry.empty();
+        TargetingRegistry.Snapshot before = registry.snapshot();
+
+        TargetingRegistry.Snapshot after = registry.registerParser("Magic", new MagicAbilityParser());
+        registry.addComponent(component(1));
+
+        assertNull(before.getGame("magic"));
+        assertTrue(before.getComponents().isEmpty());
+        assertNotNull(after.getGame("MAGIC"));
+        assertEquals("magic", after.getGame("magic").getName());
+        assertFalse(after.getValidationRules().isEmpty());
+        assertTrue(registry.snapshot().getVersion() > after.getVersion());
+        assertEquals(component(1), registry.snapshot().getComponent("1"));
+
+        assertThrows(UnsupportedOperationException.class, () -> after.getGames().remove("magic"));
+        assertThrows(UnsupportedOperationException.class, () -> after.getComponents().add(component(2)));
+        assertThrows(UnsupportedOperationException.class,
+            () -> after.getGame("magic").getCategories().add(ComponentCategory.VALUE));
+
+        TargetingRegistry.Snapshot removed = registry.removeGame("magic");
+        assertNull(removed.getGame("magic"));
+        assertSame(removed, registry.removeGame("magic"));
+    }
+
+    @Test
+    void testVocabularyIdsAreStable() {
+        TargetingRegistry registry = TargetingRegistry.empty();
+        registry.addComponents(Arrays.asList(component(3), component(1), component(2)));
+        ComponentVocabulary first = registry.snapshot().getVocabulary();
+        registry.addComponent(component(0));
+        ComponentVocabulary second = registry.snapshot().getVocabulary();
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(first.indexOf(component(i)), second.indexOf(component(i)));
+        }
+        assertEquals(4, second.size());
+        assertThrows(IllegalArgumentException.class, () -> registry.addComponent(null));
+    }
+
+    @Test
+    void testSystemRoutesThroughRegistry() {
+        TargetingSystem system = new TargetingSystem();
+        system.registerParser("magic", new MagicAbilityParser());
+        TargetingRegistry registry = system.enableConcurrentRegistry();
+        assertTrue(system.isConcurrentRegistry());
+        assertSame(registry, system.enableConcurrentRegistry());
+        assertNotNull(registry.snapshot().getGame("magic"));
+
+        system.addGame("Yugioh", new YugiohAbilityParser());
+        assertTrue(system.isGameSupported("yugioh"));
+        assertEquals(new HashSet<>(Arrays.asList("magic", "yugioh")), system.getSupportedGames());
+        assertNotNull(system.getAbilityTypes("yugioh"));
+        system.removeGame("yugioh");
+        assertFalse(system.isGameSupported("yugioh"));
+
+        system.addComponent(component(7));
+        assertEquals(component(7), system.getComponentByValue("7"));
+        assertEquals(1, system.getVocabulary().size());
+        assertEquals(Collections.singleton(component(7)), system.getComponents());
+
+        // The bean's own collections are frozen once the registry takes over
+        assertThrows(UnsupportedOperationException.class, () -> system.getGameParsers().clear());
+        assertThrows(IllegalArgumentException.class, () -> system.parseAbility("draw", "hearthstone"));
+    }
+
+    @Test
+    void testRegistryModeKeepsValidValuesInTheSnapshot() {
+        TargetingSystem system = new TargetingSystem();
+        system.enableConcurrentRegistry();
+        TargetingComponent destroy = new TargetingComponent(ComponentCategory.EFFECT, "destroy");
+        assertFalse(system.parseSentence("destroy 3").getComponents().contains(destroy));
+
+        system.registerParser("magic", new MagicAbilityParser());
+        assertTrue(system.getValidValues().get(ComponentCategory.EFFECT).contains("destroy"));
+        assertTrue(system.parseSentence("destroy 3").getComponents().contains(destroy));
+
+        system.addComponents(Arrays.asList(component(42), component(41)));
+        assertTrue(system.getValidValues().get(ComponentCategory.VALUE).containsAll(Arrays.asList("41", "42")));
+        assertEquals(new HashSet<>(Arrays.asList(component(41), component(42))),
+            system.getComponentsByCategory().get(ComponentCategory.VALUE));
+        assertEquals(component(41), system.getComponentMap().get("41"));
+        assertEquals(0, system.getComponentIndex(component(41)));
+        assertEquals(1, system.getComponentIndex(component(42)));
+        assertThrows(UnsupportedOperationException.class,
+            () -> system.getComponentsByCategory().get(ComponentCategory.VALUE).add(component(43)));
+
+        // Replacing the components keeps what registerParser added
+        system.setComponents(Collections.singleton(component(43)));
+        Map<ComponentCategory, Set<String>> values = system.getValidValues();
+        assertTrue(values.get(ComponentCategory.EFFECT).contains("destroy"));
+        assertTrue(values.get(ComponentCategory.VALUE).contains("43"));
+        assertFalse(values.get(ComponentCategory.VALUE).contains("41"));
+        assertEquals(Collections.singleton(component(43)), system.getComponentsByCategory().get(ComponentCategory.VALUE));
+    }
+
+    @Test
+    void testConcurrentReadersSeeConsistentSnapshots() throws Exception {
+        TargetingSystem system = new TargetingSystem();
+        system.registerParser("magic", new MagicAbilityParser());
+        system.enableConcurrentRegistry();
+        String ability = "destroy target creature";
+        Set<TargetingComponent> expected = system.parseAbility(ability, "magic").getComponents();
+
+        int readers = 4;
+        ExecutorService pool = Executors.newFixedThreadPool(readers);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int r = 0; r < readers; r++) {
+                results.add(pool.submit(() -> {
+                    int reads = 0;
+                    while (writing.get() || reads == 0) {
+                        assertEquals(expected, system.parseAbility(ability, "magic").getComponents());
+                        // Each snapshot's components and vocabulary were published together
+                        TargetingRegistry.Snapshot snapshot = system.getRegistry().snapshot();
+                        assertEquals(snapshot.getComponents().size(), snapshot.getVocabulary().size());
+                        TargetingChain chain = new TargetingChain();
+                        for (TargetingComponent component : snapshot.getVocabulary().components()) {
+                            chain.addComponent(component);
+                        }
+                        float[] encoded = snapshot.getVocabulary().encode(chain);
+                        for (float value : encoded) {
+                            assertEquals(1f, value);
+                        }
+                        reads++;
+                    }
+                    return reads;
+                }));
+            }
+            for (int i = 0; i < 1000; i++) {
+                system.addComponent(component(i));
+                if (i % 100 == 0) {
+                    system.addGame("game" + i, new LorcanaAbilityParser());
+                }
+            }
+            writing.set(false);
+            for (Future<Integer> result : results) {
+                assertTrue(result.get(30, TimeUnit.SECONDS) > 0);
+            }
+        } finally {
+            writing.set(false);
+            pool.shutdownNow();
+        }
+        assertEquals(1000, system.getVocabulary().size());
+        assertEquals(11, system.getSupportedGames().size());
+    }
+}
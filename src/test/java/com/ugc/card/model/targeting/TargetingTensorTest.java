@@ -0,0 +1,72 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+
+public class TargetingTensorTest {
+
+    @Test
+    void testStrideAccessorsMatchIndexedAccessors() {
+        TargetingTensor tensor = new TargetingTensor(new int[]{3, 4});
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 4; j++) {
+                tensor.set(i, j, i * 10 + j);
+            }
+        }
+        assertArrayEquals(new int[]{4, 1}, tensor.getStrides());
+        assertEquals(12.0f, tensor.getValue(new int[]{1, 2}));
+        assertEquals(tensor.getValue(new int[]{2, 3}), tensor.get(2, 3));
+
+        TargetingTensor vector = new TargetingTensor(new int[]{5});
+        vector.set(4, 2.5f);
+        assertEquals(2.5f, vector.get(4));
+        assertEquals(2.5f, vector.getValue(new int[]{4}));
+    }
+
+    @Test
+    void testSetShapeRecomputesStrides() {
+        TargetingTensor tensor = new TargetingTensor(new int[]{3, 4});
+        tensor.setShape(new int[]{4, 3});
+        assertArrayEquals(new int[]{3, 1}, tensor.getStrides());
+        assertEquals(3, tensor.getVectorSize());
+        tensor.set(1, 0, 5.0f);
+        assertEquals(5.0f, tensor.getValue(new int[]{1, 0}));
+        assertEquals(5.0f, tensor.getData()[3]);
+    }
+
+    @Test
+    void testInPlaceOperations() {
+        TargetingTensor a = new TargetingTensor(new float[]{1, 2, 3}, new int[]{3});
+        TargetingTensor b = new TargetingTensor(new float[]{1, 1, 1}, new int[]{3});
+
+        assertSame(a, a.addInPlace(b));
+        assertArrayEquals(new float[]{2, 3, 4}, a.getData());
+
+        a.scaleInPlace(0.5f);
+        assertArrayEquals(new float[]{1, 1.5f, 2}, a.getData());
+
+        a.axpy(-2.0f, b);
+        assertArrayEquals(new float[]{-1, -0.5f, 0}, a.getData());
+
+        assertThrows(IllegalArgumentException.class,
+            () -> a.axpy(1.0f, new TargetingTensor(new int[]{2})));
+    }
+
+    @Test
+    void testStridesSurviveSerialization() throws Exception {
+        TargetingTensor tensor = new TargetingTensor(new int[]{2, 3});
+        tensor.set(1, 2, 7.0f);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(tensor);
+        }
+        TargetingTensor copy;
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (TargetingTensor) ois.readObject();
+        }
+        assertEquals(7.0f, copy.get(1, 2));
+    }
+}
@@ -0,0 +1,211 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.*;
+
+public class TargetingTrainerTest {
+    @TempDir
+    Path tempDir;
+
+    private TargetingSystem system;
+    private List<TargetingChain> chains;
+
+    @BeforeEach
+    void setUp() {
+        Set<TargetingComponent> components = new HashSet<>();
+        String[] effects = {"deal", "draw", "heal", "destroy", "summon"};
+        String[] types = {"minion", "hero", "spell", "weapon"};
+        String[] values = {"1", "2", "3", "4", "5", "6"};
+        for (String effect : effects) {
+            components.add(new TargetingComponent(ComponentCategory.EFFECT, effect));
+        }
+        for (String type : types) {
+            components.add(new TargetingComponent(ComponentCategory.TYPE, type));
+        }
+        for (String value : values) {
+            components.add(new TargetingComponent(ComponentCategory.VALUE, value));
+        }
+        system = new TargetingSystem();
+        system.setComponents(components);
+
+        Random random = new Random(7);
+        chains = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            TargetingChain chain = new TargetingChain();
+            chain.addComponent(new TargetingComponent(ComponentCategory.EFFECT, effects[random.nextInt(effects.length)]));
+            chain.addComponent(new TargetingComponent(ComponentCategory.TYPE, types[random.nextInt(types.length)]));
+            if (random.nextBoolean()) {
+                chain.addComponent(new TargetingComponent(ComponentCategory.VALUE, values[random.nextInt(values.length)]));
+            }
+            chains.add(chain);
+        }
+    }
+
+    private TargetingTrainer newTrainer(String name) {
+        return new TargetingTrainer("hearthstone", system, 0.1f, 3, tempDir.resolve(name).toString());
+    }
+
+    @Test
+    void testSparseModeMatchesDenseMode() {
+        TargetingTrainer dense = newTrainer("dense.bin");
+        TargetingTrainer sparse = newTrainer("sparse.bin");
+        sparse.setTrainingMode(TrainingMode.SPARSE);
+
+        for (int epoch = 0; epoch < 3; epoch++) {
+            double denseLoss = dense.trainEpoch(chains);
+            double sparseLoss = sparse.trainEpoch(chains);
+            assertEquals(denseLoss, sparseLoss, 1e-5);
+        }
+
+        assertArrayEquals(dense.getTensor().getData(), sparse.getTensor().getData(), 1e-5f);
+        assertEquals(dense.evaluate(chains, new EnumMap<>(ComponentCategory.class)),
+                     sparse.evaluate(chains, new EnumMap<>(ComponentCategory.class)), 1e-5);
+    }
+
+    @Test
+    void testMiniBatchOfOneMatchesSgd() {
+        TargetingTrainer sgd = newTrainer("sgd.bin");
+        sgd.setTrainingMode(TrainingMode.SPARSE);
+        TargetingTrainer miniBatch = newTrainer("minibatch.bin");
+        miniBatch.setTrainingMode(TrainingMode.MINI_BATCH);
+        miniBatch.setBatchSize(1);
+        miniBatch.setParallelism(1);
+
+        assertEquals(sgd.trainEpoch(chains), miniBatch.trainEpoch(chains), 1e-5);
+        assertArrayEquals(sgd.getTensor().getData(), miniBatch.getTensor().getData(), 1e-5f);
+    }
+
+    @Test
+    void testMiniBatchResultIndependentOfParallelism() {
+        TargetingTrainer sequential = newTrainer("sequential.bin");
+        sequential.setTrainingMode(TrainingMode.MINI_BATCH);
+        sequential.setBatchSize(8);
+        sequential.setParallelism(1);
+        TargetingTrainer parallel = newTrainer("parallel.bin");
+        parallel.setTrainingMode(TrainingMode.MINI_BATCH);
+        parallel.setBatchSize(8);
+        parallel.setParallelism(4);
+
+        for (int epoch = 0; epoch < 3; epoch++) {
+            assertEquals(sequential.trainEpoch(chains), parallel.trainEpoch(chains), 1e-5);
+        }
+        assertArrayEquals(sequential.getTensor().getData(), parallel.getTensor().getData(), 1e-5f);
+    }
+
+    @Test
+    void testMiniBatchFitReusesEngineAcrossEpochs() {
+        TargetingTrainer trainer = newTrainer("fit.bin");
+        trainer.setTrainingMode(TrainingMode.MINI_BATCH);
+        trainer.setBatchSize(4);
+        trainer.setParallelism(3);
+        trainer.setEpochs(10);
+
+        double initialLoss = trainer.evaluate(chains, new EnumMap<>(ComponentCategory.class));
+        trainer.fit(chains, chains);
+        assertEquals(10, trainer.getTrainingHistory().size());
+        assertTrue(trainer.evaluate(chains, new EnumMap<>(ComponentCategory.class)) < initialLoss);
+        // The engine is closed with the run; a later epoch gets one of its own
+        assertTrue(trainer.trainEpoch(chains) > 0);
+    }
+
+    @Test
+    void testEachFitStartsItsOwnHistory() throws Exception {
+        TargetingTrainer trainer = newTrainer("history.bin");
+        trainer.setTrainingMode(TrainingMode.SPARSE);
+        trainer.fit(chains, chains);
+        trainer.fit(chains, chains);
+
+        List<TrainingMetrics> journal = TrainingHistoryJournal.readAll(trainer.getHistoryPath());
+        assertEquals(3, journal.size());
+        List<TrainingMetrics> secondRun = trainer.getTrainingHistory().subList(3, 6);
+        for (int epoch = 0; epoch < 3; epoch++) {
+            assertEquals(epoch, journal.get(epoch).epoch);
+            assertEquals(secondRun.get(epoch).validationLoss, journal.get(epoch).validationLoss);
+        }
+    }
+
+    @Test
+    void testHogwildConvergesLikeSynchronousSgd() {
+        TargetingTrainer sync = newTrainer("sync.bin");
+        sync.setTrainingMode(TrainingMode.SPARSE);
+        TargetingTrainer hogwild = newTrainer("hogwild.bin");
+        hogwild.setTrainingMode(TrainingMode.HOGWILD);
+        hogwild.setParallelism(4);
+
+        double initialLoss = sync.evaluate(chains, new EnumMap<>(ComponentCategory.class));
+        for (int epoch = 0; epoch < 20; epoch++) {
+            sync.trainEpoch(chains);
+            hogwild.trainEpoch(chains);
+        }
+        double syncLoss = sync.evaluate(chains, new EnumMap<>(ComponentCategory.class));
+        double hogwildLoss = hogwild.evaluate(chains, new EnumMap<>(ComponentCategory.class));
+
+        assertTrue(hogwildLoss < initialLoss);
+        assertEquals(syncLoss, hogwildLoss, syncLoss * 0.1);
+    }
+
+    @Test
+    void testHogwildSnapshotsIntoBestModel() {
+        TargetingTrainer hogwild = newTrainer("snapshot.bin");
+        hogwild.setTrainingMode(TrainingMode.HOGWILD);
+        hogwild.setParallelism(2);
+        hogwild.setSnapshotInterval(10);
+
+        assertNull(hogwild.getBestModel());
+        hogwild.trainEpoch(chains);
+        assertNotNull(hogwild.getBestModel());
+        assertNotSame(hogwild.getTensor(), hogwild.getBestModel());
+    }
+
+    @Test
+    void testHogwildSnapshotsRunOnOneEvaluatorThread() {
+        Set<Thread> listeners = Collections.synchronizedSet(new HashSet<>());
+        int[] snapshots = {0};
+        TargetingTensor tensor = new TargetingTensor(new int[]{system.getVectorSize(), system.getVectorSize()});
+        try (HogwildTrainingEngine engine = new HogwildTrainingEngine(tensor, system.getVocabulary(), 4, 5)) {
+            for (int epoch = 0; epoch < 3; epoch++) {
+                engine.trainEpoch(chains, 0.1f, snapshot -> {
+                    listeners.add(Thread.currentThread());
+                    snapshots[0]++;
+                    assertNotSame(tensor.getData(), snapshot.getData());
+                });
+            }
+        }
+        assertEquals(1, listeners.size());
+        assertFalse(listeners.contains(Thread.currentThread()));
+        assertTrue(snapshots[0] >= 3);
+    }
+
+    @Test
+    void testHogwildFitTracksBestEpoch() {
+        TargetingTrainer hogwild = newTrainer("best.bin");
+        hogwild.setTrainingMode(TrainingMode.HOGWILD);
+        hogwild.setParallelism(2);
+        hogwild.setSnapshotInterval(10);
+        hogwild.setEpochs(5);
+
+        hogwild.fit(chains, chains);
+        double bestRecorded = hogwild.getTrainingHistory().stream()
+            .mapToDouble(metrics -> metrics.validationLoss).min().getAsDouble();
+        assertTrue(hogwild.getBestValidationLoss() <= bestRecorded);
+        assertTrue(hogwild.getBestEpoch() >= 0 && hogwild.getBestEpoch() < 5);
+        assertNotNull(hogwild.getBestModel());
+    }
+
+    @Test
+    void testTrainingReducesLoss() {
+        TargetingTrainer trainer = newTrainer("model.bin");
+        trainer.setTrainingMode(TrainingMode.SPARSE);
+
+        double initialLoss = trainer.evaluate(chains, new EnumMap<>(ComponentCategory.class));
+        for (int epoch = 0; epoch < 20; epoch++) {
+            trainer.trainEpoch(chains);
+        }
+        assertTrue(trainer.evaluate(chains, new EnumMap<>(ComponentCategory.class)) < initialLoss);
+    }
+}
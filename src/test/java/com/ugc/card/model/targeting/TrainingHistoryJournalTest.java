@@ -0,0 +1,102 @@
+package com.ugc.card.model.targeting;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+public class TrainingHistoryJournalTest {
+    @TempDir
+    Path dir;
+
+    private TrainingMetrics metrics(int epoch, double validationLoss) {
+        Map<ComponentCategory, Double> categoryLosses = new EnumMap<>(ComponentCategory.class);
+        categoryLosses.put(ComponentCategory.EFFECT, validationLoss / 2);
+        return new TrainingMetrics(epoch, validationLoss + 0.1, validationLoss, categoryLosses, 2.5);
+    }
+
+    @Test
+    void testAppendAndReadBack() throws IOException {
+        Path path = dir.resolve("history.journal");
+        try (TrainingHistoryJournal journal = TrainingHistoryJournal.open(path)) {
+            journal.append(metrics(0, 0.5));
+            journal.append(metrics(1, 0.3));
+        }
+        try (TrainingHistoryJournal journal = TrainingHistoryJournal.open(path)) {
+            journal.append(metrics(2, 0.4));
+        }
+
+        List<TrainingMetrics> history = TrainingHistoryJournal.readAll(path);
+        assertEquals(3, history.size());
+        assertEquals(2, history.get(2).epoch);
+        assertEquals(0.3, history.get(1).validationLoss);
+        assertEquals(0.4, history.get(1).trainingLoss, 1e-9);
+        assertEquals(0.15, history.get(1).categoryLosses.get(ComponentCategory.EFFECT), 1e-9);
+        assertEquals(2.5, history.get(0).patternComplexity);
+
+        assertEquals(1, TrainingHistoryJournal.bestEpoch(path).get().epoch);
+    }
+
+    @Test
+    void testReaderTailsJournalWhileWriting() throws IOException {
+        Path path = dir.resolve("history.journal");
+        try (TrainingHistoryJournal journal = TrainingHistoryJournal.open(path);
+             TrainingHistoryJournal.Reader reader = TrainingHistoryJournal.reader(path)) {
+            assertNull(reader.next());
+
+            journal.append(metrics(0, 0.5));
+            assertEquals(0, reader.next().epoch);
+            assertNull(reader.next());
+
+            journal.append(metrics(1, 0.4));
+            assertEquals(1, reader.next().epoch);
+        }
+    }
+
+    @Test
+    void testTornRecordIsDroppedOnReopen() throws IOException {
+        Path path = dir.resolve("history.journal");
+        try (TrainingHistoryJournal journal = TrainingHistoryJournal.open(path)) {
+            journal.append(metrics(0, 0.5));
+        }
+        // Simulate a crash halfway through writing the next record
+        Files.write(path, new byte[]{40, 0, 0, 0, 1, 2, 3, 4, 5, 6}, StandardOpenOption.APPEND);
+        assertEquals(1, TrainingHistoryJournal.readAll(path).size());
+
+        try (TrainingHistoryJournal journal = TrainingHistoryJournal.open(path)) {
+            journal.append(metrics(1, 0.2));
+        }
+        List<TrainingMetrics> history = TrainingHistoryJournal.readAll(path);
+        assertEquals(2, history.size());
+        assertEquals(1, history.get(1).epoch);
+    }
+
+    @Test
+    void testCreateStartsAFreshJournal() throws IOException {
+        Path path = dir.resolve("history.journal");
+        try (TrainingHistoryJournal journal = TrainingHistoryJournal.open(path)) {
+            journal.append(metrics(0, 0.1));
+            journal.append(metrics(1, 0.5));
+        }
+        try (TrainingHistoryJournal.Reader previous = TrainingHistoryJournal.reader(path);
+             TrainingHistoryJournal journal = TrainingHistoryJournal.create(path)) {
+            journal.append(metrics(0, 0.4));
+            assertEquals(0.1, previous.next().validationLoss);
+        }
+        List<TrainingMetrics> history = TrainingHistoryJournal.readAll(path);
+        assertEquals(1, history.size());
+        assertEquals(0.4, TrainingHistoryJournal.bestEpoch(path).get().validationLoss);
+    }
+
+    @Test
+    void testEmptyJournalHasNoBestEpoch() throws IOException {
+        Path path = dir.resolve("history.journal");
+        TrainingHistoryJournal.open(path).close();
+        assertFalse(TrainingHistoryJournal.bestEpoch(path).isPresent());
+    }
+}